@@ -0,0 +1,298 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.uima.ruta.type;
+
+import java.util.AbstractCollection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.apache.uima.cas.impl.FeatureStructureImpl;
+import org.apache.uima.cas.text.AnnotationFS;
+
+/**
+ * The annotations of one type that begin or end at a {@link RutaBasic}. Annotations are identified
+ * by their address in the CAS. The annotations are stored in an array in the order they were
+ * added. Small sets are scanned, larger sets additionally use an open addressing table of int
+ * indexes hashed by the address, so that adding, removing and looking up an annotation does not
+ * need to scan all annotations of the type at the basic. Each annotation is contained at most
+ * once. The iterators are fail-fast.
+ */
+final class AnchorSet extends AbstractCollection<AnnotationFS> {
+
+  private static final int THRESHOLD = 8;
+
+  /**
+   * the annotations in the order they were added; annotations removed from a hashed set leave a
+   * null entry until the array is compacted
+   */
+  private AnnotationFS[] elements;
+
+  /**
+   * the number of used entries of the array, including removed ones
+   */
+  private int end;
+
+  private int size;
+
+  /**
+   * the index of each annotation in the array plus one, or zero for an empty slot; null as long as
+   * the set is small
+   */
+  private int[] table;
+
+  private int modCount;
+
+  AnchorSet(int initialCapacity) {
+    super();
+    elements = new AnnotationFS[initialCapacity];
+  }
+
+  @Override
+  public boolean add(AnnotationFS annotation) {
+    int address = getAddress(annotation);
+    if (table == null) {
+      if (indexOf(address) >= 0) {
+        return false;
+      }
+    } else if (find(address) >= 0) {
+      return false;
+    }
+    if (end == elements.length) {
+      if (size < end) {
+        compact();
+      } else {
+        AnnotationFS[] newElements = new AnnotationFS[end * 2 + 1];
+        System.arraycopy(elements, 0, newElements, 0, end);
+        elements = newElements;
+      }
+    }
+    elements[end++] = annotation;
+    size++;
+    modCount++;
+    if (table != null) {
+      if (size * 2 > table.length) {
+        rehash();
+      } else {
+        insert(end - 1);
+      }
+    } else if (size > THRESHOLD) {
+      rehash();
+    }
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!(o instanceof FeatureStructureImpl)) {
+      return false;
+    }
+    int address = ((FeatureStructureImpl) o).getAddress();
+    if (table == null) {
+      int index = indexOf(address);
+      if (index < 0) {
+        return false;
+      }
+      removeAt(index);
+      return true;
+    }
+    int slot = find(address);
+    if (slot < 0) {
+      return false;
+    }
+    removeSlot(slot);
+    return true;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof FeatureStructureImpl)) {
+      return false;
+    }
+    int address = ((FeatureStructureImpl) o).getAddress();
+    if (table == null) {
+      return indexOf(address) >= 0;
+    }
+    return find(address) >= 0;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public Iterator<AnnotationFS> iterator() {
+    return new Iterator<AnnotationFS>() {
+
+      private int next = skipRemoved(0);
+
+      private int last = -1;
+
+      private int expectedModCount = modCount;
+
+      @Override
+      public boolean hasNext() {
+        return next < end;
+      }
+
+      @Override
+      public AnnotationFS next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (next >= end) {
+          throw new NoSuchElementException();
+        }
+        last = next;
+        next = skipRemoved(next + 1);
+        return elements[last];
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (table == null) {
+          removeAt(last);
+          next = last;
+        } else {
+          removeSlot(find(getAddress(elements[last])));
+        }
+        last = -1;
+        expectedModCount = modCount;
+      }
+
+    };
+  }
+
+  private int skipRemoved(int index) {
+    while (index < end && elements[index] == null) {
+      index++;
+    }
+    return index;
+  }
+
+  private int indexOf(int address) {
+    for (int i = 0; i < end; i++) {
+      if (getAddress(elements[i]) == address) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void removeAt(int index) {
+    System.arraycopy(elements, index + 1, elements, index, end - index - 1);
+    elements[--end] = null;
+    size--;
+    modCount++;
+  }
+
+  /**
+   * Returns the slot of the table referring to the annotation with the given address, or -1.
+   */
+  private int find(int address) {
+    int mask = table.length - 1;
+    for (int slot = hash(address) & mask;; slot = (slot + 1) & mask) {
+      int entry = table[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      if (getAddress(elements[entry - 1]) == address) {
+        return slot;
+      }
+    }
+  }
+
+  private void insert(int index) {
+    int mask = table.length - 1;
+    int slot = hash(getAddress(elements[index])) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = index + 1;
+  }
+
+  private void removeSlot(int slot) {
+    int index = table[slot] - 1;
+    elements[index] = null;
+    size--;
+    modCount++;
+    while (end > 0 && elements[end - 1] == null) {
+      end--;
+    }
+    // shift the following entries back so that no probe sequence is interrupted
+    int mask = table.length - 1;
+    int free = slot;
+    table[free] = 0;
+    for (int next = (free + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+      int home = hash(getAddress(elements[table[next] - 1])) & mask;
+      boolean reachable = free <= next ? free < home && home <= next : free < home || home <= next;
+      if (!reachable) {
+        table[free] = table[next];
+        table[next] = 0;
+        free = next;
+      }
+    }
+  }
+
+  /**
+   * Removes the null entries of the array and rebuilds the table.
+   */
+  private void compact() {
+    int index = 0;
+    for (int i = 0; i < end; i++) {
+      if (elements[i] != null) {
+        elements[index++] = elements[i];
+      }
+    }
+    for (int i = index; i < end; i++) {
+      elements[i] = null;
+    }
+    end = index;
+    if (table != null) {
+      rehash();
+    }
+  }
+
+  private void rehash() {
+    int capacity = Integer.highestOneBit(Math.max(size, THRESHOLD) * 4 - 1) << 1;
+    table = new int[capacity];
+    for (int i = 0; i < end; i++) {
+      if (elements[i] != null) {
+        insert(i);
+      }
+    }
+  }
+
+  private static int hash(int address) {
+    int h = address * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static int getAddress(AnnotationFS annotation) {
+    return ((FeatureStructureImpl) annotation).getAddress();
+  }
+
+}
@@ -21,12 +21,9 @@ package org.apache.uima.ruta.type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.List;
 
 import org.apache.uima.cas.Type;
-import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.TypeImpl;
-import org.apache.uima.cas.impl.TypeSystemImpl;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.JCasRegistry;
@@ -44,19 +41,15 @@ public class RutaBasic extends Annotation {
 
   private static final int INITIAL_CAPACITY = 2;
 
-  private static final String ROOT_TYPE1 = "uima.tcas.Annotation";
-
-  private static final String ROOT_TYPE2 = "uima.cas.AnnotationBase";
-
   private boolean lowMemoryProfile = false;
 
-  private int[] partOf = new int[((TypeSystemImpl) getCAS().getTypeSystem()).getLargestTypeCode()];
+  private final RutaBasicTypeHierarchy hierarchy = ((RutaBasic_Type) jcasType).hierarchy;
+
+  private int[] partOf = new int[hierarchy.getLargestTypeCode()];
 
-  private Collection<?>[] beginMap = new ArrayList<?>[((TypeSystemImpl) getCAS().getTypeSystem())
-          .getLargestTypeCode()];
+  private Collection<?>[] beginMap = new Collection<?>[hierarchy.getLargestTypeCode()];
 
-  private Collection<?>[] endMap = new ArrayList<?>[((TypeSystemImpl) getCAS().getTypeSystem())
-          .getLargestTypeCode()];
+  private Collection<?>[] endMap = new Collection<?>[hierarchy.getLargestTypeCode()];
 
   private boolean empty = true;
 
@@ -78,12 +71,12 @@ public class RutaBasic extends Annotation {
   }
 
   private void addPartOf(int code) {
-    partOf[code] = partOf[code] + 1;
-    if (!lowMemoryProfile) {
-      int parentCode = getCAS().getTypeSystem().getLowLevelTypeSystem().ll_getParentType(code);
-      if (parentCode > 0) {
-        addPartOf(parentCode);
-      }
+    if (lowMemoryProfile) {
+      partOf[code]++;
+      return;
+    }
+    for (int each : hierarchy.getAncestors(code)) {
+      partOf[each]++;
     }
   }
 
@@ -93,14 +86,17 @@ public class RutaBasic extends Annotation {
   }
 
   private void removePartOf(int code) {
-    if (partOf[code] != 0) {
-      partOf[code] = partOf[code] - 1;
-      if (!lowMemoryProfile) {
-        int parentCode = getCAS().getTypeSystem().getLowLevelTypeSystem().ll_getParentType(code);
-        if (parentCode > 0) {
-          removePartOf(parentCode);
-        }
+    if (lowMemoryProfile) {
+      if (partOf[code] != 0) {
+        partOf[code]--;
+      }
+      return;
+    }
+    for (int each : hierarchy.getAncestors(code)) {
+      if (partOf[each] == 0) {
+        return;
       }
+      partOf[each]--;
     }
   }
 
@@ -111,15 +107,11 @@ public class RutaBasic extends Annotation {
       return true;
     }
     if (lowMemoryProfile) {
-      List<Type> subsumedTypes = getCAS().getTypeSystem().getProperlySubsumedTypes(type);
-      for (Type each : subsumedTypes) {
-        int code2 = ((TypeImpl) each).getCode();
-        int count2 = partOf[code2];
-        if (count2 > 0) {
+      for (int each : hierarchy.getProperSubtypes(code)) {
+        if (partOf[each] > 0) {
           return true;
         }
       }
-
     }
     return false;
 
@@ -142,10 +134,8 @@ public class RutaBasic extends Annotation {
       if (set != null) {
         result.addAll(set);
       }
-      List<Type> subsumedTypes = getCAS().getTypeSystem().getProperlySubsumedTypes(type);
-      for (Type each : subsumedTypes) {
-        int parentCode = ((TypeImpl) each).getCode();
-        Collection<?> c = beginMap[parentCode];
+      for (int each : hierarchy.getProperSubtypes(code)) {
+        Collection<?> c = beginMap[each];
         if (c != null) {
           result.addAll((Collection<? extends AnnotationFS>) c);
         }
@@ -169,10 +159,8 @@ public class RutaBasic extends Annotation {
       if (set != null) {
         result.addAll(set);
       }
-      List<Type> subsumedTypes = getCAS().getTypeSystem().getProperlySubsumedTypes(type);
-      for (Type each : subsumedTypes) {
-        int parentCode = ((TypeImpl) each).getCode();
-        Collection<?> c = endMap[parentCode];
+      for (int each : hierarchy.getProperSubtypes(code)) {
+        Collection<?> c = endMap[each];
         if (c != null) {
           result.addAll((Collection<? extends AnnotationFS>) c);
         }
@@ -195,9 +183,9 @@ public class RutaBasic extends Annotation {
       return true;
     }
     if (lowMemoryProfile) {
-      List<Type> subsumedTypes = getCAS().getTypeSystem().getProperlySubsumedTypes(type);
-      for (Type each : subsumedTypes) {
-        if (beginsWith(each)) {
+      for (int each : hierarchy.getProperSubtypes(code)) {
+        Collection<?> subtypeSet = beginMap[each];
+        if (subtypeSet != null && !subtypeSet.isEmpty()) {
           return true;
         }
       }
@@ -213,9 +201,9 @@ public class RutaBasic extends Annotation {
       return true;
     }
     if (lowMemoryProfile) {
-      List<Type> subsumedTypes = getCAS().getTypeSystem().getProperlySubsumedTypes(type);
-      for (Type each : subsumedTypes) {
-        if (endsWith(each)) {
+      for (int each : hierarchy.getProperSubtypes(code)) {
+        Collection<?> subtypeSet = endMap[each];
+        if (subtypeSet != null && !subtypeSet.isEmpty()) {
           return true;
         }
       }
@@ -223,80 +211,68 @@ public class RutaBasic extends Annotation {
     return false;
   }
 
-  @SuppressWarnings("unchecked")
   public void addBegin(AnnotationFS annotation, Type type) {
     empty = false;
     int code = ((TypeImpl) type).getCode();
-    Collection<Object> set = (Collection<Object>) beginMap[code];
-    if (set == null) {
-      set = new ArrayList<Object>(INITIAL_CAPACITY);
-      beginMap[code] = set;
+    if (lowMemoryProfile) {
+      add(beginMap, code, annotation);
+      return;
     }
-    set.add(annotation);
-    if (!lowMemoryProfile && !type.getName().equals(ROOT_TYPE1)
-            && !type.getName().equals(ROOT_TYPE2)) {
-      TypeSystem typeSystem = getCAS().getTypeSystem();
-      Type parent = typeSystem.getParent(type);
-      if (parent != null) {
-        addBegin(annotation, parent);
-      }
+    for (int each : hierarchy.getAnchorAncestors(code)) {
+      add(beginMap, each, annotation);
     }
   }
 
-  @SuppressWarnings("unchecked")
   public void addEnd(AnnotationFS annotation, Type type) {
     empty = false;
     int code = ((TypeImpl) type).getCode();
-    Collection<Object> set = (Collection<Object>) endMap[code];
-    if (set == null) {
-      set = new ArrayList<Object>(INITIAL_CAPACITY);
-      endMap[code] = set;
+    if (lowMemoryProfile) {
+      add(endMap, code, annotation);
+      return;
     }
-    set.add(annotation);
-    if (!lowMemoryProfile && !type.getName().equals(ROOT_TYPE1)
-            && !type.getName().equals(ROOT_TYPE2)) {
-      TypeSystem typeSystem = getCAS().getTypeSystem();
-      Type parent = typeSystem.getParent(type);
-      if (parent != null) {
-        addEnd(annotation, parent);
-      }
+    for (int each : hierarchy.getAnchorAncestors(code)) {
+      add(endMap, each, annotation);
     }
   }
 
-  @SuppressWarnings("unchecked")
   public void removeBegin(AnnotationFS annotation, Type type) {
     int code = ((TypeImpl) type).getCode();
-    Collection<Object> set = (Collection<Object>) beginMap[code];
-    if (set != null) {
-      set.remove(annotation);
-      if (set.isEmpty()) {
-        beginMap[code] = null;
-      }
+    if (lowMemoryProfile) {
+      remove(beginMap, code, annotation);
+      return;
     }
-    if (!lowMemoryProfile) {
-      TypeSystem typeSystem = getCAS().getTypeSystem();
-      Type parent = typeSystem.getParent(type);
-      if (parent != null) {
-        removeBegin(annotation, parent);
-      }
+    for (int each : hierarchy.getAncestors(code)) {
+      remove(beginMap, each, annotation);
     }
   }
 
-  @SuppressWarnings("unchecked")
   public void removeEnd(AnnotationFS annotation, Type type) {
     int code = ((TypeImpl) type).getCode();
-    Collection<Object> set = (Collection<Object>) endMap[code];
+    if (lowMemoryProfile) {
+      remove(endMap, code, annotation);
+      return;
+    }
+    for (int each : hierarchy.getAncestors(code)) {
+      remove(endMap, each, annotation);
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void add(Collection<?>[] map, int code, AnnotationFS annotation) {
+    Collection<AnnotationFS> set = (Collection<AnnotationFS>) map[code];
+    if (set == null) {
+      set = new AnchorSet(INITIAL_CAPACITY);
+      map[code] = set;
+    }
+    set.add(annotation);
+  }
+
+  private static void remove(Collection<?>[] map, int code, AnnotationFS annotation) {
+    Collection<?> set = map[code];
     if (set != null) {
       set.remove(annotation);
       if (set.isEmpty()) {
-        endMap[code] = null;
-      }
-    }
-    if (!lowMemoryProfile) {
-      TypeSystem typeSystem = getCAS().getTypeSystem();
-      Type parent = typeSystem.getParent(type);
-      if (parent != null) {
-        removeEnd(annotation, parent);
+        map[code] = null;
       }
     }
   }
@@ -330,12 +306,11 @@ public class RutaBasic extends Annotation {
   }
 
   public void clearBeginMap() {
-    this.beginMap = new ArrayList<?>[((TypeSystemImpl) getCAS().getTypeSystem())
-            .getLargestTypeCode()];
+    this.beginMap = new Collection<?>[hierarchy.getLargestTypeCode()];
   }
 
   public void clearEndMap() {
-    this.endMap = new ArrayList<?>[((TypeSystemImpl) getCAS().getTypeSystem()).getLargestTypeCode()];
+    this.endMap = new Collection<?>[hierarchy.getLargestTypeCode()];
     for (Collection<?> each : beginMap) {
       if (each != null && !each.isEmpty()) {
         return;
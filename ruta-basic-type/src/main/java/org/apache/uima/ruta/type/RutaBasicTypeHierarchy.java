@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.type;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.LowLevelTypeSystem;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemImpl;
+
+/**
+ * Precomputed tables of a committed type system for the bookkeeping of {@link RutaBasic}: the
+ * codes of the supertypes of each type and the codes of the proper subtypes of each type. The
+ * tables are computed once for each type system. They are looked up once for each JCas when its
+ * {@link RutaBasic_Type} is created and shared by all basics of the JCas.
+ */
+final class RutaBasicTypeHierarchy {
+
+  private static final Map<TypeSystem, RutaBasicTypeHierarchy> HIERARCHIES = new WeakHashMap<>();
+
+  private static final int[] NONE = new int[0];
+
+  /**
+   * the code of the type and of all its supertypes, beginning with the type itself
+   */
+  private final int[][] ancestors;
+
+  /**
+   * the code of the type and of its supertypes up to uima.tcas.Annotation or
+   * uima.cas.AnnotationBase, which are used for the begin and end anchors
+   */
+  private final int[][] anchorAncestors;
+
+  private final int[][] properSubtypes;
+
+  private final int largestTypeCode;
+
+  private RutaBasicTypeHierarchy(TypeSystem typeSystem) {
+    super();
+    largestTypeCode = ((TypeSystemImpl) typeSystem).getLargestTypeCode();
+    ancestors = new int[largestTypeCode + 1][];
+    anchorAncestors = new int[largestTypeCode + 1][];
+    properSubtypes = new int[largestTypeCode + 1][];
+    LowLevelTypeSystem lowLevelTypeSystem = typeSystem.getLowLevelTypeSystem();
+    int annotationCode = getCode(typeSystem, CAS.TYPE_NAME_ANNOTATION);
+    int annotationBaseCode = getCode(typeSystem, CAS.TYPE_NAME_ANNOTATION_BASE);
+    Iterator<Type> typeIterator = typeSystem.getTypeIterator();
+    while (typeIterator.hasNext()) {
+      Type type = typeIterator.next();
+      int code = ((TypeImpl) type).getCode();
+
+      List<Integer> codes = new ArrayList<Integer>();
+      int anchorCodes = -1;
+      int each = code;
+      while (each > 0) {
+        codes.add(each);
+        if (anchorCodes == -1 && (each == annotationCode || each == annotationBaseCode)) {
+          anchorCodes = codes.size();
+        }
+        each = lowLevelTypeSystem.ll_getParentType(each);
+      }
+      ancestors[code] = toArray(codes, codes.size());
+      anchorAncestors[code] = toArray(codes, anchorCodes == -1 ? codes.size() : anchorCodes);
+
+      List<Type> subsumedTypes = typeSystem.getProperlySubsumedTypes(type);
+      codes.clear();
+      for (Type subsumedType : subsumedTypes) {
+        codes.add(((TypeImpl) subsumedType).getCode());
+      }
+      properSubtypes[code] = toArray(codes, codes.size());
+    }
+  }
+
+  static synchronized RutaBasicTypeHierarchy get(TypeSystem typeSystem) {
+    RutaBasicTypeHierarchy hierarchy = HIERARCHIES.get(typeSystem);
+    if (hierarchy == null) {
+      hierarchy = new RutaBasicTypeHierarchy(typeSystem);
+      HIERARCHIES.put(typeSystem, hierarchy);
+    }
+    return hierarchy;
+  }
+
+  int getLargestTypeCode() {
+    return largestTypeCode;
+  }
+
+  int[] getAncestors(int code) {
+    int[] result = ancestors[code];
+    return result == null ? NONE : result;
+  }
+
+  int[] getAnchorAncestors(int code) {
+    int[] result = anchorAncestors[code];
+    return result == null ? NONE : result;
+  }
+
+  int[] getProperSubtypes(int code) {
+    int[] result = properSubtypes[code];
+    return result == null ? NONE : result;
+  }
+
+  private static int getCode(TypeSystem typeSystem, String typeName) {
+    Type type = typeSystem.getType(typeName);
+    return type == null ? -1 : ((TypeImpl) type).getCode();
+  }
+
+  private static int[] toArray(List<Integer> codes, int length) {
+    int[] result = new int[length];
+    for (int i = 0; i < length; i++) {
+      result[i] = codes.get(i);
+    }
+    return result;
+  }
+
+}
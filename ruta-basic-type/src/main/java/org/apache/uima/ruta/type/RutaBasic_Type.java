@@ -75,6 +75,11 @@ public class RutaBasic_Type extends Annotation_Type {
   /** @generated */
   final int casFeatCode_replacement;
 
+  /**
+   * the type hierarchy of the CAS, which is resolved once for all basics created in it
+   */
+  final RutaBasicTypeHierarchy hierarchy;
+
   /** @generated */
   public String getReplacement(int addr) {
     if (featOkTst && casFeat_replacement == null)
@@ -103,5 +108,6 @@ public class RutaBasic_Type extends Annotation_Type {
     casFeatCode_replacement = (null == casFeat_replacement) ? JCas.INVALID_FEATURE_CODE
             : ((FeatureImpl) casFeat_replacement).getCode();
 
+    hierarchy = RutaBasicTypeHierarchy.get(jcas.getTypeSystem());
   }
 }
@@ -0,0 +1,217 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.RutaProcessRuntimeException;
+import org.apache.uima.ruta.RutaStatement;
+import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.ScriptApply;
+import org.apache.uima.ruta.block.ParallelRuleMatcher.TypeAccess;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
+import org.apache.uima.ruta.rule.AbstractRule;
+import org.apache.uima.ruta.rule.AbstractRuleMatch;
+import org.apache.uima.ruta.rule.RuleApply;
+import org.apache.uima.ruta.rule.RuleMatch;
+import org.apache.uima.ruta.rule.RutaRule;
+import org.apache.uima.ruta.rule.RutaRuleElement;
+import org.apache.uima.ruta.visitor.InferenceCrowd;
+
+/**
+ * A block construct in UIMA Ruta, which processes its windows concurrently. The rules of the block
+ * are matched on all windows while the document is not modified. The matches of each window are
+ * collected and their actions are executed afterwards in the order of the windows and the rules,
+ * which yields the same result as a normal block. The windows are matched by the threads of the
+ * engine configured with the parameter <code>matchingThreads</code>, or in the common fork-join
+ * pool if the engine uses no threads for matching.
+ * 
+ * This is only possible if all elements of the block are rules that could be matched in parallel
+ * (see {@link ParallelRuleMatcher}) and if no rule matches annotations created by a rule of the
+ * block, since these annotations may also be located in other windows. Otherwise, the windows are
+ * processed sequentially like in a normal block. If the actions of a window change the annotations
+ * the rules depend on, e.g., by splitting basic annotations, the remaining rules are applied
+ * sequentially again.
+ */
+public class ParallelBlock extends RutaBlock {
+
+  /**
+   * The maximal number of windows matched by a single task.
+   */
+  private static final int WINDOWS_PER_TASK = 8;
+
+  /**
+   * Matches the rules on a range of windows.
+   */
+  private static class MatchingTask implements Callable<Void> {
+
+    private final List<RutaRule> rules;
+
+    private final List<RutaStream> windows;
+
+    private final RuleApply[][] matches;
+
+    private final int from;
+
+    private final int to;
+
+    private MatchingTask(List<RutaRule> rules, List<RutaStream> windows, RuleApply[][] matches,
+            int from, int to) {
+      super();
+      this.rules = rules;
+      this.windows = windows;
+      this.matches = matches;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    public Void call() throws Exception {
+      for (int i = from; i < to; i++) {
+        // each window stream is only used by this task
+        RutaStream window = windows.get(i);
+        for (int j = 0; j < rules.size(); j++) {
+          matches[i][j] = rules.get(j).findMatches(window);
+        }
+      }
+      return null;
+    }
+  }
+
+  public ParallelBlock(RutaBlock parent, String defaultNamespace) {
+    super(parent, defaultNamespace, parent != null ? parent.getContext() : null);
+  }
+
+  @Override
+  public ScriptApply apply(RutaStream stream, InferenceCrowd crowd) {
+    BlockApply result = new BlockApply(this);
+    crowd.beginVisit(this, result);
+    RuleApply apply = rule.apply(stream, crowd, true);
+    List<RutaStream> windows = new ArrayList<RutaStream>();
+    for (AbstractRuleMatch<? extends AbstractRule> eachMatch : apply.getList()) {
+      if (eachMatch.matched()) {
+        List<AnnotationFS> matchedAnnotations = ((RuleMatch) eachMatch).getMatchedAnnotations(null,
+                null);
+        if (matchedAnnotations == null || matchedAnnotations.isEmpty()) {
+          continue;
+        }
+        AnnotationFS each = matchedAnnotations.get(0);
+        if (each == null) {
+          continue;
+        }
+        Type type = ((RutaRuleElement) rule.getRuleElements().get(0)).getMatcher()
+                .getType(getParent() == null ? this : getParent(), stream);
+        windows.add(stream.getWindowStream(each, type));
+      }
+    }
+
+    TypeAccess access = null;
+    if (windows.size() > 1 && crowd.isEmpty() && !stream.getTimeBudget().isLimited()) {
+      access = ParallelRuleMatcher.getTypeAccess(getElements(), stream);
+      if (access != null && access.reads(access.getWrites(), stream.getCas().getTypeSystem())) {
+        access = null;
+      }
+    }
+    if (access == null) {
+      for (RutaStream window : windows) {
+        ParallelRuleMatcher.apply(getElements(), window, crowd);
+      }
+    } else {
+      applyParallel(windows, access, stream, crowd);
+    }
+    crowd.endVisit(this, result);
+    return result;
+  }
+
+  private void applyParallel(List<RutaStream> windows, TypeAccess access, RutaStream stream,
+          InferenceCrowd crowd) {
+    List<RutaRule> rules = new ArrayList<RutaRule>();
+    for (RutaStatement each : getElements()) {
+      if (each != null) {
+        rules.add((RutaRule) each);
+      }
+    }
+    long[] epochs = access.getEpochs(stream);
+    RuleApply[][] matches = new RuleApply[windows.size()][rules.size()];
+    ExecutorService executor = stream.getMatchingExecutor();
+    if (executor == null) {
+      executor = ForkJoinPool.commonPool();
+    }
+    for (RutaStream window : windows) {
+      window.prepareParallelMatching();
+    }
+    List<Future<Void>> futures = new ArrayList<Future<Void>>();
+    for (int from = 0; from < windows.size(); from += WINDOWS_PER_TASK) {
+      int to = Math.min(from + WINDOWS_PER_TASK, windows.size());
+      futures.add(executor.submit(new MatchingTask(rules, windows, matches, from, to)));
+    }
+
+    // wait for all tasks before the document is modified again
+    Throwable failure = null;
+    for (Future<Void> each : futures) {
+      try {
+        each.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RutaProcessRuntimeException(e);
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new RutaProcessRuntimeException(failure);
+    }
+    RutaDocumentMetrics metrics = stream.getMetrics();
+    if (metrics != null) {
+      metrics.addParallelWindows(windows.size());
+    }
+
+    boolean valid = true;
+    for (int i = 0; i < windows.size(); i++) {
+      RutaStream window = windows.get(i);
+      for (int j = 0; j < rules.size(); j++) {
+        RutaRule rule = rules.get(j);
+        valid = valid && Arrays.equals(epochs, access.getEpochs(stream));
+        if (valid) {
+          rule.applyDeferred(matches[i][j], window, crowd);
+        } else {
+          // the executed actions changed what the rules can match
+          rule.apply(window, crowd);
+        }
+      }
+    }
+  }
+
+}
@@ -17,364 +17,541 @@
  * under the License.
  */
 
-
 package org.apache.uima.ruta.block.fst;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStatement;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.RutaTimeBudget;
+import org.apache.uima.ruta.action.AbstractRutaAction;
 import org.apache.uima.ruta.block.RutaBlock;
 import org.apache.uima.ruta.condition.AbstractRutaCondition;
+import org.apache.uima.ruta.expression.AnnotationTypeExpression;
+import org.apache.uima.ruta.expression.IRutaExpression;
+import org.apache.uima.ruta.expression.string.ComposedStringExpression;
+import org.apache.uima.ruta.expression.string.SimpleStringExpression;
+import org.apache.uima.ruta.expression.type.ITypeExpression;
+import org.apache.uima.ruta.expression.type.SimpleTypeExpression;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
 import org.apache.uima.ruta.rule.ComposedRuleElementMatch;
 import org.apache.uima.ruta.rule.EvaluatedCondition;
 import org.apache.uima.ruta.rule.MatchContext;
+import org.apache.uima.ruta.rule.RuleApply;
 import org.apache.uima.ruta.rule.RuleElement;
 import org.apache.uima.ruta.rule.RuleElementMatch;
 import org.apache.uima.ruta.rule.RuleMatch;
+import org.apache.uima.ruta.rule.RutaAnnotationTypeMatcher;
+import org.apache.uima.ruta.rule.RutaLiteralMatcher;
 import org.apache.uima.ruta.rule.RutaMatcher;
 import org.apache.uima.ruta.rule.RutaRule;
 import org.apache.uima.ruta.rule.RutaRuleElement;
+import org.apache.uima.ruta.rule.quantifier.NormalQuantifier;
+import org.apache.uima.ruta.type.RutaBasic;
 import org.apache.uima.ruta.verbalize.RutaVerbalizer;
 import org.apache.uima.ruta.visitor.InferenceCrowd;
 
+/**
+ * A deterministic automaton over the rules of a FST block. Rules, which consist only of simple rule
+ * elements matching a type or a constant literal, are compiled into a prefix tree of states whose
+ * transitions are stored in int-indexed tables: the outgoing type transitions of each state refer
+ * to dense indexes of the used types, and the literal transitions are looked up by the covered
+ * text of a basic annotation. The automaton is run in one pass over the visible basic annotations
+ * of the window and collects the paths on which it reaches the state in which a rule ends. Then,
+ * the rules are applied one after the other like normal rules, but their conditions are only
+ * evaluated and their actions are only executed on the collected paths.
+ * 
+ * The statements are divided into stages, which are applied in the order of the statements. A new
+ * stage starts with each statement that cannot be compiled and is applied normally, and with each
+ * rule that matches on or refers in its conditions to a type mentioned in the actions of a
+ * previous rule of the current stage, so that rules depending on the results of previous rules
+ * still see them.
+ */
 public class Automaton {
 
-  private RutaVerbalizer verbalizer;
+  private static final int ROOT = 0;
+
+  private final List<RutaStatement> statements;
+
+  private final RutaVerbalizer verbalizer;
+
+  private TypeSystem typeSystem;
 
-  private RootState root;
+  private List<Stage> stages;
 
   /**
-   * Constructor that builds the FST from the Rules in rulesList
-   * 
-   * @param rulesList
-   *          - the rules to build the FST from
+   * A compiled stage of the automaton, or a single statement that is applied normally.
    */
-  public Automaton(List<RutaStatement> rulesList) {
-    this.verbalizer = new RutaVerbalizer();
-    this.root = this.buildAutomaton(rulesList);
+  private static class Stage {
+
+    private RutaStatement statement;
+
+    private Type[] types;
+
+    private int[][] typeLabels;
+
+    private int[][] typeTargets;
+
+    private Map<String, Integer>[] literalTargets;
+
+    private RutaRule[] rules;
+
+    private RutaRule[][] accepted;
+
+    private boolean[] hasTransitions;
+
+    private int maxDepth;
   }
 
   /**
-   * Builds the FST from the Rules in rulesList.
-   * 
-   * @param rulesList
-   *          - the rules to build the FST from
-   * @return the RootState for the built FST
+   * The mutable state while compiling a stage.
    */
-  public RootState buildAutomaton(List<RutaStatement> rulesList) {
-    RootState root = new RootState();
-    for (RutaStatement statement : rulesList) {
-      AbstractState startState = root;
-      if (statement instanceof RutaRule) {
-        RutaRule rule = (RutaRule) statement;
-        int depth = 1;
-        for (RuleElement element : rule.getRuleElements()) {
-          AbstractState targetState = null;
-          for (RuleElement toCompare : startState.getPossibleTransitions()) {
-            if (ruleElementEquals(element, toCompare)) {
-              targetState = startState.getTransition(toCompare);
-            }
-            if (targetState instanceof EndState) {
-              // Falls zwei Regeln genau gleich, erstelle trotzdem
-              // zwei verschiedene Endzustände
-              targetState = null;
-            }
-          }
-          if (targetState == null) { // Erstelle neuen Zielzustand
-            if (depth == rule.getRuleElements().size()) {
-              targetState = new EndState(statement, depth);
-            } else {
-              targetState = new TransitionState(depth);
-              ((TransitionState) targetState).addRule(statement);
-            }
-            startState.addTransition(element, targetState);
-          } else { // Benutze existierenden Zielzustand
-            if (targetState instanceof TransitionState) {
-              ((TransitionState) targetState).addRule(statement);
-            }
-          }
-          startState = targetState;
-          depth++;
-        }
-      }
+  private static class StateBuilder {
+
+    private final Map<Integer, Integer> typeTransitions = new LinkedHashMap<Integer, Integer>();
+
+    private Map<String, Integer> literalTransitions;
+
+    private final List<RutaRule> accepted = new ArrayList<RutaRule>(1);
+  }
+
+  private static class StageBuilder {
+
+    private final List<StateBuilder> states = new ArrayList<StateBuilder>();
+
+    private final Map<Type, Integer> typeIndex = new HashMap<Type, Integer>();
+
+    private final List<Type> types = new ArrayList<Type>();
+
+    private final Set<String> mentionedNames = new HashSet<String>();
+
+    private final List<RutaRule> rules = new ArrayList<RutaRule>();
+
+    private int maxDepth = 0;
+
+    public StageBuilder() {
+      super();
+      states.add(new StateBuilder());
+    }
+
+    public boolean isEmpty() {
+      return states.size() == 1;
     }
-    return root;
   }
 
   /**
-   * Compares two RuleElements. They are if their verbalization, e. g. "CW" or "SW" is equal, not if
-   * elem1 == elem2 or elem1.equals(elem2)
-   * 
-   * @param elem1
-   *          - The first RuleElement to compare
-   * @param elem2
-   *          - The second RuleElement to compare
-   * 
-   * @return true if the verbalization of the two RuleElements equals, else false
+   * @param statements
+   *          the statements of the block
    */
-  public boolean ruleElementEquals(RuleElement elem1, RuleElement elem2) {
-    return verbalizer.verbalize(elem1).equals(verbalizer.verbalize(elem2));
+  public Automaton(List<RutaStatement> statements) {
+    super();
+    this.statements = statements;
+    this.verbalizer = new RutaVerbalizer();
   }
 
   /**
-   * Starts the execution of the Automaton in the rootState
+   * Applies the statements of the block on the given window. The automaton is compiled on the first
+   * call for each type system.
    * 
    * @param stream
-   *          - the RutaStream (is needed in the called functions)
+   *          the stream of the window
    * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
+   *          the inference crowd
    * @param parent
-   *          - the RutaBlock (is needed in called functions)
+   *          the FST block
    */
   public void apply(RutaStream stream, InferenceCrowd crowd, RutaBlock parent) {
-    for (RuleElement element : root.getPossibleTransitions()) {
-      AbstractState targetState = root.getTransition(element);
-      RutaMatcher matcher = ((RutaRuleElement) element).getMatcher();
-      for (AnnotationFS annoFS : matcher.getMatchingAnnotations(parent, stream)) {
-        if (targetState instanceof TransitionState) {
-          LinkedList<RuleMatch> ruleMatches = createMatches(annoFS,
-                  ((TransitionState) targetState).getRules(), stream, crowd);
-          doTransition((TransitionState) targetState, annoFS, element, ruleMatches, stream, crowd,
-                  parent);
-        } else {
-          RuleMatch ruleMatch = createMatch(annoFS, (RutaRule) ((EndState) targetState).getRule(),
-                  stream, crowd);
-          addAnnotation((EndState) targetState, ruleMatch, stream, crowd);
+    TypeSystem currentTypeSystem = stream.getCas().getTypeSystem();
+    if (stages == null || typeSystem != currentTypeSystem) {
+      stages = compile(parent, stream);
+      typeSystem = currentTypeSystem;
+    }
+    for (Stage stage : stages) {
+      if (stream.getTimeBudget().isDocumentExceeded()) {
+        return;
+      }
+      if (stage.statement != null) {
+        stage.statement.apply(stream, crowd);
+      } else {
+        run(stage, stream, crowd);
+      }
+    }
+  }
+
+  private List<Stage> compile(RutaBlock parent, RutaStream stream) {
+    List<Stage> result = new ArrayList<Stage>();
+    StageBuilder builder = new StageBuilder();
+    if (statements == null) {
+      return result;
+    }
+    for (RutaStatement statement : statements) {
+      Object[] symbols = getSymbols(statement, parent, stream);
+      if (symbols == null) {
+        if (!builder.isEmpty()) {
+          result.add(build(builder));
+          builder = new StageBuilder();
         }
+        Stage stage = new Stage();
+        stage.statement = statement;
+        result.add(stage);
+        continue;
       }
+      RutaRule rule = (RutaRule) statement;
+      if (!builder.isEmpty() && dependsOn(rule, builder.mentionedNames)) {
+        result.add(build(builder));
+        builder = new StageBuilder();
+      }
+      add(builder, rule, symbols);
+      addMentionedNames(rule, builder.mentionedNames);
+    }
+    if (!builder.isEmpty()) {
+      result.add(build(builder));
     }
+    return result;
   }
 
   /**
-   * Pursues the execution of the Automaton in the next state.
-   * 
-   * @param startState
-   *          - the state to go on from
-   * @param anno
-   *          - the matched Annotation from the previous transition
-   * @param ruleElement
-   *          - the last matched RuleElement
-   * @param matches
-   *          - the list of RuleMatches corresponding to the rules in the state
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   * @param parent
-   *          - the RutaBlock (is needed in called functions)
+   * Returns the symbols of the rule elements, a type or a literal string, or null if the statement
+   * cannot be compiled.
    */
-  private void doTransition(TransitionState startState, AnnotationFS anno, RuleElement ruleElement,
-          LinkedList<RuleMatch> matches, RutaStream stream, InferenceCrowd crowd, RutaBlock parent) {
-    for (RuleElement element : startState.getPossibleTransitions()) {
-      RutaMatcher matcher = ((RutaRuleElement) element).getMatcher();
-      AbstractState targetState = startState.getTransition(element);
-      for (AnnotationFS annoFS : matcher.getAnnotationsAfter((RutaRuleElement) ruleElement, anno,
-              parent, stream)) {
-        if (targetState instanceof TransitionState) {
-          LinkedList<RuleMatch> ruleMatches = filterMatches(annoFS, matches,
-                  (TransitionState) targetState, stream, crowd);
-          doTransition((TransitionState) targetState, annoFS, element, ruleMatches, stream, crowd,
-                  parent);
-        } else {
-          RuleMatch ruleMatch = filterMatch(annoFS, matches, (EndState) targetState, stream, crowd);
-          addAnnotation((EndState) targetState, ruleMatch, stream, crowd);
+  private Object[] getSymbols(RutaStatement statement, RutaBlock parent, RutaStream stream) {
+    if (!(statement instanceof RutaRule)) {
+      return null;
+    }
+    RutaRule rule = (RutaRule) statement;
+    if (rule.getRoot().getConjunct() != null || !rule.getRoot().getConditions().isEmpty()) {
+      return null;
+    }
+    List<RuleElement> elements = rule.getRuleElements();
+    if (elements.isEmpty()) {
+      return null;
+    }
+    Object[] result = new Object[elements.size()];
+    for (int i = 0; i < result.length; i++) {
+      RuleElement element = elements.get(i);
+      if (element.getClass() != RutaRuleElement.class
+              || !(element.getQuantifier() instanceof NormalQuantifier)
+              || element.getLabel() != null
+              || !((RutaRuleElement) element).getInlinedConditionRuleBlocks().isEmpty()) {
+        return null;
+      }
+      result[i] = getSymbol(((RutaRuleElement) element).getMatcher(), parent, stream);
+      if (result[i] == null) {
+        return null;
+      }
+    }
+    return result;
+  }
+
+  private Object getSymbol(RutaMatcher matcher, RutaBlock parent, RutaStream stream) {
+    if (matcher instanceof RutaLiteralMatcher) {
+      IRutaExpression expression = matcher.getExpression();
+      if (expression instanceof SimpleStringExpression) {
+        return ((SimpleStringExpression) expression).getValue();
+      } else if (expression instanceof ComposedStringExpression
+              && ((ComposedStringExpression) expression).isConstant()) {
+        return ((ComposedStringExpression) expression).getStringValue(null, null);
+      }
+    } else if (matcher instanceof RutaAnnotationTypeMatcher) {
+      AnnotationTypeExpression expression = (AnnotationTypeExpression) matcher.getExpression();
+      ITypeExpression typeExpression = expression.getTypeExpression();
+      if (expression.getAnnotationExpression() != null
+              || expression.getAnnotationListExpression() != null
+              || expression.getTypeListExpression() != null
+              || expression.getFeatureExpression() != null
+              || !(typeExpression instanceof SimpleTypeExpression)) {
+        return null;
+      }
+      Type type;
+      try {
+        type = typeExpression.getType(new MatchContext(parent), stream);
+      } catch (IllegalArgumentException e) {
+        return null;
+      }
+      String name = type.getName();
+      if (StringUtils.equals(CAS.TYPE_NAME_DOCUMENT_ANNOTATION, name)
+              || "org.apache.uima.ruta.type.Document".equals(name)
+              || stream.getCas().getDocumentAnnotation().getType().equals(type)) {
+        // the document is matched differently
+        return null;
+      }
+      return type;
+    }
+    return null;
+  }
+
+  private void add(StageBuilder builder, RutaRule rule, Object[] symbols) {
+    int state = ROOT;
+    for (Object symbol : symbols) {
+      StateBuilder current = builder.states.get(state);
+      Integer target = null;
+      if (symbol instanceof Type) {
+        Type type = (Type) symbol;
+        Integer index = builder.typeIndex.get(type);
+        if (index == null) {
+          index = builder.types.size();
+          builder.types.add(type);
+          builder.typeIndex.put(type, index);
+        }
+        target = current.typeTransitions.get(index);
+        if (target == null) {
+          target = builder.states.size();
+          builder.states.add(new StateBuilder());
+          current.typeTransitions.put(index, target);
+        }
+      } else {
+        String literal = (String) symbol;
+        if (current.literalTransitions == null) {
+          current.literalTransitions = new HashMap<String, Integer>();
+        }
+        target = current.literalTransitions.get(literal);
+        if (target == null) {
+          target = builder.states.size();
+          builder.states.add(new StateBuilder());
+          current.literalTransitions.put(literal, target);
         }
       }
+      state = target;
     }
+    builder.states.get(state).accepted.add(rule);
+    builder.rules.add(rule);
+    builder.maxDepth = Math.max(builder.maxDepth, symbols.length);
   }
 
-  /**
-   * Creates the Annotation after a full matching of a rule, this means the FST reached an EndState
-   * 
-   * 
-   * @param targetState
-   *          - the reached Endstate representing the rule
-   * @param ruleMatch
-   *          - the RuleMatch corresponding the Rule
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   */
-  public void addAnnotation(EndState targetState, RuleMatch ruleMatch, RutaStream stream,
-          InferenceCrowd crowd) {
-    RutaStatement statement = targetState.getRule();
-    if (statement instanceof RutaRule) {
-      RutaRule rule = (RutaRule) statement;
-      rule.getRoot().apply(ruleMatch, stream, crowd);
+  @SuppressWarnings("unchecked")
+  private Stage build(StageBuilder builder) {
+    int size = builder.states.size();
+    Stage stage = new Stage();
+    stage.types = builder.types.toArray(new Type[builder.types.size()]);
+    stage.rules = builder.rules.toArray(new RutaRule[builder.rules.size()]);
+    stage.typeLabels = new int[size][];
+    stage.typeTargets = new int[size][];
+    stage.literalTargets = new Map[size];
+    stage.accepted = new RutaRule[size][];
+    stage.hasTransitions = new boolean[size];
+    stage.maxDepth = builder.maxDepth;
+    for (int i = 0; i < size; i++) {
+      StateBuilder state = builder.states.get(i);
+      int transitions = state.typeTransitions.size();
+      stage.typeLabels[i] = new int[transitions];
+      stage.typeTargets[i] = new int[transitions];
+      int j = 0;
+      for (Entry<Integer, Integer> entry : state.typeTransitions.entrySet()) {
+        stage.typeLabels[i][j] = entry.getKey();
+        stage.typeTargets[i][j] = entry.getValue();
+        j++;
+      }
+      stage.literalTargets[i] = state.literalTransitions;
+      if (!state.accepted.isEmpty()) {
+        stage.accepted[i] = state.accepted.toArray(new RutaRule[state.accepted.size()]);
+      }
+      stage.hasTransitions[i] = transitions > 0 || state.literalTransitions != null;
     }
+    return stage;
   }
 
-  /**
-   * Checks the matching of the annotation and updates the RuleMatch
-   * 
-   * @param annotation
-   *          - the matched Annotation
-   * @param ruleMatch
-   *          - the RuleMatch to update
-   * @param element
-   *          - the matched RuleElement
-   * @param containerMatch
-   *          - the ComposedRuleElement of the rule containing element
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   */
-  private void doMatch(AnnotationFS annotation, RuleMatch ruleMatch, RuleElement element,
-          ComposedRuleElementMatch containerMatch, RutaStream stream, InferenceCrowd crowd) {
-    RuleElementMatch result = new RuleElementMatch(element, containerMatch);
-    List<EvaluatedCondition> evaluatedConditions = new ArrayList<EvaluatedCondition>(element
-            .getConditions().size());
-    // boolean base = matcher.match(annotation, stream, getParent());
-    boolean base = true;
-    MatchContext context = new MatchContext(annotation, element, ruleMatch, true);
-        
-    List<AnnotationFS> textsMatched = new ArrayList<AnnotationFS>(1);
-    if (annotation != null) {
-      textsMatched.add(annotation);
+  private boolean dependsOn(RutaRule rule, Set<String> mentionedNames) {
+    for (RuleElement each : rule.getRuleElements()) {
+      IRutaExpression expression = ((RutaRuleElement) each).getMatcher().getExpression();
+      if (expression instanceof AnnotationTypeExpression) {
+        ITypeExpression typeExpression = ((AnnotationTypeExpression) expression)
+                .getTypeExpression();
+        String typeString = ((SimpleTypeExpression) typeExpression).getTypeString();
+        if (mentionedNames.contains(typeString)
+                || mentionedNames.contains(StringUtils.substringAfterLast(typeString, "."))) {
+          return true;
+        }
+      }
+      // conditions may refer to annotations at other positions, which the single pass of the
+      // stage did not reach yet
+      Set<String> conditionNames = new HashSet<String>();
+      for (AbstractRutaCondition condition : each.getConditions()) {
+        addNames(verbalizer.verbalize(condition), conditionNames);
+      }
+      for (String name : conditionNames) {
+        if (mentionedNames.contains(name)) {
+          return true;
+        }
+      }
     }
-    result.setMatchInfo(base, textsMatched, stream);
-    if (base) {
-      for (AbstractRutaCondition condition : element.getConditions()) {
-        crowd.beginVisit(condition, null);
-        EvaluatedCondition eval = condition.eval(context, stream, crowd);
-        crowd.endVisit(condition, null);
-        evaluatedConditions.add(eval);
+    return false;
+  }
+
+  private void addMentionedNames(RutaRule rule, Set<String> mentionedNames) {
+    for (RuleElement each : rule.getRuleElements()) {
+      for (AbstractRutaAction action : each.getActions()) {
+        addNames(verbalizer.verbalize(action), mentionedNames);
       }
     }
-    if (annotation != null) {
-      textsMatched.add(annotation);
+  }
+
+  private void addNames(String verbalized, Set<String> names) {
+    for (String token : verbalized.split("[^\\w.]+")) {
+      if (!token.isEmpty()) {
+        names.add(token);
+        String shortName = StringUtils.substringAfterLast(token, ".");
+        if (!shortName.isEmpty()) {
+          names.add(shortName);
+        }
+      }
     }
-    result.setConditionInfo(base, evaluatedConditions);
-    ruleMatch.setMatched(ruleMatch.matched() && result.matched());
   }
 
-  /**
-   * Creates a list of RuleMatches with one RuleMatch with the annotation for every rule for a
-   * transition from the RootState into a TransitionState
-   * 
-   * @param annoFS
-   *          - the matched annotation
-   * @param rulesList
-   *          - the list of rules
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   * 
-   * @return - a list with the created RuleMatches
-   */
-  private LinkedList<RuleMatch> createMatches(AnnotationFS annoFS, List<RutaStatement> rulesList,
-          RutaStream stream, InferenceCrowd crowd) {
-    // RootState -> TransitionState
-    LinkedList<RuleMatch> ruleMatches = new LinkedList<RuleMatch>();
-    for (RutaStatement statement : rulesList) {
-      RutaRule rule = (RutaRule) statement;
-      RuleElement element = rule.getRuleElements().get(0);
-      RuleMatch match = new RuleMatch(rule);
-      ComposedRuleElementMatch rootMatch = new ComposedRuleElementMatch(rule.getRoot(), null);
-      match.setRootMatch(rootMatch);
-      doMatch(annoFS, match, element, rootMatch, stream, crowd);
-      ruleMatches.add(match);
+  private void run(Stage stage, RutaStream stream, InferenceCrowd crowd) {
+    Map<RutaRule, List<AnnotationFS[]>> paths = new HashMap<RutaRule, List<AnnotationFS[]>>();
+    AnnotationFS[] path = new AnnotationFS[stage.maxDepth];
+    AnnotationFS window = stream.getDocumentAnnotation();
+    for (RutaBasic each : stream.getBasicsInWindow(window)) {
+      if (stream.getTimeBudget().isExceeded()) {
+        return;
+      }
+      step(stage, ROOT, each, 0, path, paths, stream);
+    }
+    for (RutaRule each : stage.rules) {
+      if (stream.getTimeBudget().isDocumentExceeded()) {
+        return;
+      }
+      apply(each, paths.get(each), stream, crowd);
     }
-    return ruleMatches;
   }
 
-  /**
-   * Creates the match for the transition from the RootState directly into an EndState (happens if
-   * the rule only has one RuleElement).
-   * 
-   * @param annoFS
-   *          - the matches annotation for the RuleMatch
-   * @param rule
-   *          - the matched rule for the RuleMatch
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   * 
-   * @return the created RuleMatch for the rule with the matched annotation
-   */
-  private RuleMatch createMatch(AnnotationFS annoFS, RutaRule rule, RutaStream stream,
-          InferenceCrowd crowd) {
-    // RootState -> EndState
-    RuleElement element = rule.getRuleElements().get(0);
-    RuleMatch match = new RuleMatch(rule);
-    ComposedRuleElementMatch rootMatch = new ComposedRuleElementMatch(rule.getRoot(), null);
-    match.setRootMatch(rootMatch);
-    doMatch(annoFS, match, element, rootMatch, stream, crowd);
-    return match;
+  private void step(Stage stage, int state, RutaBasic basic, int depth, AnnotationFS[] path,
+          Map<RutaRule, List<AnnotationFS[]>> paths, RutaStream stream) {
+    int[] labels = stage.typeLabels[state];
+    int[] targets = stage.typeTargets[state];
+    for (int i = 0; i < labels.length; i++) {
+      Collection<AnnotationFS> anchors = basic.getBeginAnchors(stage.types[labels[i]]);
+      if (anchors == null || anchors.isEmpty()) {
+        continue;
+      }
+      for (AnnotationFS each : anchors) {
+        if (depth == 0 ? !stream.isVisible(each) : !isInWindow(each, stream)) {
+          continue;
+        }
+        path[depth] = each;
+        advance(stage, targets[i], each, depth + 1, path, paths, stream);
+      }
+    }
+    Map<String, Integer> literals = stage.literalTargets[state];
+    if (literals != null) {
+      Integer target = literals.get(basic.getCoveredText());
+      if (target != null) {
+        path[depth] = basic;
+        advance(stage, target, basic, depth + 1, path, paths, stream);
+      }
+    }
+  }
+
+  private void advance(Stage stage, int state, AnnotationFS matched, int depth,
+          AnnotationFS[] path, Map<RutaRule, List<AnnotationFS[]>> paths, RutaStream stream) {
+    RutaRule[] rules = stage.accepted[state];
+    if (rules != null) {
+      for (RutaRule each : rules) {
+        List<AnnotationFS[]> list = paths.get(each);
+        if (list == null) {
+          list = new ArrayList<AnnotationFS[]>();
+          paths.put(each, list);
+        }
+        list.add(Arrays.copyOf(path, depth));
+      }
+    }
+    if (stage.hasTransitions[state]) {
+      RutaBasic next = stream.getBasicNextTo(false, matched);
+      if (next != null) {
+        step(stage, state, next, depth, path, paths, stream);
+      }
+    }
+  }
+
+  private boolean isInWindow(AnnotationFS annotation, RutaStream stream) {
+    AnnotationFS window = stream.getDocumentAnnotation();
+    return annotation.getBegin() >= window.getBegin() && annotation.getEnd() <= window.getEnd();
   }
 
   /**
-   * Filters the rules for a transition from a TransitionState into a TransitionState and adds an
-   * InnerMatch for the matched Annotationen to the corresponding RuleMatches
-   * 
-   * @param annoFS
-   *          - the matched Annotation
-   * @param ruleMatches
-   *          - the RuleMatches which are filtered
-   * @param targetState
-   *          - the TransitionState for which the RuleMatches are filtered
-   * @param stream
-   *          - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   * 
-   * @return the RuleMatches for the Rules which are represented by the TransitionState targetState
+   * Applies the rule on the collected paths with the same visits and bookkeeping as
+   * {@link RutaRule#apply(RutaStream, InferenceCrowd)}.
    */
-  private LinkedList<RuleMatch> filterMatches(AnnotationFS annoFS,
-          LinkedList<RuleMatch> ruleMatches, TransitionState targetState, RutaStream stream,
+  private void apply(RutaRule rule, List<AnnotationFS[]> paths, RutaStream stream,
           InferenceCrowd crowd) {
-    // TransitionState -> TransitionState
-    LinkedList<RuleMatch> retList = new LinkedList<RuleMatch>();
-    for (RuleMatch match : ruleMatches) {
-      for (RutaStatement statement : targetState.getRules()) {
-        RutaRule rule = (RutaRule) statement;
-        if (match.getRule().equals(rule)) {
-          RuleElement element = rule.getRuleElements().get(targetState.getDepth() - 1);
-          doMatch(annoFS, match, element, match.getRootMatch(), stream, crowd);
-          retList.add(match);
+    RuleApply ruleApply = new RuleApply(rule, stream.isGreedyAnchoring());
+    RutaTimeBudget timeBudget = stream.getTimeBudget();
+    crowd.beginVisit(rule, ruleApply);
+    timeBudget.startRule(rule);
+    try {
+      if (paths != null) {
+        for (AnnotationFS[] each : paths) {
+          if (timeBudget.isExceeded()) {
+            break;
+          }
+          dispatch(rule, ruleApply, each, stream, crowd);
         }
       }
+    } finally {
+      timeBudget.endRule();
+    }
+    crowd.endVisit(rule, ruleApply);
+    RutaDocumentMetrics metrics = stream.getMetrics();
+    if (metrics != null) {
+      metrics.addRuleApply(ruleApply.getTried(), ruleApply.getApplied());
     }
-    return retList;
   }
 
   /**
-   * Filters the one RuleMatch from the list of RuleMatches, which corresponds to the Rule from the
-   * EndState state and adds the Annotation to the list of matched Annotation of this RuleMatch
-   * 
-   * @param annoFS
-   *          - the Annotation to add
-   * @param ruleMatches
-   *          - the list of RuleMatches to filter the single RuleMatch from
-   * @param state
-   *          - the state the rule gets taken from
-   * @param stream
-   *          stream - the RutaStream (is needed in the called functions)
-   * @param crowd
-   *          - the InferenceCrowd (is needed in the called functions)
-   * 
-   * @return the single RuleMatch corresponding to the rule from the state
+   * Evaluates the conditions of the rule on the annotations of the path and executes its actions
+   * if all conditions are fulfilled.
    */
-  private RuleMatch filterMatch(AnnotationFS annoFS, LinkedList<RuleMatch> ruleMatches,
-          EndState state, RutaStream stream, InferenceCrowd crowd) {
-    // TransitionState -> EndState
-    RutaRule rule = (RutaRule) state.getRule();
-    for (RuleMatch match : ruleMatches) {
-      if (rule.equals(match.getRule())) {
-        RuleElement element = rule.getRuleElements().get(state.getDepth() - 1);
-        doMatch(annoFS, match, element, match.getRootMatch(), stream, crowd);
-        return match;
+  private void dispatch(RutaRule rule, RuleApply ruleApply, AnnotationFS[] path,
+          RutaStream stream, InferenceCrowd crowd) {
+    RuleMatch ruleMatch = new RuleMatch(rule);
+    ComposedRuleElementMatch rootMatch = new ComposedRuleElementMatch(rule.getRoot(), null);
+    ruleMatch.setRootMatch(rootMatch);
+    List<RuleElement> elements = rule.getRuleElements();
+    for (int i = 0; i < elements.size() && ruleMatch.matched(); i++) {
+      doMatch(path[i], ruleMatch, elements.get(i), rootMatch, stream, crowd);
+    }
+    // the conditions of the last element are evaluated after it was added to the root match
+    rootMatch.evaluateInnerMatches(true, stream);
+    ruleApply.add(ruleMatch, stream);
+    if (ruleMatch.matched()) {
+      rule.getRoot().apply(ruleMatch, stream, crowd);
+    }
+  }
+
+  private void doMatch(AnnotationFS annotation, RuleMatch ruleMatch, RuleElement element,
+          ComposedRuleElementMatch containerMatch, RutaStream stream, InferenceCrowd crowd) {
+    RuleElementMatch result = new RuleElementMatch(element, containerMatch);
+    List<AnnotationFS> textsMatched = new ArrayList<AnnotationFS>(1);
+    textsMatched.add(annotation);
+    result.setMatchInfo(true, textsMatched, stream);
+    List<EvaluatedCondition> evaluatedConditions = new ArrayList<EvaluatedCondition>(
+            element.getConditions().size());
+    MatchContext context = new MatchContext(annotation, element, ruleMatch, true);
+    for (AbstractRutaCondition condition : element.getConditions()) {
+      crowd.beginVisit(condition, null);
+      EvaluatedCondition eval = condition.eval(context, stream, crowd);
+      crowd.endVisit(condition, null);
+      evaluatedConditions.add(eval);
+      if (!eval.isValue()) {
+        break;
       }
     }
-    // Should not happen!
-    return ruleMatches.get(0);
+    result.setConditionInfo(true, evaluatedConditions);
+    ruleMatch.setMatched(ruleMatch.matched() && result.matched());
   }
+
 }
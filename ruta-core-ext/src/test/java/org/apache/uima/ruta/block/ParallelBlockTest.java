@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.block;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.apache.uima.ruta.metrics.IRutaMetricsRegistry;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
+import org.junit.Test;
+
+public class ParallelBlockTest {
+
+  private static final String DOCUMENT = "A 1. B 2. C 3. D 4. E 5. F 6. G 7. H 8. I 9. J 10. K 11.";
+
+  private static final List<Integer> parallelWindows = new ArrayList<Integer>();
+
+  public static class TestMetricsRegistry implements IRutaMetricsRegistry {
+
+    @Override
+    public void documentProcessed(RutaDocumentMetrics metrics) {
+      parallelWindows.add(metrics.getParallelWindows());
+    }
+  }
+
+  private static String getScript(String firstBlock, String secondBlock) {
+    String script = "(CW NUM PERIOD){-> T1};\n";
+    script += firstBlock + " T1{}{\n";
+    script += "CW{-> T2};\n";
+    script += "NUM{-> T3};\n";
+    script += "CW NUM{-> T4};\n";
+    script += "T1{CONTAINS(NUM)-> T5};\n";
+    script += "}\n";
+    // the second rule depends on the first one
+    script += secondBlock + " T1{}{\n";
+    script += "CW{-> T6};\n";
+    script += "T6 NUM{-> T7};\n";
+    script += "}\n";
+    return script;
+  }
+
+  private static CAS apply(String script, int matchingThreads) throws Exception {
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, script,
+            RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
+            new String[] { ParallelBlockExtension.class.getName() },
+            RutaEngine.PARAM_METRICS, false, RutaEngine.PARAM_METRICS_REGISTRIES,
+            new String[] { TestMetricsRegistry.class.getName() },
+            RutaEngine.PARAM_MATCHING_THREADS, matchingThreads);
+    CAS cas = RutaTestUtils.getCAS(DOCUMENT);
+    ae.process(cas);
+    ae.destroy();
+    return cas;
+  }
+
+  private static void assertSameAnnotations(CAS expected, CAS actual) {
+    for (int i = 1; i <= 7; i++) {
+      List<String> expectedTexts = new ArrayList<String>();
+      for (AnnotationFS each : expected.getAnnotationIndex(RutaTestUtils.getTestType(expected,
+              i))) {
+        expectedTexts.add(each.getBegin() + ":" + each.getCoveredText());
+      }
+      List<String> actualTexts = new ArrayList<String>();
+      for (AnnotationFS each : actual.getAnnotationIndex(RutaTestUtils.getTestType(actual, i))) {
+        actualTexts.add(each.getBegin() + ":" + each.getCoveredText());
+      }
+      assertEquals(expectedTexts, actualTexts);
+    }
+  }
+
+  @Test
+  public void testSameAsBlock() throws Exception {
+    parallelWindows.clear();
+    CAS expected = apply(getScript("BLOCK(first)", "BLOCK(second)"), 1);
+    CAS commonPool = apply(getScript("PARALLEL", "PARALLEL"), 1);
+    CAS matchingThreads = apply(getScript("PARALLEL", "PARALLEL"), 2);
+
+    // only the windows of the first block are matched in parallel
+    assertEquals(3, parallelWindows.size());
+    assertEquals(0, parallelWindows.get(0).intValue());
+    assertEquals(11, parallelWindows.get(1).intValue());
+    assertEquals(11, parallelWindows.get(2).intValue());
+
+    assertSameAnnotations(expected, commonPool);
+    assertSameAnnotations(expected, matchingThreads);
+
+    expected.release();
+    commonPool.release();
+    matchingThreads.release();
+  }
+
+  @Test
+  public void test() throws Exception {
+    CAS cas = apply(getScript("PARALLEL", "PARALLEL"), 1);
+
+    Type t = null;
+    AnnotationIndex<AnnotationFS> ai = null;
+    FSIterator<AnnotationFS> iterator = null;
+
+    t = RutaTestUtils.getTestType(cas, 1);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+
+    t = RutaTestUtils.getTestType(cas, 2);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+    iterator = ai.iterator();
+    assertEquals("A", iterator.next().getCoveredText());
+
+    t = RutaTestUtils.getTestType(cas, 3);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+
+    t = RutaTestUtils.getTestType(cas, 4);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+    iterator = ai.iterator();
+    assertEquals("1", iterator.next().getCoveredText());
+
+    t = RutaTestUtils.getTestType(cas, 5);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+    iterator = ai.iterator();
+    assertEquals("A 1.", iterator.next().getCoveredText());
+
+    t = RutaTestUtils.getTestType(cas, 7);
+    ai = cas.getAnnotationIndex(t);
+    assertEquals(11, ai.size());
+    iterator = ai.iterator();
+    assertEquals("1", iterator.next().getCoveredText());
+
+    cas.release();
+  }
+}
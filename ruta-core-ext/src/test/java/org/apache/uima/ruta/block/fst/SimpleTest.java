@@ -20,6 +20,7 @@
 package org.apache.uima.ruta.block.fst;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -28,9 +29,11 @@ import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.ruta.engine.Ruta;
 import org.apache.uima.ruta.engine.RutaEngine;
 import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.apache.uima.ruta.type.DebugRuleApply;
 import org.junit.Test;
 
 public class SimpleTest {
@@ -73,4 +76,98 @@ public class SimpleTest {
     }
 
   }
+
+  @Test
+  public void testConditionsLiteralsAndDependencies() {
+    String document = "Informatik ist die Wissenschaft der systematischen Verarbeitung von Informationen,"
+            + " insbesondere der automatischen Verarbeitung mit Hilfe von Digitalrechnern.";
+    String script = "";
+    script += "FST Document{}{\n";
+    script += "CW{REGEXP(\"Inf.*\") -> T5};\n";
+    script += "\"Verarbeitung\"{-> T6};\n";
+    script += "T5 SW{-> T7};\n";
+    script += "CW{REGEXP(\"X.*\") -> T8};\n";
+    script += "}\n";
+    CAS cas = null;
+    Map<String, Object> parameters = new HashMap<String, Object>();
+    parameters.put(RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
+            new String[] { FSTBlockExtension.class.getName() });
+    try {
+      cas = RutaTestUtils.getCAS(document);
+      Ruta.apply(cas, script, parameters);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+
+    assertEquals(2, cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, 5)).size());
+    assertEquals(2, cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, 6)).size());
+    assertEquals(1, cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, 7)).size());
+    assertEquals(0, cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, 8)).size());
+
+    if (cas != null) {
+      cas.release();
+    }
+  }
+
+  @Test
+  public void testDependencyInCondition() throws Exception {
+    String document = "Informatik ist die Wissenschaft der systematischen Verarbeitung von Informationen,"
+            + " insbesondere der automatischen Verarbeitung mit Hilfe von Digitalrechnern.";
+    // the condition refers to annotations of the first rule after the matched word
+    String rules = "CW{-> T5};\n";
+    rules += "SW{NEAR(T5,1,2,true) -> T6};\n";
+    Map<String, Object> parameters = new HashMap<String, Object>();
+    parameters.put(RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
+            new String[] { FSTBlockExtension.class.getName() });
+
+    CAS expected = RutaTestUtils.getCAS(document);
+    Ruta.apply(expected, "BLOCK(block) Document{}{\n" + rules + "}\n", parameters);
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, "FST Document{}{\n" + rules + "}\n", parameters);
+
+    int size = expected.getAnnotationIndex(RutaTestUtils.getTestType(expected, 6)).size();
+    assertTrue(size > 0);
+    assertEquals(size, cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, 6)).size());
+
+    expected.release();
+    cas.release();
+  }
+
+  @Test
+  public void testDebugInfo() throws Exception {
+    String document = "Informatik ist die Wissenschaft der systematischen Verarbeitung von Informationen,"
+            + " insbesondere der automatischen Verarbeitung mit Hilfe von Digitalrechnern.";
+    String rules = "CW SW{-> T2};\n";
+    Map<String, Object> parameters = new HashMap<String, Object>();
+    parameters.put(RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
+            new String[] { FSTBlockExtension.class.getName() });
+    parameters.put(RutaEngine.PARAM_DEBUG, true);
+
+    CAS expected = RutaTestUtils.getCAS(document);
+    Ruta.apply(expected, "BLOCK(block) Document{}{\n" + rules + "}\n", parameters);
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, "FST Document{}{\n" + rules + "}\n", parameters);
+
+    // the rule of the automaton is visited once for the window like a normal rule
+    DebugRuleApply expectedApply = getRuleApply(expected, "CW SW");
+    DebugRuleApply ruleApply = getRuleApply(cas, "CW SW");
+    assertEquals(5, expectedApply.getApplied());
+    assertEquals(expectedApply.getApplied(), ruleApply.getApplied());
+
+    expected.release();
+    cas.release();
+  }
+
+  private DebugRuleApply getRuleApply(CAS cas, String prefix) throws Exception {
+    DebugRuleApply result = null;
+    for (Annotation each : cas.getJCas().getAnnotationIndex(DebugRuleApply.type)) {
+      DebugRuleApply ruleApply = (DebugRuleApply) each;
+      if (ruleApply.getElement().startsWith(prefix)) {
+        assertTrue(result == null);
+        result = ruleApply;
+      }
+    }
+    assertTrue(result != null);
+    return result;
+  }
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Holds the text of a document and the positions of literal strings in it. The positions of a
+ * literal are computed once when they are requested for the first time and are then searched
+ * binary in both directions. All offsets are absolute offsets in the document text.
+ */
+public class LiteralOccurrenceIndex {
+
+  private static final int[] NO_OCCURRENCES = new int[0];
+
+  private final String text;
+
+  private final Map<String, int[]> occurrences = new ConcurrentHashMap<String, int[]>();
+
+  public LiteralOccurrenceIndex(String text) {
+    super();
+    this.text = StringUtils.defaultString(text);
+  }
+
+  /**
+   * @return the text of the document
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * @param literal
+   *          the string to search for
+   * @return the sorted begin offsets of all, possibly overlapping, occurrences of the literal
+   */
+  public int[] getOccurrences(String literal) {
+    if (StringUtils.isEmpty(literal)) {
+      return NO_OCCURRENCES;
+    }
+    int[] result = occurrences.get(literal);
+    if (result == null) {
+      result = computeOccurrences(literal);
+      occurrences.put(literal, result);
+    }
+    return result;
+  }
+
+  /**
+   * @param literal
+   *          the string to search for
+   * @param fromIndex
+   *          the smallest allowed begin offset
+   * @param toIndex
+   *          the largest allowed end offset
+   * @return the begin offset of the first occurrence of the literal that begins at or after
+   *         fromIndex and ends at or before toIndex, or -1 if there is none
+   */
+  public int next(String literal, int fromIndex, int toIndex) {
+    int[] positions = getOccurrences(literal);
+    int index = Arrays.binarySearch(positions, fromIndex);
+    if (index < 0) {
+      index = -index - 1;
+    }
+    if (index < positions.length && positions[index] + literal.length() <= toIndex) {
+      return positions[index];
+    }
+    return -1;
+  }
+
+  /**
+   * @param literal
+   *          the string to search for
+   * @param fromIndex
+   *          the smallest allowed begin offset
+   * @param toIndex
+   *          the largest allowed end offset
+   * @return the begin offset of the last occurrence of the literal that ends at or before toIndex
+   *         and begins at or after fromIndex, or -1 if there is none
+   */
+  public int previous(String literal, int fromIndex, int toIndex) {
+    int[] positions = getOccurrences(literal);
+    int lastBegin = toIndex - literal.length();
+    int index = Arrays.binarySearch(positions, lastBegin);
+    if (index < 0) {
+      index = -index - 2;
+    }
+    if (index >= 0 && positions[index] >= fromIndex) {
+      return positions[index];
+    }
+    return -1;
+  }
+
+  private int[] computeOccurrences(String literal) {
+    int[] result = new int[4];
+    int size = 0;
+    int index = text.indexOf(literal);
+    while (index >= 0) {
+      if (size == result.length) {
+        result = Arrays.copyOf(result, size * 2);
+      }
+      result[size++] = index;
+      index = text.indexOf(literal, index + 1);
+    }
+    return size == 0 ? NO_OCCURRENCES : Arrays.copyOf(result, size);
+  }
+
+}
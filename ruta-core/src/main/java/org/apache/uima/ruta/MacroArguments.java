@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.IRutaExpression;
+import org.apache.uima.ruta.rule.MatchContext;
+
+/**
+ * The arguments of a call of a macro condition or action. The definition of the macro is resolved
+ * once when the script is parsed: the names, types and kinds of the parameters are stored in
+ * arrays and the variable names passed to VAR parameters are only verbalized once. Binding the
+ * arguments only changes the versions of the slots of the parameter names in the environment, so
+ * the resolved references of all other variables stay valid.
+ */
+public final class MacroArguments {
+
+  private final String[] names;
+
+  private final String[] types;
+
+  private final boolean[] aliases;
+
+  private final IRutaExpression[] arguments;
+
+  private final String[] aliasTargets;
+
+  public MacroArguments(Map<String, String> definition, Set<String> vars,
+          List<IRutaExpression> arguments) {
+    super();
+    int size = definition.size();
+    this.names = new String[size];
+    this.types = new String[size];
+    this.aliases = new boolean[size];
+    this.arguments = new IRutaExpression[size];
+    this.aliasTargets = new String[size];
+    int index = 0;
+    for (Entry<String, String> entry : definition.entrySet()) {
+      names[index] = entry.getKey();
+      types[index] = entry.getValue();
+      aliases[index] = vars.contains(entry.getKey());
+      this.arguments[index] = arguments.get(index);
+      index++;
+    }
+  }
+
+  /**
+   * Declares the parameters in the environment of the current block and assigns the arguments.
+   */
+  public void bind(MatchContext context, RutaStream stream) {
+    RutaBlock parent = context.getParent();
+    RutaEnvironment environment = parent.getEnvironment();
+    for (int i = 0; i < names.length; i++) {
+      if (!aliases[i]) {
+        environment.addVariable(names[i], types[i]);
+        stream.assignVariable(names[i], arguments[i], context);
+      } else {
+        if (aliasTargets[i] == null) {
+          aliasTargets[i] = environment.getVariableNameOfExpression(arguments[i]);
+        }
+        environment.addAliasVariable(names[i], aliasTargets[i]);
+      }
+    }
+  }
+
+  /**
+   * Removes the parameters from the environment of the current block.
+   */
+  public void unbind(MatchContext context) {
+    RutaBlock parent = context.getParent();
+    RutaEnvironment environment = parent.getEnvironment();
+    for (int i = 0; i < names.length; i++) {
+      if (!aliases[i]) {
+        environment.removeVariable(names[i]);
+      } else {
+        environment.removeAliasVariable(names[i]);
+      }
+    }
+  }
+
+}
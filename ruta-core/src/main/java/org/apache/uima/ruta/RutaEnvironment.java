@@ -23,6 +23,7 @@ import static org.apache.uima.util.Level.SEVERE;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -154,7 +155,36 @@ public class RutaEnvironment {
    */
   private Set<String> declaredAnnotationTypes;
 
-  private Map<String, Object> variableValues;
+  /**
+   * Slot index of each variable name that was declared in this environment. The slot of a name is
+   * kept when the variable is removed, so that labels and macro arguments reuse their slot.
+   */
+  private Map<String, Integer> variableSlots;
+
+  private Object[] slotValues;
+
+  /**
+   * The values of the slots at the beginning of a document, copied by {@link #reset(CAS)}.
+   */
+  private Object[] initialSlotValues;
+
+  /**
+   * The type of each slot, or null if the variable is currently not declared.
+   */
+  private Class<?>[] slotTypes;
+
+  /**
+   * Incremented whenever the variable or alias of a slot is added or removed. Used for validating
+   * {@link VariableReference}s of this name only, so that macro arguments and labels do not
+   * invalidate the references of all other variables.
+   */
+  private int[] slotVersions;
+
+  /**
+   * Incremented whenever a new slot is allocated. Used for validating {@link VariableReference}s
+   * that did not find a slot for their name in this environment.
+   */
+  private int layoutVersion = 0;
 
   private Map<String, Class<?>> variableTypes;
 
@@ -194,7 +224,11 @@ public class RutaEnvironment {
     declaredAnnotationTypes = new HashSet<String>();
     wordLists = new HashMap<String, RutaWordList>();
     tables = new HashMap<String, RutaTable>();
-    variableValues = new HashMap<String, Object>();
+    variableSlots = new HashMap<String, Integer>();
+    slotValues = new Object[8];
+    initialSlotValues = new Object[8];
+    slotTypes = new Class<?>[8];
+    slotVersions = new int[8];
     variableTypes = new HashMap<String, Class<?>>();
     variableGenericTypes = new HashMap<String, Class<?>>();
     macroConditions = new HashMap<>();
@@ -735,7 +769,34 @@ public class RutaEnvironment {
     if (generic != null) {
       variableGenericTypes.put(name, generic);
     }
-    variableValues.put(name, getInitialValue(name, type));
+    int slot = ensureSlot(name);
+    if (slotTypes[slot] == null) {
+      slotVersions[slot]++;
+    }
+    slotTypes[slot] = type;
+    slotValues[slot] = getInitialValue(name, type);
+    initialSlotValues[slot] = getInitialValue(name, type);
+  }
+
+  /**
+   * Returns the slot of the given name and allocates a new one if there is none yet. Slots are
+   * also allocated for names that are only used as alias.
+   */
+  private int ensureSlot(String name) {
+    Integer slot = variableSlots.get(name);
+    if (slot == null) {
+      slot = variableSlots.size();
+      variableSlots.put(name, slot);
+      if (slot == slotValues.length) {
+        int length = slotValues.length * 2;
+        slotValues = Arrays.copyOf(slotValues, length);
+        initialSlotValues = Arrays.copyOf(initialSlotValues, length);
+        slotTypes = Arrays.copyOf(slotTypes, length);
+        slotVersions = Arrays.copyOf(slotVersions, length);
+      }
+      layoutVersion++;
+    }
+    return slot;
   }
 
   @SuppressWarnings("unchecked")
@@ -774,7 +835,21 @@ public class RutaEnvironment {
   public void removeVariable(String name) {
     variableTypes.remove(name);
     variableGenericTypes.remove(name);
-    variableValues.remove(name);
+    int slot = getSlot(name);
+    if (slot >= 0) {
+      slotTypes[slot] = null;
+      slotValues[slot] = null;
+      initialSlotValues[slot] = null;
+      slotVersions[slot]++;
+    }
+  }
+
+  private int getSlot(String name) {
+    Integer slot = variableSlots.get(name);
+    if (slot == null || slotTypes[slot] == null) {
+      return -1;
+    }
+    return slot;
   }
 
   public boolean ownsVariable(String name) {
@@ -841,8 +916,104 @@ public class RutaEnvironment {
     if (variableAliases.containsKey(name)) {
       name = variableAliases.get(name);
     }
-    boolean containsKey = variableValues.containsKey(name);
-    Object result = variableValues.get(name);
+    int slot = getSlot(name);
+    if (slot >= 0) {
+      T result = getSlotValue(slot, name, type, stream);
+      if (result != null) {
+        return result;
+      }
+    }
+    if (owner.getParent() != null) {
+      return owner.getParent().getEnvironment().getVariableValue(name, type, stream);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the value of a variable that was already resolved with
+   * {@link #getVariableReference(String, VariableReference)}.
+   */
+  public <T> T getVariableValue(VariableReference reference, Class<T> type, RutaStream stream) {
+    RutaEnvironment target = reference.getTarget();
+    if (target == null) {
+      return null;
+    }
+    String name = reference.getName();
+    T result = target.getSlotValue(reference.getSlot(), name, type, stream);
+    if (result == null && target.owner.getParent() != null) {
+      // a variable without value falls back to the parent environments
+      return target.owner.getParent().getEnvironment().getVariableValue(name, type, stream);
+    }
+    return result;
+  }
+
+  public Object getVariableValue(VariableReference reference, RutaStream stream) {
+    return getVariableValue(reference, Object.class, stream);
+  }
+
+  /**
+   * Resolves a variable name to the environment and slot of its value, starting at this
+   * environment.
+   *
+   * @param name
+   *          the name of the variable
+   * @param cached
+   *          a previously resolved reference, may be null
+   * @return the cached reference if it is still valid for this environment, a new reference
+   *         otherwise
+   */
+  public VariableReference getVariableReference(String name, VariableReference cached) {
+    if (cached != null && cached.isValid(this)) {
+      return cached;
+    }
+    List<RutaEnvironment> path = new ArrayList<RutaEnvironment>(4);
+    List<Integer> pathSlots = new ArrayList<Integer>(4);
+    RutaEnvironment environment = this;
+    RutaEnvironment target = null;
+    int slot = -1;
+    while (environment != null) {
+      path.add(environment);
+      // the slot of the name before resolving the alias, which is versioned by alias changes
+      Integer aliasSlot = environment.variableSlots.get(name);
+      pathSlots.add(aliasSlot == null ? -1 : aliasSlot);
+      if (environment.variableAliases.containsKey(name)) {
+        name = environment.variableAliases.get(name);
+        // the alias target needs to be validated as well
+        Integer nameSlot = environment.variableSlots.get(name);
+        path.add(environment);
+        pathSlots.add(nameSlot == null ? -1 : nameSlot);
+      }
+      slot = environment.getSlot(name);
+      if (slot >= 0) {
+        target = environment;
+        break;
+      }
+      RutaBlock parent = environment.owner == null ? null : environment.owner.getParent();
+      environment = parent == null ? null : parent.getEnvironment();
+    }
+    int[] versions = new int[path.size()];
+    int[] slots = new int[path.size()];
+    int[] slotVersions = new int[path.size()];
+    for (int i = 0; i < versions.length; i++) {
+      RutaEnvironment each = path.get(i);
+      versions[i] = each.layoutVersion;
+      slots[i] = pathSlots.get(i);
+      slotVersions[i] = slots[i] < 0 ? 0 : each.slotVersions[slots[i]];
+    }
+    return new VariableReference(this, name, target, slot, path.toArray(new RutaEnvironment[0]),
+            versions, slots, slotVersions);
+  }
+
+  int getLayoutVersion() {
+    return layoutVersion;
+  }
+
+  int getSlotVersion(int slot) {
+    return slotVersions[slot];
+  }
+
+  private <T> T getSlotValue(int slot, String name, Class<T> type, RutaStream stream) {
+    Object result = slotValues[slot];
 
     if (result instanceof String && type.equals(Type.class)) {
       // "cast" string to type, because initial values were set when there
@@ -856,7 +1027,7 @@ public class RutaEnvironment {
       }
     }
 
-    if (containsKey && result == null) {
+    if (result == null) {
       // TODO find the problem with the null values!
       // this might now work for word lists in another env.
       Object initialValue = getInitialValue(name, type);
@@ -866,27 +1037,21 @@ public class RutaEnvironment {
         throw new IllegalArgumentException("Variable " + name + " of type " + type
                 + " is not correctly initialized! It is not a Type, but " + initialValue);
       }
+      return null;
     }
     if (result == annotationTypeDummy) {
       return type.cast(cas.getAnnotationType());
     }
-    if (result != null) {
-      MatchContext context = new MatchContext(owner);
-      if (RutaWordList.class.isAssignableFrom(type) && result instanceof WordListExpression) {
-        WordListExpression wle = (WordListExpression) result;
-        RutaWordList list = wle.getList(context, stream);
-        return type.cast(list);
-      } else if (RutaTable.class.isAssignableFrom(type) && result instanceof WordTableExpression) {
-        WordTableExpression wte = (WordTableExpression) result;
-        RutaTable table = wte.getTable(context, stream);
-        return type.cast(table);
-      } else {
-        return type.cast(result);
-      }
-    } else if (owner.getParent() != null) {
-      return owner.getParent().getEnvironment().getVariableValue(name, type, stream);
+    if (RutaWordList.class.isAssignableFrom(type) && result instanceof WordListExpression) {
+      WordListExpression wle = (WordListExpression) result;
+      RutaWordList list = wle.getList(new MatchContext(owner), stream);
+      return type.cast(list);
+    } else if (RutaTable.class.isAssignableFrom(type) && result instanceof WordTableExpression) {
+      WordTableExpression wte = (WordTableExpression) result;
+      RutaTable table = wte.getTable(new MatchContext(owner), stream);
+      return type.cast(table);
     }
-    return null;
+    return type.cast(result);
   }
 
   public Object getVariableValue(String name, RutaStream stream) {
@@ -956,6 +1121,8 @@ public class RutaEnvironment {
         initializedVariables.put(var, value);
       }
       setVariableValue(var, value);
+      int slot = getSlot(var);
+      initialSlotValues[slot] = getInitialValue(var, slotTypes[slot]);
     } else if (owner.getParent() != null) {
       owner.getParent().getEnvironment().setInitialVariableValue(var, value);
     }
@@ -965,12 +1132,12 @@ public class RutaEnvironment {
     if (variableAliases.containsKey(name)) {
       name = variableAliases.get(name);
     }
-    if (ownsVariable(name)) {
-      Class<?> clazz = variableTypes.get(name);
+    int slot = getSlot(name);
+    if (slot >= 0) {
       if (value == null) {
-        value = getInitialValue(name, clazz);
+        value = getInitialValue(name, slotTypes[slot]);
       }
-      variableValues.put(name, value);
+      slotValues[slot] = value;
     } else if (owner.getParent() != null) {
       owner.getParent().getEnvironment().setVariableValue(name, value);
     }
@@ -994,17 +1161,23 @@ public class RutaEnvironment {
     return null;
   }
 
+  @SuppressWarnings({ "rawtypes", "unchecked" })
   public void reset(CAS cas) {
     this.cas = cas;
-    Set<Entry<String, Object>> entrySet = variableValues.entrySet();
-    for (Entry<String, Object> entry : entrySet) {
-      String key = entry.getKey();
-      Class<?> variableType = variableTypes.get(key);
-      Object initialValue = getInitialValue(key, variableTypes.get(key));
-      if ((!variableType.equals(RutaTable.class) && !variableType.equals(RutaWordList.class))
-              || initialValue != null) {
+    int size = variableSlots.size();
+    for (int i = 0; i < size; i++) {
+      Class<?> variableType = slotTypes[i];
+      if (variableType == null) {
+        continue;
+      }
+      Object initialValue = initialSlotValues[i];
+      if (initialValue instanceof List) {
+        // lists are modified by the rules
+        slotValues[i] = new ArrayList<Object>((List) initialValue);
+      } else if ((!variableType.equals(RutaTable.class)
+              && !variableType.equals(RutaWordList.class)) || initialValue != null) {
         // not for word lists
-        entry.setValue(initialValue);
+        slotValues[i] = initialValue;
       }
     }
   }
@@ -1093,10 +1266,12 @@ public class RutaEnvironment {
 
   public void addAliasVariable(String name, String var) {
     variableAliases.put(name, var);
+    slotVersions[ensureSlot(name)]++;
   }
 
   public void removeAliasVariable(String name) {
     variableAliases.remove(name);
+    slotVersions[ensureSlot(name)]++;
   }
 
   public String getVariableNameOfExpression(IRutaExpression expression) {
@@ -33,6 +33,7 @@ import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -51,6 +52,8 @@ import org.apache.uima.cas.StringArrayFS;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.FSIteratorImplBase;
+import org.apache.uima.cas.impl.TypeImpl;
+import org.apache.uima.cas.impl.TypeSystemImpl;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
 import org.apache.uima.fit.util.CasUtil;
@@ -74,6 +77,7 @@ import org.apache.uima.ruta.expression.number.INumberListExpression;
 import org.apache.uima.ruta.expression.string.IStringExpression;
 import org.apache.uima.ruta.expression.string.IStringListExpression;
 import org.apache.uima.ruta.expression.type.ITypeExpression;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
 import org.apache.uima.ruta.rule.AbstractRule;
 import org.apache.uima.ruta.rule.AbstractRuleMatch;
 import org.apache.uima.ruta.rule.MatchContext;
@@ -135,6 +139,30 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
 
   private long maxRuleElementMatches;
 
+  private RutaTimeBudget timeBudget = new RutaTimeBudget();
+
+  private RutaDocumentMetrics metrics;
+
+  private LiteralOccurrenceIndex literalIndex;
+
+  private TypeOffsetIndex offsetIndex;
+
+  private TypeCountIndex countIndex;
+
+  private ExecutorService matchingExecutor;
+
+  /**
+   * An annotation of the frame type with the offsets of the window, which bounds the iterators over
+   * the annotations within the window.
+   */
+  private AnnotationFS windowFrame;
+
+  /**
+   * The modification epochs of the document for each type code, shared by all streams of the
+   * document. The entry at index 0 is incremented for each modification.
+   */
+  private long[] modificationEpochs;
+
   public RutaStream(CAS cas, Type basicType, FilterManager filter, boolean lowMemoryProfile,
           boolean simpleGreedyForComposed, boolean emptyIsInvisible, TypeUsageInformation typeUsage,
           InferenceCrowd crowd) {
@@ -339,6 +367,7 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
     if (type.equals(basicType)) {
       return;
     }
+    markModified(type);
     if (indexType(annotation.getType())) {
       boolean modified = checkSpan(annotation);
       if (modified && updateInternal) {
@@ -346,24 +375,41 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
       }
       RutaBasic beginAnchor = getBeginAnchor(annotation.getBegin());
       RutaBasic endAnchor = getEndAnchor(annotation.getEnd());
+      Collection<RutaBasic> basicAnnotationsInWindow = getAllBasicsInWindow(annotation);
+      boolean filled = (beginAnchor != null && beginAnchor.isEmpty())
+              || (endAnchor != null && endAnchor.isEmpty());
       if (beginAnchor != null) {
         beginAnchor.addBegin(annotation, type);
       }
       if (endAnchor != null) {
         endAnchor.addEnd(annotation, type);
       }
-      Collection<RutaBasic> basicAnnotationsInWindow = getAllBasicsInWindow(annotation);
       for (RutaBasic basic : basicAnnotationsInWindow) {
+        filled |= basic.isEmpty();
         basic.addPartOf(type);
       }
+      if (modified || filled) {
+        // the segmentation or the visibility of the basics changed
+        markModified(basicType);
+      }
+      if (countIndex != null) {
+        if (modified) {
+          countIndex.basicsChanged();
+        } else {
+          countIndex.annotationChanged(type, cas.getTypeSystem());
+        }
+      }
     }
     if (addToIndex) {
       cas.addFsToIndexes(annotation);
     }
+    if (metrics != null) {
+      metrics.annotationAdded();
+    }
     crowd.annotationAdded(annotation, creator);
   }
 
-  private boolean indexType(Type type) {
+  boolean indexType(Type type) {
     if (typeUsage != null) {
       boolean contains = typeUsage.getUsedTypesWithSubTypes().contains(type.getName());
       // if(!contains) {
@@ -443,6 +489,7 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
       // do not remove DocumentAnnotation
       return;
     }
+    markModified(type);
     Collection<RutaBasic> basicAnnotationsInWindow = getAllBasicsInWindow(annotation);
     for (RutaBasic basic : basicAnnotationsInWindow) {
       basic.removePartOf(type);
@@ -456,6 +503,9 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
     if (endAnchor != null) {
       endAnchor.removeEnd(annotation, parent);
     }
+    if (countIndex != null) {
+      countIndex.annotationChanged(type, cas.getTypeSystem());
+    }
     if (!(annotation instanceof RutaBasic)) {
       cas.removeFsFromIndexes(annotation);
     }
@@ -491,6 +541,13 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
     stream.setGreedyRule(greedyRule);
     stream.setMaxRuleMatches(maxRuleMatches);
     stream.setMaxRuleElementMatches(maxRuleElementMatches);
+    stream.setTimeBudget(timeBudget);
+    stream.setMetrics(metrics);
+    stream.setLiteralIndex(getLiteralIndex());
+    stream.setOffsetIndex(getOffsetIndex());
+    stream.setCountIndex(countIndex);
+    stream.setMatchingExecutor(matchingExecutor);
+    stream.modificationEpochs = getModificationEpochs();
     return stream;
   }
 
@@ -503,6 +560,14 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
     stream.setGreedyRule(greedyRule);
     stream.setMaxRuleMatches(maxRuleMatches);
     stream.setMaxRuleElementMatches(maxRuleElementMatches);
+    stream.setTimeBudget(timeBudget);
+    stream.setMetrics(metrics);
+    stream.setLiteralIndex(getLiteralIndex());
+    stream.setOffsetIndex(getOffsetIndex());
+    stream.setCountIndex(countIndex);
+    stream.setMatchingExecutor(matchingExecutor);
+    stream.modificationEpochs = getModificationEpochs();
+    stream.windowFrame = windowFrame;
     return stream;
   }
 
@@ -926,14 +991,38 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
     }
   }
 
-  public Collection<AnnotationFS> getAnnotations(Type type) {
-    Collection<AnnotationFS> result = new LinkedList<AnnotationFS>();
+  /**
+   * Creates the feature structures needed for matching rules on this stream in advance. This
+   * needs to be called before the stream or its copies are used by other threads, which must not
+   * modify the CAS.
+   */
+  public void prepareParallelMatching() {
     AnnotationFS windowAnnotation = filter.getWindowAnnotation();
-    if (windowAnnotation != null
+    if (isPartialWindow(windowAnnotation)) {
+      getWindowFrame(windowAnnotation);
+    }
+  }
+
+  private boolean isPartialWindow(AnnotationFS windowAnnotation) {
+    return windowAnnotation != null
             && (windowAnnotation.getBegin() != cas.getDocumentAnnotation().getBegin()
-                    || windowAnnotation.getEnd() != cas.getDocumentAnnotation().getEnd())) {
-      AnnotationFS frame = cas.createAnnotation(cas.getTypeSystem().getType(RutaEngine.FRAME_TYPE),
+                    || windowAnnotation.getEnd() != cas.getDocumentAnnotation().getEnd());
+  }
+
+  private AnnotationFS getWindowFrame(AnnotationFS windowAnnotation) {
+    if (windowFrame == null || windowFrame.getBegin() != windowAnnotation.getBegin()
+            || windowFrame.getEnd() != windowAnnotation.getEnd()) {
+      windowFrame = cas.createAnnotation(cas.getTypeSystem().getType(RutaEngine.FRAME_TYPE),
               windowAnnotation.getBegin(), windowAnnotation.getEnd());
+    }
+    return windowFrame;
+  }
+
+  public Collection<AnnotationFS> getAnnotations(Type type) {
+    Collection<AnnotationFS> result = new LinkedList<AnnotationFS>();
+    AnnotationFS windowAnnotation = filter.getWindowAnnotation();
+    if (isPartialWindow(windowAnnotation)) {
+      AnnotationFS frame = getWindowFrame(windowAnnotation);
       FSIterator<AnnotationFS> subiterator = cas.getAnnotationIndex(type).subiterator(frame);
       while (subiterator.hasNext()) {
         AnnotationFS each = subiterator.next();
@@ -993,6 +1082,7 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
       feature = lazyFeature.initialize(annotation);
     }
 
+    markModified(annotation.getType());
     CAS cas = annotation.getCAS();
     TypeSystem typeSystem = cas.getTypeSystem();
     Type range = feature.getRange();
@@ -1383,4 +1473,139 @@ public class RutaStream extends FSIteratorImplBase<AnnotationFS> {
   public long getMaxRuleElementMatches() {
     return this.maxRuleElementMatches;
   }
+
+  public void setTimeBudget(RutaTimeBudget timeBudget) {
+    this.timeBudget = timeBudget;
+  }
+
+  public RutaTimeBudget getTimeBudget() {
+    return timeBudget;
+  }
+
+  public void setMetrics(RutaDocumentMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * @return the metrics of the processed document, or null if no metrics are collected
+   */
+  public RutaDocumentMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Increments the modification epoch of the given type and of all its supertypes. This is done
+   * automatically when annotations are added or removed, which includes changing their offsets,
+   * and when feature values are assigned by the stream. Actions that modify feature structures
+   * directly should call this method.
+   * 
+   * @param type
+   *          the type of the modified feature structure
+   */
+  public void markModified(Type type) {
+    long[] epochs = getModificationEpochs();
+    epochs[0]++;
+    TypeSystem typeSystem = cas.getTypeSystem();
+    Type each = type;
+    while (each != null) {
+      epochs[((TypeImpl) each).getCode()]++;
+      each = typeSystem.getParent(each);
+    }
+  }
+
+  /**
+   * Increments the modification epochs of all types. This needs to be called after the CAS was
+   * modified without the stream, e.g., by an analysis engine.
+   */
+  public void markAllModified() {
+    long[] epochs = getModificationEpochs();
+    for (int i = 0; i < epochs.length; i++) {
+      epochs[i]++;
+    }
+  }
+
+  /**
+   * @param type
+   *          the type
+   * @return a value that changes whenever a feature structure of the given type or of one of its
+   *         subtypes is modified in the document
+   */
+  public long getModificationEpoch(Type type) {
+    return getModificationEpochs()[((TypeImpl) type).getCode()];
+  }
+
+  /**
+   * @return a value that changes whenever a feature structure is modified in the document
+   */
+  public long getModificationEpoch() {
+    return getModificationEpochs()[0];
+  }
+
+  /**
+   * @return the modification epochs of the document, whose identity also identifies the document
+   */
+  long[] getModificationEpochs() {
+    if (modificationEpochs == null) {
+      modificationEpochs = new long[((TypeSystemImpl) cas.getTypeSystem()).getLargestTypeCode()
+              + 1];
+    }
+    return modificationEpochs;
+  }
+
+  public void setCountIndex(TypeCountIndex countIndex) {
+    this.countIndex = countIndex;
+  }
+
+  /**
+   * @return the cumulative counts of types for conditions, or null if they are not used
+   */
+  public TypeCountIndex getCountIndex() {
+    return countIndex;
+  }
+
+  public void setLiteralIndex(LiteralOccurrenceIndex literalIndex) {
+    this.literalIndex = literalIndex;
+  }
+
+  /**
+   * @return the text of the document and the positions of literal strings in it, shared by all
+   *         streams of the document
+   */
+  public LiteralOccurrenceIndex getLiteralIndex() {
+    if (literalIndex == null) {
+      literalIndex = new LiteralOccurrenceIndex(cas.getDocumentText());
+    }
+    return literalIndex;
+  }
+
+  public void setOffsetIndex(TypeOffsetIndex offsetIndex) {
+    this.offsetIndex = offsetIndex;
+  }
+
+  /**
+   * @return the annotations of each type sorted like in the annotation index, shared by all streams
+   *         of the document
+   */
+  public TypeOffsetIndex getOffsetIndex() {
+    if (offsetIndex == null) {
+      offsetIndex = new TypeOffsetIndex();
+    }
+    return offsetIndex;
+  }
+
+  public void setMatchingExecutor(ExecutorService matchingExecutor) {
+    this.matchingExecutor = matchingExecutor;
+  }
+
+  /**
+   * @return the executor for matching independent rules of a block in parallel, or null if the
+   *         rules are matched sequentially
+   */
+  public ExecutorService getMatchingExecutor() {
+    return matchingExecutor;
+  }
+
+  public Type getBasicType() {
+    return basicType;
+  }
 }
@@ -0,0 +1,257 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.ruta.rule.AbstractRule;
+
+/**
+ * A time budget for applying the rules on a single document and for applying a single rule. The
+ * budget is shared by all streams of a document and is checked by the rules and rule elements
+ * while they are matching. Since the check is called very often, the clock is only read every
+ * {@value #CHECK_INTERVAL} calls.
+ *
+ * The {@link Policy} specifies what happens if a budget is exceeded.
+ */
+public class RutaTimeBudget {
+
+  public enum Policy {
+    /**
+     * Abort the processing of the document with an exception.
+     */
+    ABORT,
+    /**
+     * Stop matching the rule that exceeded the rule budget and continue with the next rule. If the
+     * document budget is exceeded, no further rules are applied.
+     */
+    SKIP_RULE,
+    /**
+     * Stop applying rules as soon as a budget is exceeded and keep the results created so far.
+     */
+    PARTIAL
+  }
+
+  /**
+   * The source of the time measured by the budget.
+   */
+  public interface Clock {
+
+    /**
+     * @return the current time in nanoseconds, only the difference between two values is relevant
+     */
+    long nanoTime();
+  }
+
+  private static final int CHECK_INTERVAL = 256;
+
+  private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+  private final long maxDocumentTime;
+
+  private final long maxRuleTime;
+
+  private final Policy policy;
+
+  private final Clock clock;
+
+  private long documentDeadline = NO_DEADLINE;
+
+  private long ruleDeadline = NO_DEADLINE;
+
+  private boolean documentExceeded = false;
+
+  private boolean ruleExceeded = false;
+
+  private int ruleDepth = 0;
+
+  private AbstractRule currentRule;
+
+  private int calls = 0;
+
+  private final List<String> timeouts = new ArrayList<String>();
+
+  /**
+   * A budget without any limits.
+   */
+  public RutaTimeBudget() {
+    this(0, 0, Policy.ABORT, false);
+  }
+
+  /**
+   * @param maxDocumentTime
+   *          the maximum time in milliseconds for a document, zero or less for no limit
+   * @param maxRuleTime
+   *          the maximum time in milliseconds for a single rule, zero or less for no limit
+   * @param policy
+   *          what happens if a budget is exceeded
+   * @param cpuTime
+   *          measure the CPU time of the current thread instead of the wall-clock time, if
+   *          supported by the JVM
+   */
+  public RutaTimeBudget(long maxDocumentTime, long maxRuleTime, Policy policy, boolean cpuTime) {
+    this(maxDocumentTime, maxRuleTime, policy, createClock(cpuTime));
+  }
+
+  /**
+   * @param maxDocumentTime
+   *          the maximum time in milliseconds for a document, zero or less for no limit
+   * @param maxRuleTime
+   *          the maximum time in milliseconds for a single rule, zero or less for no limit
+   * @param policy
+   *          what happens if a budget is exceeded
+   * @param clock
+   *          the clock that measures the time
+   */
+  public RutaTimeBudget(long maxDocumentTime, long maxRuleTime, Policy policy, Clock clock) {
+    super();
+    this.maxDocumentTime = maxDocumentTime * 1000000L;
+    this.maxRuleTime = maxRuleTime * 1000000L;
+    this.policy = policy;
+    this.clock = clock;
+  }
+
+  private static Clock createClock(boolean cpuTime) {
+    final ThreadMXBean bean = cpuTime ? ManagementFactory.getThreadMXBean() : null;
+    if (bean != null && bean.isCurrentThreadCpuTimeSupported()) {
+      return new Clock() {
+        @Override
+        public long nanoTime() {
+          return bean.getCurrentThreadCpuTime();
+        }
+      };
+    }
+    return new Clock() {
+      @Override
+      public long nanoTime() {
+        return System.nanoTime();
+      }
+    };
+  }
+
+  private long now() {
+    return clock.nanoTime();
+  }
+
+  /**
+   * Starts the budget of a new document and forgets the timeouts of the previous one.
+   */
+  public void startDocument() {
+    documentExceeded = false;
+    ruleExceeded = false;
+    ruleDepth = 0;
+    currentRule = null;
+    calls = 0;
+    timeouts.clear();
+    documentDeadline = maxDocumentTime > 0 ? now() + maxDocumentTime : NO_DEADLINE;
+    ruleDeadline = NO_DEADLINE;
+  }
+
+  /**
+   * Starts the budget of a rule. Rules that are applied while another rule is applied, e.g.,
+   * inlined rules, share the budget of the outermost rule.
+   */
+  public void startRule(AbstractRule rule) {
+    if (ruleDepth++ == 0) {
+      currentRule = rule;
+      ruleExceeded = false;
+      ruleDeadline = maxRuleTime > 0 ? now() + maxRuleTime : NO_DEADLINE;
+    }
+  }
+
+  public void endRule() {
+    if (--ruleDepth == 0) {
+      currentRule = null;
+      ruleExceeded = false;
+      ruleDeadline = NO_DEADLINE;
+    }
+  }
+
+  /**
+   * Checks the budget. This method is cheap enough to be called for each candidate match.
+   *
+   * @return true if the matching should stop
+   * @throws RutaProcessRuntimeException
+   *           if a budget is exceeded and the policy is {@link Policy#ABORT}
+   */
+  public boolean isExceeded() {
+    if (documentExceeded || ruleExceeded) {
+      return true;
+    }
+    if (documentDeadline == NO_DEADLINE && ruleDeadline == NO_DEADLINE) {
+      return false;
+    }
+    if (++calls % CHECK_INTERVAL != 0) {
+      return false;
+    }
+    long now = now();
+    if (now > documentDeadline) {
+      documentExceeded = true;
+      timeout("Document exceeded the allowed time (" + maxDocumentTime / 1000000L + "ms)"
+              + (currentRule == null ? "" : " in rule: " + currentRule.toString()));
+    } else if (now > ruleDeadline) {
+      if (policy == Policy.PARTIAL) {
+        documentExceeded = true;
+      } else {
+        ruleExceeded = true;
+      }
+      timeout("Rule exceeded the allowed time (" + maxRuleTime / 1000000L + "ms): "
+              + currentRule.toString());
+    }
+    return documentExceeded || ruleExceeded;
+  }
+
+  /**
+   * @return true if the time of the document or of a rule is limited. The budget is not thread-safe
+   *         in this case.
+   */
+  public boolean isLimited() {
+    return maxDocumentTime > 0 || maxRuleTime > 0;
+  }
+
+  /**
+   * @return true if no further rules should be applied on the document
+   */
+  public boolean isDocumentExceeded() {
+    return documentExceeded;
+  }
+
+  private void timeout(String message) {
+    timeouts.add(message);
+    if (policy == Policy.ABORT) {
+      throw new RutaProcessRuntimeException(message);
+    }
+  }
+
+  /**
+   * @return the descriptions of the timeouts of the current document
+   */
+  public List<String> getTimeouts() {
+    return timeouts;
+  }
+
+  public Policy getPolicy() {
+    return policy;
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.TypeImpl;
+
+/**
+ * Memoizes values that are expensive to compute for a document, e.g., by conditions, matchers or
+ * actions. Each value is stored together with the modification epochs of the types it depends on
+ * (see {@link RutaStream#getModificationEpoch(Type)}) and is discarded as soon as an annotation of
+ * one of these types is added, removed or changed. All values are discarded if the cache is used
+ * with a stream of another document.
+ * 
+ * Values that depend on the visibility of annotations need to include the currently filtered
+ * types in their key since changing the filtering settings does not modify any type. The cache is
+ * synchronized since rules of a block can be matched in parallel.
+ * 
+ * @param <K>
+ *          the type of the keys
+ * @param <V>
+ *          the type of the values
+ */
+public class StreamCache<K, V> {
+
+  private static class Entry<V> {
+
+    private final V value;
+
+    private final int[] codes;
+
+    private final long[] epochs;
+
+    private Entry(V value, int[] codes, long[] epochs) {
+      super();
+      this.value = value;
+      this.codes = codes;
+      this.epochs = epochs;
+    }
+
+  }
+
+  private final Map<K, Entry<V>> entries = new HashMap<K, Entry<V>>();
+
+  private long[] document;
+
+  /**
+   * @param key
+   *          the key of the value
+   * @param stream
+   *          the current stream
+   * @return the stored value, or null if there is no value or if one of the types it depends on was
+   *         modified since it was stored
+   */
+  public synchronized V get(K key, RutaStream stream) {
+    long[] current = getDocument(stream);
+    Entry<V> entry = entries.get(key);
+    if (entry == null) {
+      return null;
+    }
+    for (int i = 0; i < entry.codes.length; i++) {
+      if (current[entry.codes[i]] != entry.epochs[i]) {
+        entries.remove(key);
+        return null;
+      }
+    }
+    return entry.value;
+  }
+
+  /**
+   * Stores a value for the current state of the document.
+   * 
+   * @param key
+   *          the key of the value
+   * @param value
+   *          the value
+   * @param stream
+   *          the current stream
+   * @param dependencies
+   *          the types the value depends on, including their subtypes. If no type is given, the
+   *          value is invalidated by any modification of the document.
+   */
+  public synchronized void put(K key, V value, RutaStream stream, Type... dependencies) {
+    long[] current = getDocument(stream);
+    int[] codes;
+    if (dependencies.length == 0) {
+      codes = new int[] { 0 };
+    } else {
+      codes = new int[dependencies.length];
+      for (int i = 0; i < dependencies.length; i++) {
+        codes[i] = ((TypeImpl) dependencies[i]).getCode();
+      }
+    }
+    long[] epochs = new long[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      epochs[i] = current[codes[i]];
+    }
+    entries.put(key, new Entry<V>(value, codes, epochs));
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    document = null;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private long[] getDocument(RutaStream stream) {
+    long[] epochs = stream.getModificationEpochs();
+    if (epochs != document) {
+      entries.clear();
+      document = epochs;
+    }
+    return epochs;
+  }
+
+}
@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.type.RutaBasic;
+
+/**
+ * Cumulative counts over the ordinals of the basic annotations for the types queried by conditions
+ * like CONTAINS, VOTE and COUNT. The counts of a type are computed when they are requested for the
+ * first time and are discarded when an annotation of the type or of one of its subtypes is added
+ * or removed. The counts restricted to visible basic annotations are additionally discarded when
+ * the hidden types change or an annotation of a hidden type is added or removed. All counts are
+ * discarded if a basic annotation is split.
+ * 
+ * The count of a window is the difference of two array entries. Methods return -1 if a count
+ * cannot be answered exactly, e.g., if an annotation of the type crosses the end of the window.
+ * The callers then count as usual. The methods are synchronized since the conditions of several
+ * rules can be evaluated in parallel.
+ */
+public class TypeCountIndex {
+
+  private final boolean emptyIsInvisible;
+
+  private RutaBasic[] basics;
+
+  private int[] begins;
+
+  private int[] ends;
+
+  private Set<Type> hiddenTypes;
+
+  /**
+   * Cumulative number of visible basic annotations.
+   */
+  private int[] visible;
+
+  private final Map<Type, TypeCounts> counts = new HashMap<Type, TypeCounts>();
+
+  private static class TypeCounts {
+
+    /**
+     * Cumulative number of basic annotations at which an annotation of the type begins.
+     */
+    private int[] anchors;
+
+    /**
+     * Cumulative number of visible basic annotations that begin with the type.
+     */
+    private int[] visibleBegins;
+
+    /**
+     * Cumulative number of visible basic annotations that are covered by the type.
+     */
+    private int[] visibleCovered;
+
+    /**
+     * Cumulative number of annotations of the type that begin at a visible basic annotation.
+     */
+    private int[] visibleAnchors;
+
+    private boolean hasEmptyAnnotations;
+  }
+
+  public TypeCountIndex(boolean emptyIsInvisible) {
+    super();
+    this.emptyIsInvisible = emptyIsInvisible;
+  }
+
+  /**
+   * @return the number of visible basic annotations in the window, or -1
+   */
+  public synchronized int getVisibleBasicCount(AnnotationFS window, RutaStream stream) {
+    int[] range = getVisibleRange(window, stream);
+    if (range == null) {
+      return -1;
+    }
+    return visible[range[1]] - visible[range[0]];
+  }
+
+  /**
+   * @return the number of visible basic annotations in the window at which an annotation of the
+   *         type begins, or -1
+   */
+  public synchronized int getBeginsWithCount(AnnotationFS window, Type type, RutaStream stream) {
+    int[] range = getVisibleRange(window, stream);
+    if (range == null) {
+      return -1;
+    }
+    int[] array = getCounts(type, stream).visibleBegins;
+    return array[range[1]] - array[range[0]];
+  }
+
+  /**
+   * @return the number of visible basic annotations in the window that begin with, are part of or
+   *         are an instance of the type, or -1
+   */
+  public synchronized int getCoveredBasicCount(AnnotationFS window, Type type, RutaStream stream) {
+    int[] range = getVisibleRange(window, stream);
+    if (range == null) {
+      return -1;
+    }
+    int[] array = getCounts(type, stream).visibleCovered;
+    return array[range[1]] - array[range[0]];
+  }
+
+  /**
+   * @return the number of annotations of the type that begin at a visible basic annotation in the
+   *         window and end within the window, or -1
+   */
+  public synchronized int getVisibleContainedCount(AnnotationFS window, Type type,
+          RutaStream stream) {
+    int[] range = getVisibleRange(window, stream);
+    if (range == null || crossesEnd(range[1], type)) {
+      return -1;
+    }
+    int[] array = getCounts(type, stream).visibleAnchors;
+    return array[range[1]] - array[range[0]];
+  }
+
+  /**
+   * @return the number of annotations of the type within the window regardless of their
+   *         visibility, including the window itself, or -1
+   */
+  public synchronized int getContainedCount(AnnotationFS window, Type type, RutaStream stream) {
+    if (window instanceof RutaBasic || !stream.indexType(type)) {
+      // annotations of types that are not indexed are not known to the basic annotations
+      return -1;
+    }
+    ensureBasics(stream);
+    int[] range = getRange(window.getBegin(), window.getEnd());
+    if (range == null || crossesEnd(range[1], type)) {
+      return -1;
+    }
+    TypeCounts typeCounts = getCounts(type, stream);
+    if (typeCounts.hasEmptyAnnotations) {
+      return -1;
+    }
+    int result = typeCounts.anchors[range[1]] - typeCounts.anchors[range[0]];
+    TypeSystem typeSystem = stream.getCas().getTypeSystem();
+    if (typeSystem.subsumes(type, window.getType())) {
+      RutaBasic beginAnchor = stream.getBeginAnchor(window.getBegin());
+      if (beginAnchor == null || !beginAnchor.getBeginAnchors(type).contains(window)) {
+        // the window is counted, but it is not known to the basic annotations
+        result++;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Discards the counts, which depend on annotations of the given type.
+   */
+  public synchronized void annotationChanged(Type type, TypeSystem typeSystem) {
+    if (basics == null) {
+      return;
+    }
+    Iterator<Type> iterator = counts.keySet().iterator();
+    while (iterator.hasNext()) {
+      if (typeSystem.subsumes(iterator.next(), type)) {
+        iterator.remove();
+      }
+    }
+    if (hiddenTypes != null) {
+      for (Type each : hiddenTypes) {
+        if (each != null && typeSystem.subsumes(each, type)) {
+          discardVisibility();
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Discards all counts, since the basic annotations changed.
+   */
+  public synchronized void basicsChanged() {
+    basics = null;
+    begins = null;
+    ends = null;
+    discardVisibility();
+    counts.clear();
+  }
+
+  private void discardVisibility() {
+    hiddenTypes = null;
+    visible = null;
+    for (TypeCounts each : counts.values()) {
+      each.visibleBegins = null;
+      each.visibleCovered = null;
+      each.visibleAnchors = null;
+    }
+  }
+
+  /**
+   * Returns the range of ordinals of the basic annotations within the window that are visible for
+   * the stream, or null if the counts of visible basic annotations cannot be used for the window.
+   */
+  private int[] getVisibleRange(AnnotationFS window, RutaStream stream) {
+    if (window instanceof RutaBasic) {
+      return null;
+    }
+    ensureBasics(stream);
+    ensureVisibility(stream);
+    int begin = window.getBegin();
+    int end = window.getEnd();
+    AnnotationFS streamWindow = stream.getFilter().getWindowAnnotation();
+    if (streamWindow != null) {
+      begin = Math.max(begin, streamWindow.getBegin());
+      end = Math.min(end, streamWindow.getEnd());
+    }
+    return getRange(begin, end);
+  }
+
+  private int[] getRange(int begin, int end) {
+    int from = Arrays.binarySearch(begins, begin);
+    if (from < 0) {
+      from = -from - 1;
+    }
+    // the first basic annotation that ends after the window
+    int to = Arrays.binarySearch(ends, end);
+    if (to < 0) {
+      to = -to - 1;
+    } else {
+      to++;
+    }
+    if (to < from) {
+      to = from;
+    }
+    return new int[] { from, to };
+  }
+
+  /**
+   * Returns true if an annotation of the type may begin before and end after the basic annotation
+   * with the given ordinal, i.e., it may not be contained in the window that ends before it.
+   */
+  private boolean crossesEnd(int next, Type type) {
+    return next < basics.length && basics[next].isPartOf(type);
+  }
+
+  private void ensureBasics(RutaStream stream) {
+    if (basics != null) {
+      return;
+    }
+    Collection<RutaBasic> all = stream
+            .getAllBasicsInWindow(stream.getCas().getDocumentAnnotation());
+    basics = all.toArray(new RutaBasic[all.size()]);
+    begins = new int[basics.length];
+    ends = new int[basics.length];
+    for (int i = 0; i < basics.length; i++) {
+      begins[i] = basics[i].getBegin();
+      ends[i] = basics[i].getEnd();
+    }
+  }
+
+  private void ensureVisibility(RutaStream stream) {
+    FilterManager filter = stream.getFilter();
+    // update the hidden types of the filter
+    filter.getDefaultConstraint();
+    Set<Type> currentHiddenTypes = filter.getCurrentHiddenTypes();
+    if (visible != null && hiddenTypes.equals(currentHiddenTypes)) {
+      return;
+    }
+    discardVisibility();
+    hiddenTypes = new HashSet<Type>(currentHiddenTypes);
+    visible = new int[basics.length + 1];
+    for (int i = 0; i < basics.length; i++) {
+      visible[i + 1] = visible[i] + (isVisible(basics[i]) ? 1 : 0);
+    }
+  }
+
+  private boolean isVisible(RutaBasic basic) {
+    if (basic.isEmpty()) {
+      return !emptyIsInvisible;
+    }
+    for (Type each : hiddenTypes) {
+      if (each != null && basic.isPartOf(each)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private TypeCounts getCounts(Type type, RutaStream stream) {
+    TypeCounts result = counts.get(type);
+    if (result == null) {
+      result = new TypeCounts();
+      result.anchors = new int[basics.length + 1];
+      for (int i = 0; i < basics.length; i++) {
+        Collection<AnnotationFS> anchors = basics[i].getBeginAnchors(type);
+        int size = anchors == null ? 0 : anchors.size();
+        result.anchors[i + 1] = result.anchors[i] + size;
+        if (!result.hasEmptyAnnotations && size > 0) {
+          for (AnnotationFS each : anchors) {
+            if (each.getBegin() == each.getEnd()) {
+              result.hasEmptyAnnotations = true;
+              break;
+            }
+          }
+        }
+      }
+      counts.put(type, result);
+    }
+    if (result.visibleBegins == null && visible != null) {
+      TypeSystem typeSystem = stream.getCas().getTypeSystem();
+      result.visibleBegins = new int[basics.length + 1];
+      result.visibleCovered = new int[basics.length + 1];
+      result.visibleAnchors = new int[basics.length + 1];
+      for (int i = 0; i < basics.length; i++) {
+        RutaBasic each = basics[i];
+        boolean isVisible = visible[i + 1] > visible[i];
+        boolean beginsWith = isVisible && each.beginsWith(type);
+        boolean covered = isVisible && (beginsWith
+                || typeSystem.subsumes(type, each.getType()) || each.isPartOf(type));
+        int anchors = isVisible ? result.anchors[i + 1] - result.anchors[i] : 0;
+        result.visibleBegins[i + 1] = result.visibleBegins[i] + (beginsWith ? 1 : 0);
+        result.visibleCovered[i + 1] = result.visibleCovered[i] + (covered ? 1 : 0);
+        result.visibleAnchors[i + 1] = result.visibleAnchors[i] + anchors;
+      }
+    }
+    return result;
+  }
+
+}
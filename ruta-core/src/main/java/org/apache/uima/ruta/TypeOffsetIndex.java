@@ -0,0 +1,317 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NoSuchElementException;
+
+import org.apache.uima.cas.FSIterator;
+import org.apache.uima.cas.FeatureStructure;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.FSIteratorImplBase;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationIndex;
+
+/**
+ * Provides the annotations of a type sorted like in the annotation index so that an iterator can be
+ * positioned with a binary search instead of creating a snapshot iterator or a subiterator for
+ * each request. The sorted annotations of a type are collected lazily for the complete document
+ * and the annotations within a window are located in them by their offsets. The index is shared
+ * by all streams of a document.
+ * 
+ * The annotations of a type are only collected again after the type was modified, see
+ * {@link RutaStream#getModificationEpoch(Type)}. Therefore, all changes of the annotation indexes
+ * need to be reported to the stream, either by adding and removing the annotations with the
+ * stream or by calling {@link RutaStream#markAllModified()} after the CAS was modified directly,
+ * e.g., by an analysis engine.
+ */
+public class TypeOffsetIndex {
+
+  private static final Comparator<AnnotationFS> END_COMPARATOR = new Comparator<AnnotationFS>() {
+    @Override
+    public int compare(AnnotationFS o1, AnnotationFS o2) {
+      return Integer.compare(o1.getEnd(), o2.getEnd());
+    }
+  };
+
+  private final StreamCache<Type, AnnotationFS[]> cache = new StreamCache<>();
+
+  private final StreamCache<Type, AnnotationFS[]> endCache = new StreamCache<>();
+
+  /**
+   * Creates an iterator over the annotations of the given type like an iterator of the annotation
+   * index that is moved to the given pointer.
+   * 
+   * @param type
+   *          the type of the annotations
+   * @param window
+   *          only annotations within the window are returned like by a subiterator, or null for all
+   *          annotations of the type
+   * @param pointer
+   *          the iterator is positioned at the first annotation that is not smaller than the
+   *          pointer in the annotation index, or at the first annotation if the pointer is null
+   * @param stream
+   *          the current stream
+   * @return an iterator over the range of the sorted annotations that is covered by the window
+   */
+  public FSIterator<AnnotationFS> iterator(Type type, AnnotationFS window, AnnotationFS pointer,
+          RutaStream stream) {
+    AnnotationIndex<AnnotationFS> index = stream.getCas().getAnnotationIndex(type);
+    AnnotationFS[] annotations = getAnnotations(type, index, stream);
+    RangeIterator result;
+    if (window == null) {
+      result = new RangeIterator(annotations, 0, annotations.length, Integer.MAX_VALUE, index);
+    } else {
+      int from = firstBegin(annotations, window.getBegin());
+      int to = firstBegin(annotations, window.getEnd() + 1);
+      result = new RangeIterator(annotations, from, to, window.getEnd(), index);
+    }
+    if (pointer != null) {
+      result.moveTo(pointer);
+    }
+    return result;
+  }
+
+  /**
+   * Looks up the first visible annotation of the given type that begins at or after the offset.
+   * 
+   * @param type
+   *          the type of the annotation
+   * @param offset
+   *          the offset the annotation may begin at
+   * @param stream
+   *          the current stream, which defines the visibility and the window
+   * @return the first annotation in the order of the annotation index, or null if there is none
+   */
+  public AnnotationFS nextBegin(Type type, int offset, RutaStream stream) {
+    AnnotationIndex<AnnotationFS> index = stream.getCas().getAnnotationIndex(type);
+    AnnotationFS[] annotations = getAnnotations(type, index, stream);
+    int windowEnd = stream.getDocumentAnnotation().getEnd();
+    for (int i = firstBegin(annotations, offset); i < annotations.length; i++) {
+      AnnotationFS each = annotations[i];
+      if (each.getBegin() > windowEnd) {
+        break;
+      }
+      if (stream.isVisible(each)) {
+        return each;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Looks up the last visible annotation of the given type that ends at or before the offset.
+   * 
+   * @param type
+   *          the type of the annotation
+   * @param offset
+   *          the offset the annotation may end at
+   * @param stream
+   *          the current stream, which defines the visibility and the window
+   * @return the annotation with the largest end, or null if there is none. Of annotations with the
+   *         same end, the last one in the order of the annotation index is returned.
+   */
+  public AnnotationFS prevEnd(Type type, int offset, RutaStream stream) {
+    AnnotationIndex<AnnotationFS> index = stream.getCas().getAnnotationIndex(type);
+    AnnotationFS[] annotations = getAnnotationsByEnd(type, index, stream);
+    int windowBegin = stream.getDocumentAnnotation().getBegin();
+    for (int i = firstEnd(annotations, offset + 1) - 1; i >= 0; i--) {
+      AnnotationFS each = annotations[i];
+      if (each.getEnd() < windowBegin) {
+        break;
+      }
+      if (stream.isVisible(each)) {
+        return each;
+      }
+    }
+    return null;
+  }
+
+  private AnnotationFS[] getAnnotations(Type type, AnnotationIndex<AnnotationFS> index,
+          RutaStream stream) {
+    AnnotationFS[] annotations = cache.get(type, stream);
+    if (annotations != null) {
+      return annotations;
+    }
+    annotations = new AnnotationFS[index.size()];
+    int i = 0;
+    for (AnnotationFS each : index) {
+      annotations[i++] = each;
+    }
+    cache.put(type, annotations, stream, type);
+    return annotations;
+  }
+
+  private AnnotationFS[] getAnnotationsByEnd(Type type, AnnotationIndex<AnnotationFS> index,
+          RutaStream stream) {
+    AnnotationFS[] annotations = endCache.get(type, stream);
+    if (annotations != null) {
+      return annotations;
+    }
+    annotations = getAnnotations(type, index, stream).clone();
+    // the sort is stable and keeps the index order of annotations with the same end
+    Arrays.sort(annotations, END_COMPARATOR);
+    endCache.put(type, annotations, stream, type);
+    return annotations;
+  }
+
+  /**
+   * @return the first position of an annotation that does not begin before the given offset
+   */
+  private static int firstBegin(AnnotationFS[] annotations, int begin) {
+    int low = 0;
+    int high = annotations.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (annotations[mid].getBegin() < begin) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * @return the first position of an annotation that does not end before the given offset
+   */
+  private static int firstEnd(AnnotationFS[] annotations, int end) {
+    int low = 0;
+    int high = annotations.length;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (annotations[mid].getEnd() < end) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Iterates over a range of the sorted annotations of a type and skips the annotations that end
+   * after the window, without copying them.
+   */
+  private static class RangeIterator extends FSIteratorImplBase<AnnotationFS> {
+
+    private final AnnotationFS[] annotations;
+
+    private final int from;
+
+    private final int to;
+
+    private final int maxEnd;
+
+    private final AnnotationIndex<AnnotationFS> index;
+
+    private int pointer;
+
+    private RangeIterator(AnnotationFS[] annotations, int from, int to, int maxEnd,
+            AnnotationIndex<AnnotationFS> index) {
+      super();
+      this.annotations = annotations;
+      this.from = from;
+      this.to = to;
+      this.maxEnd = maxEnd;
+      this.index = index;
+      moveToFirst();
+    }
+
+    @Override
+    public boolean isValid() {
+      return pointer >= from && pointer < to;
+    }
+
+    @Override
+    public AnnotationFS get() throws NoSuchElementException {
+      if (!isValid()) {
+        throw new NoSuchElementException();
+      }
+      return annotations[pointer];
+    }
+
+    @Override
+    public void moveToNext() {
+      pointer++;
+      skipForward();
+    }
+
+    @Override
+    public void moveToPrevious() {
+      pointer--;
+      skipBackward();
+    }
+
+    @Override
+    public void moveToFirst() {
+      pointer = from;
+      skipForward();
+    }
+
+    @Override
+    public void moveToLast() {
+      pointer = to - 1;
+      skipBackward();
+    }
+
+    /**
+     * Moves to the first annotation that is not smaller than the given one in the annotation
+     * index.
+     */
+    @Override
+    public void moveTo(FeatureStructure fs) {
+      int low = from;
+      int high = to;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        if (index.compare(annotations[mid], fs) < 0) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      pointer = low;
+      skipForward();
+    }
+
+    @Override
+    public FSIterator<AnnotationFS> copy() {
+      RangeIterator copy = new RangeIterator(annotations, from, to, maxEnd, index);
+      copy.pointer = pointer;
+      return copy;
+    }
+
+    private void skipForward() {
+      while (pointer < to && annotations[pointer].getEnd() > maxEnd) {
+        pointer++;
+      }
+    }
+
+    private void skipBackward() {
+      while (pointer >= from && annotations[pointer].getEnd() > maxEnd) {
+        pointer--;
+      }
+    }
+
+  }
+
+}
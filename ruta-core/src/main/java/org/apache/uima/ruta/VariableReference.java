@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+/**
+ * A variable name resolved to the environment that owns the variable and the slot of its value in
+ * this environment. Variables can be added and removed while rules are applied (labels, FOREACH,
+ * MACRO arguments) and an expression can be evaluated in different blocks. Therefore, a reference
+ * remembers the versions of the environments and of the slots it was resolved through and is only
+ * valid as long as none of them declared or removed a variable or an alias of the same name.
+ *
+ * Instances are immutable and can be cached by the variable expressions.
+ */
+public final class VariableReference {
+
+  private final RutaEnvironment origin;
+
+  private final String name;
+
+  private final RutaEnvironment target;
+
+  private final int slot;
+
+  private final RutaEnvironment[] path;
+
+  private final int[] versions;
+
+  private final int[] slots;
+
+  private final int[] slotVersions;
+
+  VariableReference(RutaEnvironment origin, String name, RutaEnvironment target, int slot,
+          RutaEnvironment[] path, int[] versions, int[] slots, int[] slotVersions) {
+    super();
+    this.origin = origin;
+    this.name = name;
+    this.target = target;
+    this.slot = slot;
+    this.path = path;
+    this.versions = versions;
+    this.slots = slots;
+    this.slotVersions = slotVersions;
+  }
+
+  boolean isValid(RutaEnvironment environment) {
+    if (environment != origin) {
+      return false;
+    }
+    for (int i = 0; i < path.length; i++) {
+      if (slots[i] < 0) {
+        if (path[i].getLayoutVersion() != versions[i]) {
+          return false;
+        }
+      } else if (path[i].getSlotVersion(slots[i]) != slotVersions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return the name of the variable in the owning environment, i.e., after resolving aliases
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * @return the environment that owns the variable, or null if the variable is not defined
+   */
+  public RutaEnvironment getTarget() {
+    return target;
+  }
+
+  public int getSlot() {
+    return slot;
+  }
+
+}
@@ -19,11 +19,10 @@
 
 package org.apache.uima.ruta.action;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -49,6 +48,10 @@ public class CallAction extends AbstractRutaAction {
 
   protected String namespace;
 
+  private CAS reusableCas;
+
+  private AnalysisEngine reusableCasEngine;
+
   public CallAction(String namespace) {
     super();
     this.namespace = namespace;
@@ -103,110 +106,109 @@ public class CallAction extends AbstractRutaAction {
 
     List<AnnotationFS> matchedAnnotations = match.getMatchedAnnotations(null,
             element.getContainer());
-    for (AnnotationFS matchedAnnotation : matchedAnnotations) {
-
-      StringBuilder newDocument = new StringBuilder();
-      RutaStream windowStream = stream.getWindowStream(matchedAnnotation,
-              stream.getDocumentAnnotationType());
-      windowStream.moveToFirst();
-
-      CAS newCAS = targetEngine.newCAS();
+    if (matchedAnnotations.isEmpty()) {
+      return;
+    }
+    CAS newCAS = acquireCas(targetEngine);
+    try {
       List<Type> types = newCAS.getTypeSystem()
               .getProperlySubsumedTypes(newCAS.getAnnotationType());
+      for (AnnotationFS matchedAnnotation : matchedAnnotations) {
+        newCAS.reset();
+        callEngine(matchedAnnotation, newCAS, types, targetEngine, stream, match);
+      }
+    } finally {
+      releaseCas(targetEngine, newCAS);
+    }
+  }
 
-      Collection<AnnotationFS> fsToAdd = new HashSet<AnnotationFS>();
-
-      Map<Integer, Integer> new2oldBegin = new TreeMap<Integer, Integer>();
-      Map<Integer, Integer> new2oldEnd = new TreeMap<Integer, Integer>();
-      Map<Integer, Integer> old2newBegin = new TreeMap<Integer, Integer>();
-      Map<Integer, Integer> old2newEnd = new TreeMap<Integer, Integer>();
-
-      int localBegin = 0;
-      int localEnd = 0;
-      while (windowStream.isValid()) {
-        FeatureStructure fs = windowStream.get();
-        if (fs instanceof RutaBasic) {
-          RutaBasic basic = (RutaBasic) fs;
-          for (Type type : types) {
-            Collection<AnnotationFS> beginAnchors = basic.getBeginAnchors(type);
-            for (AnnotationFS a : beginAnchors) {
-              if (a != null && !a.getType().getName().equals(CAS.TYPE_NAME_DOCUMENT_ANNOTATION)
-                      && !(a instanceof RutaBasic)) {
-                fsToAdd.add(a);
-              }
+  private void callEngine(AnnotationFS matchedAnnotation, CAS newCAS, List<Type> types,
+          AnalysisEngine targetEngine, RutaStream stream, RuleMatch match)
+          throws AnalysisEngineProcessException {
+    StringBuilder newDocument = new StringBuilder();
+    RutaStream windowStream = stream.getWindowStream(matchedAnnotation,
+            stream.getDocumentAnnotationType());
+    windowStream.moveToFirst();
+
+    Collection<AnnotationFS> fsToAdd = new HashSet<AnnotationFS>();
+
+    OffsetMapping mapping = new OffsetMapping(matchedAnnotation.getBegin(),
+            matchedAnnotation.getEnd());
+
+    int localBegin = 0;
+    int localEnd = 0;
+    while (windowStream.isValid()) {
+      FeatureStructure fs = windowStream.get();
+      if (fs instanceof RutaBasic) {
+        RutaBasic basic = (RutaBasic) fs;
+        for (Type type : types) {
+          Collection<AnnotationFS> beginAnchors = basic.getBeginAnchors(type);
+          for (AnnotationFS a : beginAnchors) {
+            if (a != null && !a.getType().getName().equals(CAS.TYPE_NAME_DOCUMENT_ANNOTATION)
+                    && !(a instanceof RutaBasic)) {
+              fsToAdd.add(a);
             }
           }
-          int length = basic.getEnd() - basic.getBegin();
-          localEnd = localBegin + length;
+        }
+        int length = basic.getEnd() - basic.getBegin();
+        localEnd = localBegin + length;
 
-          new2oldBegin.put(localBegin, basic.getBegin());
-          old2newBegin.put(basic.getBegin(), localBegin);
-          new2oldEnd.put(localEnd, basic.getEnd());
-          old2newEnd.put(basic.getEnd(), localEnd);
+        mapping.add(basic.getBegin(), basic.getEnd(), localBegin, localEnd);
 
-          newDocument.append(basic.getCoveredText());
+        newDocument.append(basic.getCoveredText());
 
-          localBegin += length;
-        }
-        windowStream.moveToNext();
+        localBegin += length;
       }
+      windowStream.moveToNext();
+    }
 
-      String string = newDocument.toString();
-      newCAS.setDocumentText(string);
-      for (AnnotationFS each : fsToAdd) {
-        int beginOld = each.getBegin();
-        int endOld = each.getEnd();
-
-        Integer beginNew = old2newBegin.get(beginOld);
-        Integer endNew = old2newEnd.get(endOld);
-        if (endNew == null && beginNew != null) {
-          int delta = endOld - beginOld;
-          endNew = beginNew + delta;
-        } else if (endNew != null && beginNew == null) {
-          int delta = endOld - beginOld;
-          beginNew = endNew - delta;
-        } else if (endNew == null && beginNew == null) {
-          int index;
-          int deltaBefore = 0;
-          int deltaAfter = 0;
-          Integer valueBegin = null;
-          index = beginOld;
-          while (valueBegin == null) {
-            valueBegin = new2oldBegin.get(++index);
-            deltaBefore++;
-          }
-          Integer valueEnd = null;
-          index = endOld;
-          while (valueEnd == null) {
-            valueEnd = new2oldEnd.get(--index);
-            deltaAfter++;
-          }
-          beginNew = valueBegin - deltaBefore;
-          endNew = valueEnd + deltaAfter;
-        }
-
-        String typeName = each.getType().getName();
-        Type type = newCAS.getTypeSystem().getType(typeName);
-        FeatureStructure newAnnotation = newCAS.createAnnotation(type, beginNew, endNew);
-        newCAS.addFsToIndexes(newAnnotation);
+    String string = newDocument.toString();
+    newCAS.setDocumentText(string);
+    for (AnnotationFS each : fsToAdd) {
+      int[] offsets = mapping.toNew(each.getBegin(), each.getEnd());
+      if (offsets == null) {
+        continue;
       }
+      String typeName = each.getType().getName();
+      Type type = newCAS.getTypeSystem().getType(typeName);
+      FeatureStructure newAnnotation = newCAS.createAnnotation(type, offsets[0], offsets[1]);
+      newCAS.addFsToIndexes(newAnnotation);
+    }
 
-      targetEngine.process(newCAS);
+    targetEngine.process(newCAS);
 
-      for (Type type : types) {
-        FSIterator<AnnotationFS> iterator = newCAS.getAnnotationIndex(type).iterator();
-        while (iterator.isValid()) {
-          AnnotationFS each = iterator.get();
-          transform(each, new2oldBegin, new2oldEnd, fsToAdd, stream, match);
-          iterator.moveToNext();
-        }
+    for (Type type : types) {
+      FSIterator<AnnotationFS> iterator = newCAS.getAnnotationIndex(type).iterator();
+      while (iterator.isValid()) {
+        AnnotationFS each = iterator.get();
+        transform(each, mapping, fsToAdd, stream, match);
+        iterator.moveToNext();
       }
     }
   }
 
-  private void transform(FeatureStructure each, Map<Integer, Integer> new2oldBegin,
-          Map<Integer, Integer> new2oldEnd, Collection<AnnotationFS> fsToAdd, RutaStream stream,
-          RuleMatch match) {
+  /**
+   * Returns a CAS of the target engine. The CAS of the last call is reused if it was created by
+   * the same engine, since creating a new CAS for each matched window is expensive.
+   */
+  private CAS acquireCas(AnalysisEngine targetEngine) throws ResourceInitializationException {
+    CAS cas = reusableCas;
+    if (cas != null && reusableCasEngine == targetEngine) {
+      // the CAS is not shared with nested calls of the same action
+      reusableCas = null;
+      return cas;
+    }
+    return targetEngine.newCAS();
+  }
+
+  private void releaseCas(AnalysisEngine targetEngine, CAS cas) {
+    cas.reset();
+    reusableCas = cas;
+    reusableCasEngine = targetEngine;
+  }
+
+  private void transform(FeatureStructure each, OffsetMapping mapping,
+          Collection<AnnotationFS> fsToAdd, RutaStream stream, RuleMatch match) {
     CAS cas = stream.getCas();
     Type newType = cas.getTypeSystem().getType(each.getType().getName());
     if (newType != null && !fsToAdd.contains(each)
@@ -215,78 +217,50 @@ public class CallAction extends AbstractRutaAction {
 
       FeatureStructure newFS = null;
       if (each instanceof AnnotationFS) {
-        newFS = transformAnnotation((AnnotationFS) each, newType, new2oldBegin, new2oldEnd, stream,
-                match);
+        newFS = transformAnnotation((AnnotationFS) each, newType, mapping, stream, match);
       } else {
         newFS = cas.createFS(newType);
-        fillFeatures(each, newFS, newFS.getType(), new2oldBegin, new2oldEnd, stream, match);
+        fillFeatures(each, newFS, newFS.getType(), mapping, stream, match);
+      }
+      if (newFS != null) {
+        cas.addFsToIndexes(newFS);
       }
-      cas.addFsToIndexes(newFS);
     }
   }
 
   private FeatureStructure transformAnnotation(AnnotationFS annotation, Type newType,
-          Map<Integer, Integer> new2oldBegin, Map<Integer, Integer> new2oldEnd, RutaStream stream,
-          RuleMatch match) {
+          OffsetMapping mapping, RutaStream stream, RuleMatch match) {
     CAS cas = stream.getCas();
-    Integer beginOld = annotation.getBegin();
-    Integer endOld = annotation.getEnd();
-    FeatureStructure newFS = cas.createFS(newType);
-    fillFeatures(annotation, newFS, newType, new2oldBegin, new2oldEnd, stream, match);
-
-    Integer beginNew = new2oldBegin.get(beginOld);
-    Integer endNew = new2oldEnd.get(endOld);
-    if (endNew == null && beginNew != null) {
-      int delta = endOld - beginOld;
-      endNew = beginNew + delta;
-    } else if (endNew != null && beginNew == null) {
-      int delta = endOld - beginOld;
-      beginNew = endNew - delta;
-    } else if (endNew == null && beginNew == null) {
-      int index;
-      int deltaBefore = 0;
-      int deltaAfter = 0;
-      Integer valueBegin = null;
-      index = beginOld;
-      while (valueBegin == null) {
-        valueBegin = new2oldBegin.get(++index);
-        deltaBefore++;
-      }
-      Integer valueEnd = null;
-      index = endOld;
-      while (valueEnd == null) {
-        valueEnd = new2oldEnd.get(--index);
-        deltaAfter++;
-      }
-      beginNew = valueBegin - deltaBefore;
-      endNew = valueEnd + deltaAfter;
+    int[] offsets = mapping.toOld(annotation.getBegin(), annotation.getEnd());
+    if (offsets == null) {
+      return null;
     }
+    FeatureStructure newFS = cas.createFS(newType);
+    fillFeatures(annotation, newFS, newType, mapping, stream, match);
 
     if (newFS instanceof Annotation) {
       Annotation newA = (Annotation) newFS;
-      newA.setBegin(beginNew);
-      newA.setEnd(endNew);
+      newA.setBegin(offsets[0]);
+      newA.setEnd(offsets[1]);
       stream.addAnnotation(newA, match);
     }
     return newFS;
   }
 
   private void fillFeatures(FeatureStructure oldFS, FeatureStructure newFS, Type newType,
-          Map<Integer, Integer> new2oldBegin, Map<Integer, Integer> new2oldEnd, RutaStream stream,
-          RuleMatch match) {
+          OffsetMapping mapping, RutaStream stream, RuleMatch match) {
     for (Object obj : newType.getFeatures()) {
       Feature feature = (Feature) obj;
       String sn = feature.getShortName();
       if (!"sofa".equals(sn) && !"begin".equals(sn) && !"end".equals(sn)) {
         Feature oldFeature = oldFS.getType().getFeatureByBaseName(sn);
-        fillFeature(oldFS, oldFeature, newFS, feature, new2oldBegin, new2oldEnd, stream, match);
+        fillFeature(oldFS, oldFeature, newFS, feature, mapping, stream, match);
       }
     }
   }
 
   private void fillFeature(FeatureStructure oldFS, Feature oldFeature, FeatureStructure newFS,
-          Feature feature, Map<Integer, Integer> new2oldBegin, Map<Integer, Integer> new2oldEnd,
-          RutaStream stream, RuleMatch match) {
+          Feature feature, OffsetMapping mapping, RutaStream stream, RuleMatch match) {
     CAS cas = stream.getCas();
     Type oldRange = oldFeature.getRange();
     if (oldRange.isPrimitive()) {
@@ -312,11 +286,10 @@ public class CallAction extends AbstractRutaAction {
         newFeatureFS = cas.createFS(feature.getRange());
       }
       if (newFeatureFS instanceof AnnotationFS) {
-        transformAnnotation((AnnotationFS) newFeatureFS, newFeatureFS.getType(), new2oldBegin,
-                new2oldEnd, stream, match);
+        transformAnnotation((AnnotationFS) newFeatureFS, newFeatureFS.getType(), mapping, stream,
+                match);
       } else {
-        fillFeatures(oldFeatureFS, newFeatureFS, newFeatureFS.getType(), new2oldBegin, new2oldEnd,
-                stream, match);
+        fillFeatures(oldFeatureFS, newFeatureFS, newFeatureFS.getType(), mapping, stream, match);
       }
     }
   }
@@ -325,4 +298,92 @@ public class CallAction extends AbstractRutaAction {
     return namespace;
   }
 
+  /**
+   * Maps the offsets of the window in the document to the offsets in the CAS of the called engine
+   * and back. The text of the new CAS consists of the visible basic annotations of the window.
+   * Offsets that are no boundary of a basic annotation are approximated by the next boundary.
+   */
+  private static class OffsetMapping {
+
+    private final int oldOffset;
+
+    private final int[] old2newBegin;
+
+    private final int[] old2newEnd;
+
+    private final int[] new2oldBegin;
+
+    private final int[] new2oldEnd;
+
+    public OffsetMapping(int windowBegin, int windowEnd) {
+      super();
+      int length = Math.max(0, windowEnd - windowBegin) + 1;
+      oldOffset = windowBegin;
+      old2newBegin = newArray(length);
+      old2newEnd = newArray(length);
+      // the new document is never longer than the window
+      new2oldBegin = newArray(length);
+      new2oldEnd = newArray(length);
+    }
+
+    private static int[] newArray(int length) {
+      int[] result = new int[length];
+      Arrays.fill(result, -1);
+      return result;
+    }
+
+    public void add(int oldBegin, int oldEnd, int newBegin, int newEnd) {
+      old2newBegin[oldBegin - oldOffset] = newBegin;
+      old2newEnd[oldEnd - oldOffset] = newEnd;
+      new2oldBegin[newBegin] = oldBegin;
+      new2oldEnd[newEnd] = oldEnd;
+    }
+
+    public int[] toNew(int begin, int end) {
+      return map(begin - oldOffset, end - oldOffset, old2newBegin, old2newEnd);
+    }
+
+    public int[] toOld(int begin, int end) {
+      return map(begin, end, new2oldBegin, new2oldEnd);
+    }
+
+    private static int[] map(int begin, int end, int[] beginMap, int[] endMap) {
+      int beginNew = get(beginMap, begin);
+      int endNew = get(endMap, end);
+      if (endNew < 0 && beginNew >= 0) {
+        endNew = beginNew + end - begin;
+      } else if (endNew >= 0 && beginNew < 0) {
+        beginNew = endNew - (end - begin);
+      } else if (endNew < 0 && beginNew < 0) {
+        int index = begin;
+        int deltaBefore = 0;
+        int valueBegin = -1;
+        while (valueBegin < 0 && index < beginMap.length) {
+          valueBegin = get(beginMap, ++index);
+          deltaBefore++;
+        }
+        index = end;
+        int deltaAfter = 0;
+        int valueEnd = -1;
+        while (valueEnd < 0 && index > 0) {
+          valueEnd = get(endMap, --index);
+          deltaAfter++;
+        }
+        if (valueBegin < 0 || valueEnd < 0) {
+          return null;
+        }
+        beginNew = valueBegin - deltaBefore;
+        endNew = valueEnd + deltaAfter;
+      }
+      return new int[] { beginNew, endNew };
+    }
+
+    private static int get(int[] map, int index) {
+      if (index < 0 || index >= map.length) {
+        return -1;
+      }
+      return map[index];
+    }
+  }
+
 }
@@ -93,6 +93,8 @@ public class ExecAction extends CallAction {
       }
     }
     targetEngine.process(cas);
+    // the engine does not inform the stream about its changes
+    stream.markAllModified();
 
     if (typeList != null && view == null) {
       List<Type> list = typeList.getList(context, stream);
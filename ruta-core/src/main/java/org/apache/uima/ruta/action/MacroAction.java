@@ -21,12 +21,10 @@ package org.apache.uima.ruta.action;
 
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
-import org.apache.uima.ruta.RutaEnvironment;
+import org.apache.uima.ruta.MacroArguments;
 import org.apache.uima.ruta.RutaStream;
-import org.apache.uima.ruta.block.RutaBlock;
 import org.apache.uima.ruta.expression.IRutaExpression;
 import org.apache.uima.ruta.rule.MatchContext;
 import org.apache.uima.ruta.visitor.InferenceCrowd;
@@ -39,63 +37,29 @@ public class MacroAction extends AbstractRutaAction {
 
   private final List<AbstractRutaAction> actions;
 
-  private final Set<String> vars;
-
   private final List<IRutaExpression> arguments;
 
+  private final MacroArguments macroArguments;
+
   public MacroAction(String name, Map<String, String> definition, List<AbstractRutaAction> actions,
           Set<String> vars, List<IRutaExpression> arguments) {
     super();
     this.name = name;
     this.definition = definition;
     this.actions = actions;
-    this.vars = vars;
     this.arguments = arguments;
+    this.macroArguments = new MacroArguments(definition, vars, arguments);
   }
 
   @Override
   public void execute(MatchContext context, RutaStream stream, InferenceCrowd crowd) {
-    prepareEnvironment(context, stream);
+    macroArguments.bind(context, stream);
     for (AbstractRutaAction eachAction : actions) {
       crowd.beginVisit(eachAction, null);
       eachAction.execute(context, stream, crowd);
       crowd.endVisit(eachAction, null);
     }
-    cleanupEnvironment(context, stream);
-  }
-
-  private void prepareEnvironment(MatchContext context, RutaStream stream) {
-    RutaBlock parent = context.getParent();
-    RutaEnvironment environment = parent.getEnvironment();
-    Set<Entry<String, String>> entrySet = definition.entrySet();
-    int index = 0;
-    for (Entry<String, String> entry : entrySet) {
-      String name = entry.getKey();
-      String type = entry.getValue();
-      IRutaExpression expression = arguments.get(index);
-      if (!vars.contains(name)) {
-        environment.addVariable(name, type);
-        stream.assignVariable(name, expression, context);
-      } else {
-        String var = environment.getVariableNameOfExpression(expression);
-        environment.addAliasVariable(name, var);
-      }
-      index++;
-    }
-  }
-
-  private void cleanupEnvironment(MatchContext context, RutaStream stream) {
-    RutaBlock parent = context.getParent();
-    RutaEnvironment environment = parent.getEnvironment();
-    Set<Entry<String, String>> entrySet = definition.entrySet();
-    for (Entry<String, String> entry : entrySet) {
-      String name = entry.getKey();
-      if (!vars.contains(name)) {
-        environment.removeVariable(name);
-      } else {
-        environment.removeAliasVariable(name);
-      }
-    }
+    macroArguments.unbind(context);
   }
 
   public String getName() {
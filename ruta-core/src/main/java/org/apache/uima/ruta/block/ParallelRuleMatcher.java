@@ -0,0 +1,508 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.FilterManager;
+import org.apache.uima.ruta.RutaProcessRuntimeException;
+import org.apache.uima.ruta.RutaStatement;
+import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.action.AbstractRutaAction;
+import org.apache.uima.ruta.action.ImplicitMarkAction;
+import org.apache.uima.ruta.action.MarkAction;
+import org.apache.uima.ruta.action.TypeSensitiveAction;
+import org.apache.uima.ruta.condition.AbstractRutaCondition;
+import org.apache.uima.ruta.condition.AfterCondition;
+import org.apache.uima.ruta.condition.AndCondition;
+import org.apache.uima.ruta.condition.BeforeCondition;
+import org.apache.uima.ruta.condition.ComposedRutaCondition;
+import org.apache.uima.ruta.condition.ContainsCondition;
+import org.apache.uima.ruta.condition.EndsWithCondition;
+import org.apache.uima.ruta.condition.IsCondition;
+import org.apache.uima.ruta.condition.NearCondition;
+import org.apache.uima.ruta.condition.NotCondition;
+import org.apache.uima.ruta.condition.OrCondition;
+import org.apache.uima.ruta.condition.PartOfCondition;
+import org.apache.uima.ruta.condition.PartOfNeqCondition;
+import org.apache.uima.ruta.condition.StartsWithCondition;
+import org.apache.uima.ruta.condition.TypeSentiveCondition;
+import org.apache.uima.ruta.expression.AnnotationTypeExpression;
+import org.apache.uima.ruta.expression.IRutaExpression;
+import org.apache.uima.ruta.expression.bool.BooleanVariableExpression;
+import org.apache.uima.ruta.expression.bool.SimpleBooleanExpression;
+import org.apache.uima.ruta.expression.number.INumberExpression;
+import org.apache.uima.ruta.expression.number.NumberVariableExpression;
+import org.apache.uima.ruta.expression.number.SimpleNumberExpression;
+import org.apache.uima.ruta.expression.string.SimpleStringExpression;
+import org.apache.uima.ruta.expression.string.StringVariableExpression;
+import org.apache.uima.ruta.expression.type.AbstractTypeListExpression;
+import org.apache.uima.ruta.expression.type.ITypeExpression;
+import org.apache.uima.ruta.expression.type.SimpleTypeExpression;
+import org.apache.uima.ruta.expression.type.SimpleTypeListExpression;
+import org.apache.uima.ruta.rule.ComposedRuleElement;
+import org.apache.uima.ruta.rule.MatchContext;
+import org.apache.uima.ruta.rule.RuleApply;
+import org.apache.uima.ruta.rule.RuleElement;
+import org.apache.uima.ruta.rule.RutaAnnotationTypeMatcher;
+import org.apache.uima.ruta.rule.RutaLiteralMatcher;
+import org.apache.uima.ruta.rule.RutaMatcher;
+import org.apache.uima.ruta.rule.RutaRule;
+import org.apache.uima.ruta.rule.RutaRuleElement;
+import org.apache.uima.ruta.rule.quantifier.NormalQuantifier;
+import org.apache.uima.ruta.visitor.InferenceCrowd;
+
+/**
+ * Applies the statements of a block and matches consecutive independent rules in parallel. A rule
+ * is independent if it only creates annotations and if the types it reads are neither created by
+ * itself nor by the preceding rules of its group. The types are derived from the matchers, the
+ * conditions and the actions of the rule, which are restricted to those known to only read the
+ * given types. The rules of a group are matched concurrently on copies of the stream while the
+ * document is not modified. Afterwards, their actions are executed sequentially in the order of
+ * the rules, which yields the same result as applying the rules one after the other.
+ * 
+ * The CAS is not thread-safe for writing. Therefore, only rules are matched in parallel that do
+ * not create any feature structures while matching: wildcards, composed rule elements and
+ * quantifiers combine several annotations in new ones and are not supported, and the frame of a
+ * window is created in advance by {@link RutaStream#getWindowStream(AnnotationFS, Type)}. The
+ * result of the analysis of a rule is stored in the rule for the current type system and
+ * filtering settings.
+ * 
+ * All other statements are applied sequentially as usual and separate the groups. The statements
+ * are applied sequentially if the stream has no executor, if there are inference visitors or if
+ * the time of the document or of the rules is limited.
+ */
+public class ParallelRuleMatcher {
+
+  private static final Set<Class<?>> READING_CONDITIONS = new HashSet<Class<?>>(
+          Arrays.<Class<?>> asList(AfterCondition.class, BeforeCondition.class,
+                  ContainsCondition.class, EndsWithCondition.class, IsCondition.class,
+                  NearCondition.class, PartOfCondition.class, PartOfNeqCondition.class,
+                  StartsWithCondition.class));
+
+  private static final Set<Class<?>> COMPOSED_CONDITIONS = new HashSet<Class<?>>(
+          Arrays.<Class<?>> asList(AndCondition.class, NotCondition.class, OrCondition.class));
+
+  /**
+   * The types read and created by one or several rules.
+   */
+  public static class TypeAccess {
+
+    private final Collection<Type> reads = new ArrayList<Type>();
+
+    private final Collection<Type> writes = new ArrayList<Type>();
+
+    /**
+     * @return true if an annotation of one of the given types is visible to the rule
+     */
+    public boolean reads(Collection<Type> types, TypeSystem typeSystem) {
+      for (Type each : types) {
+        for (Type read : reads) {
+          if (typeSystem.subsumes(read, each)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+
+    /**
+     * @return the modification epochs of the types the matches of the rules depend on
+     */
+    public long[] getEpochs(RutaStream stream) {
+      long[] result = new long[reads.size() + 1];
+      int i = 0;
+      for (Type each : reads) {
+        result[i++] = stream.getModificationEpoch(each);
+      }
+      // split basic annotations change the positions of all rules
+      result[i] = stream.getModificationEpoch(stream.getBasicType());
+      return result;
+    }
+
+    public Collection<Type> getWrites() {
+      return writes;
+    }
+
+  }
+
+  private ParallelRuleMatcher() {
+    super();
+  }
+
+  /**
+   * Applies the given statements on the stream.
+   * 
+   * @param statements
+   *          the statements of the block, which may contain null
+   * @param stream
+   *          the stream of the current window
+   * @param crowd
+   *          the inference visitors
+   */
+  public static void apply(List<RutaStatement> statements, RutaStream stream,
+          InferenceCrowd crowd) {
+    ExecutorService executor = stream.getMatchingExecutor();
+    if (executor == null || !crowd.isEmpty() || stream.getTimeBudget().isLimited()) {
+      for (RutaStatement each : statements) {
+        if (each != null) {
+          each.apply(stream, crowd);
+        }
+      }
+      return;
+    }
+
+    TypeSystem typeSystem = stream.getCas().getTypeSystem();
+    List<RutaRule> rules = new ArrayList<RutaRule>();
+    List<TypeAccess> accesses = new ArrayList<TypeAccess>();
+    Collection<Type> writes = new ArrayList<Type>();
+    for (RutaStatement each : statements) {
+      if (each == null) {
+        continue;
+      }
+      TypeAccess access = each instanceof RutaRule ? getTypeAccess((RutaRule) each, stream) : null;
+      if (access != null && !access.reads(writes, typeSystem)) {
+        rules.add((RutaRule) each);
+        accesses.add(access);
+        writes.addAll(access.writes);
+        continue;
+      }
+      applyGroup(rules, accesses, stream, crowd, executor);
+      rules.clear();
+      accesses.clear();
+      writes.clear();
+      if (access != null) {
+        rules.add((RutaRule) each);
+        accesses.add(access);
+        writes.addAll(access.writes);
+      } else {
+        each.apply(stream, crowd);
+      }
+    }
+    applyGroup(rules, accesses, stream, crowd, executor);
+  }
+
+  private static void applyGroup(List<RutaRule> rules, List<TypeAccess> accesses,
+          RutaStream stream, InferenceCrowd crowd, ExecutorService executor) {
+    if (rules.size() < 2) {
+      for (RutaRule each : rules) {
+        each.apply(stream, crowd);
+      }
+      return;
+    }
+
+    // the copies share the feature structures created in advance
+    stream.prepareParallelMatching();
+    List<long[]> epochs = new ArrayList<long[]>(rules.size());
+    List<Future<RuleApply>> futures = new ArrayList<Future<RuleApply>>(rules.size());
+    for (int i = 0; i < rules.size(); i++) {
+      epochs.add(accesses.get(i).getEpochs(stream));
+      final RutaRule rule = rules.get(i);
+      // each rule needs its own iterators
+      final RutaStream copy = (RutaStream) stream.copy();
+      futures.add(executor.submit(new Callable<RuleApply>() {
+        @Override
+        public RuleApply call() throws Exception {
+          return rule.findMatches(copy);
+        }
+      }));
+    }
+
+    // wait for all rules before the document is modified again
+    List<RuleApply> applies = new ArrayList<RuleApply>(rules.size());
+    Throwable failure = null;
+    for (Future<RuleApply> each : futures) {
+      try {
+        applies.add(each.get());
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RutaProcessRuntimeException(e);
+      }
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    } else if (failure != null) {
+      throw new RutaProcessRuntimeException(failure);
+    }
+
+    for (int i = 0; i < rules.size(); i++) {
+      RutaRule rule = rules.get(i);
+      if (Arrays.equals(epochs.get(i), accesses.get(i).getEpochs(stream))) {
+        rule.applyDeferred(applies.get(i), stream, crowd);
+      } else {
+        // the actions of the preceding rules changed what the rule can match
+        rule.apply(stream, crowd);
+      }
+    }
+  }
+
+  /**
+   * @param statements
+   *          the statements of a block, which may contain null
+   * @param stream
+   *          the stream of the current window
+   * @return the types read and created by all statements, or null if one of them is not a rule
+   *         that can be matched in parallel
+   */
+  public static TypeAccess getTypeAccess(List<RutaStatement> statements, RutaStream stream) {
+    TypeAccess result = new TypeAccess();
+    for (RutaStatement each : statements) {
+      if (each == null) {
+        continue;
+      }
+      TypeAccess access = each instanceof RutaRule ? getTypeAccess((RutaRule) each, stream) : null;
+      if (access == null) {
+        return null;
+      }
+      result.reads.addAll(access.reads);
+      result.writes.addAll(access.writes);
+    }
+    return result;
+  }
+
+  /**
+   * @return the types read and created by the rule, or null if the rule cannot be matched in
+   *         parallel
+   */
+  private static TypeAccess getTypeAccess(RutaRule rule, RutaStream stream) {
+    // greedy settings combine the annotations of a match in new annotations
+    if (stream.isGreedyRule() || stream.isGreedyRuleElement()) {
+      return null;
+    }
+    FilterManager filter = stream.getFilter();
+    Collection<Type> retainTypes = filter.getCurrentRetainTypes();
+    List<Object> key = Arrays.<Object> asList(stream.getCas().getTypeSystem(),
+            filter.getCurrentHiddenTypes(),
+            retainTypes == null ? null : new HashSet<Type>(retainTypes));
+    Map<List<Object>, TypeAccess> typeAccesses = rule.getTypeAccesses();
+    if (typeAccesses.containsKey(key)) {
+      return typeAccesses.get(key);
+    }
+    TypeAccess access = createTypeAccess(rule, stream);
+    typeAccesses.put(key, access);
+    return access;
+  }
+
+  private static TypeAccess createTypeAccess(RutaRule rule, RutaStream stream) {
+    if (rule.hasLabels()) {
+      return null;
+    }
+    TypeAccess access = new TypeAccess();
+    if (!addElement(rule.getRoot(), access, stream)) {
+      return null;
+    }
+    FilterManager filter = stream.getFilter();
+    TypeSystem typeSystem = stream.getCas().getTypeSystem();
+    // created annotations must neither be visible to the rule nor change the visibility
+    Collection<Type> visibility = new ArrayList<Type>();
+    if (filter.getCurrentHiddenTypes() != null) {
+      visibility.addAll(filter.getCurrentHiddenTypes());
+    }
+    if (filter.getCurrentRetainTypes() != null) {
+      visibility.addAll(filter.getCurrentRetainTypes());
+    }
+    visibility.remove(null);
+    access.reads.addAll(visibility);
+    if (access.reads(access.writes, typeSystem)) {
+      return null;
+    }
+    return access;
+  }
+
+  private static boolean addElement(RuleElement element, TypeAccess access, RutaStream stream) {
+    if (!StringUtils.isBlank(element.getLabel())
+            || !isEmpty(element.getInlinedConditionRuleBlocks())
+            || !isEmpty(element.getInlinedActionRuleBlocks())) {
+      return false;
+    }
+    if (element.getQuantifier().getClass() != NormalQuantifier.class) {
+      return false;
+    }
+    MatchContext context = new MatchContext(element.getParent());
+    Class<?> elementClass = element.getClass();
+    if (elementClass == RutaRuleElement.class) {
+      RutaMatcher matcher = ((RutaRuleElement) element).getMatcher();
+      if (matcher instanceof RutaAnnotationTypeMatcher) {
+        Type type = getPlainType((ITypeExpression) matcher.getExpression(), context, stream);
+        if (type == null) {
+          return false;
+        }
+        access.reads.add(type);
+      } else if (!(matcher instanceof RutaLiteralMatcher)
+              || !(matcher.getExpression() instanceof SimpleStringExpression
+                      || matcher.getExpression() instanceof StringVariableExpression)) {
+        return false;
+      }
+    } else if (elementClass == ComposedRuleElement.class && element.getContainer() == null
+            && element.getConditions().isEmpty()) {
+      // only the root of the rule, which does not need an annotation without conditions
+      for (RuleElement each : ((ComposedRuleElement) element).getRuleElements()) {
+        if (!addElement(each, access, stream)) {
+          return false;
+        }
+      }
+    } else {
+      return false;
+    }
+
+    for (AbstractRutaCondition each : element.getConditions()) {
+      if (!addCondition(each, context, access, stream)) {
+        return false;
+      }
+    }
+    for (AbstractRutaAction each : element.getActions()) {
+      if (!addAction(each, context, access, stream)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean addCondition(AbstractRutaCondition condition, MatchContext context,
+          TypeAccess access, RutaStream stream) {
+    if (COMPOSED_CONDITIONS.contains(condition.getClass())) {
+      for (AbstractRutaCondition each : ((ComposedRutaCondition) condition).getConditions()) {
+        if (!addCondition(each, context, access, stream)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (!READING_CONDITIONS.contains(condition.getClass())) {
+      return false;
+    }
+    if (condition instanceof ContainsCondition) {
+      ContainsCondition contains = (ContainsCondition) condition;
+      if (!isPlainValue(contains.getMin()) || !isPlainValue(contains.getMax())
+              || !isPlainValue(contains.getPercent())) {
+        return false;
+      }
+    } else if (condition instanceof NearCondition) {
+      NearCondition near = (NearCondition) condition;
+      if (!isPlainValue(near.getMin()) || !isPlainValue(near.getMax())
+              || !isPlainValue(near.getForward()) || !isPlainValue(near.getFiltered())) {
+        return false;
+      }
+    }
+    TypeSentiveCondition typeCondition = (TypeSentiveCondition) condition;
+    if (typeCondition.getType() != null) {
+      Type type = getPlainType(typeCondition.getType(), context, stream);
+      if (type == null) {
+        return false;
+      }
+      access.reads.add(type);
+      return true;
+    }
+    AbstractTypeListExpression list = typeCondition.getList();
+    if (!(list instanceof SimpleTypeListExpression)) {
+      return false;
+    }
+    List<Type> types = list.getTypeList(context, stream);
+    if (types == null || types.contains(null)) {
+      return false;
+    }
+    access.reads.addAll(types);
+    return true;
+  }
+
+  private static boolean addAction(AbstractRutaAction action, MatchContext context,
+          TypeAccess access, RutaStream stream) {
+    if (!StringUtils.isBlank(action.getLabel())) {
+      return false;
+    }
+    if (action.getClass() == MarkAction.class) {
+      MarkAction mark = (MarkAction) action;
+      if (mark.getScore() != null) {
+        return false;
+      }
+      if (mark.getList() != null) {
+        for (INumberExpression each : mark.getList()) {
+          if (!(each instanceof SimpleNumberExpression)) {
+            return false;
+          }
+        }
+      }
+    } else if (action.getClass() != ImplicitMarkAction.class) {
+      return false;
+    }
+    Type type = getPlainType(((TypeSensitiveAction) action).getType(), context, stream);
+    if (type == null) {
+      return false;
+    }
+    access.writes.add(type);
+    return true;
+  }
+
+  /**
+   * @return the type of the expression, or null if the expression refers to variables,
+   *         annotations or features, whose values may change
+   */
+  private static Type getPlainType(ITypeExpression expression, MatchContext context,
+          RutaStream stream) {
+    if (expression instanceof AnnotationTypeExpression) {
+      AnnotationTypeExpression annotationType = (AnnotationTypeExpression) expression;
+      // also resolves the reference of the expression
+      Type type = annotationType.getType(context, stream);
+      if (annotationType.getFeatureExpression() != null
+              || annotationType.getAnnotationExpression() != null
+              || annotationType.getAnnotationListExpression() != null
+              || annotationType.getTypeListExpression() != null
+              || getPlainType(annotationType.getTypeExpression(), context, stream) == null) {
+        return null;
+      }
+      return type;
+    } else if (expression instanceof SimpleTypeExpression) {
+      return expression.getType(context, stream);
+    }
+    return null;
+  }
+
+  private static boolean isPlainValue(IRutaExpression expression) {
+    return expression == null || expression instanceof SimpleNumberExpression
+            || expression instanceof NumberVariableExpression
+            || expression instanceof SimpleBooleanExpression
+            || expression instanceof BooleanVariableExpression;
+  }
+
+  private static boolean isEmpty(List<List<RutaStatement>> blocks) {
+    return blocks == null || blocks.isEmpty();
+  }
+
+}
@@ -62,11 +62,7 @@ public class RutaScriptBlock extends RutaBlock {
         Type type = ((RutaRuleElement) rule.getRuleElements().get(0)).getMatcher()
                 .getType(getParent() == null ? this : getParent(), stream);
         RutaStream window = stream.getWindowStream(each, type);
-        for (RutaStatement element : getElements()) {
-          if (element != null) {
-            element.apply(window, crowd);
-          }
-        }
+        ParallelRuleMatcher.apply(getElements(), window, crowd);
       }
     }
     crowd.endVisit(this, result);
@@ -27,6 +27,7 @@ import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.TypeCountIndex;
 import org.apache.uima.ruta.expression.IRutaExpression;
 import org.apache.uima.ruta.expression.annotation.IAnnotationExpression;
 import org.apache.uima.ruta.expression.annotation.IAnnotationListExpression;
@@ -101,16 +102,32 @@ public class ContainsCondition extends TypeSentiveCondition {
           boolean annotationExsits = checkExistingAnnotation(t, annotation, stream);
           return new EvaluatedCondition(this, annotationExsits);
         } else {
-          List<RutaBasic> annotations = stream.getBasicsInWindow(annotation);
-          for (RutaBasic each : annotations) {
-            totalCount++;
-            if (each.beginsWith(t) || stream.getCas().getTypeSystem().subsumes(t, each.getType())) {
-              Collection<AnnotationFS> beginAnchors = each.getBeginAnchors(t);
-              anchorCount = incrementAnchorsWithinStrictBoundaries(annotation, anchorCount,
-                      beginAnchors);
-              basicCount++;
-            } else if (each.isPartOf(t)) {
-              basicCount++;
+          TypeCountIndex countIndex = stream.getCountIndex();
+          boolean counted = false;
+          if (countIndex != null && usePercentage) {
+            totalCount = countIndex.getVisibleBasicCount(annotation, stream);
+            basicCount = countIndex.getCoveredBasicCount(annotation, t, stream);
+            counted = totalCount >= 0 && basicCount >= 0;
+          } else if (countIndex != null) {
+            anchorCount = countIndex.getVisibleContainedCount(annotation, t, stream);
+            counted = anchorCount >= 0;
+          }
+          if (!counted) {
+            totalCount = 0;
+            basicCount = 0;
+            anchorCount = 0;
+            List<RutaBasic> annotations = stream.getBasicsInWindow(annotation);
+            for (RutaBasic each : annotations) {
+              totalCount++;
+              if (each.beginsWith(t)
+                      || stream.getCas().getTypeSystem().subsumes(t, each.getType())) {
+                Collection<AnnotationFS> beginAnchors = each.getBeginAnchors(t);
+                anchorCount = incrementAnchorsWithinStrictBoundaries(annotation, anchorCount,
+                        beginAnchors);
+                basicCount++;
+              } else if (each.isPartOf(t)) {
+                basicCount++;
+              }
             }
           }
         }
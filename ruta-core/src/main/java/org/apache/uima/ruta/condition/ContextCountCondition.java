@@ -20,12 +20,19 @@
 package org.apache.uima.ruta.condition;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.FilterManager;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.StreamCache;
+import org.apache.uima.ruta.engine.RutaEngine;
 import org.apache.uima.ruta.expression.number.INumberExpression;
 import org.apache.uima.ruta.expression.number.SimpleNumberExpression;
 import org.apache.uima.ruta.expression.type.ITypeExpression;
@@ -43,12 +50,18 @@ public class ContextCountCondition extends TypeSentiveCondition {
 
   private final String var;
 
+  private final StreamCache<List<Object>, List<AnnotationFS>> contextCache;
+
+  private final StreamCache<List<Object>, Map<Long, Integer>> indexCache;
+
   public ContextCountCondition(ITypeExpression type, INumberExpression min, INumberExpression max,
           String var) {
     super(type);
     this.min = min == null ? new SimpleNumberExpression(Integer.MIN_VALUE) : min;
     this.max = max == null ? new SimpleNumberExpression(Integer.MAX_VALUE) : max;
     this.var = var;
+    this.contextCache = new StreamCache<List<Object>, List<AnnotationFS>>();
+    this.indexCache = new StreamCache<List<Object>, Map<Long, Integer>>();
   }
 
   @Override
@@ -62,20 +75,17 @@ public class ContextCountCondition extends TypeSentiveCondition {
       return new EvaluatedCondition(this, false);
     }
 
-    stream.moveToFirst();
-    List<AnnotationFS> visibleContexts = new ArrayList<AnnotationFS>();
-    while (stream.isValid()) {
-      RutaBasic each = (RutaBasic) stream.get();
-      if (each.beginsWith(contextType)) {
-        visibleContexts.addAll(each.getBeginAnchors(contextType));
-      }
-      stream.moveToNext();
-    }
+    List<AnnotationFS> visibleContexts = getVisibleContexts(contextType, stream);
     List<AnnotationFS> overlappingContexts = new ArrayList<AnnotationFS>();
-    for (AnnotationFS eachContext : visibleContexts) {
-      if (annotation != null && eachContext.getBegin() <= annotation.getBegin()
-              && eachContext.getEnd() >= annotation.getEnd()) {
-        overlappingContexts.add(eachContext);
+    if (annotation != null) {
+      for (AnnotationFS eachContext : visibleContexts) {
+        if (eachContext.getBegin() > annotation.getBegin()) {
+          // the contexts are sorted by their begin
+          break;
+        }
+        if (eachContext.getEnd() >= annotation.getEnd()) {
+          overlappingContexts.add(eachContext);
+        }
       }
     }
 
@@ -83,22 +93,11 @@ public class ContextCountCondition extends TypeSentiveCondition {
 
     for (AnnotationFS eachContext : overlappingContexts) {
       int index = 0;
-      int counter = 0;
-
       if (annotation != null) {
-        List<RutaBasic> basicsInWindow = stream.getBasicsInWindow(eachContext);
-        for (RutaBasic eachBasic : basicsInWindow) {
-          Collection<AnnotationFS> beginAnchors = eachBasic.getBeginAnchors(annotation.getType());
-          if (beginAnchors != null) {
-            for (AnnotationFS each : beginAnchors) {
-              counter++;
-              if (each.getBegin() == annotation.getBegin() && each.getEnd() == annotation.getEnd()
-                      && (each.getType().equals(annotation.getType()) || stream.getCas()
-                              .getTypeSystem().subsumes(annotation.getType(), each.getType()))) {
-                index = counter;
-              }
-            }
-          }
+        Integer indexInContext = getIndexes(eachContext, annotation.getType(), stream)
+                .get(getOffsetKey(annotation));
+        if (indexInContext != null) {
+          index = indexInContext;
         }
       }
 
@@ -116,6 +115,72 @@ public class ContextCountCondition extends TypeSentiveCondition {
     return new EvaluatedCondition(this, result);
   }
 
+  private List<AnnotationFS> getVisibleContexts(Type contextType, RutaStream stream) {
+    FilterManager filter = stream.getFilter();
+    List<Object> key = Arrays.<Object> asList(contextType, filter.getWindowAnnotation(),
+            new HashSet<Type>(filter.getCurrentHiddenTypes()));
+    List<AnnotationFS> visibleContexts = contextCache.get(key, stream);
+    if (visibleContexts != null) {
+      return visibleContexts;
+    }
+
+    stream.moveToFirst();
+    visibleContexts = new ArrayList<AnnotationFS>();
+    while (stream.isValid()) {
+      RutaBasic each = (RutaBasic) stream.get();
+      if (each.beginsWith(contextType)) {
+        visibleContexts.addAll(each.getBeginAnchors(contextType));
+      }
+      stream.moveToNext();
+    }
+
+    // the visibility depends on the basics and on the annotations of the hidden types
+    List<Type> dependencies = new ArrayList<Type>(filter.getCurrentHiddenTypes());
+    dependencies.add(contextType);
+    dependencies.add(stream.getCas().getTypeSystem().getType(RutaEngine.BASIC_TYPE));
+    contextCache.put(key, visibleContexts, stream, dependencies.toArray(new Type[0]));
+    return visibleContexts;
+  }
+
+  /**
+   * @return the index of the last annotation of the given type with the same offsets, counted
+   *         over all annotations of the type beginning in the context
+   */
+  private Map<Long, Integer> getIndexes(AnnotationFS context, Type type, RutaStream stream) {
+    FilterManager filter = stream.getFilter();
+    List<Object> key = Arrays.<Object> asList(context, type,
+            new HashSet<Type>(filter.getCurrentHiddenTypes()));
+    Map<Long, Integer> indexes = indexCache.get(key, stream);
+    if (indexes != null) {
+      return indexes;
+    }
+
+    indexes = new HashMap<Long, Integer>();
+    int counter = 0;
+    List<RutaBasic> basicsInWindow = stream.getBasicsInWindow(context);
+    for (RutaBasic eachBasic : basicsInWindow) {
+      Collection<AnnotationFS> beginAnchors = eachBasic.getBeginAnchors(type);
+      if (beginAnchors != null) {
+        for (AnnotationFS each : beginAnchors) {
+          counter++;
+          indexes.put(getOffsetKey(each), counter);
+        }
+      }
+    }
+
+    // only visible basics are counted
+    List<Type> dependencies = new ArrayList<Type>(filter.getCurrentHiddenTypes());
+    dependencies.add(type);
+    dependencies.add(context.getType());
+    dependencies.add(stream.getCas().getTypeSystem().getType(RutaEngine.BASIC_TYPE));
+    indexCache.put(key, indexes, stream, dependencies.toArray(new Type[0]));
+    return indexes;
+  }
+
+  private static Long getOffsetKey(AnnotationFS annotation) {
+    return ((long) annotation.getBegin() << 32) | annotation.getEnd();
+  }
+
   public INumberExpression getMin() {
     return min;
   }
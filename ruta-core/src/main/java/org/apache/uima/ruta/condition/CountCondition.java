@@ -25,6 +25,7 @@ import java.util.List;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.TypeCountIndex;
 import org.apache.uima.ruta.expression.IRutaExpression;
 import org.apache.uima.ruta.expression.bool.AbstractBooleanListExpression;
 import org.apache.uima.ruta.expression.bool.IBooleanExpression;
@@ -83,8 +84,15 @@ public class CountCondition extends TypeSentiveCondition {
         return new EvaluatedCondition(this, false);
       }
 
-      List<AnnotationFS> annotationsInWindow = stream.getAnnotationsInWindow(annotation, t);
-      int count = annotationsInWindow.size();
+      int count = -1;
+      TypeCountIndex countIndex = stream.getCountIndex();
+      if (countIndex != null && annotation != null) {
+        count = countIndex.getContainedCount(annotation, t, stream);
+      }
+      if (count < 0) {
+        List<AnnotationFS> annotationsInWindow = stream.getAnnotationsInWindow(annotation, t);
+        count = annotationsInWindow.size();
+      }
       if (var != null) {
         element.getParent().getEnvironment().setVariableValue(var, count);
       }
@@ -22,12 +22,10 @@ package org.apache.uima.ruta.condition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
-import org.apache.uima.ruta.RutaEnvironment;
+import org.apache.uima.ruta.MacroArguments;
 import org.apache.uima.ruta.RutaStream;
-import org.apache.uima.ruta.block.RutaBlock;
 import org.apache.uima.ruta.expression.IRutaExpression;
 import org.apache.uima.ruta.rule.EvaluatedCondition;
 import org.apache.uima.ruta.rule.MatchContext;
@@ -41,10 +39,10 @@ public class MacroCondition extends AbstractRutaCondition {
 
   private final List<AbstractRutaCondition> conditions;
 
-  private final Set<String> vars;
-
   private final List<IRutaExpression> arguments;
 
+  private final MacroArguments macroArguments;
+
   public MacroCondition(String name, Map<String, String> definition,
           List<AbstractRutaCondition> conditions, Set<String> vars,
           List<IRutaExpression> arguments) {
@@ -52,14 +50,14 @@ public class MacroCondition extends AbstractRutaCondition {
     this.name = name;
     this.definition = definition;
     this.conditions = conditions;
-    this.vars = vars;
     this.arguments = arguments;
+    this.macroArguments = new MacroArguments(definition, vars, arguments);
   }
 
   @Override
   public EvaluatedCondition eval(MatchContext context, RutaStream stream, InferenceCrowd crowd) {
     boolean result = true;
-    prepareEnvironment(context, stream);
+    macroArguments.bind(context, stream);
     List<EvaluatedCondition> evals = new ArrayList<EvaluatedCondition>();
     for (AbstractRutaCondition each : conditions) {
       crowd.beginVisit(each, null);
@@ -68,44 +66,10 @@ public class MacroCondition extends AbstractRutaCondition {
       result &= eval.isValue();
       evals.add(eval);
     }
-    cleanupEnvironment(context, stream);
+    macroArguments.unbind(context);
     return new EvaluatedCondition(this, result, evals);
   }
 
-  private void prepareEnvironment(MatchContext context, RutaStream stream) {
-    RutaBlock parent = context.getParent();
-    RutaEnvironment environment = parent.getEnvironment();
-    Set<Entry<String, String>> entrySet = definition.entrySet();
-    int index = 0;
-    for (Entry<String, String> entry : entrySet) {
-      String name = entry.getKey();
-      String type = entry.getValue();
-      IRutaExpression expression = arguments.get(index);
-      if (!vars.contains(name)) {
-        environment.addVariable(name, type);
-        stream.assignVariable(name, expression, context);
-      } else {
-        String var = environment.getVariableNameOfExpression(expression);
-        environment.addAliasVariable(name, var);
-      }
-      index++;
-    }
-  }
-
-  private void cleanupEnvironment(MatchContext context, RutaStream stream) {
-    RutaBlock parent = context.getParent();
-    RutaEnvironment environment = parent.getEnvironment();
-    Set<Entry<String, String>> entrySet = definition.entrySet();
-    for (Entry<String, String> entry : entrySet) {
-      String name = entry.getKey();
-      if (!vars.contains(name)) {
-        environment.removeVariable(name);
-      } else {
-        environment.removeAliasVariable(name);
-      }
-    }
-  }
-
   public String getName() {
     return name;
   }
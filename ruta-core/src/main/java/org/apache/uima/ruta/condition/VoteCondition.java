@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.TypeCountIndex;
 import org.apache.uima.ruta.expression.type.ITypeExpression;
 import org.apache.uima.ruta.rule.EvaluatedCondition;
 import org.apache.uima.ruta.rule.MatchContext;
@@ -51,13 +52,22 @@ public class VoteCondition extends TerminalRutaCondition {
     Type t2 = type2.getType(context, stream);
 
     if (annotation != null && t1 != null && t2 != null) {
-      List<RutaBasic> annotations = stream.getBasicsInWindow(annotation);
-      for (RutaBasic each : annotations) {
-        if (each.beginsWith(t1)) {
-          count1++;
-        }
-        if (each.beginsWith(t2)) {
-          count2++;
+      TypeCountIndex countIndex = stream.getCountIndex();
+      if (countIndex != null) {
+        count1 = countIndex.getBeginsWithCount(annotation, t1, stream);
+        count2 = countIndex.getBeginsWithCount(annotation, t2, stream);
+      }
+      if (countIndex == null || count1 < 0 || count2 < 0) {
+        count1 = 0;
+        count2 = 0;
+        List<RutaBasic> annotations = stream.getBasicsInWindow(annotation);
+        for (RutaBasic each : annotations) {
+          if (each.beginsWith(t1)) {
+            count1++;
+          }
+          if (each.beginsWith(t2)) {
+            count2++;
+          }
         }
       }
     }
@@ -20,24 +20,32 @@
 package org.apache.uima.ruta.engine;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import org.antlr.runtime.ANTLRInputStream;
 import org.antlr.runtime.ANTLRStringStream;
 import org.antlr.runtime.CharStream;
 import org.antlr.runtime.CommonTokenStream;
 import org.antlr.runtime.RecognitionException;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.uima.UIMAFramework;
@@ -66,6 +74,8 @@ import org.apache.uima.ruta.RutaEnvironment;
 import org.apache.uima.ruta.RutaModule;
 import org.apache.uima.ruta.RutaScriptFactory;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.RutaTimeBudget;
+import org.apache.uima.ruta.TypeCountIndex;
 import org.apache.uima.ruta.TypeUsageInformation;
 import org.apache.uima.ruta.action.ActionFactory;
 import org.apache.uima.ruta.block.RutaBlock;
@@ -73,6 +83,9 @@ import org.apache.uima.ruta.condition.ConditionFactory;
 import org.apache.uima.ruta.expression.ExpressionFactory;
 import org.apache.uima.ruta.extensions.IRutaExtension;
 import org.apache.uima.ruta.extensions.RutaExternalFactory;
+import org.apache.uima.ruta.metrics.IRutaMetricsRegistry;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
+import org.apache.uima.ruta.metrics.RutaEngineMetrics;
 import org.apache.uima.ruta.parser.RutaLexer;
 import org.apache.uima.ruta.parser.RutaParser;
 import org.apache.uima.ruta.resource.CSVTable;
@@ -82,6 +95,7 @@ import org.apache.uima.ruta.type.RutaBasic;
 import org.apache.uima.ruta.type.TokenSeed;
 import org.apache.uima.ruta.verbalize.RutaVerbalizer;
 import org.apache.uima.ruta.visitor.CreatedByVisitor;
+import org.apache.uima.ruta.visitor.DebugEventWriter;
 import org.apache.uima.ruta.visitor.DebugInfoCollectorVisitor;
 import org.apache.uima.ruta.visitor.InferenceCrowd;
 import org.apache.uima.ruta.visitor.RutaInferenceVisitor;
@@ -290,6 +304,37 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   @ConfigurationParameter(name = PARAM_LOW_MEMORY_PROFILE, mandatory = false, defaultValue = "false")
   private Boolean lowMemoryProfile;
 
+  /**
+   * This parameter specifies whether the conditions CONTAINS, VOTE and COUNT should use cumulative
+   * counts of the queried types over the basic annotations. The counts are computed for each type
+   * when it is queried for the first time and are updated when annotations of the type are added
+   * or removed. This needs additional memory for each queried type, but reduces the effort of a
+   * condition to a few array lookups independent of the size of the window. The default value is
+   * set to false.
+   */
+  public static final String PARAM_TYPE_COUNT_INDEX = "typeCountIndex";
+
+  @ConfigurationParameter(name = PARAM_TYPE_COUNT_INDEX, mandatory = false, defaultValue = "false")
+  private Boolean typeCountIndex;
+
+  /**
+   * This parameter specifies the number of threads used to match the rules of a block. If more
+   * than one thread is given, then consecutive rules that only create annotations of types they do
+   * not match themselves, and that do not match annotations created by the preceding rules, are
+   * matched in parallel. Their actions are executed afterwards in the order of the rules, so that
+   * the result does not change. This applies only to rules with type-based conditions like PARTOF
+   * or CONTAINS and with MARK actions without score, and not to rules with wildcards, composed rule
+   * elements or quantifiers, which create annotations while matching. The rules are matched
+   * sequentially if debugging or profiling is active, or if the parameter {@code maxDocumentTime}
+   * or {@code maxRuleTime} is set. The default value is set to 1.
+   */
+  public static final String PARAM_MATCHING_THREADS = "matchingThreads";
+
+  @ConfigurationParameter(name = PARAM_MATCHING_THREADS, mandatory = false, defaultValue = "1")
+  private Integer matchingThreads;
+
+  private ExecutorService matchingExecutor;
+
   /**
    * This parameter specifies whether a different inference strategy for composed rule elements
    * should be applied. This option is only necessary when the composed rule element is expected to
@@ -348,6 +393,30 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   @ConfigurationParameter(name = PARAM_DEBUG_ONLY_FOR, mandatory = false, defaultValue = {})
   private String[] debugOnlyFor;
 
+  /**
+   * An optional file for the debug information. If this parameter is set and the parameter
+   * {@code debug} is set to true, then the debug information of all processed documents is
+   * streamed to this file in a compact binary format instead of being added to the CAS. Only the
+   * matches of the rules given by the parameter {@code debugOnlyFor} are written, if specified,
+   * and only if the parameter {@code debugWithMatches} is set to true. The file can be loaded into
+   * a CAS with <code>org.apache.uima.ruta.visitor.DebugEventReader</code>.
+   */
+  public static final String PARAM_DEBUG_SINK = "debugSink";
+
+  @ConfigurationParameter(name = PARAM_DEBUG_SINK, mandatory = false)
+  private String debugSink;
+
+  /**
+   * If the parameter {@code debugSink} is used, then only every n-th match of a rule is written to
+   * the file. The default value is 1.
+   */
+  public static final String PARAM_DEBUG_SAMPLING = "debugSampling";
+
+  @ConfigurationParameter(name = PARAM_DEBUG_SAMPLING, mandatory = false, defaultValue = "1")
+  private int debugSampling;
+
+  private DebugEventWriter debugEventWriter;
+
   /**
    * If this parameter is set to true, then additional information about the runtime of applied
    * rules is added to the CAS. The default value of this parameter is set to false.
@@ -357,6 +426,23 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   @ConfigurationParameter(name = PARAM_PROFILE, mandatory = false, defaultValue = "false")
   private Boolean profile;
 
+  /**
+   * An optional file for a report of the profile information aggregated over all processed
+   * documents. The report is written when the collection process is completed and when the
+   * analysis engine is destroyed. If the file name ends with <code>.json</code>, then the time of
+   * each block, rule, condition and action is written as JSON, else the self time of each call
+   * path is written as collapsed stacks, which can be rendered as flame graph. This parameter is
+   * only used if the parameter {@code profile} is set to true.
+   */
+  public static final String PARAM_PROFILE_REPORT = "profileReport";
+
+  @ConfigurationParameter(name = PARAM_PROFILE_REPORT, mandatory = false)
+  private String profileReport;
+
+  private TimeProfilerVisitor profiler;
+
+  private int reportedDocuments = 0;
+
   /**
    * If this parameter is set to true, then additional information about the runtime of UIMA Ruta
    * language elements like conditions and actions is added to the CAS. The default value of this
@@ -520,10 +606,98 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
           + Integer.MAX_VALUE)
   private int maxRuleElementMatches;
 
+  /**
+   * Maximum time in milliseconds for applying the rules on a single document. A value of zero or
+   * less disables the limit. What happens if the time is exceeded is specified by the parameter
+   * {@code timeoutPolicy}.
+   */
+  public static final String PARAM_MAX_DOCUMENT_TIME = "maxDocumentTime";
+
+  @ConfigurationParameter(name = PARAM_MAX_DOCUMENT_TIME, mandatory = false, defaultValue = "0")
+  private int maxDocumentTime;
+
+  /**
+   * Maximum time in milliseconds for applying a single rule on a document. A value of zero or less
+   * disables the limit.
+   */
+  public static final String PARAM_MAX_RULE_TIME = "maxRuleTime";
+
+  @ConfigurationParameter(name = PARAM_MAX_RULE_TIME, mandatory = false, defaultValue = "0")
+  private int maxRuleTime;
+
+  /**
+   * Specifies what happens if the parameter {@code maxDocumentTime} or {@code maxRuleTime} is
+   * exceeded: <code>ABORT</code> fails the document with an exception, <code>SKIP_RULE</code>
+   * stops the rule and continues with the next one, and <code>PARTIAL</code> stops applying rules
+   * on the document and keeps the results created so far. Each timeout is logged as a warning.
+   */
+  public static final String PARAM_TIMEOUT_POLICY = "timeoutPolicy";
+
+  @ConfigurationParameter(name = PARAM_TIMEOUT_POLICY, mandatory = false, defaultValue = "ABORT")
+  private String timeoutPolicy;
+
+  /**
+   * If this parameter is set to true, then the parameters {@code maxDocumentTime} and
+   * {@code maxRuleTime} refer to the CPU time of the processing thread instead of the wall-clock
+   * time, if supported by the JVM.
+   */
+  public static final String PARAM_MEASURE_CPU_TIME = "measureCpuTime";
+
+  @ConfigurationParameter(name = PARAM_MEASURE_CPU_TIME, mandatory = false, defaultValue = "false")
+  private boolean measureCpuTime;
+
+  private RutaTimeBudget timeBudget;
+
+  /**
+   * If this parameter is set to true, then runtime metrics like the processing time, the number of
+   * created annotations and the number of tried and applied rules are summed up over all documents
+   * and exposed as JMX MBean with the name
+   * <code>org.apache.uima.ruta:type=RutaEngine,name=...</code>. The name is given by the
+   * parameter {@code metricsName}. The MBean is unregistered when the last analysis engine with
+   * this name is destroyed.
+   */
+  public static final String PARAM_METRICS = "metrics";
+
+  @ConfigurationParameter(name = PARAM_METRICS, mandatory = false, defaultValue = "true")
+  private boolean metrics;
+
+  /**
+   * The name of the JMX MBean with the metrics of this analysis engine. Instances with the same
+   * name share their metrics. If no name is given, then the name of the main script is used.
+   */
+  public static final String PARAM_METRICS_NAME = "metricsName";
+
+  @ConfigurationParameter(name = PARAM_METRICS_NAME, mandatory = false)
+  private String metricsName;
+
+  /**
+   * This parameter specifies optional class names implementing the interface
+   * <code>org.apache.uima.ruta.metrics.IRutaMetricsRegistry</code>, which will be notified with the
+   * metrics of each processed document, e.g., for forwarding them to a monitoring system. The
+   * registries are notified independently of the parameter {@code metrics}.
+   */
+  public static final String PARAM_METRICS_REGISTRIES = "metricsRegistries";
+
+  @ConfigurationParameter(name = PARAM_METRICS_REGISTRIES, mandatory = false, defaultValue = {})
+  private String[] metricsRegistries;
+
+  private List<IRutaMetricsRegistry> registries;
+
+  private RutaEngineMetrics engineMetrics;
+
+  private final RutaDocumentMetrics documentMetrics = new RutaDocumentMetrics();
+
   private UimaContext context;
 
   private RutaModule script;
 
+  /**
+   * The environments of all blocks of the script and its imported scripts, collected once after
+   * the script was initialized, so that they can be reset for each document without walking the
+   * modules again.
+   */
+  private List<RutaEnvironment> environments;
+
   private RutaExternalFactory externalFactory;
 
   private RutaVerbalizer verbalizer;
@@ -544,6 +718,26 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
 
   private RutaResourceLoader descriptorRutaResourceLoader;
 
+  /**
+   * Scripts given by the parameter {@code rules} that were already parsed by this instance. The
+   * cache survives a reconfiguration of the analysis engine so that applications, which switch
+   * between a small set of rule strings, e.g., for testing candidate rules, do not need to parse
+   * the same rules again. The key also contains the configuration used by the parser, since a
+   * module keeps its resources and extensions.
+   */
+  private final Map<List<Object>, RutaModule> compiledRules =
+          new LinkedHashMap<List<Object>, RutaModule>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<List<Object>, RutaModule> eldest) {
+      return size() > MAX_COMPILED_RULES;
+    }
+  };
+
+  private static final int MAX_COMPILED_RULES = 64;
+
   @Override
   public void initialize(UimaContext aContext) throws ResourceInitializationException {
     super.initialize(aContext);
@@ -555,7 +749,28 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
 
     externalFactory = new RutaExternalFactory();
     externalFactory.setContext(aContext);
+    writeProfileReport();
+    profiler = null;
+    closeDebugSink();
+    try {
+      timeBudget = createTimeBudget(maxDocumentTime, maxRuleTime,
+              RutaTimeBudget.Policy.valueOf(timeoutPolicy), measureCpuTime);
+    } catch (IllegalArgumentException e) {
+      throw new ResourceInitializationException(e);
+    }
+    shutdownMatchingExecutor();
+    if (matchingThreads != null && matchingThreads > 1) {
+      matchingExecutor = Executors.newFixedThreadPool(matchingThreads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "ruta-matching");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
     verbalizer = new RutaVerbalizer();
+    initializeMetricsRegistries();
 
     // reinitialize analysis engines if this one is configured
     analysisEnginesAlreadyInitialized = false;
@@ -583,7 +798,23 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
 
   @Override
   public void process(JCas jcas) throws AnalysisEngineProcessException {
+    long start = System.nanoTime();
+    documentMetrics.reset();
+    try {
+      processDocument(jcas);
+    } catch (AnalysisEngineProcessException e) {
+      documentMetrics.setFailed(true);
+      throw e;
+    } catch (RuntimeException e) {
+      documentMetrics.setFailed(true);
+      throw e;
+    } finally {
+      documentMetrics.setProcessTime(System.nanoTime() - start);
+      reportMetrics();
+    }
+  }
 
+  private void processDocument(JCas jcas) throws AnalysisEngineProcessException {
     CAS cas = jcas.getCas();
 
     if (reloadScript || (!initialized && !cas.getViewName().equals(CAS.NAME_DEFAULT_SOFA))) {
@@ -608,13 +839,29 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     stream.setGreedyRule(greedyRule);
     stream.setMaxRuleMatches(maxRuleMatches);
     stream.setMaxRuleElementMatches(maxRuleElementMatches);
+    stream.setTimeBudget(timeBudget);
+    stream.setMetrics(documentMetrics);
+    if (typeCountIndex) {
+      stream.setCountIndex(new TypeCountIndex(emptyIsInvisible));
+    }
+    stream.setMatchingExecutor(matchingExecutor);
+    timeBudget.startDocument();
+    long start = System.nanoTime();
     try {
       script.apply(stream, crowd);
     } catch (Throwable e) {
       throw new AnalysisEngineProcessException(AnalysisEngineProcessException.ANNOTATOR_EXCEPTION,
               new Object[] {}, e);
+    } finally {
+      documentMetrics.setRulesTime(System.nanoTime() - start);
+      documentMetrics.setTimeouts(timeBudget.getTimeouts().size());
+    }
+    for (String each : timeBudget.getTimeouts()) {
+      getLogger().log(Level.WARNING, each);
     }
     crowd.finished(stream);
+    Type basicType = cas.getTypeSystem().getType(BASIC_TYPE);
+    documentMetrics.setBasics(cas.getAnnotationIndex(basicType).size());
 
     if (removeBasics) {
       jcas.removeAllIncludingSubtypes(RutaBasic.type);
@@ -677,29 +924,35 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   }
 
   private void resetEnvironments(CAS cas) {
-    resetEnvironment(script, cas, new HashSet<RutaModule>());
+    if (environments == null) {
+      environments = new ArrayList<RutaEnvironment>();
+      collectEnvironments(script, environments, new HashSet<RutaModule>());
+    }
+    for (RutaEnvironment each : environments) {
+      each.reset(cas);
+    }
   }
 
-  private void resetEnvironment(RutaModule module, CAS cas,
-          Collection<RutaModule> alreadyResetted) {
-    if (alreadyResetted.contains(module)) {
+  private void collectEnvironments(RutaModule module, List<RutaEnvironment> result,
+          Collection<RutaModule> alreadyCollected) {
+    if (alreadyCollected.contains(module)) {
       // avoid loop in recursion
       return;
     }
-    alreadyResetted.add(module);
+    alreadyCollected.add(module);
 
-    // reset all blocks
+    // all blocks
     RutaBlock block = module.getBlock(null);
-    block.getEnvironment().reset(cas);
+    result.add(block.getEnvironment());
     Collection<RutaBlock> blocks = module.getBlocks().values();
     for (RutaBlock each : blocks) {
-      each.getEnvironment().reset(cas);
+      result.add(each.getEnvironment());
     }
 
-    // reset imported scripts
+    // imported scripts
     Collection<RutaModule> scripts = module.getScripts().values();
     for (RutaModule eachModule : scripts) {
-      resetEnvironment(eachModule, cas, alreadyResetted);
+      collectEnvironments(eachModule, result, alreadyCollected);
     }
   }
 
@@ -763,14 +1016,33 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
 
   }
 
-  private InferenceCrowd initializeCrowd() {
+  private InferenceCrowd initializeCrowd() throws AnalysisEngineProcessException {
     List<RutaInferenceVisitor> visitors = new ArrayList<RutaInferenceVisitor>();
-    if (debug) {
+    if (debug && !StringUtils.isBlank(debugSink)) {
+      if (debugEventWriter == null) {
+        try {
+          File file = new File(debugSink);
+          if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+          }
+          debugEventWriter = new DebugEventWriter(new FileOutputStream(file), debugWithMatches,
+                  Arrays.asList(debugOnlyFor), debugSampling, verbalizer);
+        } catch (IOException e) {
+          throw new AnalysisEngineProcessException(e);
+        }
+      }
+      debugEventWriter.startDocument();
+      visitors.add(debugEventWriter);
+    } else if (debug) {
       visitors.add(new DebugInfoCollectorVisitor(debug, debugWithMatches,
               Arrays.asList(debugOnlyFor), verbalizer));
     }
     if (profile) {
-      visitors.add(new TimeProfilerVisitor());
+      if (profiler == null) {
+        profiler = new TimeProfilerVisitor(verbalizer);
+      }
+      profiler.startDocument();
+      visitors.add(profiler);
     }
     if (statistics) {
       visitors.add(new StatisticsVisitor(verbalizer));
@@ -795,6 +1067,42 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     return new InferenceCrowd(visitors);
   }
 
+  private void initializeMetricsRegistries() {
+    releaseEngineMetrics();
+    registries = new ArrayList<IRutaMetricsRegistry>();
+    if (metrics) {
+      String name = metricsName;
+      if (StringUtils.isBlank(name)) {
+        name = StringUtils.isBlank(mainScript) ? "RutaEngine" : mainScript;
+      }
+      engineMetrics = RutaEngineMetrics.getInstance(name);
+      registries.add(engineMetrics);
+    }
+    if (metricsRegistries != null) {
+      for (String eachClassName : metricsRegistries) {
+        try {
+          Class<?> forName = getClassLoader().loadClass(eachClassName);
+          if (IRutaMetricsRegistry.class.isAssignableFrom(forName)) {
+            registries.add((IRutaMetricsRegistry) forName.newInstance());
+          }
+        } catch (Exception e) {
+          getLogger().log(Level.WARNING, "Failed to initialize metrics registry " + eachClassName);
+        }
+      }
+    }
+  }
+
+  private void reportMetrics() {
+    for (IRutaMetricsRegistry each : registries) {
+      try {
+        each.documentProcessed(documentMetrics);
+      } catch (RuntimeException e) {
+        getLogger().log(Level.WARNING, "Failed to report metrics to " + each.getClass().getName(),
+                e);
+      }
+    }
+  }
+
   private RutaStream initializeStream(CAS cas, InferenceCrowd crowd)
           throws AnalysisEngineProcessException {
     Collection<Type> filterTypes = new ArrayList<Type>();
@@ -807,11 +1115,15 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     }
     FilterManager filter = new FilterManager(filterTypes, typeUsageInformation == null, cas);
     Type basicType = typeSystem.getType(BASIC_TYPE);
+    long start = System.nanoTime();
     seedTypes = seedAnnotations(cas);
+    documentMetrics.setSeedingTime(System.nanoTime() - start);
     RutaStream stream = new RutaStream(cas, basicType, filter, lowMemoryProfile,
             simpleGreedyForComposed, emptyIsInvisible, typeUsageInformation, crowd);
 
+    start = System.nanoTime();
     stream.initalizeBasics(reindexOnly, reindexOnlyMentionedTypes);
+    documentMetrics.setBasicsTime(System.nanoTime() - start);
     return stream;
   }
 
@@ -843,9 +1155,10 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   }
 
   private void initializeScript(String viewName) throws AnalysisEngineProcessException {
+    environments = null;
     if (rules != null) {
       try {
-        script = loadScriptByString(rules);
+        script = getCompiledRules(rules);
       } catch (RecognitionException e) {
         throw new AnalysisEngineProcessException(e);
       }
@@ -1125,6 +1438,31 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     }
   }
 
+  /**
+   * Returns the parsed module for the given rules. Modules are only reused if the script is not
+   * reloaded and if neither the module nor the configuration refers to additional scripts or
+   * engines, which would need to be initialized again.
+   */
+  private RutaModule getCompiledRules(String rules) throws RecognitionException {
+    boolean cacheable = !reloadScript && additionalScripts.length == 0
+            && additionalEngines.length == 0 && additionalUimafitEngines.length == 0;
+    if (!cacheable) {
+      return loadScriptByString(rules);
+    }
+    List<Object> key = Arrays.<Object> asList(rulesScriptName, rules,
+            Arrays.toString(resourcePaths), Arrays.toString(additionalExtensions), context,
+            resourceManager);
+    RutaModule result = compiledRules.get(key);
+    if (result == null) {
+      result = loadScriptByString(rules);
+      if (result.getScripts().isEmpty() && result.getDescriptorEngines().isEmpty()
+              && result.getUimafitEngines().isEmpty()) {
+        compiledRules.put(key, result);
+      }
+    }
+    return result;
+  }
+
   protected RutaModule loadScriptByString(String rules) throws RecognitionException {
     CharStream st = new ANTLRStringStream(rules);
     RutaLexer lexer = new RutaLexer(st);
@@ -1191,6 +1529,15 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     return typeUsageInformation;
   }
 
+  /**
+   * Creates the time budget that limits the processing of a document. Subclasses may override this
+   * method in order to measure the time with a different {@link RutaTimeBudget.Clock}.
+   */
+  protected RutaTimeBudget createTimeBudget(long maxDocumentTime, long maxRuleTime,
+          RutaTimeBudget.Policy policy, boolean cpuTime) {
+    return new RutaTimeBudget(maxDocumentTime, maxRuleTime, policy, cpuTime);
+  }
+
   @Override
   public void batchProcessComplete() throws AnalysisEngineProcessException {
     super.batchProcessComplete();
@@ -1205,6 +1552,14 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
   @Override
   public void collectionProcessComplete() throws AnalysisEngineProcessException {
     super.collectionProcessComplete();
+    writeProfileReport();
+    if (debugEventWriter != null) {
+      try {
+        debugEventWriter.flush();
+      } catch (IOException e) {
+        getLogger().log(Level.WARNING, "Failed to write debug information to " + debugSink, e);
+      }
+    }
     if (script != null) {
       Collection<AnalysisEngine> values = script.getAllEngines().values();
       for (AnalysisEngine each : values) {
@@ -1213,8 +1568,63 @@ public class RutaEngine extends JCasAnnotator_ImplBase {
     }
   }
 
+  private void releaseEngineMetrics() {
+    if (engineMetrics != null) {
+      engineMetrics.release();
+      engineMetrics = null;
+    }
+  }
+
+  private void shutdownMatchingExecutor() {
+    if (matchingExecutor != null) {
+      matchingExecutor.shutdown();
+      matchingExecutor = null;
+    }
+  }
+
+  private void closeDebugSink() {
+    if (debugEventWriter == null) {
+      return;
+    }
+    try {
+      debugEventWriter.close();
+    } catch (IOException e) {
+      getLogger().log(Level.WARNING, "Failed to write debug information to " + debugSink, e);
+    }
+    debugEventWriter = null;
+  }
+
+  private void writeProfileReport() {
+    if (profiler == null || StringUtils.isBlank(profileReport)
+            || profiler.getDocuments() == reportedDocuments) {
+      return;
+    }
+    File file = new File(profileReport);
+    if (file.getParentFile() != null) {
+      file.getParentFile().mkdirs();
+    }
+    Writer writer = null;
+    try {
+      writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+      if (profileReport.endsWith(".json")) {
+        profiler.writeJson(writer);
+      } else {
+        profiler.writeCollapsedStacks(writer);
+      }
+      reportedDocuments = profiler.getDocuments();
+    } catch (IOException e) {
+      getLogger().log(Level.WARNING, "Failed to write profile report " + profileReport, e);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
   @Override
   public void destroy() {
+    writeProfileReport();
+    closeDebugSink();
+    shutdownMatchingExecutor();
+    releaseEngineMetrics();
     super.destroy();
     if (script != null) {
       Collection<AnalysisEngine> values = script.getAllEngines().values();
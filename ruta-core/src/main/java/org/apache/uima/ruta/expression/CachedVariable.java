@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.expression;
+
+import org.apache.uima.ruta.RutaEnvironment;
+import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.VariableReference;
+import org.apache.uima.ruta.block.RutaBlock;
+
+/**
+ * Reads the value of a variable for an expression. The variable is resolved to its slot only once
+ * and the {@link VariableReference} is reused as long as the environments did not change, instead
+ * of looking up the name in each environment up the block chain for every evaluation.
+ */
+public class CachedVariable {
+
+  private final String name;
+
+  private VariableReference reference;
+
+  public CachedVariable(String name) {
+    super();
+    this.name = name;
+  }
+
+  public <T> T getValue(RutaBlock parent, Class<T> type, RutaStream stream) {
+    RutaEnvironment environment = parent.getEnvironment();
+    VariableReference resolved = environment.getVariableReference(name, reference);
+    reference = resolved;
+    return environment.getVariableValue(resolved, type, stream);
+  }
+
+  public Object getValue(RutaBlock parent, RutaStream stream) {
+    return getValue(parent, Object.class, stream);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+}
@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 /**
@@ -32,17 +33,20 @@ import org.apache.uima.ruta.rule.MatchContext;
 public class AnnotationLabelExpression extends AbstractAnnotationExpression {
 
 private String label;
+
+  private final CachedVariable variable;
   
   public AnnotationLabelExpression(String label) {
     super();
     this.label = label;
+    this.variable = new CachedVariable(label);
   }
   
   
   @Override
   public AnnotationFS getAnnotation(MatchContext context, RutaStream stream) {
     @SuppressWarnings("unchecked")
-    List<AnnotationFS> annotations = context.getParent().getEnvironment().getVariableValue(label, List.class, stream);
+    List<AnnotationFS> annotations = variable.getValue(context.getParent(), List.class, stream);
     AnnotationFS annotation = null;
     if(annotations != null && !annotations.isEmpty()) {
       if(context.getDirection()) {
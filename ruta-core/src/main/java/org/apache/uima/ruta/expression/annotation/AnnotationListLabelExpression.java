@@ -23,6 +23,7 @@ import java.util.List;
 
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 /**
@@ -32,16 +33,19 @@ import org.apache.uima.ruta.rule.MatchContext;
 public class AnnotationListLabelExpression extends AbstractAnnotationListExpression {
 
 private String label;
+
+  private final CachedVariable variable;
   
   public AnnotationListLabelExpression(String label) {
     super();
     this.label = label;
+    this.variable = new CachedVariable(label);
   }
  
   @SuppressWarnings("unchecked")
   @Override
   public List<AnnotationFS> getList(MatchContext context, RutaStream stream) {
-    return context.getParent().getEnvironment().getVariableValue(label, List.class, stream);
+    return variable.getValue(context.getParent(), List.class, stream);
   }
   
   public String getLabel() {
@@ -24,15 +24,19 @@ import java.util.List;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class AnnotationListVariableExpression extends AbstractAnnotationListExpression {
 
   private String var;
 
+  private final CachedVariable variable;
+
   public AnnotationListVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   
@@ -40,7 +44,7 @@ public class AnnotationListVariableExpression extends AbstractAnnotationListExpr
   public List<AnnotationFS> getList(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
     @SuppressWarnings("unchecked")
-    List<AnnotationFS> list = parent.getEnvironment().getVariableValue(var, List.class, stream);
+    List<AnnotationFS> list = variable.getValue(parent, List.class, stream);
     return list;
   }
 
@@ -24,6 +24,7 @@ import java.util.List;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 /**
@@ -34,11 +35,14 @@ public class AnnotationListVariableIndexExpression extends AbstractAnnotationExp
 
   private String var;
 
+  private final CachedVariable variable;
+
   private int index;
 
   public AnnotationListVariableIndexExpression(String var, int index) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
     this.index = index;
   }
 
@@ -46,7 +50,7 @@ public class AnnotationListVariableIndexExpression extends AbstractAnnotationExp
   public AnnotationFS getAnnotation(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
     @SuppressWarnings("unchecked")
-    List<AnnotationFS> list = parent.getEnvironment().getVariableValue(var, List.class, stream);
+    List<AnnotationFS> list = variable.getValue(parent, List.class, stream);
     if (list != null && index >= 0 && index < list.size()) {
       return list.get(index);
     }
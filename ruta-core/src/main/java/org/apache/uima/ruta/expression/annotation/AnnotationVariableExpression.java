@@ -22,6 +22,7 @@ package org.apache.uima.ruta.expression.annotation;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 /**
@@ -31,17 +32,20 @@ import org.apache.uima.ruta.rule.MatchContext;
 public class AnnotationVariableExpression extends AbstractAnnotationExpression {
 
 private String var;
+
+  private final CachedVariable variable;
   
   public AnnotationVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
   
   
   @Override
   public AnnotationFS getAnnotation(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    AnnotationFS variableValue = parent.getEnvironment().getVariableValue(var, AnnotationFS.class, stream);
+    AnnotationFS variableValue = variable.getValue(parent, AnnotationFS.class, stream);
     return variableValue;
   }
 
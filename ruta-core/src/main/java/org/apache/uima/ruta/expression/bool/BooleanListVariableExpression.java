@@ -24,22 +24,26 @@ import java.util.List;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class BooleanListVariableExpression extends AbstractBooleanListExpression {
 
   private String var;
 
+  private final CachedVariable variable;
+
   public BooleanListVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public List<Boolean> getList(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    List<Object> list = parent.getEnvironment().getVariableValue(var, List.class, stream);
+    List<Object> list = variable.getValue(parent, List.class, stream);
     List<Boolean> result = new ArrayList<Boolean>();
     for (Object each : list) {
       if (each instanceof IBooleanExpression) {
@@ -20,46 +20,98 @@
 package org.apache.uima.ruta.expression.bool;
 
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.expression.number.AbstractNumberExpression;
 import org.apache.uima.ruta.expression.number.INumberExpression;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class BooleanNumberExpression extends AbstractBooleanExpression {
 
+  private static final int OP_UNKNOWN = 0;
+
+  private static final int OP_EQUAL = 1;
+
+  private static final int OP_NOT_EQUAL = 2;
+
+  private static final int OP_LESS = 3;
+
+  private static final int OP_LESS_EQUAL = 4;
+
+  private static final int OP_GREATER = 5;
+
+  private static final int OP_GREATER_EQUAL = 6;
+
   private final INumberExpression e1;
 
   private final String op;
 
   private final INumberExpression e2;
 
+  private final int opCode;
+
+  /**
+   * True if both number expressions are constant. Then, the value is computed once when the
+   * expression is created.
+   */
+  private final boolean constant;
+
+  private final boolean constantValue;
+
   public BooleanNumberExpression(INumberExpression e1, String op, INumberExpression e2) {
     super();
     this.e1 = e1;
     this.op = op;
     this.e2 = e2;
+    this.opCode = getOperatorCode(op);
+    this.constant = AbstractNumberExpression.isConstant(e1)
+            && AbstractNumberExpression.isConstant(e2);
+    this.constantValue = constant
+            && eval(e1.getDoubleValue(null, null), opCode, e2.getDoubleValue(null, null));
   }
 
   @Override
   public boolean getBooleanValue(MatchContext context, RutaStream stream) {
+    if (constant) {
+      return constantValue;
+    }
     double doubleValue1 = getFristExpression().getDoubleValue(context, stream);
     double doubleValue2 = getSecondExpression().getDoubleValue(context, stream);
-    return eval(doubleValue1, getOperator(), doubleValue2);
+    return eval(doubleValue1, opCode, doubleValue2);
   }
 
-  private boolean eval(double t1, String op, double t2) {
+  private static int getOperatorCode(String op) {
     if ("==".equals(op)) {
-      return t1 == t2;
+      return OP_EQUAL;
     } else if ("!=".equals(op)) {
-      return t1 != t2;
+      return OP_NOT_EQUAL;
     } else if ("<".equals(op)) {
-      return t1 < t2;
+      return OP_LESS;
     } else if ("<=".equals(op)) {
-      return t1 <= t2;
+      return OP_LESS_EQUAL;
     } else if (">".equals(op)) {
-      return t1 > t2;
+      return OP_GREATER;
     } else if (">=".equals(op)) {
-      return t1 >= t2;
+      return OP_GREATER_EQUAL;
+    }
+    return OP_UNKNOWN;
+  }
+
+  private boolean eval(double t1, int op, double t2) {
+    switch (op) {
+      case OP_EQUAL:
+        return t1 == t2;
+      case OP_NOT_EQUAL:
+        return t1 != t2;
+      case OP_LESS:
+        return t1 < t2;
+      case OP_LESS_EQUAL:
+        return t1 <= t2;
+      case OP_GREATER:
+        return t1 > t2;
+      case OP_GREATER_EQUAL:
+        return t1 >= t2;
+      default:
+        return false;
     }
-    return false;
   }
 
   public INumberExpression getFristExpression() {
@@ -21,21 +21,25 @@ package org.apache.uima.ruta.expression.bool;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class BooleanVariableExpression extends AbstractBooleanExpression {
 
   private final String var;
 
+  private final CachedVariable variable;
+
   public BooleanVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   @Override
   public boolean getBooleanValue(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    Boolean variableValue = parent.getEnvironment().getVariableValue(var, Boolean.class, stream);
+    Boolean variableValue = variable.getValue(parent, Boolean.class, stream);
     if (variableValue == null) {
       return false;
     }
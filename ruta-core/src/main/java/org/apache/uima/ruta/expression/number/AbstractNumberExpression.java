@@ -24,85 +24,177 @@ import org.apache.uima.ruta.expression.string.AbstractStringExpression;
 public abstract class AbstractNumberExpression extends AbstractStringExpression implements
         INumberExpression {
 
-  protected double calculate(double t1, double t2, String op) {
+  protected static final int OP_UNKNOWN = 0;
+
+  protected static final int OP_PLUS = 1;
+
+  protected static final int OP_MINUS = 2;
+
+  protected static final int OP_MULT = 3;
+
+  protected static final int OP_DIV = 4;
+
+  protected static final int OP_MOD = 5;
+
+  protected static final int OP_EXP = 6;
+
+  protected static final int OP_LOGN = 7;
+
+  protected static final int OP_LOG = 8;
+
+  protected static final int OP_SIN = 9;
+
+  protected static final int OP_COS = 10;
+
+  protected static final int OP_TAN = 11;
+
+  protected static final int OP_POW = 12;
+
+  /**
+   * Maps an operator to a code, so that the operator does not need to be compared as string for
+   * each calculation.
+   */
+  protected static int getOperatorCode(String op) {
     if ("+".equals(op)) {
-      return t1 + t2;
+      return OP_PLUS;
     } else if ("-".equals(op)) {
-      return t1 - t2;
+      return OP_MINUS;
     } else if ("*".equals(op)) {
-      return t1 * t2;
+      return OP_MULT;
     } else if ("/".equals(op)) {
-      return t1 / t2;
+      return OP_DIV;
     } else if ("%".equals(op)) {
-      return t1 % t2;
+      return OP_MOD;
     } else if ("EXP".equals(op)) {
-      return Math.exp(t1);
+      return OP_EXP;
     } else if ("LOGN".equals(op)) {
-      return Math.log(t1);
+      return OP_LOGN;
+    } else if ("LOG".equals(op)) {
+      return OP_LOG;
     } else if ("SIN".equals(op)) {
-      return Math.sin(t1);
+      return OP_SIN;
     } else if ("COS".equals(op)) {
-      return Math.cos(t1);
+      return OP_COS;
     } else if ("TAN".equals(op)) {
-      return Math.tan(t1);
+      return OP_TAN;
     } else if ("POW".equals(op)) {
-      return Math.pow(t1, t2);
+      return OP_POW;
     }
-    return 0;
+    return OP_UNKNOWN;
+  }
+
+  protected double calculate(double t1, double t2, String op) {
+    return calculate(t1, t2, getOperatorCode(op));
   }
 
   protected float calculate(float t1, float t2, String op) {
-    if ("+".equals(op)) {
-      return t1 + t2;
-    } else if ("-".equals(op)) {
-      return t1 - t2;
-    } else if ("*".equals(op)) {
-      return t1 * t2;
-    } else if ("/".equals(op)) {
-      return t1 / t2;
-    } else if ("%".equals(op)) {
-      return t1 % t2;
-    } else if ("EXP".equals(op)) {
-      return (float) Math.exp(t1);
-    } else if ("LOG".equals(op)) {
-      return (float) Math.log(t1);
-    } else if ("SIN".equals(op)) {
-      return (float) Math.sin(t1);
-    } else if ("COS".equals(op)) {
-      return (float) Math.cos(t1);
-    } else if ("TAN".equals(op)) {
-      return (float) Math.tan(t1);
-    } else if ("POW".equals(op)) {
-      return (float) Math.pow(t1, t2);
-    }
-    return 0;
+    return calculate(t1, t2, getOperatorCode(op));
   }
 
   protected int calculate(int t1, int t2, String op) {
-    if ("+".equals(op)) {
-      return t1 + t2;
-    } else if ("-".equals(op)) {
-      return t1 - t2;
-    } else if ("*".equals(op)) {
-      return t1 * t2;
-    } else if ("/".equals(op)) {
-      return t1 / t2;
-    } else if ("%".equals(op)) {
-      return t1 % t2;
-    } else if ("EXP".equals(op)) {
-      return (int) Math.exp(t1);
-    } else if ("LOG".equals(op)) {
-      return (int) Math.log(t1);
-    } else if ("SIN".equals(op)) {
-      return (int) Math.sin(t1);
-    } else if ("COS".equals(op)) {
-      return (int) Math.cos(t1);
-    } else if ("TAN".equals(op)) {
-      return (int) Math.tan(t1);
-    } else if ("POW".equals(op)) {
-      return (int) Math.pow(t1, t2);
+    return calculate(t1, t2, getOperatorCode(op));
+  }
+
+  protected double calculate(double t1, double t2, int op) {
+    switch (op) {
+      case OP_PLUS:
+        return t1 + t2;
+      case OP_MINUS:
+        return t1 - t2;
+      case OP_MULT:
+        return t1 * t2;
+      case OP_DIV:
+        return t1 / t2;
+      case OP_MOD:
+        return t1 % t2;
+      case OP_EXP:
+        return Math.exp(t1);
+      case OP_LOGN:
+        return Math.log(t1);
+      case OP_SIN:
+        return Math.sin(t1);
+      case OP_COS:
+        return Math.cos(t1);
+      case OP_TAN:
+        return Math.tan(t1);
+      case OP_POW:
+        return Math.pow(t1, t2);
+      default:
+        return 0;
+    }
+  }
+
+  protected float calculate(float t1, float t2, int op) {
+    switch (op) {
+      case OP_PLUS:
+        return t1 + t2;
+      case OP_MINUS:
+        return t1 - t2;
+      case OP_MULT:
+        return t1 * t2;
+      case OP_DIV:
+        return t1 / t2;
+      case OP_MOD:
+        return t1 % t2;
+      case OP_EXP:
+        return (float) Math.exp(t1);
+      case OP_LOG:
+        return (float) Math.log(t1);
+      case OP_SIN:
+        return (float) Math.sin(t1);
+      case OP_COS:
+        return (float) Math.cos(t1);
+      case OP_TAN:
+        return (float) Math.tan(t1);
+      case OP_POW:
+        return (float) Math.pow(t1, t2);
+      default:
+        return 0;
+    }
+  }
+
+  protected int calculate(int t1, int t2, int op) {
+    switch (op) {
+      case OP_PLUS:
+        return t1 + t2;
+      case OP_MINUS:
+        return t1 - t2;
+      case OP_MULT:
+        return t1 * t2;
+      case OP_DIV:
+        return t1 / t2;
+      case OP_MOD:
+        return t1 % t2;
+      case OP_EXP:
+        return (int) Math.exp(t1);
+      case OP_LOG:
+        return (int) Math.log(t1);
+      case OP_SIN:
+        return (int) Math.sin(t1);
+      case OP_COS:
+        return (int) Math.cos(t1);
+      case OP_TAN:
+        return (int) Math.tan(t1);
+      case OP_POW:
+        return (int) Math.pow(t1, t2);
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Checks whether the value of a number expression does not depend on the match, the document or
+   * any variable and thus can be computed once when the expression is created.
+   */
+  public static boolean isConstant(INumberExpression expression) {
+    if (expression instanceof SimpleNumberExpression) {
+      return true;
+    } else if (expression instanceof NegativeNumberExpression) {
+      return isConstant(((NegativeNumberExpression) expression).getExpression());
+    } else if (expression instanceof ComposedNumberExpression) {
+      return ((ComposedNumberExpression) expression).isConstant();
     }
-    return 0;
+    return false;
   }
 
 }
@@ -30,68 +30,148 @@ public class ComposedNumberExpression extends AbstractNumberExpression {
 
   private final List<String> ops;
 
+  private final int[] opCodes;
+
+  /**
+   * True if all subexpressions are constant. Then, the values are computed once when the
+   * expression is created.
+   */
+  private final boolean constant;
+
+  private double doubleValue;
+
+  private float floatValue;
+
+  private int integerValue;
+
+  /**
+   * False if the integer value cannot be computed in advance, e.g., because of a division by zero,
+   * which should fail when the rule is applied and not when the script is parsed.
+   */
+  private boolean constantInteger;
+
+  private String stringValue;
+
   public ComposedNumberExpression(List<INumberExpression> expressions, List<String> ops) {
     super();
     this.expressions = expressions;
     this.ops = ops;
+    this.opCodes = new int[ops.size()];
+    for (int i = 0; i < opCodes.length; i++) {
+      opCodes[i] = getOperatorCode(ops.get(i));
+    }
+    boolean allConstant = !expressions.isEmpty();
+    for (INumberExpression each : expressions) {
+      allConstant &= isConstant(each);
+    }
+    this.constant = allConstant;
+    if (constant) {
+      doubleValue = computeDoubleValue(null, null);
+      floatValue = computeFloatValue(null, null);
+      try {
+        integerValue = computeIntegerValue(null, null);
+        constantInteger = true;
+      } catch (ArithmeticException e) {
+        constantInteger = false;
+      }
+      stringValue = computeStringValue(null, null);
+    }
   }
 
   @Override
   public double getDoubleValue(MatchContext context, RutaStream stream) {
-    INumberExpression numberExpression = getExpressions().get(0);
+    if (constant) {
+      return doubleValue;
+    }
+    return computeDoubleValue(context, stream);
+  }
+
+  @Override
+  public float getFloatValue(MatchContext context, RutaStream stream) {
+    if (constant) {
+      return floatValue;
+    }
+    return computeFloatValue(context, stream);
+  }
+
+  @Override
+  public int getIntegerValue(MatchContext context, RutaStream stream) {
+    if (constantInteger) {
+      return integerValue;
+    }
+    return computeIntegerValue(context, stream);
+  }
+
+  @Override
+  public String getStringValue(MatchContext context, RutaStream stream) {
+    if (constant) {
+      return stringValue;
+    }
+    return computeStringValue(context, stream);
+  }
+
+  private double computeDoubleValue(MatchContext context, RutaStream stream) {
+    INumberExpression numberExpression = expressions.get(0);
     if (numberExpression == null) {
       return 0;
     }
     double result = numberExpression.getDoubleValue(context, stream);
-    for (int i = 0; i < getOperators().size(); i++) {
+    int size = expressions.size();
+    for (int i = 0; i < opCodes.length; i++) {
       double second = 0;
-      if (getExpressions().size() > i + 1) {
-        second = getExpressions().get(i + 1).getDoubleValue(context, stream);
+      if (size > i + 1) {
+        second = expressions.get(i + 1).getDoubleValue(context, stream);
       }
-      result = calculate(result, second, getOperators().get(i));
+      result = calculate(result, second, opCodes[i]);
     }
     return result;
   }
 
-  @Override
-  public float getFloatValue(MatchContext context, RutaStream stream) {
-    INumberExpression numberExpression = getExpressions().get(0);
+  private float computeFloatValue(MatchContext context, RutaStream stream) {
+    INumberExpression numberExpression = expressions.get(0);
     if (numberExpression == null) {
       return 0;
     }
     float result = numberExpression.getFloatValue(context, stream);
-    for (int i = 0; i < getOperators().size(); i++) {
+    int size = expressions.size();
+    for (int i = 0; i < opCodes.length; i++) {
       float second = 0;
-      if (getExpressions().size() > i + 1) {
-        second = getExpressions().get(i + 1).getFloatValue(context, stream);
+      if (size > i + 1) {
+        second = expressions.get(i + 1).getFloatValue(context, stream);
       }
-      result = calculate(result, second, getOperators().get(i));
+      result = calculate(result, second, opCodes[i]);
     }
     return result;
   }
 
-  @Override
-  public int getIntegerValue(MatchContext context, RutaStream stream) {
-    int result = getExpressions().get(0).getIntegerValue(context, stream);
-    for (int i = 0; i < getOperators().size(); i++) {
+  private int computeIntegerValue(MatchContext context, RutaStream stream) {
+    int result = expressions.get(0).getIntegerValue(context, stream);
+    int size = expressions.size();
+    for (int i = 0; i < opCodes.length; i++) {
       int second = 0;
-      if (getExpressions().size() > i + 1) {
-        second = getExpressions().get(i + 1).getIntegerValue(context, stream);
+      if (size > i + 1) {
+        second = expressions.get(i + 1).getIntegerValue(context, stream);
       }
-      result = calculate(result, second, getOperators().get(i));
+      result = calculate(result, second, opCodes[i]);
     }
     return result;
   }
 
-  @Override
-  public String getStringValue(MatchContext context, RutaStream stream) {
-    if(ops.isEmpty() && expressions.size() == 1) {
+  private String computeStringValue(MatchContext context, RutaStream stream) {
+    if (ops.isEmpty() && expressions.size() == 1) {
       return expressions.get(0).getStringValue(context, stream);
     } else {
-      return String.valueOf(getDoubleValue(context, stream));
+      return String.valueOf(computeDoubleValue(context, stream));
     }
   }
 
+  /**
+   * @return true if the value of this expression was computed in advance
+   */
+  public boolean isConstant() {
+    return constant;
+  }
+
   public List<INumberExpression> getExpressions() {
     return expressions;
   }
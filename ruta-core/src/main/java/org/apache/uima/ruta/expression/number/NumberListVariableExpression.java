@@ -24,22 +24,26 @@ import java.util.List;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class NumberListVariableExpression extends AbstractNumberListExpression {
 
   private String var;
 
+  private final CachedVariable variable;
+
   public NumberListVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   @SuppressWarnings("unchecked")
   @Override
   public List<Number> getList(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    List<Object> list = parent.getEnvironment().getVariableValue(var, List.class, stream);
+    List<Object> list = variable.getValue(parent, List.class, stream);
     List<Number> result = new ArrayList<Number>();
     for (Object each : list) {
       if (each instanceof INumberExpression) {
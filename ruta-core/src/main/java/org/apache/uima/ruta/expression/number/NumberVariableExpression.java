@@ -21,21 +21,25 @@ package org.apache.uima.ruta.expression.number;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class NumberVariableExpression extends AbstractNumberExpression {
 
   private final String var;
 
+  private final CachedVariable variable;
+
   public NumberVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   @Override
   public double getDoubleValue(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    Object value = parent.getEnvironment().getVariableValue(getVar(), stream);
+    Object value = variable.getValue(parent, stream);
     double variableValue = 0;
     if (value instanceof Number) {
       variableValue = ((Number) value).doubleValue();
@@ -46,7 +50,7 @@ public class NumberVariableExpression extends AbstractNumberExpression {
   @Override
   public float getFloatValue(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    Object value = parent.getEnvironment().getVariableValue(getVar(), stream);
+    Object value = variable.getValue(parent, stream);
     float variableValue = 0;
     if (value instanceof Number) {
       variableValue = ((Number) value).floatValue();
@@ -57,7 +61,7 @@ public class NumberVariableExpression extends AbstractNumberExpression {
   @Override
   public int getIntegerValue(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    Object value = parent.getEnvironment().getVariableValue(getVar(), stream);
+    Object value = variable.getValue(parent, stream);
     int variableValue = 0;
     if (value instanceof Number) {
       variableValue = ((Number) value).intValue();
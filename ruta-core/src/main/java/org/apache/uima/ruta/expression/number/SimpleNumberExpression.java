@@ -26,24 +26,41 @@ public class SimpleNumberExpression extends AbstractNumberExpression {
 
   private final Number number;
 
+  private final double doubleValue;
+
+  private final float floatValue;
+
+  private final int integerValue;
+
+  private final String stringValue;
+
   public SimpleNumberExpression(Number number) {
     super();
     this.number = number;
+    this.doubleValue = number.doubleValue();
+    this.floatValue = number.floatValue();
+    this.integerValue = number.intValue();
+    boolean floating = integerValue != doubleValue;
+    if (floating) {
+      this.stringValue = "" + doubleValue;
+    } else {
+      this.stringValue = "" + integerValue;
+    }
   }
 
   @Override
   public double getDoubleValue(MatchContext context, RutaStream stream) {
-    return number.doubleValue();
+    return doubleValue;
   }
 
   @Override
   public float getFloatValue(MatchContext context, RutaStream stream) {
-    return number.floatValue();
+    return floatValue;
   }
 
   @Override
   public int getIntegerValue(MatchContext context, RutaStream stream) {
-    return number.intValue();
+    return integerValue;
   }
 
   public Number getNumber() {
@@ -52,12 +69,7 @@ public class SimpleNumberExpression extends AbstractNumberExpression {
 
   @Override
   public String getStringValue(MatchContext context, RutaStream stream) {
-    boolean floating = number.intValue() != number.doubleValue();
-    if (floating) {
-      return "" + getDoubleValue(context, stream);
-    } else {
-      return "" + getIntegerValue(context, stream);
-    }
+    return stringValue;
   }
 
 }
@@ -21,6 +21,7 @@ package org.apache.uima.ruta.expression.resource;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.resource.RutaWordList;
 import org.apache.uima.ruta.rule.MatchContext;
 
@@ -28,15 +29,18 @@ public class ReferenceWordListExpression extends WordListExpression {
 
   private String ref;
 
+  private final CachedVariable variable;
+
   public ReferenceWordListExpression(String ref) {
     super();
     this.ref = ref;
+    this.variable = new CachedVariable(ref);
   }
 
   @Override
   public RutaWordList getList(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    return parent.getEnvironment().getVariableValue(ref, RutaWordList.class, stream);
+    return variable.getValue(parent, RutaWordList.class, stream);
   }
 
   public String getRef() {
@@ -21,6 +21,7 @@ package org.apache.uima.ruta.expression.resource;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.resource.RutaTable;
 import org.apache.uima.ruta.rule.MatchContext;
 
@@ -28,15 +29,18 @@ public class ReferenceWordTableExpression extends WordTableExpression {
 
   private String ref;
 
+  private final CachedVariable variable;
+
   public ReferenceWordTableExpression(String ref) {
     super();
     this.ref = ref;
+    this.variable = new CachedVariable(ref);
   }
 
   @Override
   public RutaTable getTable(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    return parent.getEnvironment().getVariableValue(ref, RutaTable.class, stream);
+    return variable.getValue(parent, RutaTable.class, stream);
   }
 
   public String getRef() {
@@ -22,19 +22,30 @@ package org.apache.uima.ruta.expression.string;
 import java.util.List;
 
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.expression.number.AbstractNumberExpression;
+import org.apache.uima.ruta.expression.number.INumberExpression;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class ComposedStringExpression extends LiteralStringExpression {
 
   private final List<IStringExpression> expressions;
 
+  /**
+   * The value of the expression if it consists only of literals, null otherwise.
+   */
+  private final String constantValue;
+
   public ComposedStringExpression(List<IStringExpression> expressions) {
     super();
     this.expressions = expressions;
+    this.constantValue = isConstant(expressions) ? getStringValue(null, null).intern() : null;
   }
 
   @Override
   public String getStringValue(MatchContext context, RutaStream stream) {
+    if (constantValue != null) {
+      return constantValue;
+    }
     if (expressions == null) {
       return null;
     }
@@ -49,6 +60,32 @@ public class ComposedStringExpression extends LiteralStringExpression {
     return result.toString();
   }
 
+  private static boolean isConstant(List<IStringExpression> expressions) {
+    if (expressions == null || expressions.isEmpty()) {
+      return false;
+    }
+    for (IStringExpression each : expressions) {
+      if (each instanceof SimpleStringExpression) {
+        continue;
+      } else if (each instanceof ComposedStringExpression
+              && ((ComposedStringExpression) each).isConstant()) {
+        continue;
+      } else if (each instanceof INumberExpression
+              && AbstractNumberExpression.isConstant((INumberExpression) each)) {
+        continue;
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * @return true if the value of this expression was computed in advance
+   */
+  public boolean isConstant() {
+    return constantValue != null;
+  }
+
   public List<IStringExpression> getExpressions() {
     return expressions;
   }
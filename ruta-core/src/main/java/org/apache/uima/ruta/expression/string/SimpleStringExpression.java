@@ -36,7 +36,8 @@ public class SimpleStringExpression extends LiteralStringExpression {
     if (value.startsWith("\"") && value.endsWith("\"")) {
       value = value.substring(1, value.length() - 1);
     }
-    this.value = stripEscapes(value); // hotfix for the escaping problem
+    // hotfix for the escaping problem, literals are shared between rules
+    this.value = stripEscapes(value).intern();
   }
 
   @Override
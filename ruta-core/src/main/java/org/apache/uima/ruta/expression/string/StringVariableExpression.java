@@ -21,21 +21,25 @@ package org.apache.uima.ruta.expression.string;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class StringVariableExpression extends LiteralStringExpression {
 
   private final String var;
 
+  private final CachedVariable variable;
+
   public StringVariableExpression(String var) {
     super();
     this.var = var;
+    this.variable = new CachedVariable(var);
   }
 
   @Override
   public String getStringValue(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    String variableValue = parent.getEnvironment().getVariableValue(getVar(), String.class, stream);
+    String variableValue = variable.getValue(parent, String.class, stream);
     return variableValue;
   }
 
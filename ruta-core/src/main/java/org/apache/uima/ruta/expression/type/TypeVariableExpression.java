@@ -22,15 +22,19 @@ package org.apache.uima.ruta.expression.type;
 import org.apache.uima.cas.Type;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.CachedVariable;
 import org.apache.uima.ruta.rule.MatchContext;
 
 public class TypeVariableExpression extends AbstractTypeExpression {
 
   private final String var;
 
+  private final CachedVariable variable;
+
   public TypeVariableExpression(String varString) {
     super();
     this.var = varString;
+    this.variable = new CachedVariable(varString);
   }
 
   @Override
@@ -52,7 +56,7 @@ public class TypeVariableExpression extends AbstractTypeExpression {
   @Override
   public Type getType(MatchContext context, RutaStream stream) {
     RutaBlock parent = context.getParent();
-    Type type = parent.getEnvironment().getVariableValue(var, Type.class, stream);
+    Type type = variable.getValue(parent, Type.class, stream);
     return type;
   }
 
@@ -1,49 +1,38 @@
-/*
- * Licensed to the Apache Software Foundation (ASF) under one
- * or more contributor license agreements.  See the NOTICE file
- * distributed with this work for additional information
- * regarding copyright ownership.  The ASF licenses this file
- * to you under the Apache License, Version 2.0 (the
- * "License"); you may not use this file except in compliance
- * with the License.  You may obtain a copy of the License at
- * 
- * http://www.apache.org/licenses/LICENSE-2.0
- * 
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- * KIND, either express or implied.  See the License for the
- * specific language governing permissions and limitations
- * under the License.
- */
-
-
-package org.apache.uima.ruta.block.fst;
-
-import org.apache.uima.ruta.RutaStatement;
-import org.apache.uima.ruta.rule.RuleElement;
-
-public class EndState extends AbstractState {
-  
-  private RutaStatement rule;
-
-  public EndState(RutaStatement rule, int depth) {
-    super(depth);
-    this.rule = rule;
-  }
-
-  public RutaStatement getRule() {
-    return this.rule;
-  }
-  
-  @Override
-  public String toString() {
-    return "EndState";
-  }
-  
-  @Override
-  public AbstractState getTransition(RuleElement elem) {
-    return null;
-  }
-
-}
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.metrics;
+
+/**
+ * Receives the metrics of the documents processed by a Ruta engine. Implementations can be
+ * configured with the parameter <code>metricsRegistries</code> of the engine and need a public
+ * constructor without arguments.
+ */
+public interface IRutaMetricsRegistry {
+
+  /**
+   * Called by the processing thread after each document, also if the processing failed. The
+   * metrics instance is reused for the next document and must not be stored.
+   *
+   * @param metrics
+   *          the metrics of the document
+   */
+  void documentProcessed(RutaDocumentMetrics metrics);
+
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.metrics;
+
+/**
+ * The runtime metrics of a single document processed by the Ruta engine. The instance is filled
+ * while the document is processed and passed to the {@link IRutaMetricsRegistry}s afterwards.
+ * Times are given in nanoseconds.
+ */
+public class RutaDocumentMetrics {
+
+  private long processTime;
+
+  private long seedingTime;
+
+  private long basicsTime;
+
+  private long rulesTime;
+
+  private int basics;
+
+  private long annotations;
+
+  private long ruleTries;
+
+  private long ruleApplies;
+
+  private int timeouts;
+
+  private int parallelWindows;
+
+  private boolean failed;
+
+  public void reset() {
+    processTime = 0;
+    seedingTime = 0;
+    basicsTime = 0;
+    rulesTime = 0;
+    basics = 0;
+    annotations = 0;
+    ruleTries = 0;
+    ruleApplies = 0;
+    timeouts = 0;
+    parallelWindows = 0;
+    failed = false;
+  }
+
+  public void addRuleApply(int tried, int applied) {
+    ruleTries += tried;
+    ruleApplies += applied;
+  }
+
+  public void annotationAdded() {
+    annotations++;
+  }
+
+  public void addParallelWindows(int windows) {
+    parallelWindows += windows;
+  }
+
+  public long getProcessTime() {
+    return processTime;
+  }
+
+  public void setProcessTime(long processTime) {
+    this.processTime = processTime;
+  }
+
+  public long getSeedingTime() {
+    return seedingTime;
+  }
+
+  public void setSeedingTime(long seedingTime) {
+    this.seedingTime = seedingTime;
+  }
+
+  public long getBasicsTime() {
+    return basicsTime;
+  }
+
+  public void setBasicsTime(long basicsTime) {
+    this.basicsTime = basicsTime;
+  }
+
+  public long getRulesTime() {
+    return rulesTime;
+  }
+
+  public void setRulesTime(long rulesTime) {
+    this.rulesTime = rulesTime;
+  }
+
+  /**
+   * @return the number of basic annotations at the end of the document
+   */
+  public int getBasics() {
+    return basics;
+  }
+
+  public void setBasics(int basics) {
+    this.basics = basics;
+  }
+
+  /**
+   * @return the number of annotations created by the rules
+   */
+  public long getAnnotations() {
+    return annotations;
+  }
+
+  public long getRuleTries() {
+    return ruleTries;
+  }
+
+  public long getRuleApplies() {
+    return ruleApplies;
+  }
+
+  /**
+   * @return the number of exceeded time budgets, see {@link org.apache.uima.ruta.RutaTimeBudget}
+   */
+  public int getTimeouts() {
+    return timeouts;
+  }
+
+  public void setTimeouts(int timeouts) {
+    this.timeouts = timeouts;
+  }
+
+  /**
+   * @return the number of block windows whose rules were matched concurrently
+   */
+  public int getParallelWindows() {
+    return parallelWindows;
+  }
+
+  public boolean isFailed() {
+    return failed;
+  }
+
+  public void setFailed(boolean failed) {
+    this.failed = failed;
+  }
+
+}
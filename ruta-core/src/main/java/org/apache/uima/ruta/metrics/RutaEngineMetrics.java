@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+
+/**
+ * The default metrics registry of the Ruta engine, which sums up the metrics of all documents and
+ * exposes them as MBean with the name <code>org.apache.uima.ruta:type=RutaEngine,name=...</code>.
+ * All engine instances with the same name, e.g., the instances of the different threads of a
+ * pipeline, share the same registry. The counters can be updated concurrently without locking.
+ * The registry is removed and its MBean unregistered when all users have released it.
+ */
+public class RutaEngineMetrics implements IRutaMetricsRegistry, RutaEngineMetricsMBean {
+
+  private static final String DOMAIN = "org.apache.uima.ruta";
+
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  /**
+   * The buckets of the histogram have an upper bound of 1ms, 2ms, 4ms, ... and the last one is
+   * unbounded.
+   */
+  private static final int HISTOGRAM_BUCKETS = 20;
+
+  private static final Map<String, RutaEngineMetrics> INSTANCES = new ConcurrentHashMap<String, RutaEngineMetrics>();
+
+  private final String name;
+
+  private int users = 0;
+
+  private final LongAdder documents = new LongAdder();
+
+  private final LongAdder failed = new LongAdder();
+
+  private final LongAdder processTime = new LongAdder();
+
+  private final LongAdder seedingTime = new LongAdder();
+
+  private final LongAdder basicsTime = new LongAdder();
+
+  private final LongAdder rulesTime = new LongAdder();
+
+  private final LongAdder basics = new LongAdder();
+
+  private final LongAdder annotations = new LongAdder();
+
+  private final LongAdder ruleTries = new LongAdder();
+
+  private final LongAdder ruleApplies = new LongAdder();
+
+  private final LongAdder timeouts = new LongAdder();
+
+  private final AtomicLongArray histogram = new AtomicLongArray(HISTOGRAM_BUCKETS);
+
+  public RutaEngineMetrics(String name) {
+    super();
+    this.name = name;
+  }
+
+  /**
+   * Returns the shared registry with the given name and registers it as MBean when it is created.
+   * Each call must be followed by a call of {@link #release()} when the registry is not used
+   * anymore.
+   */
+  public static RutaEngineMetrics getInstance(String name) {
+    synchronized (INSTANCES) {
+      RutaEngineMetrics metrics = INSTANCES.get(name);
+      if (metrics == null) {
+        metrics = new RutaEngineMetrics(name);
+        metrics.register();
+        INSTANCES.put(name, metrics);
+      }
+      metrics.users++;
+      return metrics;
+    }
+  }
+
+  /**
+   * Releases a registry obtained by {@link #getInstance(String)}. The last release removes the
+   * shared registry and unregisters its MBean.
+   */
+  public void release() {
+    synchronized (INSTANCES) {
+      if (users > 0 && --users == 0 && INSTANCES.remove(name, this)) {
+        unregister();
+      }
+    }
+  }
+
+  private ObjectName getObjectName() throws JMException {
+    return new ObjectName(DOMAIN + ":type=RutaEngine,name=" + ObjectName.quote(name));
+  }
+
+  private void register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = getObjectName();
+      if (!server.isRegistered(objectName)) {
+        server.registerMBean(this, objectName);
+      }
+    } catch (JMException e) {
+      UIMAFramework.getLogger(getClass()).log(Level.WARNING,
+              "Failed to register metrics of " + name, e);
+    } catch (SecurityException e) {
+      UIMAFramework.getLogger(getClass()).log(Level.WARNING,
+              "Failed to register metrics of " + name, e);
+    }
+  }
+
+  private void unregister() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = getObjectName();
+      if (server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch (JMException e) {
+      UIMAFramework.getLogger(getClass()).log(Level.WARNING,
+              "Failed to unregister metrics of " + name, e);
+    } catch (SecurityException e) {
+      UIMAFramework.getLogger(getClass()).log(Level.WARNING,
+              "Failed to unregister metrics of " + name, e);
+    }
+  }
+
+  @Override
+  public void documentProcessed(RutaDocumentMetrics metrics) {
+    documents.increment();
+    if (metrics.isFailed()) {
+      failed.increment();
+    }
+    processTime.add(metrics.getProcessTime());
+    seedingTime.add(metrics.getSeedingTime());
+    basicsTime.add(metrics.getBasicsTime());
+    rulesTime.add(metrics.getRulesTime());
+    basics.add(metrics.getBasics());
+    annotations.add(metrics.getAnnotations());
+    ruleTries.add(metrics.getRuleTries());
+    ruleApplies.add(metrics.getRuleApplies());
+    timeouts.add(metrics.getTimeouts());
+    histogram.incrementAndGet(getBucket(metrics.getProcessTime() / NANOS_PER_MILLI));
+  }
+
+  private static int getBucket(long millis) {
+    int bucket = 64 - Long.numberOfLeadingZeros(millis);
+    return Math.min(bucket, HISTOGRAM_BUCKETS - 1);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getDocumentsProcessed() {
+    return documents.sum();
+  }
+
+  @Override
+  public long getDocumentsFailed() {
+    return failed.sum();
+  }
+
+  @Override
+  public long getTotalProcessTimeMillis() {
+    return processTime.sum() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getAverageProcessTimeMillis() {
+    return average(processTime.sum()) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public long getSeedingTimeMillis() {
+    return seedingTime.sum() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public long getBasicsTimeMillis() {
+    return basicsTime.sum() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public long getRulesTimeMillis() {
+    return rulesTime.sum() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getAverageBasicsPerDocument() {
+    return average(basics.sum());
+  }
+
+  @Override
+  public double getAverageAnnotationsPerDocument() {
+    return average(annotations.sum());
+  }
+
+  @Override
+  public long getRuleTries() {
+    return ruleTries.sum();
+  }
+
+  @Override
+  public long getRuleApplies() {
+    return ruleApplies.sum();
+  }
+
+  @Override
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  @Override
+  public String[] getProcessTimeHistogramBuckets() {
+    String[] result = new String[HISTOGRAM_BUCKETS];
+    for (int i = 0; i < HISTOGRAM_BUCKETS - 1; i++) {
+      result[i] = "<" + (1L << i) + "ms";
+    }
+    result[HISTOGRAM_BUCKETS - 1] = ">=" + (1L << (HISTOGRAM_BUCKETS - 2)) + "ms";
+    return result;
+  }
+
+  @Override
+  public long[] getProcessTimeHistogram() {
+    long[] result = new long[HISTOGRAM_BUCKETS];
+    for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+      result[i] = histogram.get(i);
+    }
+    return result;
+  }
+
+  private double average(long sum) {
+    long count = documents.sum();
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  @Override
+  public void reset() {
+    documents.reset();
+    failed.reset();
+    processTime.reset();
+    seedingTime.reset();
+    basicsTime.reset();
+    rulesTime.reset();
+    basics.reset();
+    annotations.reset();
+    ruleTries.reset();
+    ruleApplies.reset();
+    timeouts.reset();
+    for (int i = 0; i < HISTOGRAM_BUCKETS; i++) {
+      histogram.set(i, 0);
+    }
+  }
+
+}
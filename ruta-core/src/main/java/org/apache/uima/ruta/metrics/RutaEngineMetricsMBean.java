@@ -1,41 +1,57 @@
-/*
- * Licensed to the Apache Software Foundation (ASF) under one
- * or more contributor license agreements.  See the NOTICE file
- * distributed with this work for additional information
- * regarding copyright ownership.  The ASF licenses this file
- * to you under the Apache License, Version 2.0 (the
- * "License"); you may not use this file except in compliance
- * with the License.  You may obtain a copy of the License at
- * 
- * http://www.apache.org/licenses/LICENSE-2.0
- * 
- * Unless required by applicable law or agreed to in writing,
- * software distributed under the License is distributed on an
- * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
- * KIND, either express or implied.  See the License for the
- * specific language governing permissions and limitations
- * under the License.
- */
-
-
-package org.apache.uima.ruta.block.fst;
-
-import org.apache.uima.ruta.rule.RuleElement;
-
-public class RootState extends AbstractState {
-
-  public RootState() {
-    super(0);
-  }
-
-  @Override
-  public String toString() {
-    return "RootState";
-  }
-  
-  @Override
-  public AbstractState getTransition(RuleElement elem) {
-    return this.transitions.get(elem);
-  }
-
-}
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.metrics;
+
+/**
+ * The JMX interface of {@link RutaEngineMetrics}.
+ */
+public interface RutaEngineMetricsMBean {
+
+  long getDocumentsProcessed();
+
+  long getDocumentsFailed();
+
+  long getTotalProcessTimeMillis();
+
+  double getAverageProcessTimeMillis();
+
+  long getSeedingTimeMillis();
+
+  long getBasicsTimeMillis();
+
+  long getRulesTimeMillis();
+
+  double getAverageBasicsPerDocument();
+
+  double getAverageAnnotationsPerDocument();
+
+  long getRuleTries();
+
+  long getRuleApplies();
+
+  long getTimeouts();
+
+  String[] getProcessTimeHistogramBuckets();
+
+  long[] getProcessTimeHistogram();
+
+  void reset();
+
+}
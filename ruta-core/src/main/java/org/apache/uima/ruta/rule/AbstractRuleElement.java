@@ -83,7 +83,11 @@ public abstract class AbstractRuleElement extends RutaElement implements RuleEle
     if (!ruleMatch.isApplied()) {
       ruleApply.add(ruleMatch, stream);
       if (ruleMatch.matchedCompletely()) {
-        ruleMatch.getRule().getRoot().applyRuleElements(ruleMatch, stream, crowd);
+        if (ruleApply.isDeferred()) {
+          ruleApply.defer(ruleMatch);
+        } else {
+          ruleMatch.getRule().getRoot().applyRuleElements(ruleMatch, stream, crowd);
+        }
       }
       ruleMatch.setApplied(true);
     }
@@ -211,6 +215,10 @@ public abstract class AbstractRuleElement extends RutaElement implements RuleEle
   }
 
   protected boolean earlyExit(AnnotationFS eachAnchor, RuleApply ruleApply, RutaStream stream) {
+    if (stream.getTimeBudget().isExceeded()) {
+      // skip all remaining matches if the time budget is used up
+      return true;
+    }
     if (stream.isGreedyAnchoring() && ruleApply != null
             && isAlreadyCovered(eachAnchor, ruleApply, stream)) {
       // skip if next matched should not overlap
@@ -547,10 +547,14 @@ public class ComposedRuleElement extends AbstractRuleElement implements RuleElem
       match.evaluateInnerMatches(true, stream);
       return;
     }
-    int begin = textsMatched.get(0).getBegin();
-    int end = textsMatched.get(textsMatched.size() - 1).getEnd();
-    AnnotationFS annotation = stream.getCas().createAnnotation(stream.getCas().getAnnotationType(),
-            begin, end);
+    // the annotation is only needed for the conditions
+    AnnotationFS annotation = null;
+    if (!conditions.isEmpty()) {
+      int begin = textsMatched.get(0).getBegin();
+      int end = textsMatched.get(textsMatched.size() - 1).getEnd();
+      annotation = stream.getCas().createAnnotation(stream.getCas().getAnnotationType(), begin,
+              end);
+    }
 
     MatchContext context = new MatchContext(annotation, this, ruleMatch, after);
     RutaEnvironment environment = context.getParent().getEnvironment();
@@ -604,6 +608,17 @@ public class ComposedRuleElement extends AbstractRuleElement implements RuleElem
     return caretaker.getAnchoringRuleElement(stream);
   }
 
+  /**
+   * @return the anchoring rule element if it does not depend on the statistics of the document,
+   *         else null
+   */
+  public RuleElement getStaticAnchoringRuleElement() {
+    if (caretaker instanceof RuleElementCaretaker) {
+      return ((RuleElementCaretaker) caretaker).getStaticAnchoringRuleElement();
+    }
+    return null;
+  }
+
   @Override
   public List<RuleElement> getRuleElements() {
     return elements;
@@ -69,6 +69,9 @@ public class RegExpRule extends AbstractRule {
   @Override
   public ScriptApply apply(RutaStream stream, InferenceCrowd crowd) {
     RuleApply ruleApply = new RuleApply(this, false);
+    if (stream.getTimeBudget().isDocumentExceeded()) {
+      return ruleApply;
+    }
     crowd.beginVisit(this, ruleApply);
     MatchContext context = new MatchContext(getParent());
     String regexpString = regexpExpr.getStringValue(context, stream);
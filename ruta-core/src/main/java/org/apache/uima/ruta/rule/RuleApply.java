@@ -37,6 +37,12 @@ public class RuleApply extends ScriptApply {
 
   private boolean acceptMatches;
 
+  /**
+   * The complete matches whose actions are executed later, or null if the actions are executed
+   * immediately.
+   */
+  private List<RuleMatch> deferredMatches;
+
   public RuleApply(RutaStatement tme, boolean remember) {
     super(tme);
     list = new ArrayList<AbstractRuleMatch<? extends AbstractRule>>();
@@ -77,6 +83,22 @@ public class RuleApply extends ScriptApply {
     this.acceptMatches = acceptMatches;
   }
 
+  void deferActions() {
+    deferredMatches = new ArrayList<RuleMatch>();
+  }
+
+  boolean isDeferred() {
+    return deferredMatches != null;
+  }
+
+  void defer(RuleMatch match) {
+    deferredMatches.add(match);
+  }
+
+  List<RuleMatch> getDeferredMatches() {
+    return deferredMatches;
+  }
+
   public void addAll(List<RuleMatch> matches, RutaStream stream) {
     for (RuleMatch ruleMatch : matches) {
       add(ruleMatch, stream);
@@ -19,36 +19,107 @@
 
 package org.apache.uima.ruta.rule;
 
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.visitor.InferenceCrowd;
 
 public class RuleElementCaretaker implements RuleElementContainer {
 
+  /**
+   * The positions of the rule elements and the anchoring rule element that does not depend on the
+   * document, computed once for the current list of rule elements.
+   */
+  private static class Links {
+
+    private final List<RuleElement> ruleElements;
+
+    private final int size;
+
+    private final Map<RuleElement, Integer> positions;
+
+    private final RuleElement staticAnchor;
+
+    private Links(List<RuleElement> ruleElements) {
+      super();
+      this.ruleElements = ruleElements;
+      this.size = ruleElements.size();
+      this.positions = new IdentityHashMap<RuleElement, Integer>(size);
+      for (int i = size - 1; i >= 0; i--) {
+        positions.put(ruleElements.get(i), i);
+      }
+      this.staticAnchor = computeStaticAnchor(ruleElements);
+    }
+
+    private static RuleElement computeStaticAnchor(List<RuleElement> ruleElements) {
+      if (ruleElements.size() == 1
+      // || containsLiteralMatcher(ruleElements)
+      ) {
+        return ruleElements.get(0);
+      }
+      for (RuleElement ruleElement : ruleElements) {
+        if (ruleElement.isStartAnchor()) {
+          return ruleElement;
+        }
+        if (ruleElement instanceof ComposedRuleElement) {
+          // a composed element that is not anchored statically never anchors on a start anchor
+          RuleElement anchoringRuleElement = ((ComposedRuleElement) ruleElement)
+                  .getStaticAnchoringRuleElement();
+          if (anchoringRuleElement != null && anchoringRuleElement.isStartAnchor()) {
+            return ruleElement;
+          }
+        }
+      }
+      return null;
+    }
+
+  }
+
   private final RuleElementContainer container;
 
+  private volatile Links links;
+
   public RuleElementCaretaker(RuleElementContainer container) {
     super();
     this.container = container;
   }
 
+  private Links getLinks() {
+    List<RuleElement> ruleElements = container.getRuleElements();
+    Links result = links;
+    if (result == null || result.ruleElements != ruleElements
+            || result.size != ruleElements.size()) {
+      result = new Links(ruleElements);
+      links = result;
+    }
+    return result;
+  }
+
+  private int indexOf(Links links, RuleElement element) {
+    Integer position = links.positions.get(element);
+    return position == null ? -1 : position;
+  }
+
   public RuleElement getElementAfter(RuleElement element) {
-    int indexOf = container.getRuleElements().indexOf(element);
-    if (indexOf < container.getRuleElements().size() - 1) {
-      RuleElement ruleElement = container.getRuleElements().get(indexOf + 1);
+    Links links = getLinks();
+    int indexOf = indexOf(links, element);
+    if (indexOf < links.size - 1) {
+      RuleElement ruleElement = links.ruleElements.get(indexOf + 1);
       return ruleElement;
     }
     return null;
   }
 
   public RuleElement getElementBefore(RuleElement element) {
-    int indexOf = container.getRuleElements().indexOf(element);
+    Links links = getLinks();
+    int indexOf = indexOf(links, element);
     if (indexOf > 0) {
-      RuleElement ruleElement = container.getRuleElements().get(indexOf - 1);
+      RuleElement ruleElement = links.ruleElements.get(indexOf - 1);
       return ruleElement;
     } else if (indexOf == -1) {
-      return container.getRuleElements().get(container.getRuleElements().size() - 1);
+      return links.ruleElements.get(links.size - 1);
     }
     return null;
   }
@@ -58,25 +129,21 @@ public class RuleElementCaretaker implements RuleElementContainer {
     return container.getRuleElements();
   }
 
+  /**
+   * @return the anchoring rule element if it does not depend on the statistics of the document,
+   *         else null
+   */
+  public RuleElement getStaticAnchoringRuleElement() {
+    return getLinks().staticAnchor;
+  }
+
   @Override
   public RuleElement getAnchoringRuleElement(RutaStream stream) {
-    List<RuleElement> ruleElements = container.getRuleElements();
-    if (ruleElements.size() == 1
-    // || containsLiteralMatcher(ruleElements)
-    ) {
-      return ruleElements.get(0);
-    }
-    for (RuleElement ruleElement : ruleElements) {
-      if (ruleElement.isStartAnchor()) {
-        return ruleElement;
-      } 
-      if(ruleElement instanceof ComposedRuleElement) {
-         RuleElement anchoringRuleElement = ((ComposedRuleElement) ruleElement).getAnchoringRuleElement(stream);
-         if(anchoringRuleElement.isStartAnchor()) {
-           return ruleElement;
-         }
-      }
+    Links links = getLinks();
+    if (links.staticAnchor != null) {
+      return links.staticAnchor;
     }
+    List<RuleElement> ruleElements = links.ruleElements;
 
     if (stream.isDynamicAnchoring()) {
       long min = Long.MAX_VALUE;
@@ -27,7 +27,9 @@ import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.expression.string.ComposedStringExpression;
 import org.apache.uima.ruta.expression.string.IStringExpression;
+import org.apache.uima.ruta.expression.string.SimpleStringExpression;
 import org.apache.uima.ruta.type.RutaBasic;
 
 public class RutaLiteralMatcher implements RutaMatcher {
@@ -43,8 +45,27 @@ public class RutaLiteralMatcher implements RutaMatcher {
   public List<AnnotationFS> getMatchingAnnotations(RutaBlock parent, RutaStream stream) {
     List<AnnotationFS> result = new ArrayList<AnnotationFS>();
     AnnotationFS windowAnnotation = stream.getDocumentAnnotation();
+    String constantValue = getConstantValue();
+    if (constantValue != null) {
+      // look up the positions of the literal instead of comparing the text of each basic
+      int[] positions = stream.getLiteralIndex().getOccurrences(constantValue);
+      int end = windowAnnotation.getEnd();
+      for (int position : positions) {
+        if (position < windowAnnotation.getBegin()) {
+          continue;
+        }
+        if (position + constantValue.length() > end) {
+          break;
+        }
+        RutaBasic basic = stream.getBeginAnchor(position);
+        if (basic != null && basic.getEnd() == position + constantValue.length()
+                && stream.isVisible(basic)) {
+          result.add(basic);
+        }
+      }
+      return result;
+    }
     List<RutaBasic> list = stream.getBasicsInWindow(windowAnnotation);
-    // TODO improve matching on literal strings
     for (RutaBasic each : list) {
       MatchContext context = new MatchContext(each, null, null, true);
       context.setParent(parent);
@@ -55,6 +76,19 @@ public class RutaLiteralMatcher implements RutaMatcher {
     return result;
   }
 
+  /**
+   * @return the value of the expression if it does not depend on the context, or else null
+   */
+  private String getConstantValue() {
+    if (expression instanceof SimpleStringExpression) {
+      return ((SimpleStringExpression) expression).getValue();
+    } else if (expression instanceof ComposedStringExpression
+            && ((ComposedStringExpression) expression).isConstant()) {
+      return ((ComposedStringExpression) expression).getStringValue(null, null);
+    }
+    return null;
+  }
+
   @Override
   public String toString() {
     return "\"" + expression.toString() + "\"";
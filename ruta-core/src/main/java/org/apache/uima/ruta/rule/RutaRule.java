@@ -30,8 +30,12 @@ import org.apache.uima.ruta.RutaConstants;
 import org.apache.uima.ruta.RutaEnvironment;
 import org.apache.uima.ruta.RutaStatement;
 import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.RutaTimeBudget;
 import org.apache.uima.ruta.action.AbstractRutaAction;
+import org.apache.uima.ruta.block.ParallelRuleMatcher;
+import org.apache.uima.ruta.block.ParallelRuleMatcher.TypeAccess;
 import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
 import org.apache.uima.ruta.visitor.InferenceCrowd;
 
 public class RutaRule extends AbstractRule {
@@ -44,6 +48,12 @@ public class RutaRule extends AbstractRule {
    */
   private Map<String, Object> labels;
 
+  /**
+   * The types read and created by this rule for each type system and filtering setting, see
+   * {@link ParallelRuleMatcher}. A null value means that the rule cannot be matched in parallel.
+   */
+  private final Map<List<Object>, TypeAccess> typeAccesses = new HashMap<>();
+
   public RutaRule(List<RuleElement> elements, RutaBlock parent, int id) {
     super(parent, id);
     this.root = new ComposedRuleElement(elements, null, null, null, null, parent);
@@ -57,16 +67,65 @@ public class RutaRule extends AbstractRule {
 
   public RuleApply apply(RutaStream stream, InferenceCrowd crowd, boolean remember) {
     RuleApply ruleApply = new RuleApply(this, remember);
+    RutaTimeBudget timeBudget = stream.getTimeBudget();
+    if (timeBudget.isDocumentExceeded()) {
+      return ruleApply;
+    }
     MatchContext context = new MatchContext(getParent());
     prepareEnvironment(context, stream);
     crowd.beginVisit(this, ruleApply);
     RuleMatch ruleMatch = new RuleMatch(this);
-    root.startMatch(ruleMatch, ruleApply, null, null, stream, crowd);
+    timeBudget.startRule(this);
+    try {
+      root.startMatch(ruleMatch, ruleApply, null, null, stream, crowd);
+    } finally {
+      timeBudget.endRule();
+    }
     crowd.endVisit(this, ruleApply);
     cleanupEnvironment(context, stream);
+    RutaDocumentMetrics metrics = stream.getMetrics();
+    if (metrics != null) {
+      metrics.addRuleApply(ruleApply.getTried(), ruleApply.getApplied());
+    }
     return ruleApply;
   }
 
+  /**
+   * Finds the matches of this rule without executing its actions. The document is not modified, so
+   * that several rules can be matched at the same time. This is only supported for rules without
+   * labels, since labels are assigned while matching.
+   * 
+   * @param stream
+   *          the stream, which must not be used by other threads
+   * @return the result with the complete matches, whose actions are executed by
+   *         {@link #applyDeferred(RuleApply, RutaStream, InferenceCrowd)}
+   */
+  public RuleApply findMatches(RutaStream stream) {
+    RuleApply ruleApply = new RuleApply(this, stream.isGreedyAnchoring());
+    ruleApply.deferActions();
+    if (stream.getTimeBudget().isDocumentExceeded()) {
+      return ruleApply;
+    }
+    root.startMatch(new RuleMatch(this), ruleApply, null, null, stream, InferenceCrowd.emptyCrowd);
+    return ruleApply;
+  }
+
+  /**
+   * Executes the actions of the matches found by {@link #findMatches(RutaStream)} in the order
+   * they were found.
+   */
+  public void applyDeferred(RuleApply ruleApply, RutaStream stream, InferenceCrowd crowd) {
+    crowd.beginVisit(this, ruleApply);
+    for (RuleMatch each : ruleApply.getDeferredMatches()) {
+      root.applyRuleElements(each, stream, crowd);
+    }
+    crowd.endVisit(this, ruleApply);
+    RutaDocumentMetrics metrics = stream.getMetrics();
+    if (metrics != null) {
+      metrics.addRuleApply(ruleApply.getTried(), ruleApply.getApplied());
+    }
+  }
+
   @Override
   public String toString() {
     return root == null ? "<empty>" : root.toString();
@@ -184,8 +243,19 @@ public class RutaRule extends AbstractRule {
     }
   }
 
+  /**
+   * @return true if a rule element or an action of this rule or of its inlined rules has a label
+   */
+  public boolean hasLabels() {
+    return !labels.isEmpty();
+  }
+
   public ComposedRuleElement getRoot() {
     return root;
   }
 
+  public Map<List<Object>, TypeAccess> getTypeAccesses() {
+    return typeAccesses;
+  }
+
 }
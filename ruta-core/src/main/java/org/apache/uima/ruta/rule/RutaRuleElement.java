@@ -137,7 +137,7 @@ public class RutaRuleElement extends AbstractRuleElement {
       AnnotationFS lastAnchor = annotation;
       ComposedRuleElementMatch extendedContainerMatch = containerMatch;
       RuleMatch extendedMatch = ruleMatch;
-      while (!stopMatching) {
+      while (!stopMatching && !stream.getTimeBudget().isExceeded()) {
         context = new MatchContext(this, extendedMatch, after);
         if (!quantifier.continueMatch(after, context, eachAnchor, extendedContainerMatch, stream,
                 crowd)) {
@@ -30,6 +30,7 @@ import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.ruta.LiteralOccurrenceIndex;
 import org.apache.uima.ruta.RutaEnvironment;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.action.AbstractRutaAction;
@@ -128,7 +129,7 @@ public class WildCardRuleElement extends AbstractRuleElement {
     List<RuleMatch> result = new ArrayList<RuleMatch>();
     AnnotationFS nextOne = annotation;
     boolean doneHere = false;
-    while (!doneHere
+    while (!doneHere && !stream.getTimeBudget().isExceeded()
             && (nextOne = getNextPositionForComposed(cre, after, nextOne, stream)) != null) {
       int pointer = after ? nextOne.getBegin() : nextOne.getEnd();
       RutaBasic anchor = stream.getAnchor(!after, pointer);
@@ -242,15 +243,24 @@ public class WildCardRuleElement extends AbstractRuleElement {
       IStringExpression expression = lm.getExpression();
       MatchContext context = new MatchContext(this, null, after);
       String stringValue = expression.getStringValue(context, stream);
-      AnnotationFS documentAnnotation = stream.getDocumentAnnotation();
-      int delta = documentAnnotation.getBegin();
-      String document = documentAnnotation.getCoveredText();
-      int pointer = annotation.getEnd() - delta;
-      int indexOf = document.indexOf(stringValue, pointer);
-      if (indexOf < 0) {
+      int position = getNextLiteralPosition(after, stringValue,
+              getLiteralPointer(after, annotation, stream), stream);
+      if (position < 0) {
         return null;
       } else {
-        return stream.getAnchor(after, indexOf);
+        return stream.getAnchor(after, position);
+      }
+    } else if (isPlainTypeMatcher(matcher)) {
+      // long-distance jump with a lookup in the sorted annotations of the type
+      Type type = matcher.getType(parent, stream);
+      if (after) {
+        int offset = annotation == null ? stream.getDocumentAnnotation().getBegin()
+                : annotation.getEnd();
+        return stream.getOffsetIndex().nextBegin(type, offset, stream);
+      } else {
+        int offset = annotation == null ? stream.getDocumentAnnotation().getEnd()
+                : annotation.getBegin();
+        return stream.getOffsetIndex().prevEnd(type, offset, stream);
       }
     } else {
       FSIterator<AnnotationFS> iterator = getIterator(after, annotation, re, null, stream);
@@ -275,6 +285,15 @@ public class WildCardRuleElement extends AbstractRuleElement {
     return result;
   }
 
+  private boolean isPlainTypeMatcher(RutaMatcher matcher) {
+    if (!(matcher instanceof RutaAnnotationTypeMatcher)) {
+      return false;
+    }
+    AnnotationTypeExpression expression = (AnnotationTypeExpression) matcher.getExpression();
+    return expression.getAnnotationExpression() == null
+            && expression.getAnnotationListExpression() == null;
+  }
+
   private RuleElement getNextAtomicRuleElement(ComposedRuleElement cre, boolean after) {
     if (after) {
       RuleElement firstElement = cre.getFirstElement();
@@ -340,7 +359,8 @@ public class WildCardRuleElement extends AbstractRuleElement {
       moveOn(after, iterator, stream);
     }
     boolean doneHere = false;
-    while (!doneHere && iterator.isValid() && stream.isVisible(iterator.get())) {
+    while (!doneHere && !stream.getTimeBudget().isExceeded() && iterator.isValid()
+            && stream.isVisible(iterator.get())) {
       AnnotationFS nextOne = iterator.get();
       int pointer = after ? nextOne.getBegin() : nextOne.getEnd();
       AnnotationFS anchor = stream.getAnchor(!after, pointer);
@@ -454,10 +474,10 @@ public class WildCardRuleElement extends AbstractRuleElement {
     if (stream.getDocumentAnnotation().equals(cas.getDocumentAnnotation())) {
       // no windowing needed
       if (annotation == null) {
-        result = cas.getAnnotationIndex(type).withSnapshotIterators().iterator();
+        result = stream.getOffsetIndex().iterator(type, null, null, stream);
       } else {
         AnnotationFS pointer = stream.getAnchor(after, annotation);
-        result = cas.getAnnotationIndex(type).withSnapshotIterators().iterator(pointer);
+        result = stream.getOffsetIndex().iterator(type, null, pointer, stream);
         if (!result.isValid()) {
           if (after) {
             // result.moveToFirst();
@@ -503,11 +523,10 @@ public class WildCardRuleElement extends AbstractRuleElement {
       RutaFrame window = new RutaFrame(jcas, stream.getDocumentAnnotation().getBegin(),
               stream.getDocumentAnnotation().getEnd());
       if (annotation == null) {
-        result = cas.getAnnotationIndex(type).subiterator(window);
+        result = stream.getOffsetIndex().iterator(type, window, null, stream);
       } else {
-        result = cas.getAnnotationIndex(type).subiterator(window);
         AnnotationFS pointer = stream.getAnchor(after, annotation);
-        result.moveTo(pointer);
+        result = stream.getOffsetIndex().iterator(type, window, pointer, stream);
         if (!result.isValid()) {
           if (after) {
             // result.moveToFirst();
@@ -542,18 +561,11 @@ public class WildCardRuleElement extends AbstractRuleElement {
     IStringExpression expression = matcher.getExpression();
     MatchContext context = new MatchContext(this, ruleMatch, true);
     String stringValue = expression.getStringValue(context, stream);
-    AnnotationFS documentAnnotation = stream.getDocumentAnnotation();
-    int delta = documentAnnotation.getBegin();
-    String document = documentAnnotation.getCoveredText();
-    int pointer = 0;
-    if (annotation != null) {
-      pointer = annotation.getEnd() - delta;
-    }
-    int indexOf = 0;
+    int pointer = getLiteralPointer(after, annotation, stream);
     boolean doneHere = false;
-    // TODO matching direction not included in document.indexOf(). Need another method here
-    while (!doneHere && (indexOf = document.indexOf(stringValue, pointer)) < document.length()) {
-      if (indexOf < 0) {
+    while (!doneHere && !stream.getTimeBudget().isExceeded()) {
+      int position = getNextLiteralPosition(after, stringValue, pointer, stream);
+      if (position < 0) {
         // can't match, the next next element will see it.
         ComposedRuleElementMatch nextContainerMatch = getContainerMatchOfNextElement(containerMatch,
                 nextDepth);
@@ -562,8 +574,13 @@ public class WildCardRuleElement extends AbstractRuleElement {
         doneHere = true;
         break;
       }
-      RutaBasic anchor = stream.getAnchor(after, indexOf + delta);
-      RutaBasic endAnchor = stream.getAnchor(!after, indexOf + delta);
+      RutaBasic anchor = stream.getAnchor(after, position);
+      if (anchor == null) {
+        // the literal does not start or end at a basic annotation
+        pointer = after ? position + 1 : position - 1;
+        continue;
+      }
+      RutaBasic endAnchor = stream.getAnchor(!after, position);
       ComposedRuleElementMatch extendedContainerMatch = containerMatch.copy();
       RuleMatch extendedMatch = ruleMatch.copy(extendedContainerMatch, after);
       AnnotationFS coveredByWildCard = getCoveredByWildCard(after, annotation, anchor, stream);
@@ -592,6 +609,32 @@ public class WildCardRuleElement extends AbstractRuleElement {
     return result;
   }
 
+  private int getLiteralPointer(boolean after, AnnotationFS annotation, RutaStream stream) {
+    if (annotation == null) {
+      AnnotationFS documentAnnotation = stream.getDocumentAnnotation();
+      return after ? documentAnnotation.getBegin() : documentAnnotation.getEnd();
+    }
+    return after ? annotation.getEnd() : annotation.getBegin();
+  }
+
+  /**
+   * Returns the offset of the next occurrence of the literal within the window in the given
+   * direction: its begin if matching forward, its end if matching backward, or -1 if there is none.
+   */
+  private int getNextLiteralPosition(boolean after, String literal, int pointer,
+          RutaStream stream) {
+    if (literal == null) {
+      return -1;
+    }
+    AnnotationFS documentAnnotation = stream.getDocumentAnnotation();
+    LiteralOccurrenceIndex literalIndex = stream.getLiteralIndex();
+    if (after) {
+      return literalIndex.next(literal, pointer, documentAnnotation.getEnd());
+    }
+    int begin = literalIndex.previous(literal, documentAnnotation.getBegin(), pointer);
+    return begin < 0 ? -1 : begin + literal.length();
+  }
+
   private int getNextPointer(boolean after, AnnotationFS anchor) {
     if (after) {
       return anchor.getEnd();
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.visitor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.ruta.type.DebugBlockApply;
+import org.apache.uima.ruta.type.DebugEvaluatedCondition;
+import org.apache.uima.ruta.type.DebugFailedRuleMatch;
+import org.apache.uima.ruta.type.DebugMatchedRuleMatch;
+import org.apache.uima.ruta.type.DebugRuleApply;
+import org.apache.uima.ruta.type.DebugRuleElementMatch;
+import org.apache.uima.ruta.type.DebugRuleElementMatches;
+import org.apache.uima.ruta.type.DebugRuleMatch;
+import org.apache.uima.ruta.type.DebugScriptApply;
+import org.apache.uima.ruta.utils.UIMAUtils;
+
+/**
+ * Reads the events written by a {@link DebugEventWriter} and creates the debug types of the
+ * {@link DebugInfoCollectorVisitor} in a CAS, so that the debug information can be inspected with
+ * the explain views. The documents are read in the order they were processed.
+ */
+public class DebugEventReader {
+
+  private final DataInputStream in;
+
+  private final List<String> names = new ArrayList<String>();
+
+  private long timestamp;
+
+  private static class BlockEvent {
+
+    private final int nameId;
+
+    private final int ruleId;
+
+    private DebugRuleApply ruleApply;
+
+    private final List<DebugScriptApply> innerApplies = new ArrayList<DebugScriptApply>();
+
+    public BlockEvent(int nameId, int ruleId) {
+      super();
+      this.nameId = nameId;
+      this.ruleId = ruleId;
+    }
+  }
+
+  public DebugEventReader(InputStream in) throws IOException {
+    super();
+    this.in = new DataInputStream(new BufferedInputStream(in));
+    if (this.in.readInt() != DebugEventWriter.MAGIC) {
+      throw new IOException("Not a stream of debug events");
+    }
+    int version = this.in.readInt();
+    if (version != DebugEventWriter.VERSION) {
+      throw new IOException("Unsupported version of debug events: " + version);
+    }
+  }
+
+  /**
+   * Reads the events of the next document and adds the corresponding debug information to the
+   * given CAS, which should contain the processed document.
+   *
+   * @param jcas
+   *          the CAS for the debug information
+   * @return false if there is no further document
+   * @throws IOException
+   *           if the stream is broken or ends within a document
+   */
+  public boolean readDocument(JCas jcas) throws IOException {
+    if (!skipToDocument()) {
+      return false;
+    }
+    timestamp = in.readLong();
+    LinkedList<BlockEvent> blocks = new LinkedList<BlockEvent>();
+    while (true) {
+      byte event = in.readByte();
+      switch (event) {
+        case DebugEventWriter.NAME:
+          readName();
+          break;
+        case DebugEventWriter.BLOCK_BEGIN:
+          int nameId = in.readInt();
+          int ruleId = in.readInt();
+          // the script is given by the rule of the block
+          in.readInt();
+          blocks.push(new BlockEvent(nameId, ruleId));
+          break;
+        case DebugEventWriter.BLOCK_END:
+          DebugBlockApply blockApply = createBlockApply(blocks.pop(), jcas);
+          addApply(blockApply, blocks);
+          break;
+        case DebugEventWriter.RULE_APPLY:
+          DebugRuleApply ruleApply = readRuleApply(jcas);
+          BlockEvent block = blocks.peek();
+          if (block != null && block.ruleApply == null && block.innerApplies.isEmpty()
+                  && block.ruleId == ruleApply.getId()) {
+            block.ruleApply = ruleApply;
+          } else {
+            addApply(ruleApply, blocks);
+          }
+          break;
+        case DebugEventWriter.DOCUMENT_END:
+          return true;
+        default:
+          throw new IOException("Unknown debug event: " + event);
+      }
+    }
+  }
+
+  /**
+   * @return the time when the last document read was processed
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private boolean skipToDocument() throws IOException {
+    while (true) {
+      byte event;
+      try {
+        event = in.readByte();
+      } catch (EOFException e) {
+        return false;
+      }
+      if (event == DebugEventWriter.DOCUMENT) {
+        return true;
+      } else if (event == DebugEventWriter.NAME) {
+        readName();
+      } else {
+        throw new IOException("Unexpected debug event outside of a document: " + event);
+      }
+    }
+  }
+
+  private void readName() throws IOException {
+    int id = in.readInt();
+    String name = in.readUTF();
+    while (names.size() <= id) {
+      names.add(null);
+    }
+    names.set(id, name);
+  }
+
+  private String getName(int id) {
+    return id >= 0 && id < names.size() ? names.get(id) : "";
+  }
+
+  private void addApply(DebugScriptApply apply, LinkedList<BlockEvent> blocks) {
+    BlockEvent parent = blocks.peek();
+    if (parent != null) {
+      parent.innerApplies.add(apply);
+    } else {
+      apply.setTimestamp(timestamp);
+      apply.addToIndexes();
+    }
+  }
+
+  private DebugBlockApply createBlockApply(BlockEvent block, JCas jcas) {
+    DebugBlockApply dba = new DebugBlockApply(jcas);
+    dba.setElement(getName(block.nameId));
+    dba.setInnerApply(UIMAUtils.toFSArray(jcas, block.innerApplies));
+    DebugRuleApply ruleApply = block.ruleApply;
+    if (ruleApply != null) {
+      dba.setApplied(ruleApply.getApplied());
+      dba.setTried(ruleApply.getTried());
+      dba.setRules(ruleApply.getRules());
+      dba.setBegin(ruleApply.getBegin());
+      dba.setEnd(ruleApply.getEnd());
+    } else {
+      dba.setRules(UIMAUtils.toFSArray(jcas, new ArrayList<DebugRuleMatch>()));
+    }
+    return dba;
+  }
+
+  private DebugRuleApply readRuleApply(JCas jcas) throws IOException {
+    DebugRuleApply dra = new DebugRuleApply(jcas);
+    dra.setElement(getName(in.readInt()));
+    dra.setId(in.readInt());
+    dra.setScript(getName(in.readInt()));
+    dra.setTried(in.readInt());
+    dra.setApplied(in.readInt());
+    int size = in.readInt();
+    List<DebugRuleMatch> ruleMatches = new ArrayList<DebugRuleMatch>(size);
+    int begin = Integer.MAX_VALUE;
+    int end = 0;
+    for (int i = 0; i < size; i++) {
+      DebugRuleMatch ruleMatch = readRuleMatch(jcas);
+      begin = Math.min(begin, ruleMatch.getBegin());
+      end = Math.max(end, ruleMatch.getEnd());
+      ruleMatches.add(ruleMatch);
+    }
+    if (begin >= end) {
+      begin = end;
+    }
+    dra.setRules(UIMAUtils.toFSArray(jcas, ruleMatches));
+    dra.setBegin(begin);
+    dra.setEnd(end);
+    return dra;
+  }
+
+  private DebugRuleMatch readRuleMatch(JCas jcas) throws IOException {
+    boolean matched = in.readBoolean();
+    DebugRuleMatch drm = matched ? new DebugMatchedRuleMatch(jcas)
+            : new DebugFailedRuleMatch(jcas);
+    drm.setMatched(matched);
+    int begin = in.readInt();
+    int end = in.readInt();
+    drm.setElements(UIMAUtils.toFSArray(jcas, readRuleElementMatches(jcas)));
+    drm.setDelegates(UIMAUtils.toFSArray(jcas, new ArrayList<DebugScriptApply>()));
+    if (begin >= 0) {
+      drm.setBegin(begin);
+      drm.setEnd(end);
+      drm.addToIndexes();
+    }
+    return drm;
+  }
+
+  private List<DebugRuleElementMatches> readRuleElementMatches(JCas jcas) throws IOException {
+    int size = in.readInt();
+    List<DebugRuleElementMatches> result = new ArrayList<DebugRuleElementMatches>(size);
+    for (int i = 0; i < size; i++) {
+      DebugRuleElementMatches drems = new DebugRuleElementMatches(jcas);
+      drems.setElement(getName(in.readInt()));
+      drems.setRuleAnchor(in.readBoolean());
+      int matches = in.readInt();
+      List<DebugRuleElementMatch> remList = new ArrayList<DebugRuleElementMatch>(matches);
+      for (int j = 0; j < matches; j++) {
+        remList.add(readRuleElementMatch(jcas));
+      }
+      drems.setMatches(UIMAUtils.toFSArray(jcas, remList));
+      result.add(drems);
+    }
+    return result;
+  }
+
+  private DebugRuleElementMatch readRuleElementMatch(JCas jcas) throws IOException {
+    DebugRuleElementMatch drem = new DebugRuleElementMatch(jcas);
+    boolean composed = in.readBoolean();
+    DebugEvaluatedCondition base = new DebugEvaluatedCondition(jcas);
+    base.setValue(in.readBoolean());
+    base.setElement(getName(in.readInt()));
+    drem.setBaseCondition(base);
+    int begin = in.readInt();
+    int end = in.readInt();
+    if (begin >= 0 && begin <= end) {
+      drem.setBegin(begin);
+      drem.setEnd(end);
+    }
+    drem.setConditions(UIMAUtils.toFSArray(jcas, readConditions(jcas)));
+    if (composed) {
+      drem.setElements(UIMAUtils.toFSArray(jcas, readRuleElementMatches(jcas)));
+    }
+    return drem;
+  }
+
+  private List<DebugEvaluatedCondition> readConditions(JCas jcas) throws IOException {
+    int size = in.readInt();
+    List<DebugEvaluatedCondition> result = new ArrayList<DebugEvaluatedCondition>(size);
+    for (int i = 0; i < size; i++) {
+      DebugEvaluatedCondition ec = new DebugEvaluatedCondition(jcas);
+      ec.setElement(getName(in.readInt()));
+      ec.setValue(in.readBoolean());
+      ec.setConditions(UIMAUtils.toFSArray(jcas, readConditions(jcas)));
+      result.add(ec);
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.visitor;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.RutaElement;
+import org.apache.uima.ruta.RutaProcessRuntimeException;
+import org.apache.uima.ruta.RutaStatement;
+import org.apache.uima.ruta.RutaStream;
+import org.apache.uima.ruta.ScriptApply;
+import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.rule.AbstractRule;
+import org.apache.uima.ruta.rule.AbstractRuleMatch;
+import org.apache.uima.ruta.rule.ComposedRuleElement;
+import org.apache.uima.ruta.rule.ComposedRuleElementMatch;
+import org.apache.uima.ruta.rule.EvaluatedCondition;
+import org.apache.uima.ruta.rule.RegExpRuleMatch;
+import org.apache.uima.ruta.rule.RuleApply;
+import org.apache.uima.ruta.rule.RuleElement;
+import org.apache.uima.ruta.rule.RuleElementMatch;
+import org.apache.uima.ruta.rule.RuleMatch;
+import org.apache.uima.ruta.rule.RutaRuleElement;
+import org.apache.uima.ruta.verbalize.RutaVerbalizer;
+
+/**
+ * Streams the debug information of the applied blocks and rules to an output stream instead of
+ * creating feature structures in the CAS. The events are written in a compact binary format as
+ * soon as a rule was applied: the verbalization of each element is written only once and then
+ * referenced by an id, and the matches are given by their offsets. The file can be loaded into a
+ * CAS with the {@link DebugEventReader}, which creates the same debug types like the
+ * {@link DebugInfoCollectorVisitor}.
+ *
+ * The visitor is reused for all documents processed by an analysis engine. Rules applied within
+ * other rules, e.g., inlined rules or blocks called by an action, are not written.
+ */
+public class DebugEventWriter implements RutaInferenceVisitor {
+
+  static final int MAGIC = 0x52444247;
+
+  static final int VERSION = 1;
+
+  static final byte NAME = 1;
+
+  static final byte DOCUMENT = 2;
+
+  static final byte BLOCK_BEGIN = 3;
+
+  static final byte BLOCK_END = 4;
+
+  static final byte RULE_APPLY = 5;
+
+  static final byte DOCUMENT_END = 6;
+
+  private static final int MAX_NAME_LENGTH = 16000;
+
+  private final DataOutputStream out;
+
+  private final ByteArrayOutputStream recordBuffer = new ByteArrayOutputStream();
+
+  private final DataOutputStream record = new DataOutputStream(recordBuffer);
+
+  private final boolean withMatches;
+
+  private final Set<String> ruleIds;
+
+  private final int sampling;
+
+  private final RutaVerbalizer verbalizer;
+
+  private final Map<Object, Integer> names = new IdentityHashMap<Object, Integer>();
+
+  private final Map<Object, Integer> baseNames = new IdentityHashMap<Object, Integer>();
+
+  private final Map<String, Integer> stringNames = new HashMap<String, Integer>();
+
+  private final Map<AbstractRule, int[]> matchCounters = new IdentityHashMap<AbstractRule, int[]>();
+
+  private int nextId = 0;
+
+  private int ruleDepth = 0;
+
+  /**
+   * @param out
+   *          the stream for the events, which is buffered by the writer
+   * @param withMatches
+   *          true if the matches of the rules should be written
+   * @param ruleIds
+   *          the ids of the rules whose matches should be written, or all rules if empty
+   * @param sampling
+   *          only every n-th match of a rule is written
+   * @param verbalizer
+   *          the verbalizer for the names of the elements
+   */
+  public DebugEventWriter(OutputStream out, boolean withMatches, Collection<String> ruleIds,
+          int sampling, RutaVerbalizer verbalizer) throws IOException {
+    super();
+    this.out = new DataOutputStream(new BufferedOutputStream(out));
+    this.withMatches = withMatches;
+    this.ruleIds = ruleIds == null ? new HashSet<String>() : new HashSet<String>(ruleIds);
+    this.sampling = Math.max(1, sampling);
+    this.verbalizer = verbalizer;
+    this.out.writeInt(MAGIC);
+    this.out.writeInt(VERSION);
+  }
+
+  /**
+   * Starts the events of a new document.
+   */
+  public void startDocument() {
+    ruleDepth = 0;
+    try {
+      out.writeByte(DOCUMENT);
+      out.writeLong(System.currentTimeMillis());
+    } catch (IOException e) {
+      throw new RutaProcessRuntimeException(e);
+    }
+  }
+
+  @Override
+  public void beginVisit(RutaElement element, ScriptApply result) {
+    try {
+      if (element instanceof RutaBlock) {
+        if (ruleDepth == 0) {
+          RutaBlock block = (RutaBlock) element;
+          int nameId = getNameId(element);
+          int namespaceId = getNamespaceId(block);
+          out.writeByte(BLOCK_BEGIN);
+          out.writeInt(nameId);
+          out.writeInt(block.getRule() == null ? -1 : block.getRule().getId());
+          out.writeInt(namespaceId);
+        }
+      } else if (element instanceof AbstractRule) {
+        if (ruleDepth == 0 && result instanceof RuleApply && isWithMatches((AbstractRule) element)) {
+          RuleApply ruleApply = (RuleApply) result;
+          ruleApply.setAcceptMatches(true);
+        }
+        ruleDepth++;
+      }
+    } catch (IOException e) {
+      throw new RutaProcessRuntimeException(e);
+    }
+  }
+
+  @Override
+  public void endVisit(RutaElement element, ScriptApply result) {
+    try {
+      if (element instanceof RutaBlock) {
+        if (ruleDepth == 0) {
+          out.writeByte(BLOCK_END);
+        }
+      } else if (element instanceof AbstractRule) {
+        ruleDepth--;
+        if (ruleDepth == 0 && result instanceof RuleApply) {
+          writeRuleApply((AbstractRule) element, (RuleApply) result);
+        }
+      }
+    } catch (IOException e) {
+      throw new RutaProcessRuntimeException(e);
+    }
+  }
+
+  @Override
+  public void finished(RutaStream stream, List<RutaInferenceVisitor> visitors) {
+    try {
+      out.writeByte(DOCUMENT_END);
+      out.flush();
+    } catch (IOException e) {
+      throw new RutaProcessRuntimeException(e);
+    }
+  }
+
+  @Override
+  public void annotationAdded(AnnotationFS annotation,
+          AbstractRuleMatch<? extends AbstractRule> creator) {
+  }
+
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private boolean isWithMatches(AbstractRule rule) {
+    return withMatches && (ruleIds.isEmpty() || ruleIds.contains(String.valueOf(rule.getId())));
+  }
+
+  private void writeRuleApply(AbstractRule rule, RuleApply ruleApply) throws IOException {
+    // names are written directly to the output while the record is collected in the buffer
+    recordBuffer.reset();
+    record.writeInt(getNameId(rule));
+    record.writeInt(rule.getId());
+    record.writeInt(getNamespaceId(rule));
+    record.writeInt(ruleApply.getTried());
+    record.writeInt(ruleApply.getApplied());
+    List<AbstractRuleMatch<? extends AbstractRule>> matches = ruleApply.getList();
+    if (!isWithMatches(rule) || matches.isEmpty()) {
+      record.writeInt(0);
+    } else {
+      int[] counter = matchCounters.get(rule);
+      if (counter == null) {
+        counter = new int[1];
+        matchCounters.put(rule, counter);
+      }
+      int first = (sampling - counter[0] % sampling) % sampling;
+      int written = first < matches.size() ? (matches.size() - first - 1) / sampling + 1 : 0;
+      counter[0] += matches.size();
+      record.writeInt(written);
+      for (int i = first; i < matches.size(); i += sampling) {
+        writeRuleMatch(matches.get(i));
+      }
+    }
+    record.flush();
+    out.writeByte(RULE_APPLY);
+    recordBuffer.writeTo(out);
+  }
+
+  private void writeRuleMatch(AbstractRuleMatch<? extends AbstractRule> match) throws IOException {
+    record.writeBoolean(match.matchedCompletely());
+    List<AnnotationFS> matchedAnnotationsOfRoot = match.getMatchedAnnotationsOfRoot();
+    AnnotationFS matchedAnnotation = matchedAnnotationsOfRoot == null
+            || matchedAnnotationsOfRoot.isEmpty() ? null : matchedAnnotationsOfRoot.get(0);
+    record.writeInt(matchedAnnotation == null ? -1 : matchedAnnotation.getBegin());
+    record.writeInt(matchedAnnotation == null ? -1 : matchedAnnotation.getEnd());
+    if (match instanceof RuleMatch) {
+      writeInnerMatches(((RuleMatch) match).getRootMatch());
+    } else if (match instanceof RegExpRuleMatch) {
+      RegExpRuleMatch regExpMatch = (RegExpRuleMatch) match;
+      record.writeInt(regExpMatch.getMap().size());
+      int ruleNameId = getNameId(regExpMatch.getRule());
+      for (Entry<Integer, List<AnnotationFS>> entry : regExpMatch.getMap().entrySet()) {
+        int groupNameId = getGroupNameId(entry.getKey());
+        List<AnnotationFS> annotations = entry.getValue();
+        record.writeInt(ruleNameId);
+        record.writeBoolean(false);
+        record.writeInt(annotations == null ? 0 : annotations.size());
+        if (annotations != null) {
+          for (AnnotationFS each : annotations) {
+            record.writeBoolean(false);
+            record.writeBoolean(true);
+            record.writeInt(groupNameId);
+            record.writeInt(each.getBegin());
+            record.writeInt(each.getEnd());
+            record.writeInt(0);
+          }
+        }
+      }
+    } else {
+      record.writeInt(0);
+    }
+  }
+
+  private void writeInnerMatches(ComposedRuleElementMatch composedMatch) throws IOException {
+    Map<RuleElement, List<RuleElementMatch>> innerMatches = composedMatch.getInnerMatches();
+    record.writeInt(innerMatches.size());
+    for (Entry<RuleElement, List<RuleElementMatch>> entry : innerMatches.entrySet()) {
+      List<RuleElementMatch> ruleElementMatches = entry.getValue();
+      record.writeInt(getNameId(entry.getKey()));
+      record.writeBoolean(ruleElementMatches != null && !ruleElementMatches.isEmpty()
+              && ruleElementMatches.get(0).isRuleAnchor());
+      if (ruleElementMatches == null) {
+        record.writeInt(0);
+        continue;
+      }
+      record.writeInt(ruleElementMatches.size());
+      for (RuleElementMatch each : ruleElementMatches) {
+        writeRuleElementMatch(each);
+      }
+    }
+  }
+
+  private void writeRuleElementMatch(RuleElementMatch match) throws IOException {
+    boolean composed = match instanceof ComposedRuleElementMatch;
+    record.writeBoolean(composed);
+    record.writeBoolean(match.isBaseConditionMatched());
+    record.writeInt(getBaseNameId(match.getRuleElement(), composed));
+    List<AnnotationFS> annotations = match.getTextsMatched();
+    int begin = -1;
+    int end = -1;
+    if (!annotations.isEmpty()) {
+      begin = annotations.get(0).getBegin();
+      end = annotations.get(annotations.size() - 1).getEnd();
+    }
+    record.writeInt(begin);
+    record.writeInt(end);
+    writeConditions(match.getConditions());
+    if (composed) {
+      writeInnerMatches((ComposedRuleElementMatch) match);
+    }
+  }
+
+  private void writeConditions(List<EvaluatedCondition> conditions) throws IOException {
+    if (conditions == null) {
+      record.writeInt(0);
+      return;
+    }
+    record.writeInt(conditions.size());
+    for (EvaluatedCondition each : conditions) {
+      record.writeInt(getNameId(each.getCondition()));
+      record.writeBoolean(each.isValue());
+      writeConditions(each.getConditions());
+    }
+  }
+
+  private int getNameId(RutaElement element) throws IOException {
+    Integer id = names.get(element);
+    if (id == null) {
+      id = writeName(verbalizer.verbalize(element));
+      names.put(element, id);
+    }
+    return id;
+  }
+
+  private int getNameId(RuleElement element) throws IOException {
+    Integer id = names.get(element);
+    if (id == null) {
+      id = writeName(verbalizer.verbalize(element));
+      names.put(element, id);
+    }
+    return id;
+  }
+
+  private int getBaseNameId(RuleElement element, boolean composed) throws IOException {
+    Integer id = baseNames.get(element);
+    if (id == null) {
+      String name = "";
+      if (composed) {
+        name = verbalizer.verbalize(element);
+      } else if (element instanceof RutaRuleElement) {
+        name = verbalizer.verbalizeMatcher((RutaRuleElement) element);
+      } else if (element instanceof ComposedRuleElement) {
+        name = verbalizer.verbalizeComposed((ComposedRuleElement) element);
+      }
+      id = writeName(name);
+      baseNames.put(element, id);
+    }
+    return id;
+  }
+
+  private int getGroupNameId(int group) throws IOException {
+    return getNameId("Group " + group, stringNames);
+  }
+
+  private int getNamespaceId(RutaStatement statement) throws IOException {
+    RutaBlock block = statement.getParent();
+    if (block == null && statement instanceof RutaBlock) {
+      block = (RutaBlock) statement;
+    }
+    String namespace = "";
+    if (block != null && block.getScript() != null) {
+      namespace = block.getScript().getRootBlock().getNamespace();
+    }
+    return getNameId(namespace, stringNames);
+  }
+
+  private int getNameId(String name, Map<String, Integer> map) throws IOException {
+    Integer id = map.get(name);
+    if (id == null) {
+      id = writeName(name);
+      map.put(name, id);
+    }
+    return id;
+  }
+
+  private int writeName(String name) throws IOException {
+    int id = nextId++;
+    if (name == null) {
+      name = "";
+    } else if (name.length() > MAX_NAME_LENGTH) {
+      name = name.substring(0, MAX_NAME_LENGTH);
+    }
+    out.writeByte(NAME);
+    out.writeInt(id);
+    out.writeUTF(name);
+    return id;
+  }
+
+}
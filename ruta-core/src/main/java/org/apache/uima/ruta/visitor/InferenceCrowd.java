@@ -54,6 +54,13 @@ public class InferenceCrowd implements RutaInferenceVisitor {
     }
   }
 
+  /**
+   * @return true if there are no visitors that need to be informed
+   */
+  public boolean isEmpty() {
+    return visitors.isEmpty();
+  }
+
   public void finished(RutaStream stream) {
     for (RutaInferenceVisitor each : visitors) {
       each.finished(stream, visitors);
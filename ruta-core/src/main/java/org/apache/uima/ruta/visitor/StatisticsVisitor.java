@@ -20,7 +20,9 @@
 package org.apache.uima.ruta.visitor;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -45,6 +47,8 @@ import org.apache.uima.ruta.verbalize.RutaVerbalizer;
 
 public class StatisticsVisitor implements RutaInferenceVisitor {
 
+  private static final double NANOS_PER_MILLI = 1000000d;
+
   private Map<String, Long> conditionTime;
 
   private Map<String, Long> actionTime;
@@ -53,9 +57,11 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
 
   private Map<String, Integer> actionAmount;
 
-  private Map<String, Long> conditionDelta;
+  private Map<RutaElement, String> names;
+
+  private long[] starts = new long[16];
 
-  private Map<String, Long> actionDelta;
+  private int depth = 0;
 
   private RutaVerbalizer verbalizer;
 
@@ -66,50 +72,43 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
     actionTime = new HashMap<String, Long>();
     conditionAmount = new HashMap<String, Integer>();
     actionAmount = new HashMap<String, Integer>();
-    conditionDelta = new HashMap<String, Long>();
-    actionDelta = new HashMap<String, Long>();
+    names = new IdentityHashMap<RutaElement, String>();
   }
 
   @Override
   public void beginVisit(RutaElement element, ScriptApply result) {
     if (element instanceof AbstractRutaCondition) {
-      AbstractRutaCondition c = (AbstractRutaCondition) element;
-      String name = verbalizer.verbalizeName(c);
+      String name = getName(element);
       Integer amount = conditionAmount.get(name);
       if (amount == null)
         amount = 0;
       amount++;
       conditionAmount.put(name, amount);
-      conditionDelta.put(name, System.currentTimeMillis());
+      push();
     } else if (element instanceof AbstractRutaAction) {
-      AbstractRutaAction a = (AbstractRutaAction) element;
-      String name = verbalizer.verbalizeName(a);
+      String name = getName(element);
       Integer amount = actionAmount.get(name);
       if (amount == null)
         amount = 0;
       amount++;
       actionAmount.put(name, amount);
-      actionDelta.put(name, System.currentTimeMillis());
+      push();
     }
   }
 
   @Override
   public void endVisit(RutaElement element, ScriptApply result) {
     if (element instanceof AbstractRutaCondition) {
-      AbstractRutaCondition c = (AbstractRutaCondition) element;
-      String name = verbalizer.verbalizeName(c);
-      Long start = conditionDelta.get(name);
-      long delta = System.currentTimeMillis() - start;
+      String name = getName(element);
+      long delta = pop();
       Long total = conditionTime.get(name);
       if (total == null)
         total = 0L;
       total += delta;
       conditionTime.put(name, total);
     } else if (element instanceof AbstractRutaAction) {
-      AbstractRutaAction a = (AbstractRutaAction) element;
-      String name = verbalizer.verbalizeName(a);
-      Long start = actionDelta.get(name);
-      long delta = System.currentTimeMillis() - start;
+      String name = getName(element);
+      long delta = pop();
       Long total = actionTime.get(name);
       if (total == null)
         total = 0L;
@@ -118,6 +117,32 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
     }
   }
 
+  /**
+   * The name of an element is only verbalized once.
+   */
+  private String getName(RutaElement element) {
+    String name = names.get(element);
+    if (name == null) {
+      name = verbalizer.verbalizeName(element);
+      names.put(element, name);
+    }
+    return name;
+  }
+
+  private void push() {
+    if (depth == starts.length) {
+      starts = Arrays.copyOf(starts, depth * 2);
+    }
+    starts[depth++] = System.nanoTime();
+  }
+
+  private long pop() {
+    if (depth == 0) {
+      return 0;
+    }
+    return System.nanoTime() - starts[--depth];
+  }
+
   @Override
   public void finished(RutaStream stream, List<RutaInferenceVisitor> visitors) {
     List<String> names = new ArrayList<String>();
@@ -125,7 +150,7 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
     List<Integer> amounts = new ArrayList<Integer>();
     List<Double> parts = new ArrayList<Double>();
     for (String each : conditionTime.keySet()) {
-      double total = conditionTime.get(each);
+      double total = conditionTime.get(each) / NANOS_PER_MILLI;
       double amount = conditionAmount.get(each);
       double part = total / amount;
       part *= 10000;
@@ -138,7 +163,7 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
     }
 
     for (String each : actionTime.keySet()) {
-      double total = actionTime.get(each);
+      double total = actionTime.get(each) / NANOS_PER_MILLI;
       double amount = actionAmount.get(each);
       double part = total / amount;
       part *= 10000;
@@ -186,10 +211,16 @@ public class StatisticsVisitor implements RutaInferenceVisitor {
     return result;
   }
 
+  /**
+   * @return the total time in nanoseconds of each condition
+   */
   public Map<String, Long> getConditionTime() {
     return conditionTime;
   }
 
+  /**
+   * @return the total time in nanoseconds of each action
+   */
   public Map<String, Long> getActionTime() {
     return actionTime;
   }
@@ -19,36 +19,203 @@
 
 package org.apache.uima.ruta.visitor;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.ruta.RutaElement;
+import org.apache.uima.ruta.RutaModule;
 import org.apache.uima.ruta.RutaStream;
 import org.apache.uima.ruta.ScriptApply;
+import org.apache.uima.ruta.action.AbstractRutaAction;
+import org.apache.uima.ruta.block.RutaBlock;
+import org.apache.uima.ruta.condition.AbstractRutaCondition;
 import org.apache.uima.ruta.rule.AbstractRule;
 import org.apache.uima.ruta.rule.AbstractRuleMatch;
+import org.apache.uima.ruta.verbalize.RutaVerbalizer;
 
+/**
+ * Measures the time spent in the blocks, rules, conditions and actions of a script with
+ * {@link System#nanoTime()}. Each visited element gets a dense int id on its first visit and all
+ * counters are stored in primitive arrays indexed by this id. The start times are kept on a stack,
+ * so that recursive and nested visits of the same element are measured correctly. The time of an
+ * element that is visited recursively is only added once to its total time.
+ *
+ * The counters are aggregated over all documents processed with the same instance. Additionally,
+ * the visits are aggregated in a call tree, which can be exported as collapsed stacks (the input
+ * format of flame graph tools) or as JSON report.
+ */
 public class TimeProfilerVisitor implements RutaInferenceVisitor {
 
-  private Map<RutaElement, Long> timeInfo;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private static final long NANOS_PER_MILLI = 1000000L;
+
+  private final RutaVerbalizer verbalizer;
+
+  private final Map<RutaElement, Integer> ids = new IdentityHashMap<RutaElement, Integer>();
+
+  private RutaElement[] elements = new RutaElement[INITIAL_CAPACITY];
+
+  private long[] elementCount = new long[INITIAL_CAPACITY];
+
+  private long[] elementTotal = new long[INITIAL_CAPACITY];
+
+  private long[] elementSelf = new long[INITIAL_CAPACITY];
+
+  private long[] documentTotal = new long[INITIAL_CAPACITY];
+
+  /**
+   * The number of active visits of each element, for detecting recursion.
+   */
+  private int[] activeVisits = new int[INITIAL_CAPACITY];
+
+  /**
+   * The nodes of the call tree, keyed by the node of the parent and the id of the element.
+   */
+  private final Map<Long, Integer> nodes = new HashMap<Long, Integer>();
+
+  private int[] nodeParent = new int[INITIAL_CAPACITY];
+
+  private int[] nodeElement = new int[INITIAL_CAPACITY];
+
+  private long[] nodeCount = new long[INITIAL_CAPACITY];
+
+  private long[] nodeTotal = new long[INITIAL_CAPACITY];
+
+  private long[] nodeSelf = new long[INITIAL_CAPACITY];
+
+  private int[] stackNode = new int[INITIAL_CAPACITY];
+
+  private long[] stackStart = new long[INITIAL_CAPACITY];
+
+  private long[] stackChildren = new long[INITIAL_CAPACITY];
+
+  private int depth = 0;
+
+  private int documents = 0;
 
   public TimeProfilerVisitor() {
+    this(null);
+  }
+
+  /**
+   * @param verbalizer
+   *          used for the names of the elements in the reports, may be null
+   */
+  public TimeProfilerVisitor(RutaVerbalizer verbalizer) {
     super();
-    timeInfo = new HashMap<RutaElement, Long>();
+    this.verbalizer = verbalizer;
+  }
+
+  /**
+   * Resets the time of the current document. The aggregated counters are kept.
+   */
+  public void startDocument() {
+    Arrays.fill(documentTotal, 0L);
+    Arrays.fill(activeVisits, 0);
+    depth = 0;
+    documents++;
   }
 
   @Override
   public void beginVisit(RutaElement element, ScriptApply result) {
-    getTimeInfo().put(element, System.currentTimeMillis());
+    int id = getId(element);
+    int parent = depth == 0 ? -1 : stackNode[depth - 1];
+    int node = getNode(parent, id);
+    if (depth == stackNode.length) {
+      int length = depth * 2;
+      stackNode = Arrays.copyOf(stackNode, length);
+      stackStart = Arrays.copyOf(stackStart, length);
+      stackChildren = Arrays.copyOf(stackChildren, length);
+    }
+    activeVisits[id]++;
+    stackNode[depth] = node;
+    stackChildren[depth] = 0;
+    stackStart[depth] = System.nanoTime();
+    depth++;
   }
 
   @Override
   public void endVisit(RutaElement element, ScriptApply result) {
-    Long start = getTimeInfo().get(element);
-    long value = System.currentTimeMillis() - start;
-    getTimeInfo().put(element, value);
+    long end = System.nanoTime();
+    Integer id = ids.get(element);
+    if (id == null) {
+      return;
+    }
+    // visits without end, e.g., because of an exception, are closed with this one
+    int index = depth - 1;
+    while (index >= 0 && nodeElement[stackNode[index]] != id) {
+      index--;
+    }
+    if (index < 0) {
+      return;
+    }
+    while (depth > index) {
+      depth--;
+      int node = stackNode[depth];
+      int each = nodeElement[node];
+      long elapsed = end - stackStart[depth];
+      long self = elapsed - stackChildren[depth];
+      nodeCount[node]++;
+      nodeTotal[node] += elapsed;
+      nodeSelf[node] += self;
+      elementCount[each]++;
+      elementSelf[each] += self;
+      if (--activeVisits[each] == 0) {
+        elementTotal[each] += elapsed;
+        documentTotal[each] += elapsed;
+      }
+      if (depth > 0) {
+        stackChildren[depth - 1] += elapsed;
+      }
+    }
+  }
+
+  private int getId(RutaElement element) {
+    Integer id = ids.get(element);
+    if (id != null) {
+      return id;
+    }
+    int newId = ids.size();
+    ids.put(element, newId);
+    if (newId == elements.length) {
+      int length = newId * 2;
+      elements = Arrays.copyOf(elements, length);
+      elementCount = Arrays.copyOf(elementCount, length);
+      elementTotal = Arrays.copyOf(elementTotal, length);
+      elementSelf = Arrays.copyOf(elementSelf, length);
+      documentTotal = Arrays.copyOf(documentTotal, length);
+      activeVisits = Arrays.copyOf(activeVisits, length);
+    }
+    elements[newId] = element;
+    return newId;
+  }
+
+  private int getNode(int parent, int id) {
+    Long key = ((long) parent << 32) | id;
+    Integer node = nodes.get(key);
+    if (node != null) {
+      return node;
+    }
+    int newNode = nodes.size();
+    nodes.put(key, newNode);
+    if (newNode == nodeParent.length) {
+      int length = newNode * 2;
+      nodeParent = Arrays.copyOf(nodeParent, length);
+      nodeElement = Arrays.copyOf(nodeElement, length);
+      nodeCount = Arrays.copyOf(nodeCount, length);
+      nodeTotal = Arrays.copyOf(nodeTotal, length);
+      nodeSelf = Arrays.copyOf(nodeSelf, length);
+    }
+    nodeParent[newNode] = parent;
+    nodeElement[newNode] = id;
+    return newNode;
   }
 
   @Override
@@ -56,8 +223,124 @@ public class TimeProfilerVisitor implements RutaInferenceVisitor {
     // others do the work
   }
 
+  /**
+   * @return the total time in milliseconds of each element visited in the current document
+   */
   public Map<RutaElement, Long> getTimeInfo() {
-    return timeInfo;
+    Map<RutaElement, Long> result = new IdentityHashMap<RutaElement, Long>();
+    for (int i = 0; i < ids.size(); i++) {
+      result.put(elements[i], documentTotal[i] / NANOS_PER_MILLI);
+    }
+    return result;
+  }
+
+  /**
+   * Writes the self time in nanoseconds of each path in the call tree, one path per line. The
+   * names of the elements in a path are separated by semicolons.
+   */
+  public void writeCollapsedStacks(Writer writer) throws IOException {
+    String[] names = getNames();
+    for (int node = 0; node < nodes.size(); node++) {
+      if (nodeSelf[node] <= 0) {
+        continue;
+      }
+      writer.write(getPath(node, names));
+      writer.write(' ');
+      writer.write(Long.toString(nodeSelf[node]));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  private String getPath(int node, String[] names) {
+    StringBuilder sb = new StringBuilder();
+    int each = node;
+    while (each >= 0) {
+      String name = names[nodeElement[each]].replace(';', ',');
+      sb.insert(0, name);
+      each = nodeParent[each];
+      if (each >= 0) {
+        sb.insert(0, ';');
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Writes the counters of all elements and of all nodes of the call tree as JSON. Times are given
+   * in nanoseconds.
+   */
+  public void writeJson(Writer writer) throws IOException {
+    String[] names = getNames();
+    writer.write("{\n  \"documents\": " + documents + ",\n  \"elements\": [");
+    for (int id = 0; id < ids.size(); id++) {
+      writer.write(id == 0 ? "\n" : ",\n");
+      writer.write("    {\"id\": " + id + ", \"kind\": \"" + getKind(elements[id])
+              + "\", \"name\": \"" + escape(names[id]) + "\", \"count\": " + elementCount[id]
+              + ", \"total\": " + elementTotal[id] + ", \"self\": " + elementSelf[id] + "}");
+    }
+    writer.write("\n  ],\n  \"calls\": [");
+    for (int node = 0; node < nodes.size(); node++) {
+      writer.write(node == 0 ? "\n" : ",\n");
+      writer.write("    {\"id\": " + node + ", \"parent\": " + nodeParent[node]
+              + ", \"element\": " + nodeElement[node] + ", \"count\": " + nodeCount[node]
+              + ", \"total\": " + nodeTotal[node] + ", \"self\": " + nodeSelf[node] + "}");
+    }
+    writer.write("\n  ]\n}\n");
+    writer.flush();
+  }
+
+  private String[] getNames() {
+    String[] result = new String[ids.size()];
+    for (int id = 0; id < result.length; id++) {
+      result[id] = getName(elements[id]).replaceAll("\\s+", " ").trim();
+    }
+    return result;
+  }
+
+  private String getName(RutaElement element) {
+    if (element instanceof RutaBlock) {
+      return "BLOCK(" + ((RutaBlock) element).getName() + ")";
+    } else if (element instanceof AbstractRule) {
+      String rule = verbalizer == null ? "" : " " + verbalizer.verbalize(element);
+      return ((AbstractRule) element).getId() + rule;
+    } else if (verbalizer != null) {
+      return verbalizer.verbalizeName(element);
+    }
+    return element.getClass().getSimpleName();
+  }
+
+  private String getKind(RutaElement element) {
+    if (element instanceof RutaModule) {
+      return "SCRIPT";
+    } else if (element instanceof RutaBlock) {
+      return "BLOCK";
+    } else if (element instanceof AbstractRule) {
+      return "RULE";
+    } else if (element instanceof AbstractRutaCondition) {
+      return "CONDITION";
+    } else if (element instanceof AbstractRutaAction) {
+      return "ACTION";
+    }
+    return "OTHER";
+  }
+
+  private static String escape(String string) {
+    StringBuilder sb = new StringBuilder();
+    for (char c : string.toCharArray()) {
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < 0x20) {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    return sb.toString();
+  }
+
+  public int getDocuments() {
+    return documents;
   }
 
   @Override
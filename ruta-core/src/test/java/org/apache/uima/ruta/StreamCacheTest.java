@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.apache.uima.ruta.visitor.InferenceCrowd;
+import org.apache.uima.ruta.visitor.RutaInferenceVisitor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StreamCacheTest {
+
+  @Test
+  public void testInvalidation() throws Exception {
+    CAS cas = RutaTestUtils.getCAS("Some text for the cache.");
+    RutaStream stream = createStream(cas);
+    Type t1 = RutaTestUtils.getTestType(cas, 1);
+    Type t2 = RutaTestUtils.getTestType(cas, 2);
+
+    StreamCache<String, Integer> cache = new StreamCache<String, Integer>();
+    cache.put("t1", 1, stream, t1);
+    cache.put("annotation", 2, stream, cas.getAnnotationType());
+    cache.put("any", 3, stream);
+    Assert.assertEquals(Integer.valueOf(1), cache.get("t1", stream));
+    Assert.assertEquals(Integer.valueOf(2), cache.get("annotation", stream));
+    Assert.assertEquals(Integer.valueOf(3), cache.get("any", stream));
+
+    AnnotationFS a2 = cas.createAnnotation(t2, 0, 4);
+    stream.addAnnotation(a2, true, null);
+    Assert.assertEquals(Integer.valueOf(1), cache.get("t1", stream));
+    Assert.assertNull(cache.get("annotation", stream));
+    Assert.assertNull(cache.get("any", stream));
+
+    long epoch = stream.getModificationEpoch(t1);
+    cache.put("t1", 4, stream, t1);
+    RutaStream windowStream = stream.getWindowStream(a2, t2);
+    AnnotationFS a1 = cas.createAnnotation(t1, 0, 4);
+    windowStream.addAnnotation(a1, true, null);
+    Assert.assertTrue(stream.getModificationEpoch(t1) > epoch);
+    Assert.assertNull(cache.get("t1", stream));
+
+    cache.put("t1", 5, stream, t1);
+    stream.changeOffsets(a1, 5, 9, null);
+    Assert.assertNull(cache.get("t1", stream));
+
+    cache.put("t2", 6, stream, t2);
+    Assert.assertEquals(Integer.valueOf(6), cache.get("t2", stream));
+    CAS otherCas = RutaTestUtils.getCAS("Other text.");
+    Assert.assertNull(cache.get("t2", createStream(otherCas)));
+    Assert.assertEquals(0, cache.size());
+
+    cas.release();
+    otherCas.release();
+  }
+
+  private RutaStream createStream(CAS cas) {
+    Type basicType = cas.getTypeSystem().getType(RutaEngine.BASIC_TYPE);
+    FilterManager filter = new FilterManager(new ArrayList<Type>(), true, cas);
+    RutaStream stream = new RutaStream(cas, basicType, filter, false, false, true, null,
+            new InferenceCrowd(Arrays.<RutaInferenceVisitor> asList()));
+    stream.initalizeBasics(new String[] { CAS.TYPE_NAME_ANNOTATION }, false);
+    return stream;
+  }
+
+}
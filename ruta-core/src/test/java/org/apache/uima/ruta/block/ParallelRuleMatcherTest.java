@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.block;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ParallelRuleMatcherTest {
+
+  private static final String DOCUMENT = "The Ruta language is nice. It has 2 conditions, 3 actions"
+          + " and 4 rules. Some more TEXT in 1 sentence here.";
+
+  private static final String SCRIPT = "(# PERIOD){-> T1};\n"
+          + "CW{-> T2};\n"
+          + "NUM{-> T3};\n"
+          + "SW{-PARTOF(T2) -> T4};\n"
+          + "W{PARTOF(T1), -STARTSWITH(T1) -> T5};\n"
+          + "\"nice\"{-> T6};\n"
+          + "NUM W{-> MARK(T7, 1, 2)};\n"
+          + "T3{-> T8};\n"
+          + "W{-> T8};\n"
+          + "BLOCK(sentence) T1 {\n"
+          + "  CW{-> T9};\n"
+          + "  W{CONTAINS(T9) -> T10};\n"
+          + "  SW # PERIOD{-> T11};\n"
+          + "}\n"
+          + "Document{-> FILTERTYPE(SW)};\n"
+          + "W W{-> T12};\n"
+          + "Document{-> FILTERTYPE};\n"
+          + "T12{-> T13};\n"
+          + "W{-PARTOF(T13) -> T13};\n";
+
+  @Test
+  public void test() throws Exception {
+    int[] expected = process(1);
+    int[] actual = process(4);
+    Assert.assertArrayEquals(expected, actual);
+    Assert.assertEquals(3, actual[1]);
+    Assert.assertEquals(4, actual[2]);
+    Assert.assertEquals(4, actual[3]);
+    Assert.assertEquals(1, actual[6]);
+    Assert.assertEquals(4, actual[9]);
+  }
+
+  private int[] process(int matchingThreads) throws Exception {
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_MATCHING_THREADS, matchingThreads);
+    CAS cas = RutaTestUtils.getCAS(DOCUMENT);
+    ae.process(cas);
+    int[] result = new int[14];
+    for (int i = 1; i < result.length; i++) {
+      result[i] = cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, i)).size();
+    }
+    cas.release();
+    ae.destroy();
+    return result;
+  }
+
+}
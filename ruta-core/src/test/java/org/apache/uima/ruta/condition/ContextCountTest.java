@@ -63,4 +63,42 @@ public class ContextCountTest {
     RutaTestUtils.assertAnnotationsEquals(jcas.getCas(), 1, 3, "A B C a", "B C a b", "C a b c");
   }
 
+  @Test
+  public void testModifiedContexts() throws Exception {
+    CAS cas = RutaTestUtils.getCAS("A b C. D e F.");
+    String script = "CW{CONTEXTCOUNT(Document,2,2)-> T1};\n";
+    script += "SW{-> CW};\n";
+    script += "CW{CONTEXTCOUNT(Document,2,2)-> T2};\n";
+    script += "(# PERIOD){-> T3};\n";
+    script += "CW{CONTEXTCOUNT(T3,2,2)-> T4};\n";
+    script += "Document{-> FILTERTYPE(PERIOD)};\n";
+    script += "W{-> T5};\n";
+    script += "T5{CONTEXTCOUNT(T3,1,1)-> T6};\n";
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 1, "C");
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 1, "b");
+    RutaTestUtils.assertAnnotationsEquals(cas, 4, 2, "b", "e");
+    RutaTestUtils.assertAnnotationsEquals(cas, 6, 2, "A", "D");
+
+    cas.release();
+  }
+
+  @Test
+  public void testModifiedFilter() throws Exception {
+    CAS cas = RutaTestUtils.getCAS("A b C");
+    String script = "Document{-> RETAINTYPE(SPACE)};\n";
+    script += "ANY{-> T3};\n";
+    script += "Document{-> RETAINTYPE};\n";
+    script += "T3{CONTEXTCOUNT(Document,2,2)-> T1};\n";
+    script += "Document{-> RETAINTYPE(SPACE)};\n";
+    script += "T3{CONTEXTCOUNT(Document,2,2)-> T2};\n";
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 1, "b");
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 1, " ");
+
+    cas.release();
+  }
+
 }
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.ruta.condition;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+
+/**
+ * Compares the time for applying rules with macro conditions and actions with the time for the
+ * same rules with the inlined conditions and actions. This is not a unit test and is not executed
+ * by the build. It can be started with its main method, optionally with the number of lines of the
+ * document and the number of measured runs as arguments.
+ */
+public class MacroBenchmark {
+
+  private static final String MACROS = "INT n = 1;\n"
+          + "CONDITION atLeast(TYPE t, INT i) = IS(t), (n >= i);\n"
+          + "ACTION mark(TYPE t) = MARK(t);\n";
+
+  private static final String MACRO_SCRIPT = MACROS + "ANY{atLeast(NUM, 1) -> mark(T1)};\n";
+
+  private static final String INLINE_SCRIPT = MACROS + "ANY{IS(NUM), (n >= 1) -> MARK(T1)};\n";
+
+  private static final int WARM_UP_RUNS = 5;
+
+  public static void main(String[] args) throws Exception {
+    int lines = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int runs = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < lines; i++) {
+      sb.append("Some text 4 more text.");
+      sb.append("\n");
+    }
+    String document = sb.toString();
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    AnalysisEngine macroEngine = AnalysisEngineFactory.createEngine(RutaEngine.class,
+            RutaEngine.PARAM_RULES, MACRO_SCRIPT);
+    AnalysisEngine inlineEngine = AnalysisEngineFactory.createEngine(RutaEngine.class,
+            RutaEngine.PARAM_RULES, INLINE_SCRIPT);
+
+    for (int i = 0; i < WARM_UP_RUNS; i++) {
+      measure(macroEngine, cas, document);
+      measure(inlineEngine, cas, document);
+    }
+    long macro = 0;
+    long inline = 0;
+    // alternate the engines so that both are affected in the same way by the state of the JVM
+    for (int i = 0; i < runs; i++) {
+      macro += measure(macroEngine, cas, document);
+      inline += measure(inlineEngine, cas, document);
+    }
+    System.out.println("lines: " + lines + ", runs: " + runs);
+    System.out.println("MACRO: " + macro / runs / 1000000.0 + " ms per document");
+    System.out.println("INLINE: " + inline / runs / 1000000.0 + " ms per document");
+
+    macroEngine.destroy();
+    inlineEngine.destroy();
+    cas.release();
+  }
+
+  private static long measure(AnalysisEngine engine, CAS cas, String document) throws Exception {
+    cas.reset();
+    cas.setDocumentText(document);
+    long start = System.nanoTime();
+    engine.process(cas);
+    return System.nanoTime() - start;
+  }
+
+}
@@ -84,4 +84,23 @@ public class MacroConditionTest {
 
     cas.release();
   }
+
+  @Test
+  public void testRepeatedCallsWithOtherVariables() throws Exception {
+    String document = "This is a Test.";
+    String script = "INT n = 3;\n";
+    script += "CONDITION longer(INT min) = (n > min);\n";
+    script += "W{longer(1) -> T1};\n";
+    script += "W{longer(5) -> T2};\n";
+    script += "W{(n > 1) -> T3};\n";
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 4, "This", "is", "a", "Test");
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 0);
+    RutaTestUtils.assertAnnotationsEquals(cas, 3, 4, "This", "is", "a", "Test");
+
+    cas.release();
+  }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.condition;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TypeCountIndexTest {
+
+  private static final String DOCUMENT = "The Ruta language is nice. It has 2 conditions, 3 actions"
+          + " and 4 rules. Some more TEXT in 1 sentence here.";
+
+  private static final String SCRIPT = "(# PERIOD){-> T9};\n"
+          + "T9{CONTAINS(NUM, 2, 10)-> T1};\n"
+          + "T9{CONTAINS(CW, 20, 100, true)-> T2};\n"
+          + "T9{VOTE(SW, CW)-> T3};\n"
+          + "T9{COUNT(NUM, 1, 1)-> T4};\n"
+          + "NUM{-> T5};\n"
+          + "T9{COUNT(T5, 3, 3)-> T6};\n"
+          + "Document{-> RETAINTYPE(SPACE)};\n"
+          + "T9{CONTAINS(SPACE, 10, 100)-> T7};\n"
+          + "Document{-> RETAINTYPE};\n"
+          + "Document{-> FILTERTYPE(SW)};\n"
+          + "T9{CONTAINS(W, 50, 100, true)-> T8};\n"
+          + "Document{-> FILTERTYPE};\n";
+
+  @Test
+  public void test() throws Exception {
+    int[] expected = process(false);
+    int[] actual = process(true);
+    Assert.assertArrayEquals(expected, actual);
+    Assert.assertEquals(3, actual[9]);
+    Assert.assertEquals(1, actual[1]);
+    Assert.assertEquals(1, actual[6]);
+  }
+
+  private int[] process(boolean typeCountIndex) throws Exception {
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_TYPE_COUNT_INDEX, typeCountIndex);
+    CAS cas = RutaTestUtils.getCAS(DOCUMENT);
+    ae.process(cas);
+    int[] result = new int[10];
+    for (int i = 1; i < result.length; i++) {
+      result[i] = cas.getAnnotationIndex(RutaTestUtils.getTestType(cas, i)).size();
+    }
+    cas.release();
+    ae.destroy();
+    return result;
+  }
+
+}
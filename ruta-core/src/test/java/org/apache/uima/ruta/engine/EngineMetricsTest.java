@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.engine;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.ruta.metrics.IRutaMetricsRegistry;
+import org.apache.uima.ruta.metrics.RutaDocumentMetrics;
+import org.apache.uima.ruta.metrics.RutaEngineMetrics;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EngineMetricsTest {
+
+  private static final List<Long> annotations = new ArrayList<Long>();
+
+  public static class TestMetricsRegistry implements IRutaMetricsRegistry {
+
+    @Override
+    public void documentProcessed(RutaDocumentMetrics metrics) {
+      annotations.add(metrics.getAnnotations());
+    }
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    RutaEngineMetrics metrics = RutaEngineMetrics.getInstance("EngineMetricsTest");
+    metrics.reset();
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES,
+            "W{-> T1};\nNUM{-> T2};\n", RutaEngine.PARAM_METRICS_NAME, "EngineMetricsTest");
+    CAS cas = RutaTestUtils.getCAS("Some text.");
+    ae.process(cas);
+    cas.reset();
+    cas.setDocumentText("More text.");
+    ae.process(cas);
+
+    Assert.assertEquals(2, metrics.getDocumentsProcessed());
+    Assert.assertEquals(0, metrics.getDocumentsFailed());
+    Assert.assertEquals(2, metrics.getAverageAnnotationsPerDocument(), 0.0);
+    Assert.assertEquals(4, metrics.getRuleApplies());
+    Assert.assertTrue(metrics.getRuleTries() >= metrics.getRuleApplies());
+    Assert.assertTrue(metrics.getAverageBasicsPerDocument() > 0);
+    long sum = 0;
+    for (long each : metrics.getProcessTimeHistogram()) {
+      sum += each;
+    }
+    Assert.assertEquals(2, sum);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.apache.uima.ruta:type=RutaEngine,name="
+            + ObjectName.quote("EngineMetricsTest"));
+    Assert.assertEquals(2L, server.getAttribute(name, "DocumentsProcessed"));
+
+    cas.release();
+    ae.destroy();
+    Assert.assertTrue(server.isRegistered(name));
+    metrics.release();
+    Assert.assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testRegistry() throws Exception {
+    annotations.clear();
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, "W{-> T1};",
+            RutaEngine.PARAM_METRICS, false, RutaEngine.PARAM_METRICS_REGISTRIES,
+            new String[] { TestMetricsRegistry.class.getName() });
+    CAS cas = RutaTestUtils.getCAS("Some more text.");
+    ae.process(cas);
+
+    Assert.assertEquals(1, annotations.size());
+    Assert.assertEquals(3L, annotations.get(0).longValue());
+
+    cas.release();
+    ae.destroy();
+  }
+
+}
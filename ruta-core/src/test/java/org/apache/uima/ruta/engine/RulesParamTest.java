@@ -61,4 +61,41 @@ public class RulesParamTest {
 
     cas.release();
   }
+
+  @Test
+  public void testSwitchingRules() throws Exception {
+    String document = "Some text.";
+    String script1 = "INT i = 0;\nCW{-> ASSIGN(i, i + 1)};\nDocument{IF(i == 1) -> T1};\n";
+    String script2 = "SW{-> T2};\n";
+
+    URL url = RutaEngine.class.getClassLoader().getResource("BasicEngine.xml");
+    if (url == null) {
+      url = RutaTestUtils.class.getClassLoader()
+              .getResource("org/apache/uima/ruta/engine/BasicEngine.xml");
+    }
+    XMLInputSource in = new XMLInputSource(url);
+    ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(in);
+    AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(specifier);
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    for (String script : new String[] { script1, script2, script1 }) {
+      ae.setConfigParameterValue(RutaEngine.PARAM_RULES, script);
+      ae.reconfigure();
+      for (int i = 0; i < 2; i++) {
+        cas.reset();
+        cas.setDocumentText(document);
+        ae.process(cas);
+        if (script == script1) {
+          RutaTestUtils.assertAnnotationsEquals(cas, 1, 1, "Some text.");
+          RutaTestUtils.assertAnnotationsEquals(cas, 2, 0);
+        } else {
+          RutaTestUtils.assertAnnotationsEquals(cas, 1, 0);
+          RutaTestUtils.assertAnnotationsEquals(cas, 2, 1, "text");
+        }
+      }
+    }
+
+    cas.release();
+    ae.destroy();
+  }
 }
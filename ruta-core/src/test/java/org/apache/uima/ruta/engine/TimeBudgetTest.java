@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.engine;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.ruta.RutaTimeBudget;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeBudgetTest {
+
+  /**
+   * An engine whose budget measures the time with a clock that advances one second each time it is
+   * read. Thus, a budget of one millisecond is exceeded at the first check.
+   */
+  public static class TickingRutaEngine extends RutaEngine {
+
+    @Override
+    protected RutaTimeBudget createTimeBudget(long maxDocumentTime, long maxRuleTime,
+            RutaTimeBudget.Policy policy, boolean cpuTime) {
+      return new RutaTimeBudget(maxDocumentTime, maxRuleTime, policy, new RutaTimeBudget.Clock() {
+
+        private long time = 0;
+
+        @Override
+        public long nanoTime() {
+          time += 1000000000L;
+          return time;
+        }
+      });
+    }
+  }
+
+  private static final String SCRIPT = "W ANY* W{-> T1};\nDocument{-> T2};\n";
+
+  private String getDocument() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      sb.append("Some text 4 more text.\n");
+    }
+    return sb.toString();
+  }
+
+  @Test
+  public void testWithoutBudget() throws Exception {
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES,
+            "W{-> T1};\nDocument{-> T2};\n");
+    CAS cas = RutaTestUtils.getCAS("Some text.");
+    ae.process(cas);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 2, "Some", "text");
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 1, "Some text.");
+
+    cas.release();
+    ae.destroy();
+  }
+
+  @Test(expected = AnalysisEngineProcessException.class)
+  public void testAbort() throws Exception {
+    AnalysisEngine ae = createEngine(TickingRutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_MAX_DOCUMENT_TIME, 1);
+    CAS cas = RutaTestUtils.getCAS(getDocument());
+    try {
+      ae.process(cas);
+    } finally {
+      cas.release();
+      ae.destroy();
+    }
+  }
+
+  @Test
+  public void testPartial() throws Exception {
+    AnalysisEngine ae = createEngine(TickingRutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_MAX_DOCUMENT_TIME, 1, RutaEngine.PARAM_TIMEOUT_POLICY, "PARTIAL");
+    CAS cas = RutaTestUtils.getCAS(getDocument());
+    ae.process(cas);
+
+    // the rules after the timeout are not applied
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 0);
+
+    cas.release();
+    ae.destroy();
+  }
+
+  @Test
+  public void testSkipRule() throws Exception {
+    AnalysisEngine ae = createEngine(TickingRutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_MAX_RULE_TIME, 1, RutaEngine.PARAM_TIMEOUT_POLICY, "SKIP_RULE");
+    CAS cas = RutaTestUtils.getCAS(getDocument());
+    ae.process(cas);
+
+    // the next rule is applied
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 1);
+
+    cas.release();
+    ae.destroy();
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.expression;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.ruta.engine.Ruta;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.junit.Test;
+
+public class CachedVariableTest {
+
+  private static final String DOCUMENT = "Some text.";
+
+  private static String getScript() {
+    String script = "INT i = 1;\n";
+    script += "INTLIST list = {1};\n";
+    script += "BLOCK(inner) Document{} {\n";
+    script += "  INT i = 5;\n";
+    script += "  Document{IF(i == 5) -> T1};\n";
+    script += "}\n";
+    script += "Document{IF(i == 1) -> T2};\n";
+    script += "CW{-> ASSIGN(i, i + 1), ADD(list, 2)};\n";
+    script += "Document{SIZE(list, 2, 2) -> T3};\n";
+    script += "Document{IF(i == 2) -> T4};\n";
+    script += "BLOCK(inner2) Document{} {\n";
+    script += "  Document{IF(i == 2) -> T5};\n";
+    script += "}\n";
+    script += "(a:CW b:SW){a.end < b.begin -> T6};\n";
+    return script;
+  }
+
+  private static void assertResult(CAS cas) {
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 1, DOCUMENT);
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 1, DOCUMENT);
+    RutaTestUtils.assertAnnotationsEquals(cas, 3, 1, DOCUMENT);
+    RutaTestUtils.assertAnnotationsEquals(cas, 4, 1, DOCUMENT);
+    RutaTestUtils.assertAnnotationsEquals(cas, 5, 1, DOCUMENT);
+    RutaTestUtils.assertAnnotationsEquals(cas, 6, 1, "Some text");
+  }
+
+  @Test
+  public void testShadowing() throws Exception {
+    CAS cas = RutaTestUtils.getCAS(DOCUMENT);
+    Ruta.apply(cas, getScript());
+
+    assertResult(cas);
+
+    cas.release();
+  }
+
+  @Test
+  public void testReset() throws Exception {
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, getScript());
+    CAS cas = RutaTestUtils.getCAS(DOCUMENT);
+    for (int i = 0; i < 3; i++) {
+      cas.reset();
+      cas.setDocumentText(DOCUMENT);
+      ae.process(cas);
+
+      assertResult(cas);
+    }
+
+    cas.release();
+    ae.destroy();
+  }
+
+}
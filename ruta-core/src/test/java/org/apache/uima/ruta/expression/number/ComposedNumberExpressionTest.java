@@ -35,5 +35,39 @@ public class ComposedNumberExpressionTest {
     String string = expr.getStringValue(null, null);
     Assert.assertEquals("1", string);
   }
+
+  @Test
+  public void testConstantFolding() {
+    List<INumberExpression> list = new ArrayList<>();
+    list.add(new SimpleNumberExpression(Integer.valueOf(3)));
+    list.add(new SimpleNumberExpression(Integer.valueOf(4)));
+    list.add(new SimpleNumberExpression(Integer.valueOf(2)));
+    List<String> ops = new ArrayList<>();
+    ops.add("*");
+    ops.add("-");
+    ComposedNumberExpression expr = new ComposedNumberExpression(list, ops);
+    Assert.assertTrue(expr.isConstant());
+    Assert.assertEquals(10, expr.getIntegerValue(null, null));
+    Assert.assertEquals(10.0, expr.getDoubleValue(null, null), 0.0);
+    Assert.assertEquals("10.0", expr.getStringValue(null, null));
+  }
+
+  @Test
+  public void testConstantIntegerDivisionByZero() {
+    List<INumberExpression> list = new ArrayList<>();
+    list.add(new SimpleNumberExpression(Integer.valueOf(1)));
+    list.add(new SimpleNumberExpression(Integer.valueOf(0)));
+    List<String> ops = new ArrayList<>();
+    ops.add("/");
+    ComposedNumberExpression expr = new ComposedNumberExpression(list, ops);
+    Assert.assertTrue(expr.isConstant());
+    Assert.assertTrue(Double.isInfinite(expr.getDoubleValue(null, null)));
+    try {
+      expr.getIntegerValue(null, null);
+      Assert.fail();
+    } catch (ArithmeticException e) {
+      // expected, as without folding
+    }
+  }
   
 }
@@ -223,4 +223,54 @@ public class WildCard2Test {
     RutaTestUtils.assertAnnotationsEquals(cas, 2, 0);
   }
 
+  @Test
+  public void testLiteralsInBothDirections() throws Exception {
+    String document = "Total 10 EUR and Totals 20 EUR. Total 30 USD";
+    String script = "\"Total\" #{-> T1} \"EUR\";\n";
+    script += "\"Total\" #{-> T2} @\"EUR\";\n";
+    script += "\"Total\"{-> T3};\n";
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 1, 1, "10");
+    RutaTestUtils.assertAnnotationsEquals(cas, 2, 2, "10", "10 EUR and Totals 20");
+    RutaTestUtils.assertAnnotationsEquals(cas, 3, 2, "Total", "Total");
+  }
+
+  @Test
+  public void testModifiedTypesAndWindows() throws Exception {
+    String document = "A b C. D e F.";
+    String script = "SW{-> T3};\n";
+    script += "T3 # T1{-> T4};\n";
+    script += "CW{-> T1};\n";
+    script += "T3 # T1{-> T5};\n";
+    script += "(# PERIOD){-> T6};\n";
+    script += "BLOCK(sentence) T6 {\n";
+    script += "(T1 # T3){-> T7};\n";
+    script += "}\n";
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 4, 0);
+    RutaTestUtils.assertAnnotationsEquals(cas, 5, 2, "C", "F");
+    RutaTestUtils.assertAnnotationsEquals(cas, 7, 2, "A b", "D e");
+  }
+
+  @Test
+  public void testComposedNextElement() throws Exception {
+    String document = "A b C d E f.";
+    String script = "CW{-> T1};\n";
+    script += "SW{-> T2};\n";
+    script += "T2 # (T1 T2){-> T3};\n";
+    script += "(T1 T2){-> T4} # @PERIOD;\n";
+
+    CAS cas = RutaTestUtils.getCAS(document);
+    Ruta.apply(cas, script);
+
+    RutaTestUtils.assertAnnotationsEquals(cas, 3, 2, "C d", "E f");
+    RutaTestUtils.assertAnnotationsEquals(cas, 4, 1, "E f");
+  }
+
 }
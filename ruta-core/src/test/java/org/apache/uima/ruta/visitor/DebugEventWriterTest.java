@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.visitor;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.ruta.engine.RutaEngine;
+import org.apache.uima.ruta.engine.RutaTestUtils;
+import org.apache.uima.ruta.type.DebugBlockApply;
+import org.apache.uima.ruta.type.DebugFailedRuleMatch;
+import org.apache.uima.ruta.type.DebugMatchedRuleMatch;
+import org.apache.uima.ruta.type.DebugRuleApply;
+import org.apache.uima.ruta.type.DebugScriptApply;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DebugEventWriterTest {
+
+  private static final String SCRIPT = "W{REGEXP(\"S.*\") -> T1};\n"
+          + "BLOCK(block) Document{} {\n  (NUM W){-> T2};\n}\n";
+
+  private static final String TEXT = "Some text 4 more text 5 Stuff.";
+
+  @Test
+  public void testLoadedLikeCasDebugInfo() throws Exception {
+    CAS expected = process(false, 1);
+    File file = File.createTempFile("DebugEventWriterTest", ".rdbg");
+    file.deleteOnExit();
+    process(true, 1, file);
+    CAS actual = load(file);
+
+    assertSameDebugInfo(expected.getJCas(), actual.getJCas());
+
+    expected.release();
+    actual.release();
+    file.delete();
+  }
+
+  @Test
+  public void testSampling() throws Exception {
+    File file = File.createTempFile("DebugEventWriterTest", ".rdbg");
+    file.deleteOnExit();
+    process(true, 2, file);
+    CAS actual = load(file);
+    DebugBlockApply root = JCasUtil.selectSingle(actual.getJCas(), DebugBlockApply.class);
+    DebugRuleApply ruleApply = (DebugRuleApply) root.getInnerApply(0);
+
+    // every second match is written
+    Assert.assertEquals(5, ruleApply.getTried());
+    Assert.assertEquals(3, ruleApply.getRules().size());
+
+    actual.release();
+    file.delete();
+  }
+
+  private CAS process(boolean sink, int sampling) throws Exception {
+    return process(sink, sampling, null);
+  }
+
+  private CAS process(boolean sink, int sampling, File file) throws Exception {
+    String sinkPath = sink ? file.getAbsolutePath() : "";
+    AnalysisEngine ae = createEngine(RutaEngine.class, RutaEngine.PARAM_RULES, SCRIPT,
+            RutaEngine.PARAM_DEBUG, true, RutaEngine.PARAM_DEBUG_WITH_MATCHES, true,
+            RutaEngine.PARAM_DEBUG_SINK, sinkPath, RutaEngine.PARAM_DEBUG_SAMPLING, sampling);
+    CAS cas = RutaTestUtils.getCAS(TEXT);
+    ae.process(cas);
+    ae.destroy();
+    if (sink) {
+      Assert.assertTrue(JCasUtil.select(cas.getJCas(), DebugScriptApply.class).isEmpty());
+    }
+    return cas;
+  }
+
+  private CAS load(File file) throws Exception {
+    CAS cas = RutaTestUtils.getCAS(TEXT);
+    DebugEventReader reader = new DebugEventReader(new FileInputStream(file));
+    try {
+      Assert.assertTrue(reader.readDocument(cas.getJCas()));
+      Assert.assertFalse(reader.readDocument(cas.getJCas()));
+    } finally {
+      reader.close();
+    }
+    return cas;
+  }
+
+  private void assertSameDebugInfo(JCas expected, JCas actual) {
+    DebugBlockApply expectedRoot = JCasUtil.selectSingle(expected, DebugBlockApply.class);
+    DebugBlockApply actualRoot = JCasUtil.selectSingle(actual, DebugBlockApply.class);
+    Assert.assertEquals(expectedRoot.getElement(), actualRoot.getElement());
+    Assert.assertEquals(expectedRoot.getInnerApply().size(), actualRoot.getInnerApply().size());
+
+    DebugRuleApply expectedRule = (DebugRuleApply) expectedRoot.getInnerApply(0);
+    DebugRuleApply actualRule = (DebugRuleApply) actualRoot.getInnerApply(0);
+    Assert.assertEquals(expectedRule.getElement(), actualRule.getElement());
+    Assert.assertEquals(expectedRule.getId(), actualRule.getId());
+    Assert.assertEquals(expectedRule.getTried(), actualRule.getTried());
+    Assert.assertEquals(expectedRule.getApplied(), actualRule.getApplied());
+    Assert.assertEquals(expectedRule.getRules().size(), actualRule.getRules().size());
+
+    DebugBlockApply expectedBlock = (DebugBlockApply) expectedRoot.getInnerApply(1);
+    DebugBlockApply actualBlock = (DebugBlockApply) actualRoot.getInnerApply(1);
+    Assert.assertEquals(expectedBlock.getElement(), actualBlock.getElement());
+    Assert.assertEquals(expectedBlock.getApplied(), actualBlock.getApplied());
+    Assert.assertEquals(expectedBlock.getInnerApply().size(),
+            actualBlock.getInnerApply().size());
+
+    Assert.assertEquals(JCasUtil.select(expected, DebugMatchedRuleMatch.class).size(),
+            JCasUtil.select(actual, DebugMatchedRuleMatch.class).size());
+    Assert.assertEquals(JCasUtil.select(expected, DebugFailedRuleMatch.class).size(),
+            JCasUtil.select(actual, DebugFailedRuleMatch.class).size());
+    // the match of the first rule on "Stuff"
+    List<DebugMatchedRuleMatch> expectedMatches = new ArrayList<DebugMatchedRuleMatch>(
+            JCasUtil.select(expected, DebugMatchedRuleMatch.class));
+    List<DebugMatchedRuleMatch> actualMatches = new ArrayList<DebugMatchedRuleMatch>(
+            JCasUtil.select(actual, DebugMatchedRuleMatch.class));
+    DebugMatchedRuleMatch expectedMatch = expectedMatches.get(expectedMatches.size() - 1);
+    DebugMatchedRuleMatch actualMatch = actualMatches.get(actualMatches.size() - 1);
+    Assert.assertEquals(expectedMatch.getBegin(), actualMatch.getBegin());
+    Assert.assertEquals(expectedMatch.getEnd(), actualMatch.getEnd());
+    Assert.assertEquals(expectedMatch.getElements(0).getElement(),
+            actualMatch.getElements(0).getElement());
+    Assert.assertEquals(expectedMatch.getElements(0).getMatches(0).getConditions(0).getElement(),
+            actualMatch.getElements(0).getMatches(0).getConditions(0).getElement());
+  }
+
+}
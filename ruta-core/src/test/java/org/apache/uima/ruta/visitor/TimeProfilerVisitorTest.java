@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.visitor;
+
+import java.io.StringWriter;
+import java.util.Map;
+
+import org.apache.uima.ruta.RutaElement;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimeProfilerVisitorTest {
+
+  @Test
+  public void testRecursion() throws Exception {
+    TimeProfilerVisitor profiler = new TimeProfilerVisitor();
+    RutaElement outer = new RutaElement();
+    RutaElement inner = new RutaElement();
+
+    profiler.startDocument();
+    profiler.beginVisit(outer, null);
+    profiler.beginVisit(inner, null);
+    profiler.beginVisit(outer, null);
+    Thread.sleep(5);
+    profiler.endVisit(outer, null);
+    profiler.endVisit(inner, null);
+    profiler.endVisit(outer, null);
+
+    Map<RutaElement, Long> timeInfo = profiler.getTimeInfo();
+    Assert.assertEquals(2, timeInfo.size());
+    // the recursive visit is not counted twice
+    Assert.assertTrue(timeInfo.get(outer) >= 5);
+    Assert.assertTrue(timeInfo.get(outer) < 10 + timeInfo.get(inner));
+
+    StringWriter collapsed = new StringWriter();
+    profiler.writeCollapsedStacks(collapsed);
+    Assert.assertTrue(collapsed.toString().contains("RutaElement;RutaElement;RutaElement "));
+
+    StringWriter json = new StringWriter();
+    profiler.writeJson(json);
+    Assert.assertTrue(json.toString().contains("\"documents\": 1"));
+    Assert.assertTrue(json.toString().contains("\"id\": 0, \"kind\": \"OTHER\""));
+    Assert.assertTrue(json.toString().contains("\"id\": 2, \"parent\": 1, \"element\": 0"));
+  }
+
+  @Test
+  public void testMissingEndVisit() throws Exception {
+    TimeProfilerVisitor profiler = new TimeProfilerVisitor();
+    RutaElement outer = new RutaElement();
+    RutaElement inner = new RutaElement();
+
+    profiler.startDocument();
+    profiler.beginVisit(outer, null);
+    profiler.beginVisit(inner, null);
+    profiler.endVisit(outer, null);
+
+    profiler.startDocument();
+    profiler.beginVisit(outer, null);
+    profiler.endVisit(outer, null);
+
+    StringWriter json = new StringWriter();
+    profiler.writeJson(json);
+    Assert.assertTrue(json.toString().contains("\"documents\": 2"));
+    Assert.assertTrue(json.toString().contains("\"id\": 0, \"kind\": \"OTHER\", \"name\": \"RutaElement\", \"count\": 2"));
+    Assert.assertTrue(json.toString().contains("\"id\": 1, \"kind\": \"OTHER\", \"name\": \"RutaElement\", \"count\": 1"));
+  }
+
+}
@@ -26,6 +26,14 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.apache.commons.io.FilenameUtils;
@@ -69,7 +77,6 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
-import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.IJobChangeEvent;
 import org.eclipse.core.runtime.jobs.Job;
@@ -79,6 +86,18 @@ import org.eclipse.ui.handlers.HandlerUtil;
 
 public class QueryActionHandler implements IHandler {
 
+  /**
+   * The query stops after this amount of matches in order to keep the view responsive. Further
+   * matches are dropped and the view reports that the results were truncated.
+   */
+  private static final int MAX_RESULTS = 10000;
+
+  /**
+   * The maximal time in milliseconds between two checks of the progress monitor while the
+   * documents are queried.
+   */
+  private static final long PROGRESS_INTERVAL = 100;
+
   private class QueryJobChangeAdapter extends JobChangeAdapter {
 
     private QueryComposite composite;
@@ -100,6 +119,123 @@ public class QueryActionHandler implements IHandler {
     }
   }
 
+  /**
+   * Collects the results of the query workers and forwards them to the query view. The results are
+   * buffered per document and accepted in the order of the input files, independent of the order
+   * the workers finish their documents. Therefore, the view always lists them in this order and
+   * the maximal number of matches keeps the matches of the first files. The view is updated at
+   * most every {@link #UPDATE_INTERVAL} milliseconds.
+   */
+  private static class QueryResultCollector {
+
+    private static final long UPDATE_INTERVAL = 250;
+
+    private final QueryComposite composite;
+
+    private final List<List<QueryResult>> resultsPerFile;
+
+    /**
+     * The number of leading files whose results are accepted.
+     */
+    private int accepted = 0;
+
+    private int found = 0;
+
+    private int files = 0;
+
+    private boolean truncated = false;
+
+    private boolean canceled = false;
+
+    private long lastUpdate = 0;
+
+    QueryResultCollector(QueryComposite composite, int numberOfFiles) {
+      super();
+      this.composite = composite;
+      this.resultsPerFile = new ArrayList<List<QueryResult>>(numberOfFiles);
+      for (int i = 0; i < numberOfFiles; i++) {
+        resultsPerFile.add(null);
+      }
+    }
+
+    public synchronized void add(int fileIndex, List<QueryResult> fileResult) {
+      if (truncated) {
+        return;
+      }
+      resultsPerFile.set(fileIndex, fileResult);
+      while (!truncated && accepted < resultsPerFile.size()
+              && resultsPerFile.get(accepted) != null) {
+        List<QueryResult> each = resultsPerFile.get(accepted);
+        int remaining = getRemaining();
+        if (each.size() > remaining) {
+          truncated = true;
+          each = new ArrayList<QueryResult>(each.subList(0, remaining));
+          resultsPerFile.set(accepted, each);
+        }
+        found += each.size();
+        if (!each.isEmpty()) {
+          files++;
+        }
+        accepted++;
+      }
+      if (truncated) {
+        // the results of later files are not needed anymore
+        for (int i = accepted; i < resultsPerFile.size(); i++) {
+          resultsPerFile.set(i, null);
+        }
+      }
+      long now = System.currentTimeMillis();
+      if (now - lastUpdate >= UPDATE_INTERVAL) {
+        lastUpdate = now;
+        publish(false);
+      }
+    }
+
+    /**
+     * @return the number of matches that can still be added. A document that is not yet accepted
+     *         cannot contribute more matches.
+     */
+    public synchronized int getRemaining() {
+      return Math.max(0, MAX_RESULTS - found);
+    }
+
+    public synchronized void cancel() {
+      canceled = true;
+    }
+
+    /**
+     * @return true if no further documents need to be queried
+     */
+    public synchronized boolean isStopped() {
+      return canceled || truncated;
+    }
+
+    public synchronized void finish() {
+      publish(true);
+    }
+
+    private void publish(boolean sync) {
+      final List<QueryResult> result = new ArrayList<QueryResult>(found);
+      for (List<QueryResult> each : resultsPerFile.subList(0, accepted)) {
+        result.addAll(each);
+      }
+      final int constFound = found;
+      final int constFiles = files;
+      final int truncatedAt = truncated ? MAX_RESULTS : -1;
+      Runnable runnable = new Runnable() {
+        public void run() {
+          composite.setResult(result);
+          composite.setResultInfo(constFound, constFiles, truncatedAt);
+        }
+      };
+      if (sync) {
+        composite.getDisplay().syncExec(runnable);
+      } else {
+        composite.getDisplay().asyncExec(runnable);
+      }
+    }
+  }
+
   private class QueryHandlerJob extends Job {
     ExecutionEvent event;
 
@@ -113,6 +249,8 @@ public class QueryActionHandler implements IHandler {
 
     private final String fileNameFilter;
 
+    private ResourceManager resMgr;
+
     QueryHandlerJob(ExecutionEvent event, String dir, String fileNameFilter, String typeSystem,
             String rules, boolean recursive) {
       super(String.format("Query in \"%s\" [filter: \"%s\"] ...", dir, fileNameFilter));
@@ -135,7 +273,7 @@ public class QueryActionHandler implements IHandler {
     }
 
     @Override
-    public IStatus run(IProgressMonitor monitor) {
+    public IStatus run(final IProgressMonitor monitor) {
       final QueryView queryView = (QueryView) HandlerUtil.getActivePart(event);
       final QueryComposite queryComposite = queryView.getComposite();
       // queryView.saveState();
@@ -147,199 +285,82 @@ public class QueryActionHandler implements IHandler {
         }
       });
 
-      int files = 0;
-      int found = 0;
-
       if (monitor.isCanceled())
         return Status.CANCEL_STATUS;
 
-      final List<QueryResult> result = new ArrayList<QueryResult>();
       String script = "PACKAGE query;\n\n";
       // script += "TYPESYSTEM " + typeSystemFileText.getText();
       script += rules;
+      List<AnalysisEngine> engines = new ArrayList<AnalysisEngine>();
+      List<CAS> cases = new ArrayList<CAS>();
       try {
-        URL aedesc = RutaEngine.class.getResource("BasicEngine.xml");
-        XMLInputSource inae = new XMLInputSource(aedesc);
-        IFile iFile = QueryComposite.getIFile(typeSystemLocation);
-        IProject project = iFile.getProject();
-        ClassLoader classLoader = RutaProjectUtils.getClassLoader(project);
-        ResourceManager resMgr = new ResourceManager_impl(classLoader);
-        ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(inae);
-        AnalysisEngineDescription aed = (AnalysisEngineDescription) specifier;
-        TypeSystemDescription basicTypeSystem = aed.getAnalysisEngineMetaData().getTypeSystem();
-
-        if (!StringUtils.isEmpty(typeSystemLocation)) {
-          // TODO check on valid input and extend for scr
-          String tsLocation = typeSystemLocation;
-          Collection<TypeSystemDescription> tsds = new ArrayList<TypeSystemDescription>();
-          tsds.add(basicTypeSystem);
-          if (typeSystemLocation.endsWith(RutaEngine.SCRIPT_FILE_EXTENSION)) {
-            IPath scriptPath = iFile.getLocation();
-            IPath descriptorRootPath = RutaProjectUtils.getDescriptorRootPath(project);
-            resMgr.setDataPath(descriptorRootPath.toPortableString());
-            IPath path = RutaProjectUtils.getTypeSystemDescriptorPath(scriptPath, project, classLoader);
-            tsLocation = path.toPortableString();
-          }
-          File tsFile = new File(tsLocation);
-          XMLInputSource ints = new XMLInputSource(tsFile);
-          TypeSystemDescription importTSD = UIMAFramework.getXMLParser()
-                  .parseTypeSystemDescription(ints);
-          importTSD.resolveImports(resMgr);
-          tsds.add(importTSD);
-          TypeSystemDescription mergeTypeSystems = CasCreationUtils.mergeTypeSystems(tsds);
-          aed.getAnalysisEngineMetaData().setTypeSystem(mergeTypeSystems);
-        }
-        aed.resolveImports(resMgr);
-        AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aed, resMgr, null);
-        File tempFile = File.createTempFile("RutaQuery", RutaEngine.SCRIPT_FILE_EXTENSION);
-        tempFile.deleteOnExit();
-        FileUtils.saveString2File(script, tempFile, "UTF-8");
-        String portableString = Path.fromOSString(tempFile.getParentFile().getPath())
-                .toPortableString();
-        ae.setConfigParameterValue(RutaEngine.PARAM_SCRIPT_PATHS, new String[] { portableString });
-        String name = tempFile.getName().substring(0, tempFile.getName().length() - 5);
-        ae.setConfigParameterValue(RutaEngine.PARAM_MAIN_SCRIPT, name);
-
-        ae.setConfigParameterValue(RutaEngine.PARAM_DEBUG, true);
-        ae.setConfigParameterValue(RutaEngine.PARAM_DEBUG_WITH_MATCHES, true);
-        ae.setConfigParameterValue(RutaEngine.PARAM_PROFILE, false);
-        ae.setConfigParameterValue(RutaEngine.PARAM_STATISTICS, false);
-
-        IRutaConditionExtension[] conditionExtensions = RutaExtensionManager.getDefault()
-                .getRutaConditionExtensions();
-        IRutaActionExtension[] actionExtensions = RutaExtensionManager.getDefault()
-                .getRutaActionExtensions();
-        IRutaBooleanFunctionExtension[] booleanFunctionExtensions = RutaExtensionManager
-                .getDefault().getRutaBooleanFunctionExtensions();
-        IRutaNumberFunctionExtension[] numberFunctionExtensions = RutaExtensionManager.getDefault()
-                .getRutaNumberFunctionExtensions();
-        IRutaStringFunctionExtension[] stringFunctionExtensions = RutaExtensionManager.getDefault()
-                .getRutaStringFunctionExtensions();
-        IRutaTypeFunctionExtension[] typeFunctionExtensions = RutaExtensionManager.getDefault()
-                .getRutaTypeFunctionExtensions();
-        IRutaBlockExtension[] blockExtensions = RutaExtensionManager.getDefault()
-                .getRutaBlockExtensions();
-
-        List<String> languageExtensions = new ArrayList<String>();
-
-        for (IRutaConditionExtension each : conditionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaActionExtension each : actionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaBooleanFunctionExtension each : booleanFunctionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaNumberFunctionExtension each : numberFunctionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaStringFunctionExtension each : stringFunctionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaTypeFunctionExtension each : typeFunctionExtensions) {
-          languageExtensions.add(each.getClass().getName());
-        }
-        for (IRutaBlockExtension each : blockExtensions) {
-          languageExtensions.add(each.getClass().getName());
+        File dir = new File(dataLocation);
+        final List<File> inputFiles = getFiles(dir, recursive);
+        int threads = Math.max(1,
+                Math.min(Runtime.getRuntime().availableProcessors(), inputFiles.size()));
+        // the query is parsed once for each engine and reused for all documents
+        AnalysisEngineDescription aed = createEngineDescription();
+        for (int i = 0; i < threads; i++) {
+          AnalysisEngine ae = createEngine(aed, script);
+          engines.add(ae);
+          cases.add(ae.newCAS());
         }
-        ae.setConfigParameterValue(RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
-                languageExtensions.toArray(new String[0]));
-
-        ae.reconfigure();
-        CAS cas = ae.newCAS();
 
         monitor.worked(1);
 
         if (monitor.isCanceled()) {
-          if (ae != null) {
-            ae.destroy();
-          }
-          if (cas != null) {
-            cas.release();
-          }
           return Status.CANCEL_STATUS;
         }
 
-        File dir = new File(dataLocation);
-        List<File> inputFiles = getFiles(dir, recursive);
         monitor.beginTask("Query in " + dir.getName() + "...", inputFiles.size());
 
-        for (File each : inputFiles) {
-
-          monitor.setTaskName("Query in " + each.getName() + "...");
-
-          if (monitor.isCanceled()) {
-            if (ae != null) {
-              ae.destroy();
-            }
-            if (cas != null) {
-              cas.release();
+        final QueryResultCollector collector = new QueryResultCollector(queryComposite,
+                inputFiles.size());
+        final AtomicInteger next = new AtomicInteger();
+        // the workers only report the queried files, the progress monitor is used by this thread
+        final BlockingQueue<File> queried = new LinkedBlockingQueue<File>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < threads; i++) {
+          final AnalysisEngine ae = engines.get(i);
+          final CAS cas = cases.get(i);
+          futures.add(executor.submit(new Callable<Object>() {
+            public Object call() throws Exception {
+              int index;
+              while (!collector.isStopped()
+                      && (index = next.getAndIncrement()) < inputFiles.size()) {
+                File each = inputFiles.get(index);
+                // one more match than needed shows that the results are truncated
+                List<QueryResult> fileResult = query(ae, cas, each, collector.getRemaining() + 1);
+                collector.add(index, fileResult);
+                queried.add(each);
+              }
+              return null;
             }
-            return Status.CANCEL_STATUS;
-          }
-
-          cas.reset();
-          if (FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("xmi") ||
-                  FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("bcas") ||
-                  FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("scas") ||
-                  FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("xcas")) {
-            CasIOUtils.load(each.toURI().toURL(), cas);
-          } else {
-            cas.setDocumentText(getText(each));
-          }
-
-          Type matchedType = cas.getTypeSystem().getType(
-                  "org.apache.uima.ruta.type.DebugMatchedRuleMatch");
-          Type ruleApplyType = cas.getTypeSystem().getType(
-                  "org.apache.uima.ruta.type.DebugRuleApply");
-          Type blockApplyType = cas.getTypeSystem().getType(
-                  "org.apache.uima.ruta.type.DebugBlockApply");
-
-          removeDebugAnnotations(cas, matchedType, ruleApplyType, blockApplyType);
-
-          ae.process(cas);
-
-          Feature innerApplyFeature = blockApplyType.getFeatureByBaseName("innerApply");
-          Feature ruleApplyFeature = blockApplyType.getFeatureByBaseName("rules");
-          FSIterator<AnnotationFS> iterator = cas.getAnnotationIndex(blockApplyType).iterator();
-          boolean foundOne = false;
-          while (iterator.isValid()) {
-            if (monitor.isCanceled()) {
-              if (ae != null) {
-                ae.destroy();
+          }));
+        }
+        try {
+          for (Future<?> future : futures) {
+            while (!future.isDone()) {
+              if (monitor.isCanceled()) {
+                collector.cancel();
               }
-              if (cas != null) {
-                cas.release();
+              File each = queried.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+              if (each != null) {
+                monitor.subTask("Queried " + each.getName());
+                monitor.worked(1);
               }
-              return Status.CANCEL_STATUS;
             }
-            AnnotationFS fs = iterator.get();
-            int find = findRuleMatches(result, fs, each, queryComposite, matchedType,
-                    ruleApplyType, blockApplyType, innerApplyFeature, ruleApplyFeature);
-            iterator.moveToNext();
-            found += find;
-            if (!foundOne && find > 0) {
-              foundOne = true;
-              files++;
-            }
-
-            final int constFound = found;
-            final int constFiles = files;
-            queryComposite.getDisplay().syncExec(new Runnable() {
-              public void run() {
-                queryComposite.setResult(result);
-                queryComposite.setResultInfo(constFound, constFiles);
-              }
-            });
-
+            future.get();
           }
-
-          monitor.worked(1);
+        } finally {
+          executor.shutdownNow();
         }
-        cas.release();
-        ae.destroy();
+        collector.finish();
         monitor.done();
+        if (monitor.isCanceled()) {
+          return Status.CANCEL_STATUS;
+        }
       } catch (Exception e) {
         // report error in query view:
         queryComposite.getDisplay().syncExec(new Runnable() {
@@ -348,12 +369,147 @@ public class QueryActionHandler implements IHandler {
           }
         });
         RutaAddonsPlugin.error(e);
+      } finally {
+        for (CAS each : cases) {
+          each.release();
+        }
+        for (AnalysisEngine each : engines) {
+          each.destroy();
+        }
       }
 
       return Status.OK_STATUS;
 
     }
 
+    private List<QueryResult> query(AnalysisEngine ae, CAS cas, File each, int limit)
+            throws Exception {
+      List<QueryResult> result = new ArrayList<QueryResult>();
+      cas.reset();
+      if (FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("xmi") ||
+              FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("bcas") ||
+              FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("scas") ||
+              FilenameUtils.getExtension(each.getName()).equalsIgnoreCase("xcas")) {
+        CasIOUtils.load(each.toURI().toURL(), cas);
+      } else {
+        cas.setDocumentText(getText(each));
+      }
+
+      Type matchedType = cas.getTypeSystem().getType(
+              "org.apache.uima.ruta.type.DebugMatchedRuleMatch");
+      Type ruleApplyType = cas.getTypeSystem().getType(
+              "org.apache.uima.ruta.type.DebugRuleApply");
+      Type blockApplyType = cas.getTypeSystem().getType(
+              "org.apache.uima.ruta.type.DebugBlockApply");
+
+      removeDebugAnnotations(cas, matchedType, ruleApplyType, blockApplyType);
+
+      ae.process(cas);
+
+      Feature innerApplyFeature = blockApplyType.getFeatureByBaseName("innerApply");
+      Feature ruleApplyFeature = blockApplyType.getFeatureByBaseName("rules");
+      FSIterator<AnnotationFS> iterator = cas.getAnnotationIndex(blockApplyType).iterator();
+      while (iterator.isValid() && result.size() < limit) {
+        AnnotationFS fs = iterator.get();
+        findRuleMatches(result, limit, fs, each, matchedType, ruleApplyType, blockApplyType,
+                innerApplyFeature, ruleApplyFeature);
+        iterator.moveToNext();
+      }
+      return result;
+    }
+
+    private AnalysisEngineDescription createEngineDescription() throws Exception {
+      URL aedesc = RutaEngine.class.getResource("BasicEngine.xml");
+      XMLInputSource inae = new XMLInputSource(aedesc);
+      IFile iFile = QueryComposite.getIFile(typeSystemLocation);
+      IProject project = iFile.getProject();
+      ClassLoader classLoader = RutaProjectUtils.getClassLoader(project);
+      resMgr = new ResourceManager_impl(classLoader);
+      ResourceSpecifier specifier = UIMAFramework.getXMLParser().parseResourceSpecifier(inae);
+      AnalysisEngineDescription aed = (AnalysisEngineDescription) specifier;
+      TypeSystemDescription basicTypeSystem = aed.getAnalysisEngineMetaData().getTypeSystem();
+
+      if (!StringUtils.isEmpty(typeSystemLocation)) {
+        // TODO check on valid input and extend for scr
+        String tsLocation = typeSystemLocation;
+        Collection<TypeSystemDescription> tsds = new ArrayList<TypeSystemDescription>();
+        tsds.add(basicTypeSystem);
+        if (typeSystemLocation.endsWith(RutaEngine.SCRIPT_FILE_EXTENSION)) {
+          IPath scriptPath = iFile.getLocation();
+          IPath descriptorRootPath = RutaProjectUtils.getDescriptorRootPath(project);
+          resMgr.setDataPath(descriptorRootPath.toPortableString());
+          IPath path = RutaProjectUtils.getTypeSystemDescriptorPath(scriptPath, project, classLoader);
+          tsLocation = path.toPortableString();
+        }
+        File tsFile = new File(tsLocation);
+        XMLInputSource ints = new XMLInputSource(tsFile);
+        TypeSystemDescription importTSD = UIMAFramework.getXMLParser()
+                .parseTypeSystemDescription(ints);
+        importTSD.resolveImports(resMgr);
+        tsds.add(importTSD);
+        TypeSystemDescription mergeTypeSystems = CasCreationUtils.mergeTypeSystems(tsds);
+        aed.getAnalysisEngineMetaData().setTypeSystem(mergeTypeSystems);
+      }
+      aed.resolveImports(resMgr);
+      return aed;
+    }
+
+    private AnalysisEngine createEngine(AnalysisEngineDescription aed, String script)
+            throws Exception {
+      AnalysisEngine ae = UIMAFramework.produceAnalysisEngine(aed, resMgr, null);
+      ae.setConfigParameterValue(RutaEngine.PARAM_RULES, script);
+      ae.setConfigParameterValue(RutaEngine.PARAM_RULES_SCRIPT_NAME, "Query");
+
+      ae.setConfigParameterValue(RutaEngine.PARAM_DEBUG, true);
+      ae.setConfigParameterValue(RutaEngine.PARAM_DEBUG_WITH_MATCHES, true);
+      ae.setConfigParameterValue(RutaEngine.PARAM_PROFILE, false);
+      ae.setConfigParameterValue(RutaEngine.PARAM_STATISTICS, false);
+
+      IRutaConditionExtension[] conditionExtensions = RutaExtensionManager.getDefault()
+              .getRutaConditionExtensions();
+      IRutaActionExtension[] actionExtensions = RutaExtensionManager.getDefault()
+              .getRutaActionExtensions();
+      IRutaBooleanFunctionExtension[] booleanFunctionExtensions = RutaExtensionManager
+              .getDefault().getRutaBooleanFunctionExtensions();
+      IRutaNumberFunctionExtension[] numberFunctionExtensions = RutaExtensionManager.getDefault()
+              .getRutaNumberFunctionExtensions();
+      IRutaStringFunctionExtension[] stringFunctionExtensions = RutaExtensionManager.getDefault()
+              .getRutaStringFunctionExtensions();
+      IRutaTypeFunctionExtension[] typeFunctionExtensions = RutaExtensionManager.getDefault()
+              .getRutaTypeFunctionExtensions();
+      IRutaBlockExtension[] blockExtensions = RutaExtensionManager.getDefault()
+              .getRutaBlockExtensions();
+
+      List<String> languageExtensions = new ArrayList<String>();
+
+      for (IRutaConditionExtension each : conditionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaActionExtension each : actionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaBooleanFunctionExtension each : booleanFunctionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaNumberFunctionExtension each : numberFunctionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaStringFunctionExtension each : stringFunctionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaTypeFunctionExtension each : typeFunctionExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      for (IRutaBlockExtension each : blockExtensions) {
+        languageExtensions.add(each.getClass().getName());
+      }
+      ae.setConfigParameterValue(RutaEngine.PARAM_ADDITIONAL_EXTENSIONS,
+              languageExtensions.toArray(new String[0]));
+
+      ae.reconfigure();
+      return ae;
+    }
+
     public List<File> getFiles(File dir, boolean recusive) {
       List<File> result = new ArrayList<File>();
       if (fileNameFilter == null) {
@@ -404,27 +560,27 @@ public class QueryActionHandler implements IHandler {
       }
     }
 
-    public int findRuleMatches(final List<QueryResult> result, AnnotationFS fs, File file,
-            final QueryComposite queryComposite, Type matchedType, Type ruleApplyType,
-            Type blockApplyType, Feature innerApplyFeature, Feature ruleApplyFeature) {
+    public int findRuleMatches(final List<QueryResult> result, int limit, AnnotationFS fs,
+            File file, Type matchedType, Type ruleApplyType, Type blockApplyType,
+            Feature innerApplyFeature, Feature ruleApplyFeature) {
       int ret = 0;
       if (fs.getType().equals(blockApplyType)) {
         FeatureStructure featureValue = fs.getFeatureValue(innerApplyFeature);
         FSArray array = (FSArray) featureValue;
-        for (int i = 0; i < array.size(); i++) {
+        for (int i = 0; i < array.size() && result.size() < limit; i++) {
           AnnotationFS eachApply = (AnnotationFS) array.get(i);
-          ret += findRuleMatches(result, eachApply, file, queryComposite, matchedType,
-                  ruleApplyType, blockApplyType, innerApplyFeature, ruleApplyFeature);
+          ret += findRuleMatches(result, limit, eachApply, file, matchedType, ruleApplyType,
+                  blockApplyType, innerApplyFeature, ruleApplyFeature);
         }
       } else if (fs.getType().equals(ruleApplyType)) {
         FeatureStructure featureValue = fs.getFeatureValue(ruleApplyFeature);
         FSArray array = (FSArray) featureValue;
-        for (int i = 0; i < array.size(); i++) {
+        for (int i = 0; i < array.size() && result.size() < limit; i++) {
           AnnotationFS eachApply = (AnnotationFS) array.get(i);
-          ret += findRuleMatches(result, eachApply, file, queryComposite, matchedType,
-                  ruleApplyType, blockApplyType, innerApplyFeature, ruleApplyFeature);
+          ret += findRuleMatches(result, limit, eachApply, file, matchedType, ruleApplyType,
+                  blockApplyType, innerApplyFeature, ruleApplyFeature);
         }
-      } else if (fs.getType().equals(matchedType)) {
+      } else if (fs.getType().equals(matchedType) && result.size() < limit) {
         result.add(new QueryResult(fs.getBegin(), fs.getEnd(), fs.getCoveredText(), file));
         ret += 1;
 
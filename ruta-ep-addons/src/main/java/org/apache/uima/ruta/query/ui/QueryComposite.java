@@ -463,8 +463,20 @@ public class QueryComposite extends org.eclipse.swt.widgets.Composite implements
 
   }
 
-  public void setResultInfo(int found, int files) {
-    resultLabel.setText("Result: found " + found + " matches in " + files + " documents");
+  /**
+   * @param found
+   *          the number of listed matches
+   * @param files
+   *          the number of documents with matches
+   * @param truncatedAt
+   *          the maximal number of matches if further matches were dropped, or -1
+   */
+  public void setResultInfo(int found, int files, int truncatedAt) {
+    String info = "Result: found " + found + " matches in " + files + " documents";
+    if (truncatedAt >= 0) {
+      info += " (results truncated at " + truncatedAt + ")";
+    }
+    resultLabel.setText(info);
   }
 
   public void saveState(IMemento memento) {
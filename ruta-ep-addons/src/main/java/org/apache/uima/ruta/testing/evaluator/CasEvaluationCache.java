@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.testing.evaluator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.uima.ruta.testing.ui.views.evalDataTable.TypeEvalData;
+
+/**
+ * Stores the evaluation data of documents so that unchanged documents do not need to be evaluated
+ * again. A key combines the hash of the script (and everything else that influences the result,
+ * like the evaluator and its settings) with the hash of the gold document. The cache can be saved
+ * to a file and loaded again for the next run of a test suite.
+ */
+public class CasEvaluationCache {
+
+  private static final String SEPARATOR = "\t";
+
+  private final Map<String, Map<String, TypeEvalData>> results;
+
+  public CasEvaluationCache() {
+    super();
+    results = new ConcurrentHashMap<String, Map<String, TypeEvalData>>();
+  }
+
+  public static String getKey(String configurationHash, String documentHash) {
+    return configurationHash + ":" + documentHash;
+  }
+
+  public Map<String, TypeEvalData> get(String key) {
+    Map<String, TypeEvalData> map = results.get(key);
+    if (map == null) {
+      return null;
+    }
+    return copy(map);
+  }
+
+  public void put(String key, Map<String, TypeEvalData> typeEvalData) {
+    results.put(key, copy(typeEvalData));
+  }
+
+  public int size() {
+    return results.size();
+  }
+
+  public void clear() {
+    results.clear();
+  }
+
+  public void load(File file) throws IOException {
+    if (!file.exists()) {
+      return;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      String line = null;
+      while ((line = reader.readLine()) != null) {
+        String[] split = line.split(SEPARATOR);
+        if (split.length != 6) {
+          continue;
+        }
+        Map<String, TypeEvalData> map = results.get(split[0]);
+        if (map == null) {
+          map = new HashMap<String, TypeEvalData>();
+          results.put(split[0], map);
+        }
+        TypeEvalData data = new TypeEvalData(split[2], Integer.parseInt(split[3]),
+                Integer.parseInt(split[4]), Integer.parseInt(split[5]));
+        data.calcFOne();
+        map.put(split[1], data);
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid evaluation cache: " + file.getAbsolutePath(), e);
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  public void save(File file) throws IOException {
+    file.getParentFile().mkdirs();
+    PrintWriter writer = null;
+    try {
+      writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+      for (Entry<String, Map<String, TypeEvalData>> eachDocument : results.entrySet()) {
+        for (Entry<String, TypeEvalData> eachType : eachDocument.getValue().entrySet()) {
+          TypeEvalData data = eachType.getValue();
+          writer.println(eachDocument.getKey() + SEPARATOR + eachType.getKey() + SEPARATOR
+                  + data.getTypeName() + SEPARATOR + data.getTruePositives() + SEPARATOR
+                  + data.getFalsePositives() + SEPARATOR + data.getFalseNegatives());
+        }
+      }
+    } finally {
+      if (writer != null) {
+        writer.close();
+      }
+    }
+  }
+
+  /**
+   * @return the MD5 hash of the content of the given file as hex string
+   */
+  public static String hash(File file) throws IOException {
+    MessageDigest digest = createDigest();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        digest.update(buffer, 0, read);
+      }
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+    return toHex(digest.digest());
+  }
+
+  /**
+   * @return the MD5 hash of the given string as hex string
+   */
+  public static String hash(String string) {
+    MessageDigest digest = createDigest();
+    try {
+      digest.update(string.getBytes("UTF-8"));
+    } catch (IOException e) {
+      // UTF-8 is always supported
+      digest.update(string.getBytes());
+    }
+    return toHex(digest.digest());
+  }
+
+  private static MessageDigest createDigest() {
+    try {
+      return MessageDigest.getInstance("MD5");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    return String.format("%032x", new BigInteger(1, bytes));
+  }
+
+  private static Map<String, TypeEvalData> copy(Map<String, TypeEvalData> map) {
+    Map<String, TypeEvalData> result = new HashMap<String, TypeEvalData>();
+    for (Entry<String, TypeEvalData> each : map.entrySet()) {
+      TypeEvalData data = each.getValue();
+      TypeEvalData newData = new TypeEvalData(data.getTypeName(), data.getTruePositives(),
+              data.getFalsePositives(), data.getFalseNegatives());
+      newData.calcFOne();
+      result.put(each.getKey(), newData);
+    }
+    return result;
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.testing.evaluator;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.uima.ruta.testing.ui.views.evalDataTable.TypeEvalData;
+import org.apache.uima.ruta.testing.ui.views.util.EvalDataProcessor;
+
+/**
+ * The evaluation data of a single document, see {@link CasEvaluationRunner}.
+ */
+public class CasEvaluationResult {
+
+  private final File file;
+
+  private final Map<String, TypeEvalData> typeEvalData;
+
+  private final boolean cached;
+
+  public CasEvaluationResult(File file, Map<String, TypeEvalData> typeEvalData, boolean cached) {
+    super();
+    this.file = file;
+    this.typeEvalData = typeEvalData;
+    this.cached = cached;
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @return the evaluation data for each type name, including the sum with the key
+   *         {@link EvalDataProcessor#TOTAL}
+   */
+  public Map<String, TypeEvalData> getTypeEvalData() {
+    return typeEvalData;
+  }
+
+  public TypeEvalData getTotal() {
+    return typeEvalData.get(EvalDataProcessor.TOTAL);
+  }
+
+  /**
+   * @return true if the document was not evaluated again, but the result was taken from the cache
+   */
+  public boolean isCached() {
+    return cached;
+  }
+
+}
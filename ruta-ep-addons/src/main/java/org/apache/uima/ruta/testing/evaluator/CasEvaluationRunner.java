@@ -0,0 +1,341 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.testing.evaluator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.ResourceManager;
+import org.apache.uima.resource.ResourceSpecifier;
+import org.apache.uima.resource.impl.ResourceManager_impl;
+import org.apache.uima.ruta.testing.ui.views.evalDataTable.TypeEvalData;
+import org.apache.uima.ruta.testing.ui.views.util.EvalDataProcessor;
+
+/**
+ * Applies an analysis engine to a set of gold documents and evaluates the results with an
+ * {@link ICasEvaluator} without any user interface. The documents are processed by several
+ * threads, each with its own analysis engine, evaluator and CASes. The result of each document is
+ * passed to an optional {@link ICasEvaluationListener} as soon as it is available, and the counts
+ * of all documents are summed up for each type.
+ *
+ * If a {@link CasEvaluationCache} is set, documents that were already evaluated with the same
+ * script hash and settings are not processed again, but their result is taken from the cache.
+ */
+public class CasEvaluationRunner {
+
+  private final ResourceSpecifier engineSpecifier;
+
+  private final ICasEvaluatorFactory evaluatorFactory;
+
+  private final ClassLoader classLoader;
+
+  private String viewName = CAS.NAME_DEFAULT_SOFA;
+
+  private Collection<String> excludedTypes = new ArrayList<String>();
+
+  private Collection<String> includedTypes = new ArrayList<String>();
+
+  private boolean includeSubtypes = false;
+
+  private boolean useAllTypes = false;
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  private CasEvaluationCache cache;
+
+  private String scriptHash;
+
+  private ICasEvaluationListener listener;
+
+  private volatile boolean canceled = false;
+
+  private Map<String, TypeEvalData> totals;
+
+  public CasEvaluationRunner(ResourceSpecifier engineSpecifier,
+          ICasEvaluatorFactory evaluatorFactory, ClassLoader classLoader) {
+    super();
+    this.engineSpecifier = engineSpecifier;
+    this.evaluatorFactory = evaluatorFactory;
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Evaluates the given gold documents.
+   *
+   * @param goldFiles
+   *          XMI files with the gold annotations
+   * @return the summed up evaluation data of all documents for each type name, including the sum
+   *         over all types with the key {@link EvalDataProcessor#TOTAL}
+   * @throws ResourceInitializationException
+   *           if the analysis engines cannot be created
+   */
+  public Map<String, TypeEvalData> run(final List<File> goldFiles)
+          throws ResourceInitializationException {
+    canceled = false;
+    totals = new HashMap<String, TypeEvalData>();
+    totals.put(EvalDataProcessor.TOTAL, new TypeEvalData("Total", 0, 0, 0));
+    final String configurationHash = getConfigurationHash();
+
+    int numberOfWorkers = Math.max(1, Math.min(threads, goldFiles.size()));
+    List<AnalysisEngine> engines = new ArrayList<AnalysisEngine>();
+    try {
+      for (int i = 0; i < numberOfWorkers; i++) {
+        ResourceManager resourceManager = classLoader == null ? null
+                : new ResourceManager_impl(classLoader);
+        engines.add(UIMAFramework.produceAnalysisEngine(engineSpecifier, resourceManager, null));
+      }
+
+      final AtomicInteger next = new AtomicInteger();
+      ExecutorService executor = Executors.newFixedThreadPool(numberOfWorkers);
+      List<Future<?>> futures = new ArrayList<Future<?>>();
+      for (final AnalysisEngine each : engines) {
+        futures.add(executor.submit(new Callable<Object>() {
+          public Object call() throws Exception {
+            ICasEvaluator evaluator = evaluatorFactory.createEvaluator();
+            CAS goldCas = each.newCAS();
+            CAS runCas = each.newCAS();
+            try {
+              int index;
+              while (!canceled && (index = next.getAndIncrement()) < goldFiles.size()) {
+                File file = goldFiles.get(index);
+                try {
+                  evaluate(file, configurationHash, each, evaluator, goldCas, runCas);
+                } catch (Exception e) {
+                  documentFailed(file, e);
+                }
+              }
+            } finally {
+              goldCas.release();
+              runCas.release();
+            }
+            return null;
+          }
+        }));
+      }
+      try {
+        for (Future<?> future : futures) {
+          future.get();
+        }
+      } catch (InterruptedException e) {
+        canceled = true;
+        Thread.currentThread().interrupt();
+      } catch (ExecutionException e) {
+        throw new ResourceInitializationException(e.getCause());
+      } finally {
+        executor.shutdownNow();
+      }
+    } finally {
+      for (AnalysisEngine each : engines) {
+        each.destroy();
+      }
+    }
+
+    for (TypeEvalData each : totals.values()) {
+      each.calcFOne();
+    }
+    return totals;
+  }
+
+  private void evaluate(File file, String configurationHash, AnalysisEngine ae,
+          ICasEvaluator evaluator, CAS goldCas, CAS runCas) throws Exception {
+    String key = null;
+    if (cache != null) {
+      key = CasEvaluationCache.getKey(configurationHash, CasEvaluationCache.hash(file));
+      Map<String, TypeEvalData> cached = cache.get(key);
+      if (cached != null) {
+        documentEvaluated(new CasEvaluationResult(file, cached, true), null);
+        return;
+      }
+    }
+
+    goldCas.reset();
+    runCas.reset();
+    deserialize(file, goldCas);
+    deserialize(file, runCas);
+    CAS goldView = goldCas.getView(viewName);
+    CAS runView = runCas.getView(viewName);
+
+    Collection<String> excluded = prepareCas(runView);
+    ae.process(runView);
+    CAS resultCas = evaluator.evaluate(goldView, runView, excluded, includeSubtypes, useAllTypes);
+
+    Map<String, TypeEvalData> typeEvalData = EvalDataProcessor.calculateTypeEvalData(resultCas);
+    if (cache != null) {
+      cache.put(key, typeEvalData);
+    }
+    documentEvaluated(new CasEvaluationResult(file, typeEvalData, false), resultCas);
+  }
+
+  private synchronized void documentEvaluated(CasEvaluationResult result, CAS resultCas) {
+    for (Entry<String, TypeEvalData> each : result.getTypeEvalData().entrySet()) {
+      TypeEvalData data = each.getValue();
+      TypeEvalData total = totals.get(each.getKey());
+      if (total == null) {
+        total = new TypeEvalData(data.getTypeName(), 0, 0, 0);
+        totals.put(each.getKey(), total);
+      }
+      total.setTruePositives(total.getTruePositives() + data.getTruePositives());
+      total.setFalsePositives(total.getFalsePositives() + data.getFalsePositives());
+      total.setFalseNegatives(total.getFalseNegatives() + data.getFalseNegatives());
+    }
+    if (listener != null) {
+      listener.documentEvaluated(result, resultCas);
+    }
+  }
+
+  private synchronized void documentFailed(File file, Exception exception) {
+    if (listener != null) {
+      listener.documentFailed(file, exception);
+    }
+  }
+
+  private void deserialize(File file, CAS cas) throws Exception {
+    InputStream inputStream = null;
+    try {
+      inputStream = new FileInputStream(file);
+      XmiCasDeserializer.deserialize(inputStream, cas, true);
+    } finally {
+      if (inputStream != null) {
+        inputStream.close();
+      }
+    }
+  }
+
+  /**
+   * Removes the annotations that should be created by the engine, like the test view does before
+   * the script is applied.
+   *
+   * @return the types that are excluded from the evaluation
+   */
+  private Collection<String> prepareCas(CAS cas) {
+    Collection<String> excluded = excludedTypes;
+    if (!includedTypes.isEmpty()) {
+      // exclude all other types if there are some included types
+      excluded = new ArrayList<String>();
+      List<Type> types = cas.getTypeSystem().getProperlySubsumedTypes(cas.getAnnotationType());
+      for (Type type : types) {
+        if (!includedTypes.contains(type.getName())) {
+          excluded.add(type.getName());
+        }
+      }
+    }
+    // only the annotations of the evaluated view are removed, in default settings all of them
+    List<AnnotationFS> toRemove = new LinkedList<AnnotationFS>();
+    AnnotationIndex<AnnotationFS> annotationIndex = cas.getAnnotationIndex();
+    for (AnnotationFS annotationFS : annotationIndex) {
+      String typeName = annotationFS.getType().getName();
+      if (includedTypes.contains(typeName) || !excluded.contains(typeName)) {
+        toRemove.add(annotationFS);
+      }
+    }
+    for (AnnotationFS each : toRemove) {
+      if (!cas.getDocumentAnnotation().equals(each)) {
+        cas.removeFsFromIndexes(each);
+      }
+    }
+    return excluded;
+  }
+
+  private String getConfigurationHash() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(scriptHash).append('\n');
+    sb.append(evaluatorFactory.getClass().getName()).append('\n');
+    sb.append(viewName).append('\n');
+    sb.append(excludedTypes).append('\n');
+    sb.append(includedTypes).append('\n');
+    sb.append(includeSubtypes).append('\n');
+    sb.append(useAllTypes);
+    return CasEvaluationCache.hash(sb.toString());
+  }
+
+  /**
+   * Stops the evaluation after the documents that are currently processed.
+   */
+  public void cancel() {
+    canceled = true;
+  }
+
+  public boolean isCanceled() {
+    return canceled;
+  }
+
+  public void setViewName(String viewName) {
+    this.viewName = viewName;
+  }
+
+  public void setExcludedTypes(Collection<String> excludedTypes) {
+    this.excludedTypes = excludedTypes;
+  }
+
+  public void setIncludedTypes(Collection<String> includedTypes) {
+    this.includedTypes = includedTypes;
+  }
+
+  public void setIncludeSubtypes(boolean includeSubtypes) {
+    this.includeSubtypes = includeSubtypes;
+  }
+
+  public void setUseAllTypes(boolean useAllTypes) {
+    this.useAllTypes = useAllTypes;
+  }
+
+  public void setThreads(int threads) {
+    this.threads = threads;
+  }
+
+  /**
+   * @param cache
+   *          the cache for the results of the documents
+   * @param scriptHash
+   *          a hash of the script and of all resources that influence the result of the engine,
+   *          e.g., created with {@link CasEvaluationCache#hash(File)}
+   */
+  public void setCache(CasEvaluationCache cache, String scriptHash) {
+    this.cache = cache;
+    this.scriptHash = scriptHash;
+  }
+
+  public void setListener(ICasEvaluationListener listener) {
+    this.listener = listener;
+  }
+
+}
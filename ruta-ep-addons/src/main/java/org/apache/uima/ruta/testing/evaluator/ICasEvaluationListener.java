@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.testing.evaluator;
+
+import java.io.File;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * Receives the results of a {@link CasEvaluationRunner} as soon as a document is evaluated. The
+ * methods are called by the worker threads of the runner, but never concurrently.
+ */
+public interface ICasEvaluationListener {
+
+  /**
+   * @param result
+   *          the evaluation data of the document
+   * @param resultCas
+   *          the CAS with the TP, FP and FN annotations, or null if the result was taken from the
+   *          cache. The CAS is reused after this call returns.
+   */
+  void documentEvaluated(CasEvaluationResult result, CAS resultCas);
+
+  void documentFailed(File file, Exception exception);
+
+}
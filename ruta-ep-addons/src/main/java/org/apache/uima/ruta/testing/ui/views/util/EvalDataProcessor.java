@@ -37,8 +37,35 @@ import org.apache.uima.ruta.testing.ui.views.evalDataTable.TypeEvalData;
 
 public class EvalDataProcessor {
 
+  /**
+   * Key of the entry that sums up the counts of all types.
+   */
+  public static final String TOTAL = " Total";
+
   public static void calculateEvaluatData(TestCasData data, CAS resultCas) {
     data.setEvaluationStatus(true);
+    HashMap<String, TypeEvalData> map = calculateTypeEvalData(resultCas);
+    TypeEvalData total = map.get(TOTAL);
+
+    data.setTruePositiveCount(total.getTruePositives());
+    data.setFalsePositiveCount(total.getFalsePositives());
+    data.setFalseNegativeCount(total.getFalseNegatives());
+
+    Type truePositiveType = resultCas.getTypeSystem().getType(ICasEvaluator.TRUE_POSITIVE);
+    if (truePositiveType.getFeatureByBaseName("original") != null) {
+      data.setTypeEvalData(map);
+    }
+  }
+
+  /**
+   * Counts the true positives, false positives and false negatives of each type in the result of
+   * an evaluation. The sum over all types is stored with the key {@link #TOTAL}.
+   * 
+   * @param resultCas
+   *          must contain TP, FP, FN annotations
+   * @return the evaluation data for each type name
+   */
+  public static HashMap<String, TypeEvalData> calculateTypeEvalData(CAS resultCas) {
     TypeSystem ts = resultCas.getTypeSystem();
     Type falsePositiveType = ts.getType(ICasEvaluator.FALSE_POSITIVE);
     Type falseNegativeType = ts.getType(ICasEvaluator.FALSE_NEGATIVE);
@@ -50,13 +77,9 @@ public class EvalDataProcessor {
     int falseNegativeCount = resultCas.getAnnotationIndex(falseNegativeType).size();
     int truePositiveCount = resultCas.getAnnotationIndex(truePositiveType).size();
 
-    data.setTruePositiveCount(truePositiveCount);
-    data.setFalsePositiveCount(falsePositiveCount);
-    data.setFalseNegativeCount(falseNegativeCount);
-
     HashMap<String, TypeEvalData> map = new HashMap<String, TypeEvalData>();
 
-    map.put(" Total", new TypeEvalData("Total", truePositiveCount, falsePositiveCount,
+    map.put(TOTAL, new TypeEvalData("Total", truePositiveCount, falsePositiveCount,
             falseNegativeCount));
 
     AnnotationIndex<AnnotationFS> index = resultCas.getAnnotationIndex(truePositiveType);
@@ -119,14 +142,11 @@ public class EvalDataProcessor {
         }
       }
 
-      data.setTypeEvalData(map);
-
       Collection<TypeEvalData> col = map.values();
       for (TypeEvalData typeEvalData : col) {
         typeEvalData.calcFOne();
       }
-
-      return;
     }
+    return map;
   }
 }
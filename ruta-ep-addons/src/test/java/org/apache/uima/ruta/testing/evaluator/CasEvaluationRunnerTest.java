@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.uima.ruta.testing.evaluator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.ruta.engine.Ruta;
+import org.apache.uima.ruta.testing.ui.views.evalDataTable.TypeEvalData;
+import org.apache.uima.ruta.testing.ui.views.util.EvalDataProcessor;
+import org.apache.uima.util.CasCreationUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CasEvaluationRunnerTest {
+
+  private static final String TYPE = "org.apache.uima.T1";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testParallelAndCachedResultsMatchSequentialRun() throws Exception {
+    TypeSystemDescription tsd = UIMAFramework.getResourceSpecifierFactory()
+            .createTypeSystemDescription();
+    tsd.addType(TYPE, "Type for Testing", CAS.TYPE_NAME_ANNOTATION);
+    AnalysisEngineDescription aed = Ruta.createAnalysisEngineDescription("CW{-> T1};", tsd);
+    List<File> goldFiles = createGoldFiles(aed, 7);
+
+    Map<String, TypeEvalData> sequential = createRunner(aed, 1).run(goldFiles);
+    assertCounts(sequential.get(EvalDataProcessor.TOTAL), 11, 3, 0);
+    assertCounts(sequential.get(TYPE), 11, 3, 0);
+
+    Map<String, TypeEvalData> parallel = createRunner(aed, 4).run(goldFiles);
+    assertSame(sequential, parallel);
+
+    CasEvaluationCache cache = new CasEvaluationCache();
+    CasEvaluationRunner cachedRunner = createRunner(aed, 4);
+    cachedRunner.setCache(cache, "script");
+    assertSame(sequential, cachedRunner.run(goldFiles));
+    Assert.assertEquals(goldFiles.size(), cache.size());
+
+    final AtomicInteger cached = new AtomicInteger();
+    cachedRunner.setListener(new ICasEvaluationListener() {
+      public void documentEvaluated(CasEvaluationResult result, CAS resultCas) {
+        if (result.isCached()) {
+          cached.incrementAndGet();
+        }
+      }
+
+      public void documentFailed(File file, Exception exception) {
+        Assert.fail(exception.getMessage());
+      }
+    });
+    assertSame(sequential, cachedRunner.run(goldFiles));
+    Assert.assertEquals(goldFiles.size(), cached.get());
+  }
+
+  private CasEvaluationRunner createRunner(AnalysisEngineDescription aed, int threads) {
+    CasEvaluationRunner runner = new CasEvaluationRunner(aed, new ExactCasEvaluatorFactory(),
+            null);
+    runner.setThreads(threads);
+    return runner;
+  }
+
+  /**
+   * Creates documents in which the capitalized words are annotated, except for the second one in
+   * every other document.
+   */
+  private List<File> createGoldFiles(AnalysisEngineDescription aed, int number) throws Exception {
+    List<File> result = new ArrayList<File>();
+    CAS cas = CasCreationUtils.createCas(aed);
+    for (int i = 0; i < number; i++) {
+      cas.reset();
+      cas.setDocumentText("A b C d.");
+      Type type = cas.getTypeSystem().getType(TYPE);
+      cas.addFsToIndexes(cas.createAnnotation(type, 0, 1));
+      if (i % 2 == 0) {
+        cas.addFsToIndexes(cas.createAnnotation(type, 4, 5));
+      }
+      File file = folder.newFile("gold" + i + ".xmi");
+      OutputStream out = new FileOutputStream(file);
+      try {
+        XmiCasSerializer.serialize(cas, out);
+      } finally {
+        out.close();
+      }
+      result.add(file);
+    }
+    cas.release();
+    return result;
+  }
+
+  private void assertSame(Map<String, TypeEvalData> expected, Map<String, TypeEvalData> actual) {
+    Assert.assertEquals(expected.keySet(), actual.keySet());
+    for (String each : expected.keySet()) {
+      TypeEvalData data = expected.get(each);
+      assertCounts(actual.get(each), data.getTruePositives(), data.getFalsePositives(),
+              data.getFalseNegatives());
+    }
+  }
+
+  private void assertCounts(TypeEvalData data, int truePositives, int falsePositives,
+          int falseNegatives) {
+    Assert.assertEquals(truePositives, data.getTruePositives());
+    Assert.assertEquals(falsePositives, data.getFalsePositives());
+    Assert.assertEquals(falseNegatives, data.getFalseNegatives());
+  }
+
+}
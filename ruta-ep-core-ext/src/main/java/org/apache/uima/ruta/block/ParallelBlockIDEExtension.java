@@ -17,39 +17,25 @@
  * under the License.
  */
 
+package org.apache.uima.ruta.block;
 
-package org.apache.uima.ruta.block.fst;
+import org.antlr.runtime.RecognitionException;
+import org.apache.uima.ruta.ide.core.extensions.IIDEConditionExtension;
+import org.apache.uima.ruta.ide.core.extensions.IRutaCheckerProblemFactory;
+import org.eclipse.dltk.ast.expressions.Expression;
+import org.eclipse.dltk.compiler.problem.IProblemReporter;
 
-import java.util.LinkedList;
+public class ParallelBlockIDEExtension implements IIDEConditionExtension {
+  private final String[] strings = new String[] { "PARALLEL" };
 
-import org.apache.uima.ruta.RutaStatement;
-import org.apache.uima.ruta.rule.RuleElement;
-
-public class TransitionState extends AbstractState {
-  
-  private LinkedList<RutaStatement> isPartOfRules;
-  
-  public TransitionState(int depth) {
-    super(depth);
-    this.isPartOfRules = new LinkedList<RutaStatement>();
-  }
-  
-  @Override
-  public AbstractState getTransition(RuleElement elem) {
-    return this.transitions.get(elem);
-  }
-  
-  public void addRule(RutaStatement statement) {
-    this.isPartOfRules.add(statement);
+  public String[] getKnownExtensions() {
+    return strings;
   }
-  
-  public LinkedList<RutaStatement> getRules() {
-    return this.isPartOfRules;
-  }
-  
-  @Override
-  public String toString() {
-    return "TransitionState";
+
+  public boolean checkSyntax(Expression element, IRutaCheckerProblemFactory problemFactory,
+          IProblemReporter rep) throws RecognitionException {
+    // do not add additional checks yet
+    return true;
   }
 
 }
@@ -19,11 +19,26 @@
 
 package org.apache.uima.ruta.textruler.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.impl.Serialization;
 
 /**
  * 
@@ -33,6 +48,12 @@ import org.apache.uima.cas.CAS;
  * MLExmapleDocumentSet creates one for you, so you should not have to use this class manually.
  * 
  * The key of a cache entry is usually the file path of the XMI file.
+ * 
+ * CASes that are removed from the cache can optionally be kept in UIMA's compressed binary format,
+ * which is much faster to restore than the XMI file. These binary copies are bounded by bytes, and
+ * if a spill directory is given, binary copies that exceed the memory bound are written to files and
+ * restored using memory-mapped reads. A binary copy always reflects the state of the CAS when it was
+ * removed from the cache.
  */
 public class CasCache {
 
@@ -73,10 +94,52 @@ public class CasCache {
   // a hashMap for fast cache access
   private HashMap<String, MLCacheEntry> map;
 
+  // compressed binary copies of removed CASes in "least recently used" order
+  private LinkedHashMap<String, byte[]> binaryCache = new LinkedHashMap<String, byte[]>(16, 0.75f,
+          true);
+
+  // binary copies that were spilled to the disk
+  private Map<String, File> spilledFiles = new HashMap<String, File>();
+
+  private long maxBinaryBytes;
+
+  private long binaryBytes = 0;
+
+  private File spillDirectory;
+
+  private long hits = 0;
+
+  private long misses = 0;
+
+  private long restores = 0;
+
+  private long loadTime = 0;
+
+  private long restoreTime = 0;
+
+  private long storeTime = 0;
+
   public CasCache(int size, CasCacheLoader casLoader) {
+    this(size, 0, null, casLoader);
+  }
+
+  /**
+   * @param size
+   *          maximum amount of deserialized CAS objects
+   * @param maxBinaryBytes
+   *          maximum amount of bytes used for compressed copies of removed CASes in memory, 0
+   *          disables the binary copies
+   * @param spillDirectory
+   *          directory for binary copies that do not fit into memory, or null
+   * @param casLoader
+   *          loader for CASes that are not cached at all
+   */
+  public CasCache(int size, long maxBinaryBytes, File spillDirectory, CasCacheLoader casLoader) {
     this.cacheSize = size;
     this.map = new HashMap<String, MLCacheEntry>(size);
     this.casLoader = casLoader;
+    this.maxBinaryBytes = maxBinaryBytes;
+    this.spillDirectory = spillDirectory;
   }
 
   public void logDebugInfo(String str) {
@@ -104,6 +167,7 @@ public class CasCache {
     MLCacheEntry entry = map.get(fileName);
     if (entry != null) // cache HIT
     {
+      hits++;
       if (entry != head) {
         // move entry from its current location to head:
 
@@ -139,6 +203,7 @@ public class CasCache {
       CAS reuseCAS = null;
       if (map.size() >= cacheSize) {
         // remove oldest entry (the tail)
+        storeBinary(tail.key, tail.cas);
         tail.cas.reset(); // TODO loadCAS below also does a reset. are
         // subsequent reset calls expensive ?
         reuseCAS = tail.cas;
@@ -151,11 +216,17 @@ public class CasCache {
           tail = head;
       }
 
-      entry.cas = casLoader.loadCAS(fileName, reuseCAS); // if
-      // reuseCAS==null,
-      // loadCAS
-      // creates a new
-      // one!
+      entry.cas = restoreBinary(fileName, reuseCAS);
+      if (entry.cas == null) {
+        misses++;
+        long start = System.nanoTime();
+        entry.cas = casLoader.loadCAS(fileName, reuseCAS); // if
+        // reuseCAS==null,
+        // loadCAS
+        // creates a new
+        // one!
+        loadTime += System.nanoTime() - start;
+      }
 
       map.put(fileName, entry);
       if (map.size() > cacheSize) {
@@ -200,6 +271,174 @@ public class CasCache {
       GlobalCASSource.releaseCAS(ce.cas); // ce.cas.release();
     }
     map.clear();
+    binaryCache.clear();
+    binaryBytes = 0;
+    for (File each : spilledFiles.values()) {
+      each.delete();
+    }
+    spilledFiles.clear();
+  }
+
+  private void storeBinary(String key, CAS cas) {
+    if (maxBinaryBytes <= 0 && spillDirectory == null) {
+      return;
+    }
+    long start = System.nanoTime();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      Serialization.serializeWithCompression(cas, out);
+    } catch (Exception e) {
+      TextRulerToolkit.log("[CASCACHE] Cannot serialize CAS " + key + ": " + e.getMessage());
+      return;
+    }
+    byte[] bytes = out.toByteArray();
+    removeBinary(key);
+    if (bytes.length <= maxBinaryBytes) {
+      binaryCache.put(key, bytes);
+      binaryBytes += bytes.length;
+      // move the least recently used copies to the disk or drop them
+      Iterator<Map.Entry<String, byte[]>> iterator = binaryCache.entrySet().iterator();
+      while (binaryBytes > maxBinaryBytes && iterator.hasNext()) {
+        Map.Entry<String, byte[]> eldest = iterator.next();
+        iterator.remove();
+        binaryBytes -= eldest.getValue().length;
+        spill(eldest.getKey(), eldest.getValue());
+      }
+    } else {
+      spill(key, bytes);
+    }
+    storeTime += System.nanoTime() - start;
+  }
+
+  private void spill(String key, byte[] bytes) {
+    if (spillDirectory == null) {
+      return;
+    }
+    if (!spillDirectory.exists()) {
+      spillDirectory.mkdirs();
+    }
+    OutputStream out = null;
+    try {
+      File file = File.createTempFile("cas", ".bin", spillDirectory);
+      file.deleteOnExit();
+      out = new FileOutputStream(file);
+      out.write(bytes);
+      spilledFiles.put(key, file);
+    } catch (IOException e) {
+      TextRulerToolkit.log("[CASCACHE] Cannot spill CAS " + key + ": " + e.getMessage());
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+        }
+      }
+    }
+  }
+
+  private CAS restoreBinary(String key, CAS reuseCAS) {
+    if (reuseCAS == null) {
+      // a restored CAS needs an existing CAS object
+      return null;
+    }
+    long start = System.nanoTime();
+    InputStream in = null;
+    RandomAccessFile spilledFile = null;
+    try {
+      byte[] bytes = binaryCache.get(key);
+      if (bytes != null) {
+        in = new ByteArrayInputStream(bytes);
+      } else if (spilledFiles.containsKey(key)) {
+        spilledFile = new RandomAccessFile(spilledFiles.get(key), "r");
+        FileChannel channel = spilledFile.getChannel();
+        in = new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                channel.size()));
+      } else {
+        return null;
+      }
+      reuseCAS.reset();
+      Serialization.deserializeCAS(reuseCAS, in);
+    } catch (Exception e) {
+      TextRulerToolkit.log("[CASCACHE] Cannot restore CAS " + key + ": " + e.getMessage());
+      removeBinary(key);
+      reuseCAS.reset();
+      return null;
+    } finally {
+      if (spilledFile != null) {
+        try {
+          spilledFile.close();
+        } catch (IOException e) {
+        }
+      }
+    }
+    // the CAS is alive again and may change, the binary copy is created again when it is removed
+    removeBinary(key);
+    restores++;
+    restoreTime += System.nanoTime() - start;
+    return reuseCAS;
+  }
+
+  private void removeBinary(String key) {
+    byte[] bytes = binaryCache.remove(key);
+    if (bytes != null) {
+      binaryBytes -= bytes.length;
+    }
+    File file = spilledFiles.remove(key);
+    if (file != null) {
+      file.delete();
+    }
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getRestores() {
+    return restores;
+  }
+
+  public long getBinaryBytes() {
+    return binaryBytes;
+  }
+
+  public String getStatistics() {
+    return "hits=" + hits + "; restores=" + restores + " (" + restoreTime / 1000000
+            + "ms, stored in " + storeTime / 1000000 + "ms); misses=" + misses + " ("
+            + loadTime / 1000000 + "ms); binary=" + binaryBytes + " bytes, spilled="
+            + spilledFiles.size();
+  }
+
+  private static class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    public ByteBufferInputStream(MappedByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buffer.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() {
+      return buffer.remaining();
+    }
   }
 
 }
@@ -28,6 +28,11 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.uima.analysis_engine.AnalysisEngine;
@@ -95,6 +100,14 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
 
   private Map<String, TextRulerStatisticsCollector> inducedRules = new TreeMap<String, TextRulerStatisticsCollector>();
 
+  private String compiledScript;
+
+  private AnalysisEngineDescription aeDescription;
+
+  private int testThreads = 1;
+
+  private List<TextRulerTestWorker> testWorkers = new ArrayList<TextRulerTestWorker>();
+
   public TextRulerBasicLearner(String inputDir, String prePropTMFile, String tmpDir,
           String[] slotNames, Set<String> filterSet, boolean skip, TextRulerLearnerDelegate delegate) {
     super();
@@ -124,8 +137,14 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
 
     IPreferenceStore store = TextRulerPlugin.getDefault().getPreferenceStore();
     maxErrorRate = store.getInt(TextRulerPreferences.MAX_ERROR_RATE);
+    testThreads = store.getInt(TextRulerPreferences.TEST_THREADS);
     int casChacheSize = store.getInt(TextRulerPreferences.CAS_CACHE);
-    this.casCache = new CasCache(casChacheSize, this);
+    long binaryCacheBytes = store.getInt(TextRulerPreferences.CAS_BINARY_CACHE) * 1024L * 1024L;
+    File spillDirectory = null;
+    if (store.getBoolean(TextRulerPreferences.CAS_CACHE_SPILL)) {
+      spillDirectory = new File(tempDirectory(), "cascache");
+    }
+    this.casCache = new CasCache(casChacheSize, binaryCacheBytes, spillDirectory, this);
   }
 
   protected String tempDirectory() {
@@ -166,32 +185,76 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
       return;
     }
     TextRulerToolkit.addBoundaryTypes(description, slotNames);
-    ae = TextRulerToolkit.loadAnalysisEngine(description);
+    aeDescription = description;
+    compiledScript = getFileHeaderString(false);
+    ae = createAnalysisEngine(description, compiledScript);
+  }
+
+  private AnalysisEngine createAnalysisEngine(AnalysisEngineDescription description,
+          String initialScript) {
+    AnalysisEngine engine = TextRulerToolkit.loadAnalysisEngine(description);
+    if (engine == null) {
+      return null;
+    }
 
     // set filters to NO filtering so that we can add it manually with
     // the FILTERTYPE expression!
     String tempRulesFileName = getTempRulesFileName();
     IPath path = new Path(tempRulesFileName);
-    ae.setConfigParameterValue(RutaEngine.PARAM_MAIN_SCRIPT, path.removeFileExtension()
+    engine.setConfigParameterValue(RutaEngine.PARAM_MAIN_SCRIPT, path.removeFileExtension()
             .lastSegment());
     String portableString = path.removeLastSegments(1).toPortableString();
-    ae.setConfigParameterValue(RutaEngine.PARAM_SCRIPT_PATHS, new String[] { portableString });
-    ae.setConfigParameterValue(RutaEngine.PARAM_ADDITIONAL_SCRIPTS, new String[0]);
-    ae.setConfigParameterValue(RutaEngine.PARAM_RELOAD_SCRIPT, true);
+    engine.setConfigParameterValue(RutaEngine.PARAM_SCRIPT_PATHS, new String[] { portableString });
+    engine.setConfigParameterValue(RutaEngine.PARAM_ADDITIONAL_SCRIPTS, new String[0]);
+    // rules are passed as string and parsed in memory, see compileScript()
+    engine.setConfigParameterValue(RutaEngine.PARAM_RULES, initialScript);
+    engine.setConfigParameterValue(RutaEngine.PARAM_RELOAD_SCRIPT, false);
     if (useDynamicAnchoring) {
-      ae.setConfigParameterValue(RutaEngine.PARAM_DYNAMIC_ANCHORING, true);
+      engine.setConfigParameterValue(RutaEngine.PARAM_DYNAMIC_ANCHORING, true);
     }
     IPreferenceStore store = TextRulerPlugin.getDefault().getPreferenceStore();
     boolean lowMemoryProfile = store.getBoolean(TextRulerPreferences.LOW_MEMORY_PROFILE);
     boolean removeBasics = store.getBoolean(TextRulerPreferences.REMOVE_BASICS);
-    ae.setConfigParameterValue(RutaEngine.PARAM_LOW_MEMORY_PROFILE, lowMemoryProfile);
-    ae.setConfigParameterValue(RutaEngine.PARAM_REMOVE_BASICS, removeBasics);
+    engine.setConfigParameterValue(RutaEngine.PARAM_LOW_MEMORY_PROFILE, lowMemoryProfile);
+    engine.setConfigParameterValue(RutaEngine.PARAM_REMOVE_BASICS, removeBasics);
 
     try {
-      ae.reconfigure();
+      engine.reconfigure();
     } catch (ResourceConfigurationException e) {
       TextRulerPlugin.error(e);
     }
+    return engine;
+  }
+
+  /**
+   * Configures the analysis engine to apply the given script. The script is parsed in memory
+   * without writing it to the temporary directory. The engine is only reconfigured if the script
+   * differs from the last compiled one, and the engine itself keeps the parsed modules of recently
+   * used scripts, so testing the same rule again does not parse it again.
+   * 
+   * @param script
+   *          the complete script including the file header
+   */
+  public void compileScript(String script) {
+    if (script.equals(compiledScript)) {
+      return;
+    }
+    if (TextRulerToolkit.setRules(getAnalysisEngine(), script)) {
+      compiledScript = script;
+    } else {
+      compiledScript = null;
+    }
+    if (TextRulerToolkit.DEBUG) {
+      try {
+        FileUtils.saveString2File(script, new File(getTempRulesFileName()));
+      } catch (IOException e) {
+        TextRulerPlugin.error(e);
+      }
+    }
+  }
+
+  public void compileRule(TextRulerRule rule) {
+    compileScript(rule.getRulesFileContent());
   }
 
   protected boolean checkForMandatoryTypes() {
@@ -267,6 +330,8 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
           cleanUp();
         }
       }
+      releaseTestWorkers();
+      TextRulerToolkit.log("[CASCACHE] " + casCache.getStatistics());
       casCache.clear();
       casCache = null;
       exampleDocuments = null; // clear reference
@@ -358,7 +423,7 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
       MemoryWatch.watch();
     }
     try {
-      rule.saveToRulesFile(getTempRulesFileName());
+      compileRule(rule);
       if (TextRulerToolkit.DEBUG) {
         TextRulerToolkit.writeCAStoXMIFile(testCas, tempDirectory() + "testCas.xmi");
       }
@@ -390,12 +455,7 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
 
   public CAS applyScriptOnDocument(String script, final TextRulerExampleDocument doc,
           TextRulerTarget target) {
-    String tempRulesFileName = getTempRulesFileName();
-    try {
-      FileUtils.saveString2File(script, new File(tempRulesFileName));
-    } catch (IOException e) {
-      TextRulerPlugin.error(e);
-    }
+    compileScript(script);
     AnalysisEngine analysisEngine = getAnalysisEngine();
     CAS testCAS = getTestCAS();
     doc.resetAndFillTestCAS(testCAS, target);
@@ -421,6 +481,11 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
       sums.add(new TextRulerStatisticsCollector());
     }
 
+    if (getTestThreads() > 1 && !target.isLeftCorrection() && !target.isRightCorrection()) {
+      testRulesOnDocumentSetInParallel(rules, sortedDocs, sums);
+      return;
+    }
+
     CAS theTestCAS = getTestCAS();
     for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
       TextRulerRule theRule = rules.get(ruleIndex);
@@ -454,6 +519,155 @@ public abstract class TextRulerBasicLearner implements TextRulerLearner, CasCach
       rules.get(ruleIndex).setCoveringStatistics(sums.get(ruleIndex));
   }
 
+  private void testRulesOnDocumentSetInParallel(final List<? extends TextRulerRule> rules,
+          final TextRulerExampleDocument[] sortedDocs,
+          final List<TextRulerStatisticsCollector> sums) {
+    // rules that are already known or occur twice in this list are not tested again
+    final List<Integer> toTest = new ArrayList<Integer>();
+    Set<String> seen = new HashSet<String>();
+    for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+      TextRulerRule theRule = rules.get(ruleIndex);
+      String ruleString = theRule.getRuleString();
+      if (inducedRules.containsKey(ruleString)) {
+        theRule.setCoveringStatistics(inducedRules.get(ruleString));
+      } else if (seen.add(ruleString)) {
+        toTest.add(ruleIndex);
+      }
+    }
+
+    runParallelTests(toTest.size(), new ParallelTest() {
+      public void test(int index, TextRulerTestWorker worker) {
+        int ruleIndex = toTest.get(index);
+        TextRulerRule theRule = rules.get(ruleIndex);
+        TextRulerStatisticsCollector sumC = sums.get(ruleIndex);
+        worker.compileScript(theRule.getRulesFileContent());
+        CAS testCAS = worker.getTestCAS();
+        // the documents are processed in the same order as in the sequential mode so that the
+        // statistics and the early abort do not depend on the amount of threads
+        for (TextRulerExampleDocument theDoc : sortedDocs) {
+          synchronized (casCache) {
+            theDoc.resetAndFillTestCAS(testCAS, theRule.getTarget());
+          }
+          try {
+            worker.process();
+          } catch (AnalysisEngineProcessException e) {
+            TextRulerPlugin.error(e);
+          }
+          compareOriginalDocumentWithTestCAS(theDoc, testCAS, theRule.getTarget(), sumC,
+                  collectNegativeCoveredInstancesWhenTesting());
+          double errorRate = sumC.n / Math.max(sumC.p, 1);
+          if (errorRate > maxErrorRate || shouldAbort()) {
+            break;
+          }
+        }
+        testCAS.reset();
+      }
+    });
+    if (shouldAbort()) {
+      return;
+    }
+
+    for (Integer ruleIndex : toTest) {
+      inducedRules.put(rules.get(ruleIndex).getRuleString(), sums.get(ruleIndex));
+    }
+    for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++)
+      rules.get(ruleIndex).setCoveringStatistics(sums.get(ruleIndex));
+  }
+
+  /**
+   * A test that is executed by one of the test workers, see runParallelTests().
+   */
+  protected interface ParallelTest {
+
+    /**
+     * Executes the test with the given index using the engine and test CAS of the given worker.
+     * The document CASes are shared by all workers and need to be accessed synchronized on the
+     * CAS cache.
+     */
+    void test(int index, TextRulerTestWorker worker);
+  }
+
+  /**
+   * Learners that override compareOriginalDocumentWithTestCAS or test rules with custom code need
+   * to make sure that their test code can be executed concurrently before they enable parallel
+   * testing.
+   * 
+   * @return true if the learner supports testing rules with several threads
+   */
+  protected boolean supportsParallelTesting() {
+    return false;
+  }
+
+  protected int getTestThreads() {
+    if (!supportsParallelTesting()) {
+      return 1;
+    }
+    return Math.max(1, testThreads);
+  }
+
+  /**
+   * Executes the tests 0 to count-1 using a pool of test workers. The tests are distributed among
+   * the workers, but each test is executed completely by a single worker.
+   */
+  protected void runParallelTests(int count, final ParallelTest test) {
+    if (count == 0) {
+      return;
+    }
+    int threads = Math.min(getTestThreads(), count);
+    final List<TextRulerTestWorker> workers = getTestWorkers(threads);
+    if (workers.isEmpty()) {
+      return;
+    }
+    final AtomicInteger next = new AtomicInteger();
+    final int total = count;
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (final TextRulerTestWorker worker : workers) {
+      futures.add(executor.submit(new Runnable() {
+        public void run() {
+          int index;
+          while ((index = next.getAndIncrement()) < total && !shouldAbort()) {
+            test.test(index, worker);
+          }
+        }
+      }));
+    }
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      TextRulerPlugin.error(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private List<TextRulerTestWorker> getTestWorkers(int count) {
+    while (testWorkers.size() < count) {
+      AnalysisEngine engine = createAnalysisEngine(aeDescription, getFileHeaderString(false));
+      if (engine == null) {
+        break;
+      }
+      CAS cas = GlobalCASSource.allocCAS(engine);
+      if (cas == null) {
+        engine.destroy();
+        break;
+      }
+      testWorkers.add(new TextRulerTestWorker(engine, cas));
+    }
+    return testWorkers.subList(0, Math.min(count, testWorkers.size()));
+  }
+
+  private void releaseTestWorkers() {
+    for (TextRulerTestWorker each : testWorkers) {
+      each.release();
+    }
+    testWorkers.clear();
+  }
+
   public void testRulesOnDocument(final List<? extends TextRulerRule> rules,
           final TextRulerExampleDocument document) {
     if (rules.isEmpty())
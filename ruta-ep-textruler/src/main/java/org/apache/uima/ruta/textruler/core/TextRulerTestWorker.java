@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.uima.ruta.textruler.core;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.CAS;
+
+/**
+ *
+ * A TextRulerTestWorker combines an analysis engine with its own test CAS. The learners use a pool
+ * of workers for testing rules in parallel (see TextRulerBasicLearner.testRulesOnDocumentSet). A
+ * worker must only be used by one thread at a time.
+ *
+ * The worker remembers the script it is configured for, so the engine only gets reconfigured if the
+ * next tested rule differs.
+ *
+ */
+public class TextRulerTestWorker {
+
+  private AnalysisEngine analysisEngine;
+
+  private CAS testCAS;
+
+  private String compiledScript;
+
+  public TextRulerTestWorker(AnalysisEngine analysisEngine, CAS testCAS) {
+    super();
+    this.analysisEngine = analysisEngine;
+    this.testCAS = testCAS;
+  }
+
+  public AnalysisEngine getAnalysisEngine() {
+    return analysisEngine;
+  }
+
+  public CAS getTestCAS() {
+    return testCAS;
+  }
+
+  public void compileScript(String script) {
+    if (script.equals(compiledScript)) {
+      return;
+    }
+    if (TextRulerToolkit.setRules(analysisEngine, script)) {
+      compiledScript = script;
+    } else {
+      compiledScript = null;
+    }
+  }
+
+  public void process() throws AnalysisEngineProcessException {
+    analysisEngine.process(testCAS);
+  }
+
+  public void release() {
+    if (testCAS != null) {
+      GlobalCASSource.releaseCAS(testCAS);
+      testCAS = null;
+    }
+    if (analysisEngine != null) {
+      analysisEngine.destroy();
+      analysisEngine = null;
+    }
+  }
+
+}
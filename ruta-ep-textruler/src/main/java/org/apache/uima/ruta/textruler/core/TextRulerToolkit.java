@@ -46,6 +46,7 @@ import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.resource.ResourceConfigurationException;
 import org.apache.uima.resource.metadata.TypeDescription;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
 import org.apache.uima.ruta.engine.RutaEngine;
@@ -143,6 +144,22 @@ public class TextRulerToolkit {
     return result;
   }
 
+  /**
+   * Configures the given Ruta analysis engine to apply the given script, which is parsed in memory.
+   * 
+   * @return true if the engine was reconfigured successfully
+   */
+  public static boolean setRules(AnalysisEngine ae, String script) {
+    ae.setConfigParameterValue(RutaEngine.PARAM_RULES, script);
+    try {
+      ae.reconfigure();
+      return true;
+    } catch (ResourceConfigurationException e) {
+      TextRulerPlugin.error(e);
+      return false;
+    }
+  }
+
   public static void addBoundaryTypes(AnalysisEngineDescription description, String[] slotNames) {
     List<String> list = new ArrayList<String>();
     for (String eachSlot : slotNames) {
@@ -1130,6 +1130,11 @@ public class KEPLearner extends TextRulerBasicLearner {
     return true;
   }
 
+  @Override
+  protected boolean supportsParallelTesting() {
+    return true;
+  }
+
   public void setParameters(Map<String, Object> params) {
     if (TextRulerToolkit.DEBUG)
       saveParametersToTempFolder(params);
@@ -466,7 +466,7 @@ public abstract class BasicLP2 extends TextRulerBasicLearner {
       // String allRulesContent = getResultString();
       String allRulesContent = FileUtils.file2String(new File("/testinput/testrules/rules"
               + RutaEngine.SCRIPT_FILE_EXTENSION));
-      FileUtils.saveString2File(allRulesContent, new File(getTempRulesFileName()));
+      compileScript(allRulesContent);
 
       CAS testCAS = getTestCAS();
       for (TextRulerExampleDocument doc : sortedDocs) {
@@ -569,6 +569,11 @@ public abstract class BasicLP2 extends TextRulerBasicLearner {
     return super.getFileHeaderString(complete) + "BOOLEAN redoContextualRules;\n\n";
   }
 
+  @Override
+  protected boolean supportsParallelTesting() {
+    return true;
+  }
+
   @Override
   protected boolean checkForMandatoryTypes() {
     if (!super.checkForMandatoryTypes()) {
@@ -639,6 +639,11 @@ public class Rapier extends TextRulerBasicLearner {
     return false;
   }
 
+  @Override
+  protected boolean supportsParallelTesting() {
+    return true;
+  }
+
   public String getResultString() {
     if (slotRules != null)
       return slotRules.getTMFileString(getFileHeaderString(true), 1000); // if
@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.TreeMap;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.FSIterator;
 import org.apache.uima.cas.Feature;
@@ -41,12 +42,14 @@ import org.apache.uima.cas.FeatureStructure;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.cas.text.AnnotationIndex;
+import org.apache.uima.ruta.textruler.TextRulerPlugin;
 import org.apache.uima.ruta.textruler.core.TextRulerBasicLearner;
 import org.apache.uima.ruta.textruler.core.TextRulerExample;
 import org.apache.uima.ruta.textruler.core.TextRulerExampleDocument;
 import org.apache.uima.ruta.textruler.core.TextRulerExampleDocumentSet;
 import org.apache.uima.ruta.textruler.core.TextRulerStatisticsCollector;
 import org.apache.uima.ruta.textruler.core.TextRulerTarget;
+import org.apache.uima.ruta.textruler.core.TextRulerTestWorker;
 import org.apache.uima.ruta.textruler.core.TextRulerToolkit;
 import org.apache.uima.ruta.textruler.extension.TextRulerLearnerDelegate;
 import org.apache.uima.ruta.textruler.tools.MemoryWatch;
@@ -692,7 +695,7 @@ public class TrabalLearner extends TextRulerBasicLearner {
   private void updateDocumentData(TrabalRule rule) {
     try {
       sendStatusUpdateToDelegate("Writing rules...", TextRulerLearnerState.ML_RUNNING, false);
-      rule.saveToRulesFile(getTempRulesFileName());
+      compileRule(rule);
       for (TextRulerExampleDocument doc : additionalDocuments.getDocuments()) {
         ae.process(doc.getCAS());
       }
@@ -1373,6 +1376,10 @@ public class TrabalLearner extends TextRulerBasicLearner {
     List<TextRulerExampleDocument> additionalDocs;
     goldDocs = documents.getDocuments();
     additionalDocs = additionalDocuments.getDocuments();
+    if (getTestThreads() > 1) {
+      testTrabalRulesInParallel(rules, goldDocs, additionalDocs, sums);
+      return rules;
+    }
     CAS theTestCAS = getTestCAS();
     int counter = 0;
     for (TrabalRule rule : rules) {
@@ -1422,6 +1429,74 @@ public class TrabalLearner extends TextRulerBasicLearner {
     return rules;
   }
 
+  private void testTrabalRulesInParallel(final List<TrabalRule> rules,
+          final List<TextRulerExampleDocument> goldDocs,
+          final List<TextRulerExampleDocument> additionalDocs,
+          final List<TextRulerStatisticsCollector> sums) {
+    final List<Integer> toTest = new ArrayList<Integer>();
+    Set<String> seen = new HashSet<String>();
+    for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+      TrabalRule rule = rules.get(ruleIndex);
+      String ruleString = rule.getRuleString();
+      if (inducedRules.containsKey(ruleString)) {
+        rule.setCoveringStatistics(inducedRules.get(ruleString));
+      } else if (seen.add(ruleString)) {
+        toTest.add(ruleIndex);
+      }
+    }
+    sendStatusUpdateToDelegate("Testing " + toTest.size() + " rules with " + getTestThreads()
+            + " threads", TextRulerLearnerState.ML_RUNNING, false);
+
+    runParallelTests(toTest.size(), new ParallelTest() {
+      public void test(int index, TextRulerTestWorker worker) {
+        int ruleIndex = toTest.get(index);
+        TrabalRule rule = rules.get(ruleIndex);
+        CAS testCas = worker.getTestCAS();
+        worker.compileScript(rule.getRulesFileContent());
+        for (int i = 0; i < goldDocs.size(); i++) {
+          TextRulerExampleDocument goldDoc = goldDocs.get(i);
+          TextRulerExampleDocument additionalDoc = additionalDocs.get(i);
+          TextRulerStatisticsCollector sumC = new TextRulerStatisticsCollector();
+          synchronized (casCache) {
+            prepareTestCas(testCas, goldDoc, additionalDoc);
+          }
+          try {
+            worker.process();
+          } catch (AnalysisEngineProcessException e) {
+            TextRulerPlugin.error(e);
+          }
+          removeBasics(testCas);
+          // the comparison accesses the CASes of the gold and additional documents
+          synchronized (casCache) {
+            compareRuleResults(rule, goldDoc, additionalDoc, sumC, testCas);
+          }
+          sums.get(ruleIndex).add(sumC);
+          int n = sumC.getCoveredNegativesCount();
+          int pnorm = Math.max(sumC.getCoveredPositivesCount(), 1);
+          if (n / pnorm > maxErrorRate || shouldAbort()) {
+            break;
+          }
+        }
+        testCas.reset();
+      }
+    });
+    if (shouldAbort()) {
+      return;
+    }
+
+    for (Integer ruleIndex : toTest) {
+      inducedRules.put(rules.get(ruleIndex).getRuleString(), sums.get(ruleIndex));
+    }
+    for (int ruleIndex = 0; ruleIndex < rules.size(); ruleIndex++) {
+      rules.get(ruleIndex).setCoveringStatistics(sums.get(ruleIndex));
+    }
+  }
+
+  @Override
+  protected boolean supportsParallelTesting() {
+    return true;
+  }
+
   private String getRuleInfo(TrabalRule rule) {
     String ruleInfo;
     if (rule.getAnnotation() != null && rule.getTargetAnnotation() != null) {
@@ -1469,7 +1544,7 @@ public class TrabalLearner extends TextRulerBasicLearner {
       MemoryWatch.watch();
     }
     try {
-      rule.saveToRulesFile(getTempRulesFileName());
+      compileRule(rule);
       if (TextRulerToolkit.DEBUG) {
         TextRulerToolkit.writeCAStoXMIFile(testCas, tempDirectory() + "testCas.xmi");
       }
@@ -1478,24 +1553,30 @@ public class TrabalLearner extends TextRulerBasicLearner {
       if (TextRulerToolkit.DEBUG) {
         TextRulerToolkit.writeCAStoXMIFile(testCas, tempDirectory() + "testCasProcessed.xmi");
       }
-      if (rule.getAnnotation() != null && rule.getTargetAnnotation() != null) {
-        compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
-                new TextRulerTarget(rule.getAnnotation().getType().getName(), this), c, false);
-        if (rule.getAnnotation().getType() != rule.getTargetAnnotation().getType()) {
-          compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
-                  new TextRulerTarget(rule.getTargetAnnotation().getType().getName(), this), c,
-                  false);
-        }
-      } else if (rule.getTargetAnnotation() != null) {
+      compareRuleResults(rule, goldDoc, additionalDoc, c, testCas);
+    } catch (Exception e) {
+      e.printStackTrace();
+    }
+  }
+
+  private void compareRuleResults(final TrabalRule rule, final TextRulerExampleDocument goldDoc,
+          final TextRulerExampleDocument additionalDoc, final TextRulerStatisticsCollector c,
+          CAS testCas) {
+    if (rule.getAnnotation() != null && rule.getTargetAnnotation() != null) {
+      compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
+              new TextRulerTarget(rule.getAnnotation().getType().getName(), this), c, false);
+      if (rule.getAnnotation().getType() != rule.getTargetAnnotation().getType()) {
         compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
                 new TextRulerTarget(rule.getTargetAnnotation().getType().getName(), this), c,
                 false);
-      } else {
-        compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
-                new TextRulerTarget(rule.getAnnotation().getType().getName(), this), c, false);
       }
-    } catch (Exception e) {
-      e.printStackTrace();
+    } else if (rule.getTargetAnnotation() != null) {
+      compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
+              new TextRulerTarget(rule.getTargetAnnotation().getType().getName(), this), c,
+              false);
+    } else {
+      compareOriginalDocumentWithTestCAS(goldDoc, additionalDoc, testCas,
+              new TextRulerTarget(rule.getAnnotation().getType().getName(), this), c, false);
     }
   }
 
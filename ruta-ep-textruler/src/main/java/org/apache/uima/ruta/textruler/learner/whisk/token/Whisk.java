@@ -84,6 +84,11 @@ public class Whisk extends TextRulerBasicLearner {
     return false;
   }
 
+  @Override
+  protected boolean supportsParallelTesting() {
+    return true;
+  }
+
   @Override
   protected void doRun() {
 
@@ -33,6 +33,9 @@ public class ConfigPreferencePage extends FieldEditorPreferencePage implements I
   private BooleanFieldEditor lowMemoryProfile;
   private IntegerFieldEditor maxErrorRate;
   private IntegerFieldEditor casCache;
+  private IntegerFieldEditor casBinaryCache;
+  private BooleanFieldEditor casCacheSpill;
+  private IntegerFieldEditor testThreads;
 
 
   public ConfigPreferencePage() {
@@ -61,6 +64,19 @@ public class ConfigPreferencePage extends FieldEditorPreferencePage implements I
     casCache = new IntegerFieldEditor(TextRulerPreferences.CAS_CACHE,
             "CAS cache size.", getFieldEditorParent());
     addField(casCache);
+
+    casBinaryCache = new IntegerFieldEditor(TextRulerPreferences.CAS_BINARY_CACHE,
+            "Memory for compressed CASes in MB.", getFieldEditorParent());
+    addField(casBinaryCache);
+
+    casCacheSpill = new BooleanFieldEditor(TextRulerPreferences.CAS_CACHE_SPILL,
+            "Write compressed CASes to the temporary folder if memory is exceeded.",
+            getFieldEditorParent());
+    addField(casCacheSpill);
+
+    testThreads = new IntegerFieldEditor(TextRulerPreferences.TEST_THREADS,
+            "Threads for testing rules.", getFieldEditorParent());
+    addField(testThreads);
     
   }
 }
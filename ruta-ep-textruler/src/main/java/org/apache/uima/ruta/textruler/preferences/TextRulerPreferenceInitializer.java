@@ -41,6 +41,9 @@ public class TextRulerPreferenceInitializer extends AbstractPreferenceInitialize
     store.setDefault(TextRulerPreferences.LOW_MEMORY_PROFILE, false);
     store.setDefault(TextRulerPreferences.MAX_ERROR_RATE, 10);
     store.setDefault(TextRulerPreferences.CAS_CACHE, 50);
+    store.setDefault(TextRulerPreferences.CAS_BINARY_CACHE, 256);
+    store.setDefault(TextRulerPreferences.CAS_CACHE_SPILL, false);
+    store.setDefault(TextRulerPreferences.TEST_THREADS, 1);
     
     List<TextRulerLearnerController> availableControllers = TextRulerController.getAvailableControllers();
     for (TextRulerLearnerController each : availableControllers) {
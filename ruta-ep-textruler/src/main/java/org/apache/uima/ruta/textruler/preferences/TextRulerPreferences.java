@@ -25,5 +25,8 @@ public class TextRulerPreferences {
   public static final String REMOVE_BASICS = ConfigPreferencePage.ID + ".removeBasics";
   public static final String MAX_ERROR_RATE = ConfigPreferencePage.ID + ".maxErrorRate";
   public static final String CAS_CACHE = ConfigPreferencePage.ID + ".casCache";
+  public static final String CAS_BINARY_CACHE = ConfigPreferencePage.ID + ".casBinaryCache";
+  public static final String CAS_CACHE_SPILL = ConfigPreferencePage.ID + ".casCacheSpill";
+  public static final String TEST_THREADS = ConfigPreferencePage.ID + ".testThreads";
   
 }